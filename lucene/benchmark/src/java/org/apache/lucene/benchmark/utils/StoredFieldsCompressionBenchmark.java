@@ -0,0 +1,198 @@
+package org.apache.lucene.benchmark.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.feeds.DocData;
+import org.apache.lucene.benchmark.byTask.feeds.LineDocSource;
+import org.apache.lucene.benchmark.byTask.feeds.NoMoreDataException;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.lucene410.Lucene410Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+
+/**
+ * Compares the {@link CompressionMode}s of {@link CompressingStoredFieldsFormat}:
+ * for every mode, indexes the stored fields of the documents of a line docs file
+ * (see {@link LineDocSource}) in memory, and reports the size of the stored fields,
+ * the indexing time and the retrieval throughput of documents in random and in
+ * sequential order.
+ * <p>
+ * Indices are read through near-real-time readers, so that the modes don't need
+ * codecs that are registered for lookup by name.
+ */
+public class StoredFieldsCompressionBenchmark {
+
+  private static final CompressionMode[] DEFAULT_MODES = new CompressionMode[] {
+    CompressionMode.FAST, CompressionMode.FAST_WITH_DICTIONARY,
+    CompressionMode.HIGH_COMPRESSION, CompressionMode.HIGH_COMPRESSION_WITH_DICTIONARY
+  };
+
+  private static final String[] FIELDS = new String[] { "title", "date", "body" };
+
+  private final List<String[]> docs;
+  private final int chunkSize;
+  private final int numReads;
+  private final PrintStream out;
+
+  public StoredFieldsCompressionBenchmark(List<String[]> docs, int chunkSize, int numReads, PrintStream out) {
+    this.docs = docs;
+    this.chunkSize = chunkSize;
+    this.numReads = numReads;
+    this.out = out;
+  }
+
+  /** Loads up to <code>maxDocs</code> documents as (title, date, body) triples. */
+  public static List<String[]> loadDocs(File lineDocsFile, int maxDocs) throws IOException {
+    Properties props = new Properties();
+    props.setProperty("docs.file", lineDocsFile.getAbsolutePath());
+    props.setProperty("content.source.forever", "false");
+    props.setProperty("print.props", "false");
+    LineDocSource source = new LineDocSource();
+    source.setConfig(new Config(props));
+    source.resetInputs();
+    List<String[]> docs = new ArrayList<>();
+    DocData docData = new DocData();
+    try {
+      while (docs.size() < maxDocs) {
+        docData = source.getNextDocData(docData);
+        docs.add(new String[] { docData.getTitle(), docData.getDate(), docData.getBody() });
+      }
+    } catch (NoMoreDataException e) {
+      // all documents were loaded
+    } finally {
+      source.close();
+    }
+    return docs;
+  }
+
+  /** Runs the benchmark of a compression mode and prints a line of results. */
+  public void run(final CompressionMode mode) throws IOException {
+    final StoredFieldsFormat storedFieldsFormat = new CompressingStoredFieldsFormat("Benchmark", mode, chunkSize);
+    IndexWriterConfig iwc = new IndexWriterConfig(Version.LATEST, null);
+    iwc.setCodec(new FilterCodec("Benchmark", new Lucene410Codec()) {
+      @Override
+      public StoredFieldsFormat storedFieldsFormat() {
+        return storedFieldsFormat;
+      }
+    });
+    iwc.setUseCompoundFile(false);
+    iwc.setRAMBufferSizeMB(64);
+
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, iwc);
+    try {
+      long start = System.nanoTime();
+      for (int i = 0; i < docs.size(); i++) {
+        String[] data = docs.get(i);
+        Document doc = new Document();
+        doc.add(new StoredField("id", i));
+        for (int j = 0; j < data.length; j++) {
+          if (data[j] != null) {
+            doc.add(new StoredField(FIELDS[j], data[j]));
+          }
+        }
+        writer.addDocument(doc);
+      }
+      writer.commit();
+      final long indexNanos = System.nanoTime() - start;
+
+      long storedBytes = 0;
+      for (String file : dir.listAll()) {
+        if (file.endsWith(".fdt") || file.endsWith(".fdx")) {
+          storedBytes += dir.fileLength(file);
+        }
+      }
+
+      DirectoryReader reader = DirectoryReader.open(writer, false);
+      try {
+        final int maxDoc = reader.maxDoc();
+        Random random = new Random(42);
+        start = System.nanoTime();
+        for (int i = 0; i < numReads; i++) {
+          reader.document(random.nextInt(maxDoc));
+        }
+        final long randomNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < numReads; i++) {
+          reader.document(i % maxDoc);
+        }
+        final long sequentialNanos = System.nanoTime() - start;
+
+        out.println(String.format(Locale.ROOT, "%-34s %12d %10.1f %14.0f %14.0f",
+            mode, storedBytes, indexNanos / 1e6,
+            numReads * 1e9 / randomNanos, numReads * 1e9 / sequentialNanos));
+      } finally {
+        reader.close();
+      }
+    } finally {
+      writer.close();
+      dir.close();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1 || args.length > 4) {
+      usage();
+      return;
+    }
+    File lineDocsFile = new File(args[0]);
+    if (!lineDocsFile.exists()) {
+      usage();
+      return;
+    }
+    int maxDocs = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    int numReads = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+    int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 14;
+
+    List<String[]> docs = loadDocs(lineDocsFile, maxDocs);
+    StoredFieldsCompressionBenchmark benchmark = new StoredFieldsCompressionBenchmark(docs, chunkSize, numReads, System.out);
+    System.out.println(docs.size() + " docs, " + numReads + " reads, chunkSize=" + chunkSize);
+    System.out.println(String.format(Locale.ROOT, "%-34s %12s %10s %14s %14s",
+        "mode", "storedBytes", "indexMs", "randomDocs/s", "seqDocs/s"));
+    // warm up the JIT
+    benchmark.run(CompressionMode.FAST);
+    for (CompressionMode mode : DEFAULT_MODES) {
+      benchmark.run(mode);
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: java -cp <...> org.apache.lucene.benchmark.utils.StoredFieldsCompressionBenchmark"
+        + " <line docs file> [maxDocs (100000)] [numReads (100000)] [chunkSize (16384)]");
+  }
+}
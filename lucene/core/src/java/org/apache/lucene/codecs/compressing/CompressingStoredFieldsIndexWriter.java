@@ -26,6 +26,7 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.packed.PackedInts;
 
 /**
@@ -67,6 +68,9 @@ import org.apache.lucene.util.packed.PackedInts;
  * document by performing two binary searches: a first one based on the values
  * of DocBase in order to find the right block, and then inside the block based
  * on DocBaseDeltas (by reconstructing the doc bases for every chunk).</li>
+ * <li>With a {@link PresetDictionaryCompressionMode}, the dictionary of the
+ * segment follows the blocks and the max pointer, as a
+ * {@link DataOutput#writeVInt VInt} length and the bytes of the dictionary.</li>
  * </ul>
  * @lucene.internal
  */
@@ -190,7 +194,7 @@ public final class CompressingStoredFieldsIndexWriter implements Closeable {
     maxStartPointer = startPointer;
   }
 
-  void finish(int numDocs, long maxPointer) throws IOException {
+  void finish(int numDocs, long maxPointer, BytesRef dictionary) throws IOException {
     if (numDocs != totalDocs) {
       throw new IllegalStateException("Expected " + numDocs + " docs, but got " + totalDocs);
     }
@@ -199,6 +203,11 @@ public final class CompressingStoredFieldsIndexWriter implements Closeable {
     }
     fieldsIndexOut.writeVInt(0); // end marker
     fieldsIndexOut.writeVLong(maxPointer);
+    if (dictionary != null) {
+      // preset dictionary of the compression mode
+      fieldsIndexOut.writeVInt(dictionary.length);
+      fieldsIndexOut.writeBytes(dictionary.bytes, dictionary.offset, dictionary.length);
+    }
     CodecUtil.writeFooter(fieldsIndexOut);
   }
 
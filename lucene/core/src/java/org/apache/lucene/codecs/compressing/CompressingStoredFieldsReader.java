@@ -82,6 +82,12 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final int numDocs;
   private boolean closed;
 
+  // the cache of the segment's directory, null if it has none or the segment is merged
+  private final StoredFieldsChunkCache chunkCache;
+  // identifies the chunks of this segment in the chunk cache, shared with clones
+  private final Object chunkCacheKey;
+  private final boolean isClone;
+
   // used by clone
   private CompressingStoredFieldsReader(CompressingStoredFieldsReader reader) {
     this.version = reader.version;
@@ -96,6 +102,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.numDocs = reader.numDocs;
     this.bytes = new BytesRef(reader.bytes.bytes.length);
     this.closed = false;
+    this.chunkCache = reader.chunkCache;
+    this.chunkCacheKey = reader.chunkCacheKey;
+    this.isClone = true;
   }
 
   /** Sole constructor. */
@@ -106,6 +115,10 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     boolean success = false;
     fieldInfos = fn;
     numDocs = si.getDocCount();
+    // merges read every document once, caching their chunks would only evict useful ones
+    chunkCache = context.context == IOContext.Context.MERGE ? null : StoredFieldsChunkCache.forDirectory(si.dir);
+    chunkCacheKey = new Object();
+    isClone = false;
     ChecksumIndexInput indexStream = null;
     try {
       final String indexStreamFN = IndexFileNames.segmentFileName(segment, segmentSuffix, FIELDS_INDEX_EXTENSION);
@@ -118,9 +131,15 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       indexReader = new CompressingStoredFieldsIndexReader(indexStream, si);
 
       long maxPointer = -1;
+      BytesRef dictionary = null;
       
       if (version >= VERSION_CHECKSUM) {
         maxPointer = indexStream.readVLong();
+        if (compressionMode instanceof PresetDictionaryCompressionMode) {
+          dictionary = new BytesRef(indexStream.readVInt());
+          indexStream.readBytes(dictionary.bytes, 0, dictionary.bytes.length);
+          dictionary.length = dictionary.bytes.length;
+        }
         CodecUtil.checkFooter(indexStream);
       } else {
         CodecUtil.checkEOF(indexStream);
@@ -151,7 +170,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
         chunkSize = -1;
       }
       packedIntsVersion = fieldsStream.readVInt();
-      decompressor = compressionMode.newDecompressor();
+      if (dictionary != null) {
+        decompressor = ((PresetDictionaryCompressionMode) compressionMode).newDecompressor(dictionary);
+      } else {
+        decompressor = compressionMode.newDecompressor();
+      }
       this.bytes = new BytesRef();
       
       if (version >= VERSION_CHECKSUM) {
@@ -185,8 +208,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void close() throws IOException {
     if (!closed) {
-      IOUtils.close(fieldsStream);
       closed = true;
+      if (chunkCache != null && !isClone) {
+        chunkCache.purge(chunkCacheKey);
+      }
+      IOUtils.close(fieldsStream);
     }
   }
 
@@ -244,7 +270,38 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void visitDocument(int docID, StoredFieldVisitor visitor)
       throws IOException {
-    fieldsStream.seek(indexReader.getStartPointer(docID));
+    visitDocument(docID, visitor, chunkCache);
+  }
+
+  /** Visits a document without going through the chunk cache, see {@link CompressingStoredFieldsWriter#merge}. */
+  void visitDocumentUncached(int docID, StoredFieldVisitor visitor) throws IOException {
+    visitDocument(docID, visitor, null);
+  }
+
+  private void visitDocument(int docID, StoredFieldVisitor visitor, StoredFieldsChunkCache cache)
+      throws IOException {
+    final long startPointer = indexReader.getStartPointer(docID);
+
+    if (cache != null) {
+      StoredFieldsChunkCache.Chunk chunk = cache.get(chunkCacheKey, startPointer);
+      if (chunk == null) {
+        final ArrayChunk loaded = loadChunk(startPointer);
+        if (loaded != null) {
+          cache.put(chunkCacheKey, startPointer, loaded.bytes, loaded.bytes.length);
+        }
+        chunk = loaded;
+      }
+      if (chunk != null) {
+        try {
+          visitDocument(docID, chunk, visitor);
+        } finally {
+          chunk.release();
+        }
+        return;
+      }
+    }
+
+    fieldsStream.seek(startPointer);
 
     final int docBase = fieldsStream.readVInt();
     final int chunkDocs = fieldsStream.readVInt();
@@ -377,6 +434,172 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     }
   }
 
+  /*
+   * Cached chunks are laid out as:
+   *   docBase, chunkDocs (int)
+   *   numStoredFields (int[chunkDocs])
+   *   offsets (int[chunkDocs+1], the last one being the total length)
+   *   the decompressed documents
+   */
+
+  /**
+   * Reads and decompresses the chunk that starts at <code>startPointer</code>,
+   * or returns null if it holds a document too large to be cached.
+   */
+  private ArrayChunk loadChunk(long startPointer) throws IOException {
+    fieldsStream.seek(startPointer);
+
+    final int docBase = fieldsStream.readVInt();
+    final int chunkDocs = fieldsStream.readVInt();
+    if (chunkDocs <= 0 || docBase + chunkDocs > numDocs) {
+      throw new CorruptIndexException("Corrupted: docBase=" + docBase + ", chunkDocs=" + chunkDocs
+          + ", numDocs=" + numDocs + " (resource=" + fieldsStream + ")");
+    }
+
+    final int[] numStoredFields = new int[chunkDocs];
+    final int[] lengths = new int[chunkDocs];
+    if (chunkDocs == 1) {
+      numStoredFields[0] = fieldsStream.readVInt();
+      lengths[0] = fieldsStream.readVInt();
+    } else {
+      final int bitsPerStoredFields = fieldsStream.readVInt();
+      if (bitsPerStoredFields == 0) {
+        Arrays.fill(numStoredFields, fieldsStream.readVInt());
+      } else if (bitsPerStoredFields > 31) {
+        throw new CorruptIndexException("bitsPerStoredFields=" + bitsPerStoredFields + " (resource=" + fieldsStream + ")");
+      } else {
+        final PackedInts.ReaderIterator it = PackedInts.getReaderIteratorNoHeader(fieldsStream, PackedInts.Format.PACKED, packedIntsVersion, chunkDocs, bitsPerStoredFields, 1);
+        for (int i = 0; i < chunkDocs; ++i) {
+          numStoredFields[i] = (int) it.next();
+        }
+      }
+
+      final int bitsPerLength = fieldsStream.readVInt();
+      if (bitsPerLength == 0) {
+        Arrays.fill(lengths, fieldsStream.readVInt());
+      } else if (bitsPerLength > 31) {
+        throw new CorruptIndexException("bitsPerLength=" + bitsPerLength + " (resource=" + fieldsStream + ")");
+      } else {
+        final PackedInts.ReaderIterator it = PackedInts.getReaderIteratorNoHeader(fieldsStream, PackedInts.Format.PACKED, packedIntsVersion, chunkDocs, bitsPerLength, 1);
+        for (int i = 0; i < chunkDocs; ++i) {
+          lengths[i] = (int) it.next();
+        }
+      }
+    }
+
+    long totalLength = 0;
+    for (int length : lengths) {
+      totalLength += length;
+    }
+    final int headerLength = 4 * (2 + chunkDocs + chunkDocs + 1);
+    if ((version >= VERSION_BIG_CHUNKS && totalLength >= 2 * chunkSize)
+        || totalLength + headerLength > ArrayUtil.MAX_ARRAY_LENGTH) {
+      return null;
+    }
+
+    final BytesRef bytes = totalLength <= BUFFER_REUSE_THRESHOLD ? this.bytes : new BytesRef();
+    decompressor.decompress(fieldsStream, (int) totalLength, 0, (int) totalLength, bytes);
+    if (bytes.length != totalLength) {
+      throw new CorruptIndexException("Corrupted: expected chunk size = " + totalLength + ", got " + bytes.length + " (resource=" + fieldsStream + ")");
+    }
+
+    final byte[] chunk = new byte[headerLength + (int) totalLength];
+    int pos = putInt(chunk, 0, docBase);
+    pos = putInt(chunk, pos, chunkDocs);
+    for (int i = 0; i < chunkDocs; ++i) {
+      pos = putInt(chunk, pos, numStoredFields[i]);
+    }
+    int offset = 0;
+    for (int i = 0; i < chunkDocs; ++i) {
+      pos = putInt(chunk, pos, offset);
+      offset += lengths[i];
+    }
+    pos = putInt(chunk, pos, offset);
+    assert pos == headerLength;
+    System.arraycopy(bytes.bytes, bytes.offset, chunk, headerLength, bytes.length);
+    return new ArrayChunk(chunk);
+  }
+
+  private static int putInt(byte[] bytes, int pos, int i) {
+    bytes[pos++] = (byte) (i >> 24);
+    bytes[pos++] = (byte) (i >> 16);
+    bytes[pos++] = (byte) (i >> 8);
+    bytes[pos++] = (byte) i;
+    return pos;
+  }
+
+  /** Visits a document of a cached chunk. */
+  private void visitDocument(int docID, StoredFieldsChunkCache.Chunk chunk, StoredFieldVisitor visitor) throws IOException {
+    final int docBase = chunk.readInt();
+    final int chunkDocs = chunk.readInt();
+    if (docID < docBase || docID >= docBase + chunkDocs) {
+      throw new CorruptIndexException("Corrupted: docID=" + docID
+          + ", docBase=" + docBase + ", chunkDocs=" + chunkDocs + " (resource=" + fieldsStream + ")");
+    }
+    chunk.seek(4 * (2 + docID - docBase));
+    final int numStoredFields = chunk.readInt();
+    if (numStoredFields == 0) {
+      return;
+    }
+    chunk.seek(4 * (2 + chunkDocs + docID - docBase));
+    final int offset = chunk.readInt();
+    chunk.seek(4 * (2 + chunkDocs + chunkDocs + 1) + offset);
+
+    for (int fieldIDX = 0; fieldIDX < numStoredFields; fieldIDX++) {
+      final long infoAndBits = chunk.readVLong();
+      final int fieldNumber = (int) (infoAndBits >>> TYPE_BITS);
+      final FieldInfo fieldInfo = fieldInfos.fieldInfo(fieldNumber);
+
+      final int bits = (int) (infoAndBits & TYPE_MASK);
+      assert bits <= NUMERIC_DOUBLE: "bits=" + Integer.toHexString(bits);
+
+      switch(visitor.needsField(fieldInfo)) {
+        case YES:
+          readField(chunk, visitor, fieldInfo, bits);
+          break;
+        case NO:
+          skipField(chunk, bits);
+          break;
+        case STOP:
+          return;
+      }
+    }
+  }
+
+  /** A chunk that was just loaded, on the heap. */
+  private static final class ArrayChunk extends StoredFieldsChunkCache.Chunk {
+    final byte[] bytes;
+    private int pos;
+
+    ArrayChunk(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public void seek(int pos) {
+      this.pos = pos;
+    }
+
+    @Override
+    public void release() {}
+
+    @Override
+    public byte readByte() {
+      return bytes[pos++];
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) {
+      System.arraycopy(bytes, pos, b, offset, len);
+      pos += len;
+    }
+
+    @Override
+    public void skipBytes(long numBytes) {
+      pos += numBytes;
+    }
+  }
+
   @Override
   public StoredFieldsReader clone() {
     ensureOpen();
@@ -25,6 +25,7 @@ import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.codecs.compressing.CompressingStoredFieldsReader.ChunkIterator;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.FieldInfo;
@@ -84,7 +85,8 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
   private IndexOutput fieldsStream;
 
   private final CompressionMode compressionMode;
-  private final Compressor compressor;
+  private Compressor compressor; // built on the first flush with a preset dictionary mode
+  private BytesRef dictionary; // null unless the mode is a preset dictionary mode
   private final int chunkSize;
 
   private final GrowableByteArrayDataOutput bufferedDocs;
@@ -101,7 +103,13 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     this.segment = si.name;
     this.segmentSuffix = segmentSuffix;
     this.compressionMode = compressionMode;
-    this.compressor = compressionMode.newCompressor();
+    if (compressionMode instanceof PresetDictionaryCompressionMode) {
+      this.compressor = null;
+      this.dictionary = new BytesRef();
+    } else {
+      this.compressor = compressionMode.newCompressor();
+      this.dictionary = null;
+    }
     this.chunkSize = chunkSize;
     this.docBase = 0;
     this.bufferedDocs = new GrowableByteArrayDataOutput(chunkSize);
@@ -221,6 +229,13 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
   private void flush() throws IOException {
     indexWriter.writeIndex(numBufferedDocs, fieldsStream.getFilePointer());
 
+    if (compressor == null) {
+      // first chunk of the segment: sample the dictionary from its documents
+      final PresetDictionaryCompressionMode mode = (PresetDictionaryCompressionMode) compressionMode;
+      dictionary = mode.buildDictionary(bufferedDocs.bytes, endOffsets, numBufferedDocs);
+      compressor = mode.newCompressor(dictionary);
+    }
+
     // transform end offsets into lengths
     final int[] lengths = endOffsets;
     for (int i = numBufferedDocs - 1; i > 0; --i) {
@@ -325,7 +340,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     if (docBase != numDocs) {
       throw new RuntimeException("Wrote " + docBase + " docs, finish called with numDocs=" + numDocs);
     }
-    indexWriter.finish(numDocs, fieldsStream.getFilePointer());
+    indexWriter.finish(numDocs, fieldsStream.getFilePointer(), dictionary);
     CodecUtil.writeFooter(fieldsStream);
     assert bufferedDocs.length == 0;
   }
@@ -357,7 +372,15 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
           || matchingFieldsReader.getChunkSize() != chunkSize) { // the way data is decompressed depends on the chunk size
         // naive merge...
         for (int i = nextLiveDoc(0, liveDocs, maxDoc); i < maxDoc; i = nextLiveDoc(i + 1, liveDocs, maxDoc)) {
-          Document doc = reader.document(i);
+          final Document doc;
+          if (matchingFieldsReader != null) {
+            // don't fill the chunk cache with the documents of merged segments
+            final DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor();
+            matchingFieldsReader.visitDocumentUncached(i, visitor);
+            doc = visitor.getDocument();
+          } else {
+            doc = reader.document(i);
+          }
           addDocument(doc, mergeState.fieldInfos);
           ++docCount;
           mergeState.checkAbort.work(300);
@@ -664,7 +664,7 @@ public final class CompressingTermVectorsWriter extends TermVectorsWriter {
     if (numDocs != this.numDocs) {
       throw new RuntimeException("Wrote " + this.numDocs + " docs, finish called with numDocs=" + numDocs);
     }
-    indexWriter.finish(numDocs, vectorsStream.getFilePointer());
+    indexWriter.finish(numDocs, vectorsStream.getFilePointer(), null);
     CodecUtil.writeFooter(vectorsStream);
   }
 
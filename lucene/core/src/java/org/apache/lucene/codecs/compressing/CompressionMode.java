@@ -110,6 +110,67 @@ public abstract class CompressionMode {
 
   };
 
+  /**
+   * Like {@link #FAST}, but the chunks of a segment are compressed against a
+   * dictionary that is sampled from the first documents of the segment, which
+   * improves the compression ratio of small documents that share a lot of
+   * content (field names, values of enumerations, etc.).
+   * @see PresetDictionaryCompressionMode
+   */
+  public static final CompressionMode FAST_WITH_DICTIONARY = new PresetDictionaryCompressionMode() {
+
+    @Override
+    public int getMaxDictionaryLength() {
+      return 1 << 14;
+    }
+
+    @Override
+    public Compressor newCompressor(BytesRef dictionary) {
+      return new LZ4DictionaryCompressor(dictionary);
+    }
+
+    @Override
+    public Decompressor newDecompressor(BytesRef dictionary) {
+      return dictionary.length == 0 ? LZ4_DECOMPRESSOR : new LZ4DictionaryDecompressor(dictionary);
+    }
+
+    @Override
+    public String toString() {
+      return "FAST_WITH_DICTIONARY";
+    }
+
+  };
+
+  /**
+   * Like {@link #HIGH_COMPRESSION}, but the chunks of a segment are compressed
+   * against a dictionary that is sampled from the first documents of the
+   * segment.
+   * @see PresetDictionaryCompressionMode
+   */
+  public static final CompressionMode HIGH_COMPRESSION_WITH_DICTIONARY = new PresetDictionaryCompressionMode() {
+
+    @Override
+    public int getMaxDictionaryLength() {
+      return 1 << 14;
+    }
+
+    @Override
+    public Compressor newCompressor(BytesRef dictionary) {
+      return new DeflateCompressor(Deflater.BEST_COMPRESSION, dictionary);
+    }
+
+    @Override
+    public Decompressor newDecompressor(BytesRef dictionary) {
+      return new DeflateDecompressor(dictionary);
+    }
+
+    @Override
+    public String toString() {
+      return "HIGH_COMPRESSION_WITH_DICTIONARY";
+    }
+
+  };
+
   /** Sole constructor. */
   protected CompressionMode() {}
 
@@ -147,6 +208,70 @@ public abstract class CompressionMode {
 
   };
 
+  private static final class LZ4DictionaryDecompressor extends Decompressor {
+
+    private final BytesRef dictionary;
+
+    LZ4DictionaryDecompressor(BytesRef dictionary) {
+      this.dictionary = dictionary;
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      final int dictLength = dictionary.length;
+      // matches may reference the dictionary, which is copied right before the decompressed bytes
+      if (bytes.bytes.length < dictLength + originalLength + 7) {
+        bytes.bytes = new byte[ArrayUtil.oversize(dictLength + originalLength + 7, 1)];
+      }
+      System.arraycopy(dictionary.bytes, dictionary.offset, bytes.bytes, 0, dictLength);
+      final int decompressedLength = LZ4.decompress(in, dictLength + offset + length, bytes.bytes, dictLength) - dictLength;
+      if (decompressedLength > originalLength) {
+        throw new CorruptIndexException("Corrupted: lengths mismatch: " + decompressedLength + " > " + originalLength + " (resource=" + in + ")");
+      }
+      bytes.offset = dictLength + offset;
+      bytes.length = length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      return this;
+    }
+
+  }
+
+  private static final class LZ4DictionaryCompressor extends Compressor {
+
+    private final BytesRef dictionary;
+    private final LZ4.HashTable ht;
+    private byte[] buffer;
+
+    LZ4DictionaryCompressor(BytesRef dictionary) {
+      this.dictionary = dictionary;
+      ht = new LZ4.HashTable();
+      buffer = new byte[dictionary.length];
+      System.arraycopy(dictionary.bytes, dictionary.offset, buffer, 0, dictionary.length);
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out)
+        throws IOException {
+      final int dictLength = dictionary.length;
+      if (dictLength == 0) {
+        LZ4.compress(bytes, off, len, out, ht);
+        return;
+      }
+      if (buffer.length < dictLength + len) {
+        final byte[] newBuffer = new byte[ArrayUtil.oversize(dictLength + len, 1)];
+        System.arraycopy(buffer, 0, newBuffer, 0, dictLength);
+        buffer = newBuffer;
+      }
+      System.arraycopy(bytes, off, buffer, dictLength, len);
+      LZ4.compressWithDictionary(buffer, 0, dictLength, len, out, ht);
+    }
+
+  }
+
   private static final class LZ4FastCompressor extends Compressor {
 
     private final LZ4.HashTable ht;
@@ -182,10 +307,16 @@ public abstract class CompressionMode {
   private static final class DeflateDecompressor extends Decompressor {
 
     final Inflater decompressor;
+    final BytesRef dictionary;
     byte[] compressed;
 
     DeflateDecompressor() {
+      this(new BytesRef());
+    }
+
+    DeflateDecompressor(BytesRef dictionary) {
       decompressor = new Inflater();
+      this.dictionary = dictionary;
       compressed = new byte[0];
     }
 
@@ -214,6 +345,13 @@ public abstract class CompressionMode {
         } catch (DataFormatException e) {
           throw new IOException(e);
         }
+        if (count == 0 && decompressor.needsDictionary()) {
+          if (dictionary.length == 0) {
+            throw new CorruptIndexException("Compressed with a preset dictionary (resource=" + in + ")");
+          }
+          decompressor.setDictionary(dictionary.bytes, dictionary.offset, dictionary.length);
+          continue;
+        }
         bytes.length += count;
         if (decompressor.finished()) {
           break;
@@ -230,7 +368,7 @@ public abstract class CompressionMode {
 
     @Override
     public Decompressor clone() {
-      return new DeflateDecompressor();
+      return new DeflateDecompressor(dictionary);
     }
 
   }
@@ -238,16 +376,25 @@ public abstract class CompressionMode {
   private static class DeflateCompressor extends Compressor {
 
     final Deflater compressor;
+    final BytesRef dictionary;
     byte[] compressed;
 
     DeflateCompressor(int level) {
+      this(level, new BytesRef());
+    }
+
+    DeflateCompressor(int level, BytesRef dictionary) {
       compressor = new Deflater(level);
+      this.dictionary = dictionary;
       compressed = new byte[64];
     }
 
     @Override
     public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
       compressor.reset();
+      if (dictionary.length > 0) {
+        compressor.setDictionary(dictionary.bytes, dictionary.offset, dictionary.length);
+      }
       compressor.setInput(bytes, off, len);
       compressor.finish();
 
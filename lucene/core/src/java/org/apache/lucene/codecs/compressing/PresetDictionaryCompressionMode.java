@@ -0,0 +1,100 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A {@link CompressionMode} that compresses all chunks of a segment against
+ * a shared preset dictionary.
+ * <p>
+ * Small documents compress poorly on their own, and chunks only partially
+ * make up for it since the first documents of every chunk have no history to
+ * reference. With a dictionary, even the first document of a chunk may
+ * reference content that is common to the documents of the segment.
+ * <p>
+ * {@link CompressingStoredFieldsWriter} builds the dictionary of a segment
+ * with {@link #buildDictionary} from the documents of its first chunk, when it
+ * is flushed or merged, and stores it in the fields index file so that
+ * {@link CompressingStoredFieldsReader} can decompress the chunks with it.
+ * Merges recompress all chunks against the dictionary of the new segment.
+ * <p>
+ * {@link #newCompressor()} and {@link #newDecompressor()} use an empty
+ * dictionary, which is what other users of compression modes, such as
+ * {@link CompressingTermVectorsFormat}, get.
+ * @lucene.experimental
+ */
+public abstract class PresetDictionaryCompressionMode extends CompressionMode {
+
+  /** Sole constructor. */
+  protected PresetDictionaryCompressionMode() {}
+
+  /**
+   * Returns the maximum length of the dictionaries built by
+   * {@link #buildDictionary}.
+   */
+  public abstract int getMaxDictionaryLength();
+
+  /**
+   * Create a new {@link Compressor} instance that compresses against
+   * <code>dictionary</code>, which may be empty.
+   */
+  public abstract Compressor newCompressor(BytesRef dictionary);
+
+  /**
+   * Create a new {@link Decompressor} instance for data that was compressed
+   * by a {@link #newCompressor(BytesRef) compressor} of the same dictionary.
+   */
+  public abstract Decompressor newDecompressor(BytesRef dictionary);
+
+  @Override
+  public final Compressor newCompressor() {
+    return newCompressor(new BytesRef());
+  }
+
+  @Override
+  public final Decompressor newDecompressor() {
+    return newDecompressor(new BytesRef());
+  }
+
+  /**
+   * Builds the dictionary of a segment out of the first documents that it
+   * stores: <code>docs</code> holds <code>numDocs</code> serialized documents,
+   * document <code>i</code> ending at <code>endOffsets[i]</code>.
+   * <p>
+   * The default implementation takes documents that are evenly spaced among
+   * the given ones until it has {@link #getMaxDictionaryLength()} bytes, which
+   * captures the content that documents have in common without requiring a
+   * costly analysis of the data.
+   */
+  public BytesRef buildDictionary(byte[] docs, int[] endOffsets, int numDocs) {
+    final int maxLength = getMaxDictionaryLength();
+    final int totalLength = numDocs == 0 ? 0 : endOffsets[numDocs - 1];
+    final BytesRef dictionary = new BytesRef(Math.min(totalLength, maxLength));
+    // take about one document every (totalLength / maxLength)
+    final int step = Math.max(1, (totalLength + maxLength - 1) / Math.max(1, maxLength));
+    for (int i = 0; i < numDocs && dictionary.length < maxLength; i += step) {
+      final int start = i == 0 ? 0 : endOffsets[i - 1];
+      final int length = Math.min(endOffsets[i] - start, maxLength - dictionary.length);
+      System.arraycopy(docs, start, dictionary.bytes, dictionary.length, length);
+      dictionary.length += length;
+    }
+    return dictionary;
+  }
+
+}
@@ -0,0 +1,107 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+
+/**
+ * A cache of decompressed chunks of stored fields, used by the
+ * {@link CompressingStoredFieldsReader}s of the segments of a directory
+ * that is a {@link Provider} (see {@link #forDirectory}).  Readers opened
+ * to merge segments don't use it.
+ * <p>
+ * Documents are then read from the cached chunk: a chunk is decompressed
+ * once, instead of once per document that is loaded from it.
+ * Chunks are identified by an opaque key per segment and the file pointer
+ * of their start, and are only cached as a whole. Implementations decide
+ * where the bytes are kept (e.g. off the Java heap) and which chunks to evict.
+ *
+ * @lucene.experimental
+ */
+public abstract class StoredFieldsChunkCache {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected StoredFieldsChunkCache() {}
+
+  /**
+   * Returns the cache of the given directory, which is usually the
+   * {@link SegmentInfo#dir directory of a segment}: that of the first
+   * {@link Provider} found following {@link FilterDirectory} delegates,
+   * or null if there is none.
+   */
+  public static StoredFieldsChunkCache forDirectory(Directory dir) {
+    while (true) {
+      if (dir instanceof Provider) {
+        return ((Provider) dir).getStoredFieldsChunkCache();
+      } else if (dir instanceof FilterDirectory) {
+        dir = ((FilterDirectory) dir).getDelegate();
+      } else {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Returns the cached bytes of the chunk that starts at
+   * <code>startPointer</code> in the segment identified by <code>key</code>,
+   * positioned at the start, or null if the chunk isn't cached.
+   * The chunk must be {@link Chunk#release() released} after use.
+   */
+  public abstract Chunk get(Object key, long startPointer);
+
+  /**
+   * Caches <code>length</code> bytes of <code>bytes</code> as the chunk
+   * that starts at <code>startPointer</code> in the segment identified by
+   * <code>key</code>. The array may be reused by the caller after this returns.
+   */
+  public abstract void put(Object key, long startPointer, byte[] bytes, int length);
+
+  /**
+   * Removes all chunks of the segment identified by <code>key</code>,
+   * called when its stored fields are closed.
+   */
+  public abstract void purge(Object key);
+
+  /**
+   * The bytes of a cached chunk.
+   */
+  public static abstract class Chunk extends DataInput {
+
+    /** Sole constructor. (For invocation by subclass
+     *  constructors, typically implicit.) */
+    protected Chunk() {}
+
+    /** Sets the position to read from, relative to the start of the chunk. */
+    public abstract void seek(int pos);
+
+    /** Signals that the bytes of this chunk won't be read anymore. */
+    public abstract void release();
+  }
+
+  /**
+   * Implemented by {@link Directory}s whose segments cache their chunks.
+   */
+  public static interface Provider {
+    /** Returns the cache, or null to not cache chunks. */
+    StoredFieldsChunkCache getStoredFieldsChunkCache();
+  }
+}
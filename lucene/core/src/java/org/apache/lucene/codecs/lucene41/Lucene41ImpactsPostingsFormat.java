@@ -0,0 +1,139 @@
+package org.apache.lucene.codecs.lucene41;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.codecs.PostingsWriterBase;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Lucene 4.1 postings format whose skip data also records "impacts", so that
+ * its {@link org.apache.lucene.index.DocsEnum}s implement {@link Impacts} and
+ * top-k disjunctions can skip blocks that can't produce a competitive hit.
+ * <p>
+ * Files are those of {@link Lucene41PostingsFormat}, written with version 3 of
+ * the format.  Each SkipDatum is followed by:
+ * <ul>
+ *   <li>MaxFreq --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>MaxNorm --&gt; {@link DataOutput#writeZLong ZLong}</li>
+ * </ul>
+ * MaxFreq and MaxNorm are the maximum frequency (1 when frequencies are omitted)
+ * and the maximum norm, comparing norms as unsigned values (0 when the field has
+ * no norms), of the documents covered by the skip entry, that is the block(s)
+ * before it.  They give an upper bound of the score of these documents.
+ * <p>
+ * The postings writer reads the norms of the segment back to compute these
+ * bounds, which are written before the postings on flush and merge (see
+ * {@link SegmentWriteState#normsWritten}).  If they aren't available, any norm
+ * is assumed.  Other postings formats don't open norms.
+ *
+ * @lucene.experimental
+ */
+public final class Lucene41ImpactsPostingsFormat extends PostingsFormat {
+
+  private final int minTermBlockSize;
+  private final int maxTermBlockSize;
+
+  /** Creates {@code Lucene41ImpactsPostingsFormat} with default
+   *  settings. */
+  public Lucene41ImpactsPostingsFormat() {
+    this(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
+  }
+
+  /** Creates {@code Lucene41ImpactsPostingsFormat} with custom
+   *  values for {@code minBlockSize} and {@code
+   *  maxBlockSize} passed to block terms dictionary.
+   *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
+  public Lucene41ImpactsPostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    super("Lucene41Impacts");
+    this.minTermBlockSize = minTermBlockSize;
+    assert minTermBlockSize > 1;
+    this.maxTermBlockSize = maxTermBlockSize;
+    assert minTermBlockSize <= maxTermBlockSize;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(blocksize=" + Lucene41PostingsFormat.BLOCK_SIZE + ")";
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    NormsProducer norms = null;
+    PostingsWriterBase postingsWriter = null;
+    boolean success = false;
+    try {
+      if (state.normsWritten && state.fieldInfos.hasNorms()) {
+        SegmentReadState readState = new SegmentReadState(state.directory, state.segmentInfo, state.fieldInfos, IOContext.READ, -1);
+        norms = state.segmentInfo.getCodec().normsFormat().normsProducer(readState);
+      }
+      postingsWriter = new Lucene41PostingsWriter(state, PackedInts.COMPACT, true, norms);
+      FieldsConsumer ret = new BlockTreeTermsWriter(state,
+                                                    postingsWriter,
+                                                    minTermBlockSize,
+                                                    maxTermBlockSize);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        // the postings writer closes the norms
+        IOUtils.closeWhileHandlingException(postingsWriter == null ? norms : postingsWriter);
+      }
+    }
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    PostingsReaderBase postingsReader = new Lucene41PostingsReader(state.directory,
+                                                                state.fieldInfos,
+                                                                state.segmentInfo,
+                                                                state.context,
+                                                                state.segmentSuffix,
+                                                                Lucene41PostingsWriter.VERSION_IMPACTS);
+    boolean success = false;
+    try {
+      FieldsProducer ret = new BlockTreeTermsReader(state.directory,
+                                                    state.fieldInfos,
+                                                    state.segmentInfo,
+                                                    postingsReader,
+                                                    state.context,
+                                                    state.segmentSuffix,
+                                                    state.termsIndexDivisor);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsReader);
+      }
+    }
+  }
+}
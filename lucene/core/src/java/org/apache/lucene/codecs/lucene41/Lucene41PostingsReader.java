@@ -33,6 +33,7 @@ import org.apache.lucene.index.DocsEnum;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.SegmentInfo;
 import org.apache.lucene.store.DataInput;
@@ -62,11 +63,18 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
 
   private final ForUtil forUtil;
   private int version;
+  private final int maxVersion;
 
   // public static boolean DEBUG = false;
 
   /** Sole constructor. */
   public Lucene41PostingsReader(Directory dir, FieldInfos fieldInfos, SegmentInfo segmentInfo, IOContext ioContext, String segmentSuffix) throws IOException {
+    this(dir, fieldInfos, segmentInfo, ioContext, segmentSuffix, Lucene41PostingsWriter.VERSION_CURRENT);
+  }
+
+  /** Creates a reader that accepts postings written by versions up to <code>maxVersion</code>. */
+  Lucene41PostingsReader(Directory dir, FieldInfos fieldInfos, SegmentInfo segmentInfo, IOContext ioContext, String segmentSuffix, int maxVersion) throws IOException {
+    this.maxVersion = maxVersion;
     boolean success = false;
     IndexInput docIn = null;
     IndexInput posIn = null;
@@ -77,7 +85,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
       version = CodecUtil.checkHeader(docIn,
                             Lucene41PostingsWriter.DOC_CODEC,
                             Lucene41PostingsWriter.VERSION_START,
-                            Lucene41PostingsWriter.VERSION_CURRENT);
+                            maxVersion);
       forUtil = new ForUtil(docIn);
       
       if (version >= Lucene41PostingsWriter.VERSION_CHECKSUM) {
@@ -133,7 +141,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     CodecUtil.checkHeader(termsIn,
                           Lucene41PostingsWriter.TERMS_CODEC,
                           Lucene41PostingsWriter.VERSION_START,
-                          Lucene41PostingsWriter.VERSION_CURRENT);
+                          maxVersion);
     final int indexBlockSize = termsIn.readVInt();
     if (indexBlockSize != BLOCK_SIZE) {
       throw new IllegalStateException("index-time BLOCK_SIZE (" + indexBlockSize + ") != read-time BLOCK_SIZE (" + BLOCK_SIZE + ")");
@@ -292,7 +300,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     }
   }
 
-  final class BlockDocsEnum extends DocsEnum {
+  final class BlockDocsEnum extends DocsEnum implements Impacts {
     private final byte[] encoded;
     
     private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
@@ -334,6 +342,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     
     private boolean needsFreq; // true if the caller actually needs frequencies
     private int singletonDocID; // docid when there is a single pulsed posting, otherwise -1
+    private int impactLevels;   // levels of skip data that cover the last target of advanceShallow
 
     public BlockDocsEnum(FieldInfo fieldInfo) throws IOException {
       this.startDocIn = Lucene41PostingsReader.this.docIn;
@@ -380,6 +389,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      impactLevels = 0;
       return this;
     }
     
@@ -483,23 +493,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         //   System.out.println("load skipper");
         // }
 
-        if (skipper == null) {
-          // Lazy init: first time this enum has ever been used for skipping
-          skipper = new Lucene41SkipReader(docIn.clone(),
-                                        Lucene41PostingsWriter.maxSkipLevels,
-                                        BLOCK_SIZE,
-                                        indexHasPos,
-                                        indexHasOffsets,
-                                        indexHasPayloads);
-        }
-
-        if (!skipped) {
-          assert skipOffset != -1;
-          // This is the first time this enum has skipped
-          // since reset() was called; load the skip data:
-          skipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
-          skipped = true;
-        }
+        initSkipper();
 
         // always plus one to fix the result, since skip position in Lucene41SkipReader 
         // is a little different from MultiLevelSkipListReader
@@ -567,6 +561,69 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     public long cost() {
       return docFreq;
     }
+
+    private void initSkipper() throws IOException {
+      if (skipper == null) {
+        // Lazy init: first time this enum has ever been used for skipping
+        skipper = new Lucene41SkipReader(docIn.clone(),
+                                      Lucene41PostingsWriter.maxSkipLevels,
+                                      BLOCK_SIZE,
+                                      indexHasPos,
+                                      indexHasOffsets,
+                                      indexHasPayloads,
+                                      version >= Lucene41PostingsWriter.VERSION_IMPACTS);
+      }
+
+      if (!skipped) {
+        assert skipOffset != -1;
+        // This is the first time this enum has skipped
+        // since reset() was called; load the skip data:
+        skipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
+        skipped = true;
+      }
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      impactLevels = 0;
+      if (docFreq > BLOCK_SIZE && version >= Lucene41PostingsWriter.VERSION_IMPACTS) {
+        initSkipper();
+        // skipTo(0) would not load any skip entry, but the first block can't end before doc 1 anyway
+        target = Math.max(target, 1);
+        skipper.skipTo(target);
+        // levels that ran out of skip entries are covered by the last (whole term) level
+        while (impactLevels < Lucene41PostingsWriter.maxSkipLevels
+            && skipper.getSkipDoc(impactLevels) >= target
+            && skipper.getSkipDoc(impactLevels) != Integer.MAX_VALUE) {
+          impactLevels++;
+        }
+      }
+      return getDocIdUpTo(0);
+    }
+
+    @Override
+    public int numLevels() {
+      return impactLevels + 1;
+    }
+
+    @Override
+    public int getDocIdUpTo(int level) {
+      return level < impactLevels ? skipper.getSkipDoc(level) : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int getMaxFreq(int level) {
+      if (level < impactLevels) {
+        return skipper.getMaxFreq(level);
+      }
+      // every other doc has a freq of at least 1
+      return indexHasFreq ? (int) Math.min(Integer.MAX_VALUE, totalTermFreq - docFreq + 1) : 1;
+    }
+
+    @Override
+    public long getMaxNorm(int level) {
+      return level < impactLevels ? skipper.getMaxNorm(level) : -1L;
+    }
   }
 
 
@@ -823,7 +880,8 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
                                         BLOCK_SIZE,
                                         true,
                                         indexHasOffsets,
-                                        indexHasPayloads);
+                                        indexHasPayloads,
+                                        version >= Lucene41PostingsWriter.VERSION_IMPACTS);
         }
 
         if (!skipped) {
@@ -1349,7 +1407,8 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
                                         BLOCK_SIZE,
                                         true,
                                         indexHasOffsets,
-                                        indexHasPayloads);
+                                        indexHasPayloads,
+                                        version >= Lucene41PostingsWriter.VERSION_IMPACTS);
         }
 
         if (!skipped) {
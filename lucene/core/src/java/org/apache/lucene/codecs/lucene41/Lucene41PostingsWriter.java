@@ -21,10 +21,12 @@ import java.io.IOException;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.NormsProducer;
 import org.apache.lucene.codecs.PushPostingsWriterBase;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SegmentWriteState;
 import org.apache.lucene.index.TermState;
 import org.apache.lucene.store.DataOutput;
@@ -66,6 +68,8 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   final static int VERSION_META_ARRAY = 1;
   final static int VERSION_CHECKSUM = 2;
   final static int VERSION_CURRENT = VERSION_CHECKSUM;
+  // skip data records impacts; only written by Lucene41ImpactsPostingsFormat
+  final static int VERSION_IMPACTS = 3;
 
   IndexOutput docOut;
   IndexOutput posOut;
@@ -98,6 +102,18 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   private int lastBlockPosBufferUpto;
   private int lastBlockPayloadByteUpto;
 
+  private final int version;
+
+  // impacts of the current block: the max freq, and the max norm (compared as unsigned)
+  private final boolean writeImpacts;
+  private int blockMaxFreq;
+  private long blockMaxNorm;
+
+  private final NormsProducer norms;     // null if impacts aren't written or norms aren't available
+  private long defaultMaxNorm;           // max norm of a block before reading norms: -1 (any) if they aren't available
+  private FieldInfo normsFieldInfo;
+  private NumericDocValues fieldNorms;   // loaded on first use
+
   private int lastDocID;
   private int lastPosition;
   private int lastStartOffset;
@@ -111,7 +127,16 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   /** Creates a postings writer with the specified PackedInts overhead ratio */
   // TODO: does this ctor even make sense?
   public Lucene41PostingsWriter(SegmentWriteState state, float acceptableOverheadRatio) throws IOException {
+    this(state, acceptableOverheadRatio, false, null);
+  }
+
+  /** Creates a postings writer that records impacts in the skip data if <code>writeImpacts</code> is true,
+   *  reading norms from <code>norms</code>, which it closes. */
+  Lucene41PostingsWriter(SegmentWriteState state, float acceptableOverheadRatio, boolean writeImpacts, NormsProducer norms) throws IOException {
     super();
+    this.writeImpacts = writeImpacts;
+    this.norms = norms;
+    this.version = writeImpacts ? VERSION_IMPACTS : VERSION_CURRENT;
 
     docOut = state.directory.createOutput(IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, Lucene41PostingsFormat.DOC_EXTENSION),
                                                   state.context);
@@ -119,13 +144,13 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
     IndexOutput payOut = null;
     boolean success = false;
     try {
-      CodecUtil.writeHeader(docOut, DOC_CODEC, VERSION_CURRENT);
+      CodecUtil.writeHeader(docOut, DOC_CODEC, version);
       forUtil = new ForUtil(acceptableOverheadRatio, docOut);
       if (state.fieldInfos.hasProx()) {
         posDeltaBuffer = new int[MAX_DATA_SIZE];
         posOut = state.directory.createOutput(IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, Lucene41PostingsFormat.POS_EXTENSION),
                                                       state.context);
-        CodecUtil.writeHeader(posOut, POS_CODEC, VERSION_CURRENT);
+        CodecUtil.writeHeader(posOut, POS_CODEC, version);
 
         if (state.fieldInfos.hasPayloads()) {
           payloadBytes = new byte[128];
@@ -146,7 +171,7 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
         if (state.fieldInfos.hasPayloads() || state.fieldInfos.hasOffsets()) {
           payOut = state.directory.createOutput(IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, Lucene41PostingsFormat.PAY_EXTENSION),
                                                         state.context);
-          CodecUtil.writeHeader(payOut, PAY_CODEC, VERSION_CURRENT);
+          CodecUtil.writeHeader(payOut, PAY_CODEC, version);
         }
       } else {
         posDeltaBuffer = null;
@@ -173,7 +198,8 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
                                      state.segmentInfo.getDocCount(),
                                      docOut,
                                      posOut,
-                                     payOut);
+                                     payOut,
+                                     writeImpacts);
 
     encoded = new byte[MAX_ENCODED_SIZE];
   }
@@ -226,7 +252,7 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
 
   @Override
   public void init(IndexOutput termsOut) throws IOException {
-    CodecUtil.writeHeader(termsOut, TERMS_CODEC, VERSION_CURRENT);
+    CodecUtil.writeHeader(termsOut, TERMS_CODEC, version);
     termsOut.writeVInt(BLOCK_SIZE);
   }
 
@@ -234,6 +260,9 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   public int setField(FieldInfo fieldInfo) {
     super.setField(fieldInfo);
     skipWriter.setField(writePositions, writeOffsets, writePayloads);
+    normsFieldInfo = norms != null && fieldInfo.hasNorms() ? fieldInfo : null;
+    defaultMaxNorm = norms == null && fieldInfo.hasNorms() ? -1 : 0;
+    fieldNorms = null;
     lastState = emptyState;
     if (writePositions) {
       if (writePayloads || writeOffsets) {
@@ -275,7 +304,11 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
       // if (DEBUG) {
       //   System.out.println("  bufferSkip at writeBlock: lastDocID=" + lastBlockDocID + " docCount=" + (docCount-1));
       // }
-      skipWriter.bufferSkip(lastBlockDocID, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
+      skipWriter.bufferSkip(lastBlockDocID, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto, blockMaxFreq, blockMaxNorm);
+    }
+    if (writeImpacts && docBufferUpto == 0) {
+      blockMaxFreq = 1;
+      blockMaxNorm = defaultMaxNorm;
     }
 
     final int docDelta = docID - lastDocID;
@@ -291,6 +324,18 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
     if (writeFreqs) {
       freqBuffer[docBufferUpto] = termDocFreq;
     }
+    if (writeImpacts && termDocFreq > blockMaxFreq) {
+      blockMaxFreq = termDocFreq;
+    }
+    if (normsFieldInfo != null) {
+      if (fieldNorms == null) {
+        fieldNorms = norms.getNorms(normsFieldInfo);
+      }
+      final long norm = fieldNorms.get(docID);
+      if (norm + Long.MIN_VALUE > blockMaxNorm + Long.MIN_VALUE) {  // unsigned comparison
+        blockMaxNorm = norm;
+      }
+    }
     docBufferUpto++;
     docCount++;
 
@@ -585,9 +630,9 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
       success = true;
     } finally {
       if (success) {
-        IOUtils.close(docOut, posOut, payOut);
+        IOUtils.close(docOut, posOut, payOut, norms);
       } else {
-        IOUtils.closeWhileHandlingException(docOut, posOut, payOut);
+        IOUtils.closeWhileHandlingException(docOut, posOut, payOut, norms);
       }
       docOut = posOut = payOut = null;
     }
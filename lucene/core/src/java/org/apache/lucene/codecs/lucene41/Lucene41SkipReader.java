@@ -59,6 +59,8 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
   private long payPointer[];
   private int posBufferUpto[];
   private int payloadByteUpto[];
+  private int maxFreq[];
+  private long maxNorm[];
 
   private long lastPosPointer;
   private long lastPayPointer;
@@ -66,10 +68,14 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
   private long lastDocPointer;
   private int lastPosBufferUpto;
 
-  public Lucene41SkipReader(IndexInput skipStream, int maxSkipLevels, int blockSize, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
+  public Lucene41SkipReader(IndexInput skipStream, int maxSkipLevels, int blockSize, boolean hasPos, boolean hasOffsets, boolean hasPayloads, boolean hasImpacts) {
     super(skipStream, maxSkipLevels, blockSize, 8);
     this.blockSize = blockSize;
     docPointer = new long[maxSkipLevels];
+    if (hasImpacts) {
+      maxFreq = new int[maxSkipLevels];
+      maxNorm = new long[maxSkipLevels];
+    }
     if (hasPos) {
       posPointer = new long[maxSkipLevels];
       posBufferUpto = new int[maxSkipLevels];
@@ -144,6 +150,27 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
     return skipDoc[0];
   }
 
+  /** Returns the last doc of the skip entry that the given level is positioned on,
+   *  which is the next entry after the last call of {@link #skipTo(int)}.  */
+  public int getSkipDoc(int level) {
+    return skipDoc[level];
+  }
+
+  /** Returns true if the skip data records impacts. */
+  public boolean hasImpacts() {
+    return maxFreq != null;
+  }
+
+  /** Returns the max freq of the docs covered by the skip entry {@link #getSkipDoc(int)}. */
+  public int getMaxFreq(int level) {
+    return maxFreq[level];
+  }
+
+  /** Returns the max norm (compared as unsigned) of the docs covered by the skip entry {@link #getSkipDoc(int)}. */
+  public long getMaxNorm(int level) {
+    return maxNorm[level];
+  }
+
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -218,6 +245,11 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
         payPointer[level] += skipStream.readVInt();
       }
     }
+
+    if (maxFreq != null) {
+      maxFreq[level] = skipStream.readVInt();
+      maxNorm[level] = skipStream.readZLong();
+    }
     return delta;
   }
 }
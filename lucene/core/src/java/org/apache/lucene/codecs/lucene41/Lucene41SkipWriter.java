@@ -52,6 +52,10 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
   private long[] lastSkipPayPointer;
   private int[] lastPayloadByteUpto;
 
+  // impacts of the docs since the last skip entry of each level, null if impacts aren't written
+  private int[] maxFreq;
+  private long[] maxNorm;
+
   private final IndexOutput docOut;
   private final IndexOutput posOut;
   private final IndexOutput payOut;
@@ -66,7 +70,7 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
   private boolean fieldHasOffsets;
   private boolean fieldHasPayloads;
 
-  public Lucene41SkipWriter(int maxSkipLevels, int blockSize, int docCount, IndexOutput docOut, IndexOutput posOut, IndexOutput payOut) {
+  public Lucene41SkipWriter(int maxSkipLevels, int blockSize, int docCount, IndexOutput docOut, IndexOutput posOut, IndexOutput payOut, boolean writeImpacts) {
     super(blockSize, 8, maxSkipLevels, docCount);
     this.docOut = docOut;
     this.posOut = posOut;
@@ -74,6 +78,10 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
     
     lastSkipDoc = new int[maxSkipLevels];
     lastSkipDocPointer = new long[maxSkipLevels];
+    if (writeImpacts) {
+      maxFreq = new int[maxSkipLevels];
+      maxNorm = new long[maxSkipLevels];
+    }
     if (posOut != null) {
       lastSkipPosPointer = new long[maxSkipLevels];
       if (payOut != null) {
@@ -115,6 +123,10 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
       super.resetSkip();
       Arrays.fill(lastSkipDoc, 0);
       Arrays.fill(lastSkipDocPointer, lastDocFP);
+      if (maxFreq != null) {
+        Arrays.fill(maxFreq, 0);
+        Arrays.fill(maxNorm, 0);
+      }
       if (fieldHasPositions) {
         Arrays.fill(lastSkipPosPointer, lastPosFP);
         if (fieldHasPayloads) {
@@ -129,10 +141,21 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
   }
 
   /**
-   * Sets the values for the current skip data. 
+   * Sets the values for the current skip data.  <code>blockMaxFreq</code> and <code>blockMaxNorm</code>
+   * are the impacts of the block that just ended, if impacts are written; the norm is compared as an
+   * unsigned value.
    */
-  public void bufferSkip(int doc, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
+  public void bufferSkip(int doc, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto,
+                         int blockMaxFreq, long blockMaxNorm) throws IOException {
     initSkip();
+    if (maxFreq != null) {
+      for (int level = 0; level < maxFreq.length; level++) {
+        maxFreq[level] = Math.max(maxFreq[level], blockMaxFreq);
+        if (blockMaxNorm + Long.MIN_VALUE > maxNorm[level] + Long.MIN_VALUE) {
+          maxNorm[level] = blockMaxNorm;
+        }
+      }
+    }
     this.curDoc = doc;
     this.curDocPointer = docOut.getFilePointer();
     this.curPosPointer = posFP;
@@ -171,5 +194,13 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
         lastSkipPayPointer[level] = curPayPointer;
       }
     }
+
+    if (maxFreq != null) {
+      // impacts of all docs since the previous entry on this level
+      skipBuffer.writeVInt(maxFreq[level]);
+      skipBuffer.writeZLong(maxNorm[level]);
+      maxFreq[level] = 0;
+      maxNorm[level] = 0;
+    }
   }
 }
@@ -0,0 +1,543 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.RateLimitedDirectoryWrapper;
+import org.apache.lucene.store.RateLimiter;
+
+/** A {@link ConcurrentMergeScheduler} that adapts the
+ *  rate at which merges may write to how far behind
+ *  merging is, instead of using a fixed rate.
+ *
+ *  <p>The rate is raised when merges fall behind: when a
+ *  merge starts while other merges are waiting for a
+ *  thread, and sharply when indexing threads are stalled
+ *  because there are more than {@link #getMaxMergeCount}
+ *  merges. It is lowered when merging has caught up (a
+ *  merge starts while no other merge is running) and when
+ *  the optional {@link SearchLatencySignal} reports that
+ *  searches are slower than their target, unless indexing
+ *  is stalled. The rate always stays within
+ *  {@link #setMBPerSecBounds bounds}, and forced merges
+ *  are not throttled.</p>
+ *
+ *  <p>Writes are throttled through the
+ *  {@link IOContext.Context#MERGE merge} rate limiter of a
+ *  {@link RateLimitedDirectoryWrapper}, which must wrap
+ *  the directory of the {@link IndexWriter} (possibly
+ *  under other {@link FilterDirectory}s); if it already
+ *  has a merge rate, this rate is the initial one. Without
+ *  such a wrapper, merges are tracked but not throttled.
+ *  The wrapper gets its own merge rate limiter back when
+ *  this scheduler is {@link #close closed} or moves to
+ *  the directory of another writer.</p>
+ *
+ *  <p>Decisions are reported to the {@link
+ *  org.apache.lucene.util.InfoStream} of the writer under
+ *  the <code>CMS</code> component, and through the getters
+ *  of this class.</p>
+ *
+ * @lucene.experimental
+ */
+public class AdaptiveMergeScheduler extends ConcurrentMergeScheduler {
+
+  /** Default initial rate, in MB/sec. */
+  public static final double DEFAULT_START_MB_PER_SEC = 20.0;
+
+  /** Default minimum rate, in MB/sec. */
+  public static final double DEFAULT_MIN_MB_PER_SEC = 5.0;
+
+  /** Default maximum rate, in MB/sec. */
+  public static final double DEFAULT_MAX_MB_PER_SEC = 10240.0;
+
+  /** Default minimum interval between two periodic updates of
+   *  the rate, while merges are writing. */
+  public static final long DEFAULT_UPDATE_INTERVAL_MS = 1000;
+
+  // how much the rate changes on every decision
+  private static final double BEHIND_FACTOR = 1.2;
+  private static final double STALLED_FACTOR = 1.5;
+  private static final double CAUGHT_UP_FACTOR = 1.1;
+  private static final double MAX_LATENCY_FACTOR = 2.0;
+
+  /** Tells how loaded searches currently are, so that merges
+   *  yield disk bandwidth to them when they are slow. */
+  public interface SearchLatencySignal {
+    /** Returns the ratio of the recent latency of searches
+     *  to their target latency: more than 1 means that
+     *  searches are slower than they should be. */
+    double getLatencyRatio();
+  }
+
+  private final MergeRateLimiter rateLimiter = new MergeRateLimiter(DEFAULT_START_MB_PER_SEC);
+  private final Object rateLock = new Object();
+  private volatile SearchLatencySignal latencySignal;
+  private double minMBPerSec = DEFAULT_MIN_MB_PER_SEC;
+  private double maxMBPerSec = DEFAULT_MAX_MB_PER_SEC;
+  private volatile long updateIntervalNS = DEFAULT_UPDATE_INTERVAL_MS * 1000000L;
+  private volatile long lastUpdateNS = System.nanoTime();
+
+  // the directory of the writer, that we looked up a RateLimitedDirectoryWrapper in
+  private Directory attachedTo;
+  // the wrapper whose merge rate limiter we replaced, and that limiter
+  private RateLimitedDirectoryWrapper attachedWrapper;
+  private RateLimiter replacedRateLimiter;
+  private volatile boolean throttling;
+
+  private final Map<Thread,MergeProgress> runningMerges = new ConcurrentHashMap<>();
+  private final AtomicInteger stalledThreads = new AtomicInteger();
+
+  // statistics
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final AtomicLong pausedNS = new AtomicLong();
+  private long rateIncreases, rateDecreases;
+  private long stallCount, stallMillis;
+  private long completedMerges;
+  private double lastMergeMBPerSec;
+
+  /** Sole constructor, with all settings set to default
+   *  values. */
+  public AdaptiveMergeScheduler() {
+  }
+
+  /** Sets the bounds of the rate, in MB/sec; the current
+   *  rate is moved within them if necessary. */
+  public void setMBPerSecBounds(double minMBPerSec, double maxMBPerSec) {
+    if (minMBPerSec <= 0) {
+      throw new IllegalArgumentException("minMBPerSec must be positive, got " + minMBPerSec);
+    }
+    if (maxMBPerSec < minMBPerSec) {
+      throw new IllegalArgumentException("maxMBPerSec must be >= minMBPerSec (= " + minMBPerSec + "), got " + maxMBPerSec);
+    }
+    synchronized (rateLock) {
+      this.minMBPerSec = minMBPerSec;
+      this.maxMBPerSec = maxMBPerSec;
+      setRate(rateLimiter.getMbPerSec());
+    }
+  }
+
+  /** Sets the minimum rate, in MB/sec.
+   *  @see #setMBPerSecBounds */
+  public void setMinMBPerSec(double minMBPerSec) {
+    setMBPerSecBounds(minMBPerSec, Math.max(minMBPerSec, getMaxMBPerSec()));
+  }
+
+  /** Sets the maximum rate, in MB/sec.
+   *  @see #setMBPerSecBounds */
+  public void setMaxMBPerSec(double maxMBPerSec) {
+    setMBPerSecBounds(Math.min(maxMBPerSec, getMinMBPerSec()), maxMBPerSec);
+  }
+
+  /** Returns the minimum rate, in MB/sec. */
+  public double getMinMBPerSec() {
+    synchronized (rateLock) {
+      return minMBPerSec;
+    }
+  }
+
+  /** Returns the maximum rate, in MB/sec. */
+  public double getMaxMBPerSec() {
+    synchronized (rateLock) {
+      return maxMBPerSec;
+    }
+  }
+
+  /** Sets the current rate, in MB/sec, for example the
+   *  initial one; it is then adapted. */
+  public void setMBPerSec(double mbPerSec) {
+    synchronized (rateLock) {
+      setRate(mbPerSec);
+    }
+  }
+
+  /** Returns the rate at which merges may currently write,
+   *  in MB/sec. */
+  public double getMBPerSec() {
+    return rateLimiter.getMbPerSec();
+  }
+
+  /** Sets the minimum interval between two updates of the
+   *  rate while merges are running. */
+  public void setUpdateIntervalMillis(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException("updateIntervalMillis must not be negative");
+    }
+    updateIntervalNS = millis * 1000000L;
+  }
+
+  /** Returns the minimum interval between two updates of the
+   *  rate while merges are running. */
+  public long getUpdateIntervalMillis() {
+    return updateIntervalNS / 1000000L;
+  }
+
+  /** Sets the signal that tells when searches are too slow,
+   *  or null to only adapt to merging. */
+  public void setSearchLatencySignal(SearchLatencySignal latencySignal) {
+    this.latencySignal = latencySignal;
+  }
+
+  /** Returns the signal that tells when searches are too slow,
+   *  or null. */
+  public SearchLatencySignal getSearchLatencySignal() {
+    return latencySignal;
+  }
+
+  /** Returns true if the merges are throttled, that is if
+   *  the directory of the writer is wrapped in a {@link
+   *  RateLimitedDirectoryWrapper}. */
+  public boolean isThrottling() {
+    return throttling;
+  }
+
+  /** Returns how many times the rate was raised. */
+  public long getRateIncreases() {
+    synchronized (rateLock) {
+      return rateIncreases;
+    }
+  }
+
+  /** Returns how many times the rate was lowered. */
+  public long getRateDecreases() {
+    synchronized (rateLock) {
+      return rateDecreases;
+    }
+  }
+
+  /** Returns how many times indexing threads were stalled
+   *  because merges fell too far behind. */
+  public long getStallCount() {
+    synchronized (rateLock) {
+      return stallCount;
+    }
+  }
+
+  /** Returns how long indexing threads were stalled in total,
+   *  in milliseconds. */
+  public long getStallMillis() {
+    synchronized (rateLock) {
+      return stallMillis;
+    }
+  }
+
+  /** Returns the number of merges that completed. */
+  public long getCompletedMerges() {
+    synchronized (rateLock) {
+      return completedMerges;
+    }
+  }
+
+  /** Returns the rate that the last completed merge achieved,
+   *  in MB/sec of its estimated size. */
+  public double getLastMergeMBPerSec() {
+    synchronized (rateLock) {
+      return lastMergeMBPerSec;
+    }
+  }
+
+  /** Returns the number of bytes that were written by throttled
+   *  merges. Outputs report their writes to the rate limiter in
+   *  batches of a few milliseconds worth of writing at the current
+   *  rate, so the last bytes of each file may not be counted. */
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  /** Returns how long merges were paused by throttling in total,
+   *  in milliseconds. */
+  public long getPausedMillis() {
+    return pausedNS.get() / 1000000L;
+  }
+
+  /** Returns the number of merges that are running, including
+   *  those that are paused because too many merges are running. */
+  public int getRunningMergeCount() {
+    return runningMerges.size();
+  }
+
+  /** Returns a description of the progress of each running merge. */
+  public List<String> getRunningMergeProgress() {
+    final List<String> progress = new ArrayList<>();
+    for (MergeProgress p : runningMerges.values()) {
+      progress.add(p.toString());
+    }
+    return progress;
+  }
+
+  @Override
+  public synchronized void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) throws IOException {
+    final Directory dir = writer.getDirectory();
+    if (dir != attachedTo) {
+      this.writer = writer;
+      attach(dir);
+    }
+    super.merge(writer, trigger, newMergesFound);
+  }
+
+  // take over the merge rate limiter of the wrapper of the writer's directory
+  private void attach(Directory dir) {
+    detach();
+    attachedTo = dir;
+    while (dir instanceof FilterDirectory) {
+      if (dir instanceof RateLimitedDirectoryWrapper) {
+        final RateLimitedDirectoryWrapper wrapper = (RateLimitedDirectoryWrapper) dir;
+        final Double current = wrapper.getMaxWriteMBPerSec(IOContext.Context.MERGE);
+        if (current != null) {
+          setMBPerSec(current);
+        }
+        replacedRateLimiter = wrapper.getRateLimiter(IOContext.Context.MERGE);
+        wrapper.setRateLimiter(rateLimiter, IOContext.Context.MERGE);
+        attachedWrapper = wrapper;
+        throttling = true;
+        break;
+      }
+      dir = ((FilterDirectory) dir).getDelegate();
+    }
+    if (verbose()) {
+      message(throttling
+          ? "adaptive throttling of merges at " + format(getMBPerSec()) + " MB/sec"
+          : "no RateLimitedDirectoryWrapper: merges are not throttled");
+    }
+  }
+
+  // give the wrapper its merge rate limiter back, unless it was replaced since
+  private void detach() {
+    final RateLimitedDirectoryWrapper wrapper = attachedWrapper;
+    if (wrapper != null && wrapper.getRateLimiter(IOContext.Context.MERGE) == rateLimiter) {
+      try {
+        wrapper.setRateLimiter(replacedRateLimiter, IOContext.Context.MERGE);
+      } catch (AlreadyClosedException ace) {
+        // nothing to restore
+      }
+    }
+    attachedTo = null;
+    attachedWrapper = null;
+    replacedRateLimiter = null;
+    throttling = false;
+  }
+
+  /** Waits for running merges, then restores the merge
+   *  rate limiter that the directory had before. */
+  @Override
+  public void close() {
+    super.close();
+    synchronized (this) {
+      detach();
+    }
+  }
+
+  @Override
+  protected synchronized void maybeStall() {
+    if (writer.hasPendingMerges() && mergeThreadCount() >= getMaxMergeCount()) {
+      // merges fell too far behind: speed them up before we stall
+      stalledThreads.incrementAndGet();
+      final long start = System.currentTimeMillis();
+      try {
+        updateRate("indexing stalled");
+        super.maybeStall();
+      } finally {
+        stalledThreads.decrementAndGet();
+        synchronized (rateLock) {
+          stallCount++;
+          stallMillis += System.currentTimeMillis() - start;
+        }
+      }
+    } else {
+      super.maybeStall();
+    }
+  }
+
+  @Override
+  protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+    final MergeProgress progress = new MergeProgress(merge);
+    runningMerges.put(Thread.currentThread(), progress);
+    boolean success = false;
+    try {
+      if (!progress.forced) {
+        updateRate("merge start");
+      }
+      super.doMerge(merge);
+      success = true;
+    } finally {
+      runningMerges.remove(Thread.currentThread());
+      if (success) {
+        final double seconds = (System.nanoTime() - progress.startNS) / 1e9;
+        final double mbPerSec = seconds == 0 ? 0 : merge.estimatedMergeBytes / 1024. / 1024. / seconds;
+        synchronized (rateLock) {
+          completedMerges++;
+          lastMergeMBPerSec = mbPerSec;
+        }
+        if (verbose()) {
+          message("merge done: " + merge.totalDocCount + " docs in " + format(seconds) + " sec, "
+              + format(mbPerSec) + " MB/sec");
+        }
+      }
+    }
+  }
+
+  /** Adapts the rate to the current state of merges and
+   *  searches, the reason being reported to the info stream. */
+  private void updateRate(String trigger) {
+    final SearchLatencySignal signal = latencySignal;
+    final double latencyRatio = signal == null ? 0 : signal.getLatencyRatio();
+    final int running = runningMerges.size();
+    final boolean stalled = stalledThreads.get() > 0;
+    // merges that are waiting for a thread
+    final boolean behind = running > getMaxThreadCount();
+    final boolean mergeStart = "merge start".equals(trigger);
+
+    synchronized (rateLock) {
+      lastUpdateNS = System.nanoTime();
+      final double current = rateLimiter.getMbPerSec();
+      final double factor;
+      final String reason;
+      if (stalled) {
+        factor = STALLED_FACTOR;
+        reason = "indexing is stalled by " + running + " merges";
+      } else if (latencyRatio > 1) {
+        factor = 1 / Math.min(latencyRatio, MAX_LATENCY_FACTOR);
+        reason = "search latency is " + format(latencyRatio) + "x its target";
+      } else if (behind) {
+        factor = BEHIND_FACTOR;
+        reason = (running - getMaxThreadCount()) + " merges are waiting for a thread";
+      } else if (mergeStart && running <= 1) {
+        factor = 1 / CAUGHT_UP_FACTOR;
+        reason = "merges caught up";
+      } else {
+        return;
+      }
+      setRate(current * factor);
+      final double updated = rateLimiter.getMbPerSec();
+      if (updated > current) {
+        rateIncreases++;
+      } else if (updated < current) {
+        rateDecreases++;
+      } else {
+        return;
+      }
+      if (verbose()) {
+        message(trigger + ": " + reason + ": rate " + format(current) + " -> " + format(updated) + " MB/sec");
+      }
+    }
+  }
+
+  // must be called with rateLock held
+  private void setRate(double mbPerSec) {
+    rateLimiter.setMbPerSec(Math.max(minMBPerSec, Math.min(maxMBPerSec, mbPerSec)));
+  }
+
+  private static String format(double d) {
+    return String.format(Locale.ROOT, "%.1f", d);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ", mbPerSec=" + format(getMBPerSec())
+        + ", minMBPerSec=" + format(getMinMBPerSec()) + ", maxMBPerSec=" + format(getMaxMBPerSec());
+  }
+
+  /** Progress of a running merge, as measured by the throttled
+   *  writes of its thread. */
+  private static final class MergeProgress {
+    final MergePolicy.OneMerge merge;
+    final boolean forced;
+    final long startNS = System.nanoTime();
+    volatile long bytesWritten; // only updated by the merge thread
+
+    MergeProgress(MergePolicy.OneMerge merge) {
+      this.merge = merge;
+      this.forced = merge.maxNumSegments != -1;
+    }
+
+    @Override
+    public String toString() {
+      final long estimated = merge.estimatedMergeBytes;
+      final StringBuilder sb = new StringBuilder();
+      sb.append(merge.totalDocCount).append(" docs");
+      if (forced) {
+        sb.append(" (forced)");
+      }
+      sb.append(": ").append(format(bytesWritten / 1024. / 1024.)).append(" MB written");
+      if (estimated > 0) {
+        sb.append(" of ~").append(format(estimated / 1024. / 1024.)).append(" MB");
+      }
+      sb.append(" in ").append(format((System.nanoTime() - startNS) / 1e9)).append(" sec");
+      if (merge.getPause()) {
+        sb.append(" [paused]");
+      }
+      return sb.toString();
+    }
+  }
+
+  /** The merge rate limiter that is installed on the directory:
+   *  attributes writes to merges, doesn't throttle forced merges,
+   *  and periodically adapts the rate while merges run. */
+  private final class MergeRateLimiter extends RateLimiter {
+    private final RateLimiter.SimpleRateLimiter delegate;
+
+    MergeRateLimiter(double mbPerSec) {
+      delegate = new RateLimiter.SimpleRateLimiter(mbPerSec);
+    }
+
+    @Override
+    public void setMbPerSec(double mbPerSec) {
+      delegate.setMbPerSec(mbPerSec);
+    }
+
+    @Override
+    public double getMbPerSec() {
+      return delegate.getMbPerSec();
+    }
+
+    @Override
+    public long getMinPauseCheckBytes() {
+      return delegate.getMinPauseCheckBytes();
+    }
+
+    @Override
+    public long pause(long bytes) {
+      bytesWritten.addAndGet(bytes);
+      final MergeProgress progress = runningMerges.get(Thread.currentThread());
+      if (progress != null) {
+        progress.bytesWritten += bytes;
+        if (progress.forced) {
+          return 0;
+        }
+      }
+      if (System.nanoTime() - lastUpdateNS > updateIntervalNS) {
+        updateRate("periodic");
+      }
+      final long paused = delegate.pause(bytes);
+      pausedNS.addAndGet(paused);
+      return paused;
+    }
+  }
+}
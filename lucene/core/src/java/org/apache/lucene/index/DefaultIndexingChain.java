@@ -93,6 +93,7 @@ final class DefaultIndexingChain extends DocConsumer {
 
     int numDocs = state.segmentInfo.getDocCount();
     writeNorms(state);
+    state.normsWritten = true;
     writeDocValues(state);
     
     // its possible all docs hit non-aborting exceptions...
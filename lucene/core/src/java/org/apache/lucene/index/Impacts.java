@@ -0,0 +1,61 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.search.similarities.Similarity; // javadocs
+
+/**
+ * Implemented by {@link DocsEnum}s that know, for blocks of postings, the maximum
+ * term frequency and the maximum norm of the documents in the block.  Together with
+ * {@link Similarity.SimScorer#maxScore(float, long)} these "impacts" give an upper
+ * bound of the score of any document in the block, so that scorers can skip blocks
+ * that can't produce a competitive document.
+ * <p>
+ * Impacts are organized in levels.  After {@link #advanceShallow(int)}, level 0 describes
+ * the smallest block that contains the target, and each following level describes a
+ * larger range of documents that also starts before the target.  The last level always
+ * covers the rest of the postings list.
+ *
+ * @lucene.experimental
+ */
+public interface Impacts {
+
+  /**
+   * Moves the impacts to the blocks that contain <code>target</code>, without decoding
+   * any postings, and returns the last document of the level 0 block.  Targets must not
+   * decrease, and after this call the enum may only be advanced to documents greater than
+   * or equal to <code>target</code>.
+   */
+  int advanceShallow(int target) throws IOException;
+
+  /** Returns the number of levels, which is always at least 1. */
+  int numLevels();
+
+  /** Returns the last document covered by <code>level</code>, or
+   * {@link DocsEnum#NO_MORE_DOCS} for the last level. */
+  int getDocIdUpTo(int level);
+
+  /** Returns the maximum term frequency of the documents covered by <code>level</code>. */
+  int getMaxFreq(int level);
+
+  /** Returns the maximum norm of the documents covered by <code>level</code>, where norms
+   * are compared as unsigned values.  -1 means that any norm is possible. */
+  long getMaxNorm(int level);
+}
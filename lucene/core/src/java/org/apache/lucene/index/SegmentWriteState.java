@@ -60,6 +60,11 @@ public class SegmentWriteState {
    *  only set if there is one or more deleted documents. */
   public MutableBits liveDocs;
 
+  /** True once the norms of the segment have been
+   *  written, which is before the postings on flush and
+   *  merge, so that postings formats may read them back. */
+  public boolean normsWritten;
+
   /** Unique suffix for any postings files written for this
    *  segment.  {@link PerFieldPostingsFormat} sets this for
    *  each of the postings formats it wraps.  If you create
@@ -118,6 +123,7 @@ public class SegmentWriteState {
     segUpdates = state.segUpdates;
     delCountOnFlush = state.delCountOnFlush;
     liveDocs = state.liveDocs;
+    normsWritten = state.normsWritten;
   }
   
   // currently only used by assert? clean up and make real check?
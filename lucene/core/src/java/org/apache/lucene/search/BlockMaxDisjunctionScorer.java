@@ -0,0 +1,243 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A disjunction scorer for top-k collection that skips documents that can't
+ * score higher than {@link #setMinCompetitiveScore(float) the minimum competitive score}.
+ * <p>
+ * The doc ID space is split in windows at the boundaries of the sub scorers'
+ * blocks (see {@link Scorer#advanceShallow(int)}).  For each window, the sub
+ * scorers are sorted by their maximum score in the window, and the longest
+ * prefix whose maximum scores sum to a non-competitive score is "non-essential":
+ * a document that only matches non-essential scorers can't be competitive.
+ * So candidates are only taken from the essential scorers, and the non-essential
+ * scorers are only advanced while the candidate can still be competitive.  This
+ * is the block-max variant of the MaxScore algorithm.
+ * <p>
+ * Scores of the returned documents are the same as the ones of {@link DisjunctionSumScorer},
+ * but documents whose score is not competitive might not be returned at all.
+ */
+final class BlockMaxDisjunctionScorer extends Scorer {
+  // relative slack on the upper bounds to absorb rounding differences between
+  // the bounds and the actual scores
+  private static final double SLACK = 1 + 1e-6;
+
+  private final Scorer[] subScorers;
+  private final float[] coord;
+  private final float maxCoord;
+
+  // the last document of the current window, and per scorer maximum scores in it
+  private int upTo = -1;
+  private final float[] maxScores;
+  // scorers ordered by increasing maximum score, the first numNonEssential are non-essential
+  private final int[] order;
+  // sums of the maximum scores of the first i scorers in order
+  private final double[] maxScoreSums;
+  private int numNonEssential;
+
+  private float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+
+  private int doc = -1;
+  private int freq;
+  private float score;
+
+  BlockMaxDisjunctionScorer(Weight weight, Scorer[] subScorers, float[] coord) {
+    super(weight);
+    if (subScorers.length <= 1) {
+      throw new IllegalArgumentException("There must be at least 2 subScorers");
+    }
+    this.subScorers = subScorers;
+    this.coord = coord;
+    float max = 0;
+    for (float c : coord) {
+      max = Math.max(max, c);
+    }
+    this.maxCoord = max;
+    this.maxScores = new float[subScorers.length];
+    this.order = new int[subScorers.length];
+    this.maxScoreSums = new double[subScorers.length + 1];
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    if (minScore > minCompetitiveScore) {
+      minCompetitiveScore = minScore;
+      if (upTo >= 0) {
+        partition();
+      }
+    }
+  }
+
+  /** Returns true if a document whose score is at most <code>maxScore</code> can't compete */
+  private boolean nonCompetitive(double maxScore) {
+    return maxScore * maxCoord * SLACK <= minCompetitiveScore;
+  }
+
+  /** Moves the window to the blocks that contain <code>target</code>. */
+  private void moveWindow(int target) throws IOException {
+    int newUpTo = NO_MORE_DOCS;
+    for (Scorer sub : subScorers) {
+      if (sub.docID() != NO_MORE_DOCS) {
+        newUpTo = Math.min(newUpTo, sub.advanceShallow(target));
+      }
+    }
+    upTo = Math.max(newUpTo, target);
+    for (int i = 0; i < subScorers.length; i++) {
+      Scorer sub = subScorers[i];
+      maxScores[i] = sub.docID() == NO_MORE_DOCS ? 0f : sub.getMaxScore(upTo);
+    }
+    partition();
+  }
+
+  /** Splits the scorers into non-essential and essential scorers for the current window. */
+  private void partition() {
+    // insertion sort, disjunctions have few clauses
+    for (int i = 0; i < order.length; i++) {
+      int j = i;
+      while (j > 0 && maxScores[order[j - 1]] > maxScores[i]) {
+        order[j] = order[j - 1];
+        j--;
+      }
+      order[j] = i;
+    }
+    numNonEssential = 0;
+    for (int i = 0; i < order.length; i++) {
+      maxScoreSums[i + 1] = maxScoreSums[i] + maxScores[order[i]];
+      if (nonCompetitive(maxScoreSums[i + 1])) {
+        numNonEssential = i + 1;
+      }
+    }
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    return advance(doc + 1);
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    while (true) {
+      if (target > upTo) {
+        if (upTo == NO_MORE_DOCS) {
+          return doc = NO_MORE_DOCS;
+        }
+        moveWindow(target);
+      }
+      if (numNonEssential == order.length) {
+        // nothing in this window can compete
+        if (upTo == NO_MORE_DOCS) {
+          return doc = NO_MORE_DOCS;
+        }
+        target = upTo + 1;
+        continue;
+      }
+
+      // the candidate is the first document of the essential scorers
+      int candidate = NO_MORE_DOCS;
+      for (int i = numNonEssential; i < order.length; i++) {
+        Scorer sub = subScorers[order[i]];
+        int subDoc = sub.docID();
+        if (subDoc < target) {
+          subDoc = sub.advance(target);
+        }
+        candidate = Math.min(candidate, subDoc);
+      }
+      if (candidate > upTo || candidate == NO_MORE_DOCS) {
+        if (upTo == NO_MORE_DOCS) {
+          return doc = NO_MORE_DOCS;
+        }
+        target = upTo + 1;
+        continue;
+      }
+
+      if (score(candidate)) {
+        return doc = candidate;
+      }
+      target = candidate + 1;
+    }
+  }
+
+  /** Scores <code>candidate</code>, returns false if it turns out not to be competitive. */
+  private boolean score(int candidate) throws IOException {
+    double sum = 0;
+    int matches = 0;
+    for (int i = numNonEssential; i < order.length; i++) {
+      Scorer sub = subScorers[order[i]];
+      if (sub.docID() == candidate) {
+        sum += sub.score();
+        matches++;
+      }
+    }
+    // non-essential scorers, by decreasing maximum score, as long as the candidate may compete
+    for (int i = numNonEssential - 1; i >= 0; i--) {
+      if (nonCompetitive(sum + maxScoreSums[i + 1])) {
+        return false;
+      }
+      Scorer sub = subScorers[order[i]];
+      int subDoc = sub.docID();
+      if (subDoc < candidate) {
+        subDoc = sub.advance(candidate);
+      }
+      if (subDoc == candidate) {
+        sum += sub.score();
+        matches++;
+      }
+    }
+    freq = matches;
+    score = (float) sum * coord[matches];
+    return true;
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  @Override
+  public float score() throws IOException {
+    return score;
+  }
+
+  @Override
+  public int freq() throws IOException {
+    return freq;
+  }
+
+  @Override
+  public long cost() {
+    long sum = 0;
+    for (Scorer sub : subScorers) {
+      sum += sub.cost();
+    }
+    return sum;
+  }
+
+  @Override
+  public Collection<ChildScorer> getChildren() {
+    ArrayList<ChildScorer> children = new ArrayList<>(subScorers.length);
+    for (Scorer sub : subScorers) {
+      children.add(new ChildScorer(sub, "SHOULD"));
+    }
+    return children;
+  }
+}
@@ -339,6 +339,43 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       return new BooleanScorer(this, disableCoord, minNrShouldMatch, optional, prohibited, maxCoord);
     }
 
+    @Override
+    public Scorer topScoresScorer(AtomicReaderContext context, Bits acceptDocs)
+        throws IOException {
+      if (minNrShouldMatch > 1) {
+        return scorer(context, acceptDocs);
+      }
+      for (BooleanClause c : clauses) {
+        if (c.getOccur() != Occur.SHOULD) {
+          return scorer(context, acceptDocs);
+        }
+      }
+
+      // pure disjunction: skip the documents that can't make it to the top hits
+      List<Scorer> optional = new ArrayList<>();
+      for (Weight w : weights) {
+        Scorer subScorer = w.scorer(context, acceptDocs);
+        if (subScorer != null) {
+          optional.add(subScorer);
+        }
+      }
+      if (optional.isEmpty()) {
+        return null;
+      } else if (optional.size() == 1) {
+        return opt(optional, 0, disableCoord);
+      }
+      float coords[];
+      if (disableCoord) {
+        coords = new float[optional.size()+1];
+        Arrays.fill(coords, 1F);
+      } else {
+        coords = coords();
+      }
+      return new BlockMaxDisjunctionScorer(this,
+                                           optional.toArray(new Scorer[optional.size()]),
+                                           coords);
+    }
+
     @Override
     public Scorer scorer(AtomicReaderContext context, Bits acceptDocs)
         throws IOException {
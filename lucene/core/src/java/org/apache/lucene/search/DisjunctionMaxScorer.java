@@ -66,4 +66,9 @@ final class DisjunctionMaxScorer extends DisjunctionScorer {
   protected float getFinal() {
     return scoreMax + (scoreSum - scoreMax) * tieBreakerMultiplier; 
   }
+
+  @Override
+  protected float getMaxFinal(double sum, float max) {
+    return max + (float) (sum - max) * tieBreakerMultiplier;
+  }
 }
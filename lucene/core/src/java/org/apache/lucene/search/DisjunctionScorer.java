@@ -123,6 +123,30 @@ abstract class DisjunctionScorer extends Scorer {
     return sum;
   } 
   
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    int upTo = NO_MORE_DOCS;
+    for (int i = 0; i < numScorers; i++) {
+      upTo = Math.min(upTo, subScorers[i].advanceShallow(target));
+    }
+    return upTo;
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    double sum = 0;
+    float max = 0;
+    for (int i = 0; i < numScorers; i++) {
+      float subMax = subScorers[i].getMaxScore(upTo);
+      if (subMax == Float.POSITIVE_INFINITY) {
+        return Float.POSITIVE_INFINITY;
+      }
+      sum += subMax;
+      max = Math.max(max, subMax);
+    }
+    return getMaxFinal(sum, max);
+  }
+
   @Override
   public final int docID() {
    return doc;
@@ -209,4 +233,8 @@ abstract class DisjunctionScorer extends Scorer {
   
   /** Return final score */
   protected abstract float getFinal();
+
+  /** Return an upper bound of the final score, given the sum and the max of the
+   *  sub scorers' upper bounds */
+  protected abstract float getMaxFinal(double sum, float max);
 }
@@ -50,4 +50,13 @@ final class DisjunctionSumScorer extends DisjunctionScorer {
   protected float getFinal() {
     return (float)score * coord[freq]; 
   }
+
+  @Override
+  protected float getMaxFinal(double sum, float max) {
+    float maxCoord = 0;
+    for (float c : coord) {
+      maxCoord = Math.max(maxCoord, c);
+    }
+    return (float)sum * maxCoord;
+  }
 }
@@ -61,6 +61,42 @@ public abstract class Scorer extends DocsEnum {
    */
   public abstract float score() throws IOException;
   
+  /**
+   * Expert: moves the score upper bounds of {@link #getMaxScore(int)} to the
+   * block of documents that contains <code>target</code>, without advancing
+   * the scorer, and returns the last document of that block.  Targets must not
+   * decrease, and the scorer may then only be advanced to documents greater
+   * than or equal to <code>target</code>.  The default implementation returns
+   * {@link #NO_MORE_DOCS}: the bounds cover all documents.
+   * @see org.apache.lucene.index.Impacts
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return NO_MORE_DOCS;
+  }
+
+  /**
+   * Expert: returns an upper bound of the score of the documents between the
+   * last target of {@link #advanceShallow(int)} and <code>upTo</code> included.
+   * The default implementation returns {@link Float#POSITIVE_INFINITY}, meaning
+   * that no bound is known.
+   * @lucene.experimental
+   */
+  public float getMaxScore(int upTo) throws IOException {
+    return Float.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Expert: tells the scorer that documents whose score is not greater than
+   * <code>minScore</code> are not competitive, so that scorers that support it
+   * (see {@link Weight#topScoresScorer}) may skip them.  Called by collectors
+   * that only keep the top scoring documents.  The default implementation does
+   * nothing.
+   * @lucene.experimental
+   */
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+  }
+
   /** returns parent Weight
    * @lucene.experimental
    */
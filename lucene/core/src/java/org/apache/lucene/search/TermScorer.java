@@ -20,6 +20,7 @@ package org.apache.lucene.search;
 import java.io.IOException;
 
 import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.search.similarities.Similarity;
 
 /** Expert: A <code>Scorer</code> for documents matching a <code>Term</code>.
@@ -27,6 +28,7 @@ import org.apache.lucene.search.similarities.Similarity;
 final class TermScorer extends Scorer {
   private final DocsEnum docsEnum;
   private final Similarity.SimScorer docScorer;
+  private final Impacts impacts;  // null if the postings don't record impacts
   
   /**
    * Construct a <code>TermScorer</code>.
@@ -43,6 +45,7 @@ final class TermScorer extends Scorer {
     super(weight);
     this.docScorer = docScorer;
     this.docsEnum = td;
+    this.impacts = td instanceof Impacts ? (Impacts) td : null;
   }
 
   @Override
@@ -85,6 +88,24 @@ final class TermScorer extends Scorer {
     return docsEnum.advance(target);
   }
   
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    return impacts == null ? NO_MORE_DOCS : impacts.advanceShallow(target);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    if (impacts == null) {
+      return Float.POSITIVE_INFINITY;
+    }
+    // the smallest level that covers upTo; the last level covers everything
+    int level = 0;
+    while (impacts.getDocIdUpTo(level) < upTo) {
+      level++;
+    }
+    return docScorer.maxScore(impacts.getMaxFreq(level), impacts.getMaxNorm(level));
+  }
+
   @Override
   public long cost() {
     return docsEnum.cost();
@@ -60,8 +60,17 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       pqTop.doc = doc + docBase;
       pqTop.score = score;
       pqTop = pq.updateTop();
+      // ties with pqTop can't compete either, see above
+      updateMinCompetitiveScore();
     }
     
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      super.setScorer(scorer);
+      minCompetitiveScore = Float.NEGATIVE_INFINITY;
+      updateMinCompetitiveScore();
+    }
+
     @Override
     public boolean acceptsDocsOutOfOrder() {
       return false;
@@ -105,6 +114,14 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       pqTop.doc = doc + docBase;
       pqTop.score = score;
       pqTop = pq.updateTop();
+      updateMinCompetitiveScore();
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      super.setScorer(scorer);
+      minCompetitiveScore = Float.NEGATIVE_INFINITY;
+      updateMinCompetitiveScore();
     }
 
     @Override
@@ -269,6 +286,8 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
   ScoreDoc pqTop;
   int docBase = 0;
   Scorer scorer;
+  // the score last passed to Scorer.setMinCompetitiveScore, which only changes when the top of the queue does
+  float minCompetitiveScore = Float.NEGATIVE_INFINITY;
     
   // prevents instantiation
   private TopScoreDocCollector(int numHits) {
@@ -308,4 +327,12 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
   public void setScorer(Scorer scorer) throws IOException {
     this.scorer = scorer;
   }
+
+  /** Passes the score of the top of the queue to the scorer if it is greater than the last one passed. */
+  final void updateMinCompetitiveScore() throws IOException {
+    if (pqTop.score > minCompetitiveScore) {
+      minCompetitiveScore = pqTop.score;
+      scorer.setMinCompetitiveScore(minCompetitiveScore);
+    }
+  }
 }
@@ -99,6 +99,21 @@ public abstract class Weight {
    */
   public abstract Scorer scorer(AtomicReaderContext context, Bits acceptDocs) throws IOException;
 
+  /**
+   * Returns an in-order {@link Scorer} for collecting only the top scoring
+   * documents.  Such a scorer may take {@link Scorer#setMinCompetitiveScore(float)}
+   * hints into account and skip documents that can't score higher than the
+   * given minimum, so the documents it returns are only a subset of the matches,
+   * but all returned documents have their exact score.
+   * <p>
+   * The default implementation returns {@link #scorer(AtomicReaderContext, Bits)}.
+   *
+   * @lucene.experimental
+   */
+  public Scorer topScoresScorer(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+    return scorer(context, acceptDocs);
+  }
+
   /**
    * Optional method, to return a {@link BulkScorer} to
    * score the query and send hits to a {@link Collector}.
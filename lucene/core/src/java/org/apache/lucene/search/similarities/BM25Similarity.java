@@ -236,6 +236,31 @@ public class BM25Similarity extends Similarity {
       float norm = norms == null ? k1 : cache[(byte)norms.get(doc) & 0xFF];
       return weightValue * freq / (freq + norm);
     }
+
+    @Override
+    public float maxScore(float maxFreq, long maxNorm) {
+      if (weightValue < 0) {
+        return Float.POSITIVE_INFINITY;
+      }
+      float norm = norms == null ? k1 : minCache()[(int) (maxNorm & 0xFF)];
+      return weightValue * maxFreq / (maxFreq + norm);
+    }
+
+    private float[] minCache;
+
+    // minCache[i] is the smallest cache entry for norms up to i, so it
+    // stays a bound even if decodeNormValue is not monotonic
+    private float[] minCache() {
+      if (minCache == null) {
+        float[] min = new float[cache.length];
+        min[0] = cache[0];
+        for (int i = 1; i < min.length; i++) {
+          min[i] = Math.min(min[i-1], cache[i]);
+        }
+        minCache = min;
+      }
+      return minCache;
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
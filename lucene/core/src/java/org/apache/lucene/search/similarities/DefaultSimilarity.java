@@ -97,6 +97,13 @@ public class DefaultSimilarity extends TFIDFSimilarity {
     return NORM_TABLE[(int) (norm & 0xFF)];  // & 0xFF maps negative bytes to positive above 127
   }
 
+  /** Decodes the norm: the decoded values grow with the unsigned value of the norm byte.
+   * @see #decodeNormValue(long) */
+  @Override
+  public float maxNormValue(long norm) {
+    return NORM_TABLE[(int) (norm & 0xFF)];
+  }
+
   /** Implemented as
    *  <code>state.getBoost()*lengthNorm(numTerms)</code>, where
    *  <code>numTerms</code> is {@link FieldInvertState#getLength()} if {@link
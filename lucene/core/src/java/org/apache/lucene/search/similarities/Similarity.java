@@ -198,6 +198,19 @@ public abstract class Similarity {
      */
     public abstract float score(int doc, float freq);
 
+    /**
+     * Returns an upper bound of {@link #score(int, float)} for any document whose
+     * frequency is at most <code>maxFreq</code> and whose norm is at most
+     * <code>maxNorm</code>, when norms are compared as unsigned values.
+     * The default implementation returns {@link Float#POSITIVE_INFINITY},
+     * meaning that no bound is known.
+     * @see org.apache.lucene.index.Impacts
+     * @lucene.experimental
+     */
+    public float maxScore(float maxFreq, long maxNorm) {
+      return Float.POSITIVE_INFINITY;
+    }
+
     /** Computes the amount of a sloppy phrase match, based on an edit distance. */
     public abstract float computeSlopFactor(int distance);
     
@@ -655,6 +655,18 @@ public abstract class TFIDFSimilarity extends Similarity {
 
   /** Encodes a normalization factor for storage in an index. */
   public abstract long encodeNormValue(float f);
+
+  /**
+   * Returns an upper bound of {@link #decodeNormValue(long)} over all norms that
+   * are not greater than <code>norm</code> when compared as unsigned values, or
+   * {@link Float#POSITIVE_INFINITY} if no bound is known, which is the default.
+   * Score bounds computed from this also assume that {@link #tf(float)} does not
+   * decrease with the frequency.
+   * @lucene.experimental
+   */
+  public float maxNormValue(long norm) {
+    return Float.POSITIVE_INFINITY;
+  }
  
   /** Computes the amount of a sloppy phrase match, based on an edit distance.
    * This value is summed for each sloppy phrase match in a document to form
@@ -715,6 +727,15 @@ public abstract class TFIDFSimilarity extends Similarity {
       
       return norms == null ? raw : raw * decodeNormValue(norms.get(doc));  // normalize for field
     }
+
+    @Override
+    public float maxScore(float maxFreq, long maxNorm) {
+      if (weightValue < 0) {
+        return Float.POSITIVE_INFINITY;
+      }
+      final float raw = tf(maxFreq) * weightValue;
+      return norms == null ? raw : raw * maxNormValue(maxNorm);
+    }
     
     @Override
     public float computeSlopFactor(int distance) {
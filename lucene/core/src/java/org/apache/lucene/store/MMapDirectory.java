@@ -20,6 +20,7 @@ package org.apache.lucene.store;
 import java.io.IOException;
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException; // javadoc @link
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
@@ -28,9 +29,13 @@ import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.PrivilegedExceptionAction;
 import java.security.PrivilegedActionException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.lang.reflect.Method;
 
+import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.store.ByteBufferIndexInput.BufferCleaner;
 import org.apache.lucene.util.Constants;
 
@@ -77,10 +82,18 @@ import org.apache.lucene.util.Constants;
  * blocked on IO. The channel will remain closed and subsequent access
  * to {@link MMapDirectory} will throw a {@link ClosedChannelException}. 
  * </p>
+ * <p>
+ * The access pattern of mapped files can be described to the operating system
+ * with an {@link Advisor} (see {@link #setAdvisor}): files read by merges are
+ * read sequentially and dropped from the page cache once read, terms dictionaries, postings and compound files are accessed randomly, and terms indexes, doc values and norms are worth reading
+ * ahead when they are opened (see {@link #getAdvice}).  Files with
+ * {@link #setPreloadExtensions preload extensions} are fully loaded on open.
  * @see <a href="http://blog.thetaphi.de/2012/07/use-lucenes-mmapdirectory-on-64bit.html">Blog post about MMapDirectory</a>
  */
 public class MMapDirectory extends FSDirectory {
   private boolean useUnmapHack = UNMAP_SUPPORTED;
+  private volatile Advisor advisor;
+  private volatile Set<String> preloadExtensions = Collections.emptySet();
   /** 
    * Default max chunk size.
    * @see #MMapDirectory(File, LockFactory, int)
@@ -188,6 +201,114 @@ public class MMapDirectory extends FSDirectory {
     return 1 << chunkSizePower;
   }
 
+  /** Access pattern advice for mapped files, as in madvise(2). */
+  public static enum Advice {
+    /** No special treatment */
+    NORMAL,
+    /** Pages will be read in order: read ahead aggressively, and free pages once read */
+    SEQUENTIAL,
+    /** Pages will be read in random order: don't read ahead */
+    RANDOM,
+    /** Pages will be needed soon: read them ahead */
+    WILLNEED,
+    /**
+     * Pages won't be needed anymore.  For a mapped buffer this only releases the
+     * process' mapping of the pages, it doesn't drop them from the page cache; for
+     * a file (see {@link Advisor#adviseFile}) it drops them.
+     */
+    DONTNEED
+  }
+
+  /**
+   * Passes {@link Advice} about mapped buffers and files to the operating system.  Java has
+   * no API for this, see <code>NativeMMapAdvisor</code> in lucene/misc for an implementation
+   * that calls madvise(2) and posix_fadvise(2).
+   * <p>
+   * Advice is only a hint: if it fails, the file is opened all the same.
+   */
+  public static interface Advisor {
+    /**
+     * Advises about the pages of a mapped buffer.  An {@link IOException} is ignored
+     * by {@link MMapDirectory}, implementations that want failures reported should
+     * log them.
+     */
+    void advise(ByteBuffer buffer, Advice advice) throws IOException;
+
+    /**
+     * Advises about the cached pages of a whole file, as in posix_fadvise(2).  Only
+     * {@link Advice#DONTNEED} is given, when an input opened by a merge is closed.
+     */
+    void adviseFile(File file, Advice advice) throws IOException;
+  }
+
+  /**
+   * Sets the {@link Advisor} for the buffers of files opened from now on, or null
+   * (the default) to not give any advice.
+   * @see #getAdvice
+   */
+  public void setAdvisor(Advisor advisor) {
+    this.advisor = advisor;
+  }
+
+  /**
+   * Returns the {@link Advisor}, or null if no advice is given.
+   * @see #setAdvisor
+   */
+  public Advisor getAdvisor() {
+    return advisor;
+  }
+
+  /**
+   * Sets the extensions of the files that are loaded into physical memory when they
+   * are opened for searching, e.g. <code>"tip"</code> for the terms index.  Loading
+   * touches every page of the file, so this makes the first searches on new segments
+   * faster at the expense of opening them.  No files are loaded by default.
+   */
+  public void setPreloadExtensions(Set<String> extensions) {
+    this.preloadExtensions = Collections.unmodifiableSet(new HashSet<>(extensions));
+  }
+
+  /**
+   * Returns the extensions of the files that are loaded when opened.
+   * @see #setPreloadExtensions
+   */
+  public Set<String> getPreloadExtensions() {
+    return preloadExtensions;
+  }
+
+  /**
+   * Returns the {@link Advice} for a file opened in the given context, or null for
+   * none.  Merges read whole files once, so they are read {@link Advice#SEQUENTIAL
+   * sequentially}, and their pages are dropped with {@link Advice#DONTNEED} when the
+   * input is closed.  Terms dictionaries and postings are read {@link Advice#RANDOM
+   * randomly}, and terms indexes, doc values and norms are {@link Advice#WILLNEED
+   * read ahead}.  Compound files are read randomly too, since most of their bytes
+   * are postings and stored fields.
+   */
+  protected Advice getAdvice(String name, IOContext context) {
+    if (context.context == IOContext.Context.MERGE || context == IOContext.READONCE) {
+      return Advice.SEQUENTIAL;
+    }
+    final String extension = IndexFileNames.getExtension(name);
+    if (extension == null) {
+      return null;
+    }
+    switch (extension) {
+      case "tim":
+      case "doc":
+      case "pos":
+      case "pay":
+      case IndexFileNames.COMPOUND_FILE_EXTENSION:
+        return Advice.RANDOM;
+      case "tip":
+      case "dvd":
+      case "nvd":
+        return Advice.WILLNEED;
+      default:
+        return null;
+    }
+  }
+
   /** Creates an IndexInput for the file with the given name. */
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
@@ -196,9 +317,67 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + file.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
-      return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, useUnmap ? CLEANER : null, useUnmap);
+      final ByteBuffer[] buffers = map(resourceDescription, c, 0, c.size());
+
+      final Advisor advisor = this.advisor;
+      final Advice advice = advisor == null ? null : getAdvice(name, context);
+      if (advice != null) {
+        for (ByteBuffer buffer : buffers) {
+          advise(advisor, buffer, advice);
+        }
+      }
+      if (context.context != IOContext.Context.MERGE && preloadExtensions.contains(IndexFileNames.getExtension(name))) {
+        for (ByteBuffer buffer : buffers) {
+          ((MappedByteBuffer) buffer).load();
+        }
+      }
+
+      BufferCleaner cleaner = useUnmap ? CLEANER : null;
+      if (advisor != null && context.context == IOContext.Context.MERGE) {
+        cleaner = new DontNeedCleaner(cleaner, advisor, file, buffers[buffers.length - 1]);
+      }
+      return ByteBufferIndexInput.newInstance(resourceDescription, buffers,
+          c.size(), chunkSizePower, cleaner, useUnmap);
+    }
+  }
+
+  /** Drops the pages of a file read by a merge from the page cache, once its last buffer is freed */
+  private static final class DontNeedCleaner implements BufferCleaner {
+    private final BufferCleaner delegate;
+    private final Advisor advisor;
+    private final File file;
+    private final ByteBuffer lastBuffer;
+
+    DontNeedCleaner(BufferCleaner delegate, Advisor advisor, File file, ByteBuffer lastBuffer) {
+      this.delegate = delegate;
+      this.advisor = advisor;
+      this.file = file;
+      this.lastBuffer = lastBuffer;
+    }
+
+    @Override
+    public void freeBuffer(ByteBufferIndexInput parent, ByteBuffer buffer) throws IOException {
+      if (delegate != null) {
+        delegate.freeBuffer(parent, buffer);
+      }
+      if (buffer == lastBuffer) {
+        try {
+          advisor.adviseFile(file, Advice.DONTNEED);
+        } catch (IOException e) {
+          // only a hint
+        }
+      }
+    }
+  }
+
+  private static void advise(Advisor advisor, ByteBuffer buffer, Advice advice) {
+    // the last buffer may be empty
+    if (buffer.capacity() > 0) {
+      try {
+        advisor.advise(buffer, advice);
+      } catch (IOException e) {
+        // only a hint: the buffers are mapped and usable without it
+      }
     }
   }
 
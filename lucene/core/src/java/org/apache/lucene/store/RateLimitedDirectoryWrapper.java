@@ -56,8 +56,18 @@ public final class RateLimitedDirectoryWrapper extends FilterDirectory {
     in.copy(to, src, dest, context);
   }
   
-  private RateLimiter getRateLimiter(IOContext.Context context) {
-    assert context != null;
+  /**
+   * Returns the rate limiter used for IO performed with the given
+   * {@link IOContext.Context context}, or <code>null</code> if there is no limit.
+   * 
+   * @throws IllegalArgumentException
+   *           if context is <code>null</code>
+   * @lucene.experimental
+   */
+  public RateLimiter getRateLimiter(IOContext.Context context) {
+    if (context == null) {
+      throw new IllegalArgumentException("Context must not be null");
+    }
     return contextRateLimiters[context.ordinal()];
   }
   
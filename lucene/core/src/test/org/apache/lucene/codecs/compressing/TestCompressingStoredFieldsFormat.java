@@ -18,6 +18,12 @@ package org.apache.lucene.codecs.compressing;
  */
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
@@ -26,11 +32,17 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.BaseStoredFieldsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.MockDirectoryWrapper;
+import org.apache.lucene.util.TestUtil;
 import org.junit.Test;
 
 import com.carrotsearch.randomizedtesting.annotations.Repeat;
@@ -98,4 +110,123 @@ public class TestCompressingStoredFieldsFormat extends BaseStoredFieldsFormatTes
       dir.close();
     }
   }
+
+  public void testChunkCache() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwConf.setCodec(CompressingCodec.randomInstance(random()));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwConf);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.YES));
+      if (random().nextInt(5) != 0) {
+        int maxLength = random().nextInt(20) == 0 ? 50000 : 200;
+        doc.add(new StoredField("body", TestUtil.randomRealisticUnicodeString(random(), 0, maxLength)));
+      }
+      doc.add(new IntField("num", random().nextInt(), Store.YES));
+      iw.addDocument(doc);
+    }
+    iw.close();
+
+    HeapChunkCache cache = new HeapChunkCache();
+    Directory cachingDir = new CachingDirectory(dir, cache);
+
+    // merges don't cache chunks, even if they have to decompress documents
+    iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwConf.setCodec(CompressingCodec.randomInstance(random()));
+    IndexWriter writer = new IndexWriter(cachingDir, iwConf);
+    writer.forceMerge(1);
+    writer.close();
+    assertTrue(cache.chunks.isEmpty());
+
+    DirectoryReader ir = DirectoryReader.open(dir);
+    String[] expected = new String[ir.maxDoc()];
+    for (int i = 0; i < ir.maxDoc(); ++i) {
+      expected[i] = ir.document(i).toString();
+    }
+    ir.close();
+    assertTrue(cache.chunks.isEmpty());
+
+    ir = DirectoryReader.open(cachingDir);
+    for (int iter = 0; iter < 2; ++iter) {
+      for (int i = 0; i < ir.maxDoc(); ++i) {
+        int docID = random().nextInt(ir.maxDoc());
+        assertEquals(expected[docID], ir.document(docID).toString());
+        Document projected = ir.document(docID, Collections.singleton("id"));
+        assertEquals(1, projected.getFields().size());
+        assertEquals(ir.document(docID).get("id"), projected.get("id"));
+      }
+    }
+    assertTrue(cache.hits > 0);
+    ir.close();
+    // closed segments are purged
+    assertTrue(cache.chunks.isEmpty());
+    dir.close();
+  }
+
+  private static class CachingDirectory extends FilterDirectory implements StoredFieldsChunkCache.Provider {
+    private final StoredFieldsChunkCache cache;
+
+    CachingDirectory(Directory in, StoredFieldsChunkCache cache) {
+      super(in);
+      this.cache = cache;
+    }
+
+    @Override
+    public StoredFieldsChunkCache getStoredFieldsChunkCache() {
+      return cache;
+    }
+  }
+
+  /** Keeps all chunks on the heap */
+  private static class HeapChunkCache extends StoredFieldsChunkCache {
+    final Map<List<Object>,byte[]> chunks = new HashMap<>();
+    int hits;
+
+    @Override
+    public synchronized Chunk get(Object key, long startPointer) {
+      final byte[] bytes = chunks.get(Arrays.asList(key, startPointer));
+      if (bytes == null) {
+        return null;
+      }
+      hits++;
+      return new Chunk() {
+        int pos;
+
+        @Override
+        public void seek(int pos) {
+          this.pos = pos;
+        }
+
+        @Override
+        public void release() {}
+
+        @Override
+        public byte readByte() {
+          return bytes[pos++];
+        }
+
+        @Override
+        public void readBytes(byte[] b, int offset, int len) {
+          System.arraycopy(bytes, pos, b, offset, len);
+          pos += len;
+        }
+      };
+    }
+
+    @Override
+    public synchronized void put(Object key, long startPointer, byte[] bytes, int length) {
+      chunks.put(Arrays.<Object>asList(key, startPointer), Arrays.copyOf(bytes, length));
+    }
+
+    @Override
+    public synchronized void purge(Object key) {
+      for (Iterator<List<Object>> it = chunks.keySet().iterator(); it.hasNext(); ) {
+        if (it.next().get(0) == key) {
+          it.remove();
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,110 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+public class TestPresetDictionaryCompressionMode extends AbstractTestCompressionMode {
+
+  BytesRef dictionary;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    mode = random().nextBoolean()
+        ? CompressionMode.FAST_WITH_DICTIONARY
+        : CompressionMode.HIGH_COMPRESSION_WITH_DICTIONARY;
+    final byte[] dict = randomArray(random().nextInt(10) == 0 ? 0 : random().nextInt(1 << 14), random().nextInt(4));
+    // wrap with an offset to make sure it is taken into account
+    final int offset = random().nextInt(5);
+    final byte[] bytes = new byte[offset + dict.length];
+    System.arraycopy(dict, 0, bytes, offset, dict.length);
+    dictionary = new BytesRef(bytes, offset, dict.length);
+  }
+
+  private PresetDictionaryCompressionMode dictionaryMode() {
+    return (PresetDictionaryCompressionMode) mode;
+  }
+
+  @Override
+  byte[] compress(byte[] decompressed, int off, int len) throws IOException {
+    return compress(dictionaryMode().newCompressor(dictionary), decompressed, off, len);
+  }
+
+  @Override
+  byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+    return decompress(dictionaryMode().newDecompressor(dictionary), compressed, originalLength);
+  }
+
+  @Override
+  byte[] decompress(byte[] compressed, int originalLength, int offset, int length) throws IOException {
+    Decompressor decompressor = dictionaryMode().newDecompressor(dictionary);
+    final BytesRef bytes = new BytesRef();
+    decompressor.decompress(new ByteArrayDataInput(compressed), originalLength, offset, length, bytes);
+    return Arrays.copyOfRange(bytes.bytes, bytes.offset, bytes.offset + bytes.length);
+  }
+
+  public void testReuse() throws IOException {
+    final Compressor compressor = dictionaryMode().newCompressor(dictionary);
+    final Decompressor decompressor = dictionaryMode().newDecompressor(dictionary);
+    final int iterations = atLeast(10);
+    for (int i = 0; i < iterations; ++i) {
+      final byte[] decompressed = randomArray();
+      final byte[] compressed = compress(compressor, decompressed, 0, decompressed.length);
+      final Decompressor d = random().nextBoolean() ? decompressor : decompressor.clone();
+      assertArrayEquals(decompressed, decompress(d, compressed, decompressed.length));
+    }
+  }
+
+  public void testDictionaryHelps() throws IOException {
+    // short documents that share most of their content
+    final String prefix = "{\"title\":\"" + TestUtil.randomSimpleString(random(), 20, 30) + "\",\"category\":\"";
+    final byte[] doc = (prefix + TestUtil.randomSimpleString(random(), 5, 10) + "\"}").getBytes("UTF-8");
+    final byte[] sample = (prefix + TestUtil.randomSimpleString(random(), 5, 10) + "\"}").getBytes("UTF-8");
+    final BytesRef dict = dictionaryMode().buildDictionary(sample, new int[] { sample.length }, 1);
+    assertEquals(new BytesRef(sample), dict);
+
+    final byte[] withDictionary = compress(dictionaryMode().newCompressor(dict), doc, 0, doc.length);
+    final byte[] withoutDictionary = compress(dictionaryMode().newCompressor(), doc, 0, doc.length);
+    assertTrue(withDictionary.length + " >= " + withoutDictionary.length, withDictionary.length < withoutDictionary.length);
+    assertArrayEquals(doc, decompress(dictionaryMode().newDecompressor(dict), withDictionary, doc.length));
+    assertArrayEquals(doc, decompress(dictionaryMode().newDecompressor(), withoutDictionary, doc.length));
+  }
+
+  public void testBuildDictionary() {
+    final int numDocs = TestUtil.nextInt(random(), 1, 200);
+    final int[] endOffsets = new int[numDocs];
+    int length = 0;
+    for (int i = 0; i < numDocs; ++i) {
+      length += random().nextInt(random().nextBoolean() ? 100 : 2000);
+      endOffsets[i] = length;
+    }
+    final byte[] docs = randomArray(length, 255);
+    final BytesRef dict = dictionaryMode().buildDictionary(docs, endOffsets, numDocs);
+    assertTrue(dict.length <= dictionaryMode().getMaxDictionaryLength());
+    if (length <= dictionaryMode().getMaxDictionaryLength()) {
+      assertEquals(new BytesRef(docs, 0, length), dict);
+    }
+    assertEquals(0, dictionaryMode().buildDictionary(new byte[0], new int[0], 0).length);
+  }
+}
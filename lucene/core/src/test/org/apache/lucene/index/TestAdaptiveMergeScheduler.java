@@ -0,0 +1,158 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.RateLimitedDirectoryWrapper;
+import org.apache.lucene.store.RateLimiter;
+import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestAdaptiveMergeScheduler extends LuceneTestCase {
+
+  private static class CollectingInfoStream extends InfoStream {
+    final List<String> messages = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void message(String component, String message) {
+      if ("CMS".equals(component)) {
+        messages.add(message);
+      }
+    }
+
+    @Override
+    public boolean isEnabled(String component) {
+      return "CMS".equals(component);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private void indexWithMerges(Directory dir, AdaptiveMergeScheduler ams, InfoStream infoStream) throws IOException {
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(2);
+    iwc.setMergePolicy(newLogMergePolicy(2));
+    iwc.setMergeScheduler(ams);
+    if (infoStream != null) {
+      iwc.setInfoStream(infoStream);
+    }
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new TextField("body", "document number " + i + " " + random().nextInt(), Field.Store.YES));
+      w.addDocument(doc);
+    }
+    w.close();
+  }
+
+  public void testThrottledMerges() throws Exception {
+    RateLimitedDirectoryWrapper dir = new RateLimitedDirectoryWrapper(newDirectory());
+    dir.setMaxWriteMBPerSec(1000.0, IOContext.Context.MERGE);
+    final RateLimiter original = dir.getRateLimiter(IOContext.Context.MERGE);
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler();
+    CollectingInfoStream infoStream = new CollectingInfoStream();
+    indexWithMerges(dir, ams, infoStream);
+
+    assertTrue(ams.getCompletedMerges() > 0);
+    assertEquals(0, ams.getRunningMergeCount());
+    // closing the writer closed the scheduler, which gave the directory its limiter back
+    assertFalse(ams.isThrottling());
+    assertSame(original, dir.getRateLimiter(IOContext.Context.MERGE));
+    assertEquals(1000.0, dir.getMaxWriteMBPerSec(IOContext.Context.MERGE), 0.0);
+    assertTrue(ams.getRateIncreases() + ams.getRateDecreases() > 0);
+    assertTrue(ams.getMBPerSec() >= ams.getMinMBPerSec());
+    assertTrue(ams.getMBPerSec() <= ams.getMaxMBPerSec());
+
+    boolean attached = false, merged = false;
+    for (String message : infoStream.messages) {
+      attached |= message.startsWith("adaptive throttling of merges at 1000.0 MB/sec");
+      merged |= message.startsWith("merge done");
+    }
+    assertTrue(infoStream.messages.toString(), attached);
+    assertTrue(infoStream.messages.toString(), merged);
+    dir.close();
+  }
+
+  public void testSearchLatencyLowersRate() throws Exception {
+    RateLimitedDirectoryWrapper dir = new RateLimitedDirectoryWrapper(newDirectory());
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler();
+    // never stall, so that searches have priority
+    ams.setMaxMergesAndThreads(1000, 1);
+    ams.setMBPerSecBounds(1, 10000);
+    ams.setMBPerSec(10000);
+    ams.setUpdateIntervalMillis(0);
+    ams.setSearchLatencySignal(new AdaptiveMergeScheduler.SearchLatencySignal() {
+      @Override
+      public double getLatencyRatio() {
+        return 3.0;
+      }
+    });
+    indexWithMerges(dir, ams, null);
+
+    assertTrue(ams.getRateDecreases() > 0);
+    assertEquals(0, ams.getRateIncreases());
+    assertTrue(ams.getMBPerSec() < 10000);
+    dir.close();
+  }
+
+  public void testNotThrottled() throws Exception {
+    Directory dir = newDirectory();
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler();
+    indexWithMerges(dir, ams, null);
+    assertFalse(ams.isThrottling());
+    assertTrue(ams.getCompletedMerges() > 0);
+    assertEquals(0, ams.getBytesWritten());
+    dir.close();
+  }
+
+  public void testBounds() {
+    AdaptiveMergeScheduler ams = new AdaptiveMergeScheduler();
+    ams.setMBPerSec(1e6);
+    assertEquals(AdaptiveMergeScheduler.DEFAULT_MAX_MB_PER_SEC, ams.getMBPerSec(), 0.0);
+    ams.setMBPerSecBounds(10, 20);
+    assertEquals(20, ams.getMBPerSec(), 0.0);
+    ams.setMinMBPerSec(30);
+    assertEquals(30, ams.getMinMBPerSec(), 0.0);
+    assertEquals(30, ams.getMaxMBPerSec(), 0.0);
+    assertEquals(30, ams.getMBPerSec(), 0.0);
+    try {
+      ams.setMBPerSecBounds(0, 10);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    try {
+      ams.setMBPerSecBounds(10, 5);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.lucene41.Lucene41ImpactsPostingsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBlockMaxDisjunctionScorer extends LuceneTestCase {
+
+  private static final String[] TERMS = { "a", "b", "c", "d", "e", "f" };
+
+  public void testSameTopHits() throws Exception {
+    Similarity sim = random().nextBoolean() ? new DefaultSimilarity() : new BM25Similarity();
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysPostingsFormat(new Lucene41ImpactsPostingsFormat()));
+    iwc.setSimilarity(sim);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < TERMS.length; j++) {
+        // terms have very different document frequencies
+        if (random().nextInt(1 << j) == 0) {
+          int freq = 1 + random().nextInt(random().nextInt(10) == 0 ? 20 : 3);
+          for (int k = 0; k < freq; k++) {
+            sb.append(TERMS[j]).append(' ');
+          }
+        }
+      }
+      int filler = random().nextInt(30);
+      for (int k = 0; k < filler; k++) {
+        sb.append("z ");
+      }
+      doc.add(newTextField("body", sb.toString(), Field.Store.NO));
+      w.addDocument(doc);
+      if (random().nextInt(500) == 0) {
+        w.commit();
+      }
+    }
+    if (random().nextBoolean()) {
+      w.deleteDocuments(new Term("body", "f"));
+    }
+    IndexReader reader = DirectoryReader.open(w, true);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(sim);
+
+    // a frequent term and a boosted rare one: once the top hit has the rare term, the documents
+    // that only have the frequent one can't compete and must be skipped
+    BooleanQuery rare = new BooleanQuery();
+    rare.add(new TermQuery(new Term("body", "a")), BooleanClause.Occur.SHOULD);
+    TermQuery e = new TermQuery(new Term("body", "e"));
+    e.setBoost(5);
+    rare.add(e, BooleanClause.Occur.SHOULD);
+    int skipped = assertSameTopHits(searcher, rare, 1) ? 1 : 0;
+
+    int iters = atLeast(30);
+    for (int iter = 0; iter < iters; iter++) {
+      BooleanQuery query = new BooleanQuery(random().nextBoolean());
+      int numClauses = TestUtil.nextInt(random(), 2, TERMS.length);
+      for (int i = 0; i < numClauses; i++) {
+        TermQuery tq = new TermQuery(new Term("body", TERMS[random().nextInt(TERMS.length)]));
+        if (random().nextBoolean()) {
+          tq.setBoost(0.1f + 5 * random().nextFloat());
+        }
+        query.add(tq, BooleanClause.Occur.SHOULD);
+      }
+      int n = TestUtil.nextInt(random(), 1, 100);
+      if (assertSameTopHits(searcher, query, n)) {
+        skipped++;
+      }
+    }
+    assertTrue("no query skipped any document", skipped > 0);
+
+    reader.close();
+    dir.close();
+  }
+
+  /** Returns true if the top scores scorer collected fewer hits than the exhaustive search */
+  private boolean assertSameTopHits(IndexSearcher searcher, Query query, int n) throws IOException {
+    TopDocs expected = searcher.search(query, n);
+
+    Weight weight = searcher.createNormalizedWeight(query);
+    TopScoreDocCollector collector = TopScoreDocCollector.create(n, true);
+    for (AtomicReaderContext ctx : searcher.getIndexReader().leaves()) {
+      collector.setNextReader(ctx);
+      Scorer scorer = weight.topScoresScorer(ctx, ctx.reader().getLiveDocs());
+      if (scorer == null) {
+        continue;
+      }
+      collector.setScorer(scorer);
+      for (int doc = scorer.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.nextDoc()) {
+        collector.collect(doc);
+      }
+    }
+    TopDocs actual = collector.topDocs();
+
+    assertTrue(actual.totalHits <= expected.totalHits);
+    assertEquals(query.toString(), expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      // summation order may differ, so only compare scores: docs with nearly equal scores may swap
+      float expectedScore = expected.scoreDocs[i].score;
+      assertEquals(query.toString(), expectedScore, actual.scoreDocs[i].score, Math.abs(expectedScore) * 1e-5f);
+      Explanation expl = searcher.explain(query, actual.scoreDocs[i].doc);
+      assertEquals(query.toString(), expl.getValue(), actual.scoreDocs[i].score, Math.abs(expl.getValue()) * 1e-5f);
+    }
+    return actual.totalHits < expected.totalHits;
+  }
+}
@@ -19,6 +19,21 @@ package org.apache.lucene.store;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.lucene410.Lucene410Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.MMapDirectory.Advice;
 
 /**
  * Tests MMapDirectory
@@ -27,6 +42,134 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
 
   @Override
   protected Directory getDirectory(File path) throws IOException {
-    return new MMapDirectory(path);
+    MMapDirectory dir = new MMapDirectory(path);
+    if (random().nextBoolean()) {
+      dir.setAdvisor(new CheckingAdvisor());
+    }
+    if (random().nextBoolean()) {
+      dir.setPreloadExtensions(Collections.singleton("tip"));
+    }
+    return dir;
+  }
+
+  public void testAdvice() throws Exception {
+    final Set<String> merged = Collections.synchronizedSet(new HashSet<String>());
+    final Set<String> random = Collections.synchronizedSet(new HashSet<String>());
+    final Set<String> willNeed = Collections.synchronizedSet(new HashSet<String>());
+    final Set<Advice> given = Collections.synchronizedSet(new HashSet<Advice>());
+    final Set<String> dropped = Collections.synchronizedSet(new HashSet<String>());
+    MMapDirectory dir = new MMapDirectory(createTempDir("testAdvice")) {
+      @Override
+      protected Advice getAdvice(String name, IOContext context) {
+        Advice advice = super.getAdvice(name, context);
+        String extension = name.substring(name.indexOf('.') + 1);
+        if (context.context == IOContext.Context.MERGE) {
+          assertEquals(Advice.SEQUENTIAL, advice);
+          merged.add(extension);
+        } else if (advice == Advice.RANDOM) {
+          random.add(extension);
+        } else if (advice == Advice.WILLNEED) {
+          willNeed.add(extension);
+        }
+        return advice;
+      }
+    };
+    dir.setAdvisor(new CheckingAdvisor() {
+      @Override
+      public void advise(ByteBuffer buffer, Advice advice) {
+        super.advise(buffer, advice);
+        given.add(advice);
+      }
+
+      @Override
+      public void adviseFile(File file, Advice advice) {
+        super.adviseFile(file, advice);
+        assertEquals(Advice.DONTNEED, advice);
+        String name = file.getName();
+        dropped.add(name.substring(name.indexOf('.') + 1));
+      }
+    });
+    dir.setPreloadExtensions(Collections.singleton("tip"));
+
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(new Lucene410Codec());
+    iwc.setReaderPooling(false);
+    iwc.setUseCompoundFile(false);
+    TieredMergePolicy mp = new TieredMergePolicy();
+    mp.setNoCFSRatio(0.0);
+    iwc.setMergePolicy(mp);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(newTextField("body", "some text " + i, Field.Store.YES));
+      doc.add(new NumericDocValuesField("dv", i));
+      w.addDocument(doc);
+      if (i % 25 == 0) {
+        w.commit();
+      }
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(100, reader.numDocs());
+    reader.close();
+    dir.close();
+
+    assertTrue(merged.contains("tim"));
+    assertTrue(given.contains(Advice.SEQUENTIAL));
+    assertFalse(given.contains(Advice.DONTNEED));
+    assertTrue(dropped.contains("tim"));
+    assertTrue(merged.containsAll(dropped));
+    assertTrue(random.contains("tim"));
+    assertTrue(random.contains("doc"));
+    assertTrue(willNeed.contains("tip"));
+    assertTrue(willNeed.contains("dvd"));
+    assertTrue(willNeed.contains("nvd"));
+  }
+
+  public void testCompoundFileAdvice() throws Exception {
+    MMapDirectory dir = new MMapDirectory(createTempDir("testCompoundFileAdvice"));
+    assertEquals(Advice.RANDOM, dir.getAdvice("_0.cfs", IOContext.DEFAULT));
+    assertEquals(Advice.SEQUENTIAL, dir.getAdvice("_0.cfs", IOContext.READONCE));
+    dir.close();
+  }
+
+  public void testFailingAdvice() throws Exception {
+    MMapDirectory dir = new MMapDirectory(createTempDir("testFailingAdvice"));
+    dir.setAdvisor(new MMapDirectory.Advisor() {
+      @Override
+      public void advise(ByteBuffer buffer, Advice advice) throws IOException {
+        throw new IOException("advice failed");
+      }
+
+      @Override
+      public void adviseFile(File file, Advice advice) throws IOException {
+        throw new IOException("advice failed");
+      }
+    });
+    IndexOutput out = dir.createOutput("test.tim", newIOContext(random()));
+    out.writeInt(42);
+    out.close();
+    // advice is only a hint
+    IndexInput in = dir.openInput("test.tim", newIOContext(random()));
+    assertEquals(42, in.readInt());
+    in.close();
+    in = dir.openInput("test.tim", new IOContext(new MergeInfo(1, 4, false, 1)));
+    assertEquals(42, in.readInt());
+    in.close();
+    dir.close();
+  }
+
+  private static class CheckingAdvisor implements MMapDirectory.Advisor {
+    @Override
+    public void advise(ByteBuffer buffer, Advice advice) {
+      assertTrue(buffer.capacity() > 0);
+    }
+
+    @Override
+    public void adviseFile(File file, Advice advice) {
+      assertTrue(file.exists());
+    }
   }
 }
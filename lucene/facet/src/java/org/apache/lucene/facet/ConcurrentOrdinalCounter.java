@@ -0,0 +1,147 @@
+package org.apache.lucene.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * Tallies per-ordinal counts of the hits of all segments,
+ * counting segments concurrently when an {@link
+ * ExecutorService} is provided.
+ *
+ * <p>Each segment is counted by its own task.  Tasks count
+ * into arrays that are private to the thread that runs
+ * them, so that increments are plain array writes, and
+ * these arrays are summed once all segments are counted.
+ * When there are fewer hits than ordinals, summing these
+ * arrays would cost more than the counting itself, so
+ * segments are rather counted by the current thread.
+ *
+ * <p>Only the counting runs in the tasks: objects that are
+ * private to the calling thread, such as the top-level
+ * {@link org.apache.lucene.index.SortedSetDocValues} of a
+ * {@link org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState},
+ * must not be used by {@link #count}.
+ *
+ * @lucene.experimental */
+public abstract class ConcurrentOrdinalCounter {
+
+  /** Sole constructor. */
+  protected ConcurrentOrdinalCounter() {
+  }
+
+  /** Adds the counts of the ordinals of the hits of one
+   *  segment to {@code counts}.  Must be thread-safe:
+   *  several segments may be counted at once, each into its
+   *  own array. */
+  protected abstract void count(MatchingDocs hits, int[] counts) throws IOException;
+
+  /** Adds the counts of all segments to {@code counts}.  If
+   *  {@code executor} is null, there is only one segment
+   *  with hits, or there are fewer hits than ordinals,
+   *  segments are counted by the current thread, directly
+   *  into {@code counts}. */
+  public final void countAll(List<MatchingDocs> matchingDocs, final int[] counts, ExecutorService executor) throws IOException {
+    final List<MatchingDocs> segments = new ArrayList<>();
+    long totalHits = 0;
+    for (MatchingDocs hits : matchingDocs) {
+      if (hits.totalHits > 0) {
+        segments.add(hits);
+        totalHits += hits.totalHits;
+      }
+    }
+
+    if (executor == null || segments.size() <= 1 || totalHits < counts.length) {
+      for (MatchingDocs hits : segments) {
+        count(hits, counts);
+      }
+      return;
+    }
+
+    // at most one array per thread of the executor: a task
+    // reuses the array of a task that completed before it
+    final Queue<int[]> arrays = new ConcurrentLinkedQueue<>();
+    final List<Callable<Void>> tasks = new ArrayList<>();
+    for (final MatchingDocs hits : segments) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          int[] array = arrays.poll();
+          if (array == null) {
+            array = new int[counts.length];
+          }
+          try {
+            count(hits, array);
+          } finally {
+            arrays.add(array);
+          }
+          return null;
+        }
+      });
+    }
+    invokeAll(executor, tasks);
+    for (int[] array : arrays) {
+      for (int ord = 0; ord < counts.length; ord++) {
+        counts[ord] += array[ord];
+      }
+    }
+  }
+
+  /** Runs all tasks and waits for their completion,
+   *  rethrowing the exception of the first task that
+   *  failed. */
+  private static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) throws IOException {
+    final List<Future<T>> futures;
+    try {
+      futures = executor.invokeAll(tasks);
+    } catch (InterruptedException ie) {
+      throw new ThreadInterruptedException(ie);
+    }
+    final List<T> results = new ArrayList<>(futures.size());
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        } else {
+          throw new RuntimeException(cause);
+        }
+      }
+    }
+    return results;
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.lucene.facet;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
@@ -74,6 +75,10 @@ public class DrillSideways {
   /** {@link FacetsConfig} passed to constructor. */
   protected final FacetsConfig config;
 
+  /** {@link ExecutorService} passed to constructor; can be
+   *  null. */
+  protected final ExecutorService executor;
+
   /** Create a new {@code DrillSideways} instance. */
   public DrillSideways(IndexSearcher searcher, FacetsConfig config, TaxonomyReader taxoReader) {
     this(searcher, config, taxoReader, null);
@@ -90,34 +95,33 @@ public class DrillSideways {
    *  SortedSetDocValuesFacetField} and others were indexed
    *  with {@link FacetField}. */
   public DrillSideways(IndexSearcher searcher, FacetsConfig config, TaxonomyReader taxoReader, SortedSetDocValuesReaderState state) {
+    this(searcher, config, taxoReader, state, null);
+  }
+
+  /** Create a new {@code DrillSideways} instance that
+   *  counts the segments of the drill down and drill
+   *  sideways hits concurrently with the provided {@link
+   *  ExecutorService}, if it is not null.  The facets
+   *  themselves are still built by the calling thread. */
+  public DrillSideways(IndexSearcher searcher, FacetsConfig config, TaxonomyReader taxoReader, SortedSetDocValuesReaderState state, ExecutorService executor) {
     this.searcher = searcher;
     this.config = config;
     this.taxoReader = taxoReader;
     this.state = state;
+    this.executor = executor;
   }
 
   /** Subclass can override to customize per-dim Facets
    *  impl. */
   protected Facets buildFacetsResult(FacetsCollector drillDowns, FacetsCollector[] drillSideways, String[] drillSidewaysDims) throws IOException {
 
-    Facets drillDownFacets;
+    Facets drillDownFacets = buildFacets(drillDowns);
     Map<String,Facets> drillSidewaysFacets = new HashMap<>();
 
-    if (taxoReader != null) {
-      drillDownFacets = new FastTaxonomyFacetCounts(taxoReader, config, drillDowns);
-      if (drillSideways != null) {
-        for(int i=0;i<drillSideways.length;i++) {
-          drillSidewaysFacets.put(drillSidewaysDims[i],
-                                  new FastTaxonomyFacetCounts(taxoReader, config, drillSideways[i]));
-        }
-      }
-    } else {
-      drillDownFacets = new SortedSetDocValuesFacetCounts(state, drillDowns);
-      if (drillSideways != null) {
-        for(int i=0;i<drillSideways.length;i++) {
-          drillSidewaysFacets.put(drillSidewaysDims[i],
-                                  new SortedSetDocValuesFacetCounts(state, drillSideways[i]));
-        }
+    if (drillSideways != null) {
+      for(int i=0;i<drillSideways.length;i++) {
+        drillSidewaysFacets.put(drillSidewaysDims[i],
+                                buildFacets(drillSideways[i]));
       }
     }
 
@@ -128,6 +132,17 @@ public class DrillSideways {
     }
   }
 
+  /** Builds the counts of these hits on the current
+   *  thread, counting their segments concurrently if an
+   *  {@link ExecutorService} was provided. */
+  private Facets buildFacets(FacetsCollector fc) throws IOException {
+    if (taxoReader != null) {
+      return new FastTaxonomyFacetCounts(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, taxoReader, config, fc, executor);
+    } else {
+      return new SortedSetDocValuesFacetCounts(state, fc, executor);
+    }
+  }
+
   /**
    * Search, collecting hits with a {@link Collector}, and
    * computing drill down and sideways counts.
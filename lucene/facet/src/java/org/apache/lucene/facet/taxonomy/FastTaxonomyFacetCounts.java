@@ -19,7 +19,9 @@ package org.apache.lucene.facet.taxonomy;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
+import org.apache.lucene.facet.ConcurrentOrdinalCounter;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
 import org.apache.lucene.facet.FacetsConfig;
@@ -39,46 +41,70 @@ public class FastTaxonomyFacetCounts extends IntTaxonomyFacets {
     this(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, taxoReader, config, fc);
   }
 
+  /** Create {@code FastTaxonomyFacetCounts}, which also
+   *  counts all facet labels, counting segments
+   *  concurrently with the provided {@link
+   *  ExecutorService}. */
+  public FastTaxonomyFacetCounts(TaxonomyReader taxoReader, FacetsConfig config, FacetsCollector fc, ExecutorService executor) throws IOException {
+    this(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, taxoReader, config, fc, executor);
+  }
+
   /** Create {@code FastTaxonomyFacetCounts}, using the
    *  specified {@code indexFieldName} for ordinals.  Use
    *  this if you had set {@link
    *  FacetsConfig#setIndexFieldName} to change the index
    *  field name for certain dimensions. */
   public FastTaxonomyFacetCounts(String indexFieldName, TaxonomyReader taxoReader, FacetsConfig config, FacetsCollector fc) throws IOException {
+    this(indexFieldName, taxoReader, config, fc, null);
+  }
+
+  /** Create {@code FastTaxonomyFacetCounts}, using the
+   *  specified {@code indexFieldName} for ordinals, and
+   *  counting segments concurrently with the provided
+   *  {@link ExecutorService}, if it is not null.  See
+   *  {@link ConcurrentOrdinalCounter}. */
+  public FastTaxonomyFacetCounts(String indexFieldName, TaxonomyReader taxoReader, FacetsConfig config, FacetsCollector fc, ExecutorService executor) throws IOException {
     super(indexFieldName, taxoReader, config);
-    count(fc.getMatchingDocs());
+    count(fc.getMatchingDocs(), executor);
   }
 
-  private final void count(List<MatchingDocs> matchingDocs) throws IOException {
-    for(MatchingDocs hits : matchingDocs) {
-      BinaryDocValues dv = hits.context.reader().getBinaryDocValues(indexFieldName);
-      if (dv == null) { // this reader does not have DocValues for the requested category list
-        continue;
+  private final void count(List<MatchingDocs> matchingDocs, ExecutorService executor) throws IOException {
+    new ConcurrentOrdinalCounter() {
+      @Override
+      protected void count(MatchingDocs hits, int[] counts) throws IOException {
+        countSegment(hits, counts);
       }
+    }.countAll(matchingDocs, values, executor);
 
-      DocIdSetIterator docs = hits.bits.iterator();
+    rollup();
+  }
+
+  private void countSegment(MatchingDocs hits, int[] counts) throws IOException {
+    BinaryDocValues dv = hits.context.reader().getBinaryDocValues(indexFieldName);
+    if (dv == null) { // this reader does not have DocValues for the requested category list
+      return;
+    }
+
+    DocIdSetIterator docs = hits.bits.iterator();
       
-      int doc;
-      while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-        final BytesRef bytesRef = dv.get(doc);
-        byte[] bytes = bytesRef.bytes;
-        int end = bytesRef.offset + bytesRef.length;
-        int ord = 0;
-        int offset = bytesRef.offset;
-        int prev = 0;
-        while (offset < end) {
-          byte b = bytes[offset++];
-          if (b >= 0) {
-            prev = ord = ((ord << 7) | b) + prev;
-            ++values[ord];
-            ord = 0;
-          } else {
-            ord = (ord << 7) | (b & 0x7F);
-          }
+    int doc;
+    while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+      final BytesRef bytesRef = dv.get(doc);
+      byte[] bytes = bytesRef.bytes;
+      int end = bytesRef.offset + bytesRef.length;
+      int ord = 0;
+      int offset = bytesRef.offset;
+      int prev = 0;
+      while (offset < end) {
+        byte b = bytes[offset++];
+        if (b >= 0) {
+          prev = ord = ((ord << 7) | b) + prev;
+          ++counts[ord];
+          ord = 0;
+        } else {
+          ord = (ord << 7) | (b & 0x7F);
         }
       }
     }
-
-    rollup();
   }
 }
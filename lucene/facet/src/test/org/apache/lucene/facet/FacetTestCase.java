@@ -25,6 +25,9 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.facet.taxonomy.CachedOrdinalsReader;
 import org.apache.lucene.facet.taxonomy.DocValuesOrdinalsReader;
@@ -35,6 +38,7 @@ import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 @SuppressCodecs("Lucene3x")
@@ -59,6 +63,22 @@ public abstract class FacetTestCase extends LuceneTestCase {
     return facets;
   }
 
+  /** Returns null, or an executor to count facets
+   *  concurrently; see {@link #shutdown}. */
+  protected ExecutorService newRandomExecutor() {
+    if (random().nextBoolean()) {
+      return null;
+    }
+    return Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("FacetTestCase"));
+  }
+
+  protected void shutdown(ExecutorService executor) throws InterruptedException {
+    if (executor != null) {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
   protected String[] getRandomTokens(int count) {
     String[] tokens = new String[count];
     for(int i=0;i<tokens.length;i++) {
@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
@@ -571,6 +572,8 @@ public class TestDrillSideways extends FacetTestCase {
     // NRT open
     TaxonomyReader tr = new DirectoryTaxonomyReader(tw);
 
+    ExecutorService executor = newRandomExecutor();
+
     int numIters = atLeast(10);
 
     for(int iter=0;iter<numIters;iter++) {
@@ -711,7 +714,9 @@ public class TestDrillSideways extends FacetTestCase {
       Sort sort = new Sort(new SortField("id", SortField.Type.STRING));
       DrillSideways ds;
       if (doUseDV) {
-        ds = new DrillSideways(s, config, sortedSetDVState);
+        ds = new DrillSideways(s, config, null, sortedSetDVState, executor);
+      } else if (executor != null && random().nextBoolean()) {
+        ds = new DrillSideways(s, config, tr, null, executor);
       } else {
         ds = new DrillSideways(s, config, tr) {
             @Override
@@ -757,6 +762,7 @@ public class TestDrillSideways extends FacetTestCase {
       }
     }
 
+    shutdown(executor);
     IOUtils.close(r, tr, w, tw, d, td);
   }
 
@@ -25,6 +25,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
@@ -697,6 +698,8 @@ public class TestTaxonomyFacetCounts extends FacetTestCase {
     // NRT open
     TaxonomyReader tr = new DirectoryTaxonomyReader(tw);
 
+    ExecutorService executor = newRandomExecutor();
+
     int iters = atLeast(100);
     for(int iter=0;iter<iters;iter++) {
       String searchToken = tokens[random().nextInt(tokens.length)];
@@ -705,7 +708,12 @@ public class TestTaxonomyFacetCounts extends FacetTestCase {
       }
       FacetsCollector fc = new FacetsCollector();
       FacetsCollector.search(searcher, new TermQuery(new Term("content", searchToken)), 10, fc);
-      Facets facets = getTaxonomyFacetCounts(tr, config, fc);
+      Facets facets;
+      if (executor != null && random().nextBoolean()) {
+        facets = new FastTaxonomyFacetCounts(tr, config, fc, executor);
+      } else {
+        facets = getTaxonomyFacetCounts(tr, config, fc);
+      }
 
       // Slow, yet hopefully bug-free, faceting:
       @SuppressWarnings({"rawtypes","unchecked"}) Map<String,Integer>[] expectedCounts = new HashMap[numDims];
@@ -753,6 +761,7 @@ public class TestTaxonomyFacetCounts extends FacetTestCase {
       assertEquals(expected, actual);
     }
 
+    shutdown(executor);
     IOUtils.close(w, tw, searcher.getIndexReader(), tr, indexDir, taxoDir);
   }
 }
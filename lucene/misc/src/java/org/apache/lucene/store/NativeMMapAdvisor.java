@@ -0,0 +1,80 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link MMapDirectory.Advisor} that passes advice about mapped buffers to the
+ * operating system with madvise(2), and about files with posix_fadvise(2), see
+ * {@link MMapDirectory#setAdvisor}.
+ * <p>
+ * This requires the NativePosixUtil library (see {@link NativePosixUtil}), use
+ * {@link #isAvailable()} to check that it could be loaded.
+ *
+ * @lucene.experimental
+ */
+public final class NativeMMapAdvisor implements MMapDirectory.Advisor {
+
+  private static final boolean AVAILABLE;
+  static {
+    boolean available;
+    try {
+      Class.forName(NativePosixUtil.class.getName());
+      available = true;
+    } catch (Throwable t) {
+      // UnsatisfiedLinkError, SecurityException, ...
+      available = false;
+    }
+    AVAILABLE = available;
+  }
+
+  /** Returns true if the native library could be loaded. */
+  public static boolean isAvailable() {
+    return AVAILABLE;
+  }
+
+  @Override
+  public void advise(ByteBuffer buffer, MMapDirectory.Advice advice) throws IOException {
+    if (NativePosixUtil.madvise(buffer, code(advice)) != 0) {
+      throw new IOException("madvise failed for advice " + advice);
+    }
+  }
+
+  @Override
+  public void adviseFile(File file, MMapDirectory.Advice advice) throws IOException {
+    try (FileInputStream in = new FileInputStream(file)) {
+      // a length of 0 is up to the end of the file
+      NativePosixUtil.advise(in.getFD(), 0, 0, code(advice));
+    }
+  }
+
+  private static int code(MMapDirectory.Advice advice) {
+    switch (advice) {
+      case NORMAL:     return NativePosixUtil.NORMAL;
+      case SEQUENTIAL: return NativePosixUtil.SEQUENTIAL;
+      case RANDOM:     return NativePosixUtil.RANDOM;
+      case WILLNEED:   return NativePosixUtil.WILLNEED;
+      case DONTNEED:   return NativePosixUtil.DONTNEED;
+      default: throw new AssertionError(advice);
+    }
+  }
+}
@@ -46,7 +46,7 @@ public final class NativePosixUtil {
   public static void advise(FileDescriptor fd, long offset, long len, int advise) throws IOException {
     final int code = posix_fadvise(fd, offset, len, advise);
     if (code != 0) {
-      throw new RuntimeException("posix_fadvise failed code=" + code);
+      throw new IOException("posix_fadvise failed code=" + code);
     }
   }
 }
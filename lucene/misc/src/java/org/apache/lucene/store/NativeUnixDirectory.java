@@ -23,8 +23,16 @@ import java.io.IOException;
 import java.io.FileInputStream;
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 import org.apache.lucene.store.Directory; // javadoc
 import org.apache.lucene.store.IOContext.Context;
@@ -54,6 +62,10 @@ import org.apache.lucene.store.IOContext.Context;
  * <code>lucene/build/native</code>) onto your dynamic
  * linker search path.
  *
+ * <p>Files that can't be opened with O_DIRECT, e.g. on file
+ * systems that don't support it, are read and written through
+ * the delegate instead (see {@link #getFallbackCount()}).
+ *
  * <p><b>WARNING</b>: this code is very new and quite easily
  * could contain horrible bugs.  For example, here's one
  * known issue: if you use seek in <code>IndexOutput</code>, and then
@@ -85,8 +97,14 @@ public class NativeUnixDirectory extends FSDirectory {
 
   private final int mergeBufferSize;
   private final long minBytesDirect;
+  private final boolean directReads;
   private final Directory delegate;
 
+  private final AtomicLong directOutputCount = new AtomicLong();
+  private final AtomicLong directBytesWritten = new AtomicLong();
+  private final AtomicLong directInputCount = new AtomicLong();
+  private final AtomicLong fallbackCount = new AtomicLong();
+
   /** Create a new NIOFSDirectory for the named location.
    * 
    * @param path the path of the directory
@@ -96,18 +114,37 @@ public class NativeUnixDirectory extends FSDirectory {
    *   reading, smaller than this will
    *   not use direct IO.  See {@link
    *   #DEFAULT_MIN_BYTES_DIRECT}
+   * @param directReads If false, merges only write with
+   *   direct IO, and read through the delegate
    * @param delegate fallback Directory for non-merges
    * @throws IOException If there is a low-level I/O error
    */
-  public NativeUnixDirectory(File path, int mergeBufferSize, long minBytesDirect, Directory delegate) throws IOException {
+  public NativeUnixDirectory(File path, int mergeBufferSize, long minBytesDirect, boolean directReads, Directory delegate) throws IOException {
     super(path, delegate.getLockFactory());
-    if ((mergeBufferSize & ALIGN) != 0) {
+    if ((mergeBufferSize & (ALIGN-1)) != 0) {
       throw new IllegalArgumentException("mergeBufferSize must be 0 mod " + ALIGN + " (got: " + mergeBufferSize + ")");
     }
     this.mergeBufferSize = mergeBufferSize;
     this.minBytesDirect = minBytesDirect;
+    this.directReads = directReads;
     this.delegate = delegate;
   }
+
+  /** Create a new NIOFSDirectory for the named location.
+   * 
+   * @param path the path of the directory
+   * @param mergeBufferSize Size of buffer to use for
+   *    merging.  See {@link #DEFAULT_MERGE_BUFFER_SIZE}.
+   * @param minBytesDirect Merges, or files to be opened for
+   *   reading, smaller than this will
+   *   not use direct IO.  See {@link
+   *   #DEFAULT_MIN_BYTES_DIRECT}
+   * @param delegate fallback Directory for non-merges
+   * @throws IOException If there is a low-level I/O error
+   */
+  public NativeUnixDirectory(File path, int mergeBufferSize, long minBytesDirect, Directory delegate) throws IOException {
+    this(path, mergeBufferSize, minBytesDirect, true, delegate);
+  }
   
   /** Create a new NIOFSDirectory for the named location.
    * 
@@ -119,13 +156,48 @@ public class NativeUnixDirectory extends FSDirectory {
     this(path, DEFAULT_MERGE_BUFFER_SIZE, DEFAULT_MIN_BYTES_DIRECT, delegate);
   }  
 
+  /** Returns the delegate Directory */
+  public Directory getDelegate() {
+    return delegate;
+  }
+
+  /** Number of files written with direct IO */
+  public long getDirectOutputCount() {
+    return directOutputCount.get();
+  }
+
+  /** Number of bytes written with direct IO, by outputs that were closed */
+  public long getDirectBytesWritten() {
+    return directBytesWritten.get();
+  }
+
+  /** Number of files read with direct IO */
+  public long getDirectInputCount() {
+    return directInputCount.get();
+  }
+
+  /** Number of files that should have used direct IO, but
+   *  went through the delegate because they couldn't be
+   *  opened with O_DIRECT (e.g. on tmpfs) */
+  public long getFallbackCount() {
+    return fallbackCount.get();
+  }
+
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
     ensureOpen();
-    if (context.context != Context.MERGE || context.mergeInfo.estimatedMergeBytes < minBytesDirect || fileLength(name) < minBytesDirect) {
+    if (!directReads || context.context != Context.MERGE || context.mergeInfo.estimatedMergeBytes < minBytesDirect || fileLength(name) < minBytesDirect) {
       return delegate.openInput(name, context);
     } else {
-      return new NativeUnixIndexInput(new File(getDirectory(), name), mergeBufferSize);
+      final IndexInput in;
+      try {
+        in = new NativeUnixIndexInput(new File(getDirectory(), name), mergeBufferSize);
+      } catch (IOException ioe) {
+        fallbackCount.incrementAndGet();
+        return delegate.openInput(name, context);
+      }
+      directInputCount.incrementAndGet();
+      return in;
     }
   }
 
@@ -136,7 +208,71 @@ public class NativeUnixDirectory extends FSDirectory {
       return delegate.createOutput(name, context);
     } else {
       ensureCanWrite(name);
-      return new NativeUnixIndexOutput(new File(getDirectory(), name), mergeBufferSize);
+      final IndexOutput out;
+      try {
+        out = new NativeUnixIndexOutput(this, name, mergeBufferSize);
+      } catch (IOException ioe) {
+        fallbackCount.incrementAndGet();
+        return delegate.createOutput(name, context);
+      }
+      directOutputCount.incrementAndGet();
+      return out;
+    }
+  }
+
+  /** Syncs the files written through the delegate, and those written with direct IO */
+  @Override
+  public void sync(Collection<String> names) throws IOException {
+    ensureOpen();
+    delegate.sync(names);
+    super.sync(names);
+  }
+
+  @Override
+  public void deleteFile(String name) throws IOException {
+    ensureOpen();
+    staleFiles.remove(name);
+    delegate.deleteFile(name);
+  }
+
+  /** Allocates a direct buffer whose address is a multiple
+   *  of ALIGN, as required by O_DIRECT */
+  private static ByteBuffer allocateAligned(int size) {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(size + (int) ALIGN);
+    final long address = address(buffer);
+    final int offset = (int) ((ALIGN - (address & (ALIGN-1))) & (ALIGN-1));
+    buffer.position(offset);
+    buffer.limit(offset + size);
+    return buffer.slice();
+  }
+
+  private static final Field ADDRESS_FIELD;
+  static {
+    Field field;
+    try {
+      field = AccessController.doPrivileged(new PrivilegedExceptionAction<Field>() {
+        @Override
+        public Field run() throws Exception {
+          final Field field = Buffer.class.getDeclaredField("address");
+          field.setAccessible(true);
+          return field;
+        }
+      });
+    } catch (PrivilegedActionException | SecurityException e) {
+      // not HotSpot-like; buffers are then used as they are allocated
+      field = null;
+    }
+    ADDRESS_FIELD = field;
+  }
+
+  private static long address(ByteBuffer buffer) {
+    if (ADDRESS_FIELD == null) {
+      return 0;
+    }
+    try {
+      return ADDRESS_FIELD.getLong(buffer);
+    } catch (IllegalAccessException e) {
+      return 0;
     }
   }
 
@@ -145,6 +281,9 @@ public class NativeUnixDirectory extends FSDirectory {
     private final FileOutputStream fos;
     private final FileChannel channel;
     private final int bufferSize;
+    private final CRC32 crc = new CRC32();
+    private final NativeUnixDirectory dir;
+    private final String name;
 
     //private final File path;
 
@@ -153,14 +292,16 @@ public class NativeUnixDirectory extends FSDirectory {
     private long fileLength;
     private boolean isOpen;
 
-    public NativeUnixIndexOutput(File path, int bufferSize) throws IOException {
+    public NativeUnixIndexOutput(NativeUnixDirectory dir, String name, int bufferSize) throws IOException {
       //this.path = path;
-      final FileDescriptor fd = NativePosixUtil.open_direct(path.toString(), false);
+      final FileDescriptor fd = NativePosixUtil.open_direct(new File(dir.getDirectory(), name).toString(), false);
       fos = new FileOutputStream(fd);
       //fos = new FileOutputStream(path);
       channel = fos.getChannel();
-      buffer = ByteBuffer.allocateDirect(bufferSize);
+      buffer = allocateAligned(bufferSize);
       this.bufferSize = bufferSize;
+      this.dir = dir;
+      this.name = name;
       isOpen = true;
     }
 
@@ -168,6 +309,7 @@ public class NativeUnixDirectory extends FSDirectory {
     public void writeByte(byte b) throws IOException {
       assert bufferPos == buffer.position(): "bufferPos=" + bufferPos + " vs buffer.position()=" + buffer.position();
       buffer.put(b);
+      crc.update(b);
       if (++bufferPos == bufferSize) {
         dump();
       }
@@ -175,6 +317,7 @@ public class NativeUnixDirectory extends FSDirectory {
 
     @Override
     public void writeBytes(byte[] src, int offset, int len) throws IOException {
+      crc.update(src, offset, len);
       int toWrite = len;
       while(true) {
         final int left = bufferSize - bufferPos;
@@ -238,7 +381,7 @@ public class NativeUnixDirectory extends FSDirectory {
 
     @Override
     public long getChecksum() throws IOException {
-      throw new UnsupportedOperationException("this directory currently does not work at all!");
+      return crc.getValue();
     }
 
     @Override
@@ -251,6 +394,7 @@ public class NativeUnixDirectory extends FSDirectory {
           try {
             //System.out.println("direct close set len=" + fileLength + " vs " + channel.size() + " path=" + path);
             channel.truncate(fileLength);
+            dir.directBytesWritten.addAndGet(fileLength);
             //System.out.println("  now: " + channel.size());
           } finally {
             try {
@@ -258,6 +402,8 @@ public class NativeUnixDirectory extends FSDirectory {
             } finally {
               fos.close();
               //System.out.println("  final len=" + path.length());
+              // synced by the next commit like the files of the delegate
+              dir.onIndexOutputClosed(name);
             }
           }
         }
@@ -282,7 +428,7 @@ public class NativeUnixDirectory extends FSDirectory {
       fis = new FileInputStream(fd);
       channel = fis.getChannel();
       this.bufferSize = bufferSize;
-      buffer = ByteBuffer.allocateDirect(bufferSize);
+      buffer = allocateAligned(bufferSize);
       isOpen = true;
       isClone = false;
       filePos = -bufferSize;
@@ -296,7 +442,7 @@ public class NativeUnixDirectory extends FSDirectory {
       this.fis = null;
       channel = other.channel;
       this.bufferSize = other.bufferSize;
-      buffer = ByteBuffer.allocateDirect(bufferSize);
+      buffer = allocateAligned(bufferSize);
       filePos = -bufferSize;
       bufferPos = bufferSize;
       isOpen = true;
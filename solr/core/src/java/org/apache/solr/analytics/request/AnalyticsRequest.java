@@ -35,6 +35,7 @@ public class AnalyticsRequest {
   private List<FieldFacetRequest> fieldFacets;
   private List<RangeFacetRequest> rangeFacets;
   private List<QueryFacetRequest> queryFacets;
+  private boolean approximate;
   
   public AnalyticsRequest(String name) {
     this.name = name;
@@ -94,6 +95,18 @@ public class AnalyticsRequest {
     return queryFacets;
   }
   
+  /**
+   * @param approximate Whether unique counts, and medians and percentiles of numbers and dates, are
+   * estimated with fixed-size sketches rather than computed from all collected values.
+   */
+  public void setApproximate(boolean approximate) {
+    this.approximate = approximate;
+  }
+  
+  public boolean isApproximate() {
+    return approximate;
+  }
+  
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder("<AnalyticsRequest name=" + name + ">");
@@ -43,6 +43,7 @@ public class AnalyticsRequestFactory implements AnalyticsParams {
 
   public static final Pattern statPattern = Pattern.compile("^o(?:lap)?\\.([^\\.]+)\\.(?:"+EXPRESSION+")\\.([^\\.]+)$", Pattern.CASE_INSENSITIVE);
   public static final Pattern hiddenStatPattern = Pattern.compile("^o(?:lap)?\\.([^\\.]+)\\.(?:"+HIDDEN_EXPRESSION+")\\.([^\\.]+)$", Pattern.CASE_INSENSITIVE);
+  public static final Pattern approximatePattern = Pattern.compile("^o(?:lap)?\\.([^\\.]+)\\.(?:"+APPROXIMATE+")$", Pattern.CASE_INSENSITIVE);
   public static final Pattern fieldFacetPattern = Pattern.compile("^o(?:lap)?\\.([^\\.]+)\\.(?:"+FIELD_FACET+")$", Pattern.CASE_INSENSITIVE);
   public static final Pattern fieldFacetParamPattern = Pattern.compile("^o(?:lap)?\\.([^\\.]+)\\.(?:"+FIELD_FACET+")\\.([^\\.]+)\\.("+LIMIT+"|"+OFFSET+"|"+HIDDEN+"|"+SHOW_MISSING+"|"+SORT_STATISTIC+"|"+SORT_DIRECTION+")$", Pattern.CASE_INSENSITIVE);
   public static final Pattern rangeFacetPattern = Pattern.compile("^o(?:lap)?\\.([^\\.]+)\\.(?:"+RANGE_FACET+")$", Pattern.CASE_INSENSITIVE);
@@ -74,6 +75,8 @@ public class AnalyticsRequestFactory implements AnalyticsParams {
         m = hiddenStatPattern.matcher(paramSequence);
         if (m.matches()) {
           makeHiddenExpression(requestMap,m.group(1),m.group(2),params.get(param));
+        } else if ((m = approximatePattern.matcher(paramSequence)).matches()) {
+          setApproximate(requestMap,m.group(1),params.getBool(param,DEFAULT_APPROXIMATE));
         } else {
           // Check if field facet
           m = fieldFacetPattern.matcher(paramSequence);
@@ -273,6 +276,15 @@ public class AnalyticsRequestFactory implements AnalyticsParams {
     }
   }
 
+  private static void setApproximate(Map<String, AnalyticsRequest> requestMap, String requestName, boolean approximate) {
+    AnalyticsRequest req = requestMap.get(requestName);
+    if (req == null) {
+      req = new AnalyticsRequest(requestName);
+      requestMap.put(requestName, req);
+    }
+    req.setApproximate(approximate);
+  }
+
   private static void makeHiddenExpression(Map<String, AnalyticsRequest> requestMap, String requestName, String expressionName, String expression) {
     AnalyticsRequest req = requestMap.get(requestName);
     if (req == null) {
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.analytics.statistics;
+
+import java.util.Date;
+
+import org.apache.solr.util.stats.TDigest;
+
+/**
+ * <code>ApproximateMedianStatsCollector</code> estimates the median in fixed memory, with a {@link TDigest}.
+ */
+public class ApproximateMedianStatsCollector extends AbstractDelegatingStatsCollector{
+
+  private final TDigest digest = new TDigest();
+  protected double median;
+  
+  public ApproximateMedianStatsCollector(StatsCollector delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public Comparable getStat(String stat) {
+    if (stat.equals("median")) {
+      return new Double(median);
+    }
+    return delegate.getStat(stat);
+  }
+  
+  public void compute(){
+    delegate.compute();
+    median = digest.size() == 0 ? 0 : digest.quantile(.5);
+  }
+  
+  @Override
+  public void collect(int doc) {
+    super.collect(doc);
+    if (value.exists) {
+      digest.add(function.doubleVal(doc));
+    }
+  }
+}
+class DateApproximateMedianStatsCollector extends ApproximateMedianStatsCollector{
+  
+  public DateApproximateMedianStatsCollector(StatsCollector delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public Comparable getStat(String stat) {
+    if (stat.equals("median")) {
+      return new Date((long)median);
+    }
+    return delegate.getStat(stat);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.analytics.statistics;
+
+import java.util.Date;
+
+import org.apache.solr.util.stats.TDigest;
+
+/**
+ * <code>ApproximatePercentileStatsCollector</code> estimates a list of percentiles of numeric values
+ * in fixed memory, with a {@link TDigest}.
+ */
+public class ApproximatePercentileStatsCollector extends AbstractDelegatingStatsCollector{
+  private final TDigest digest = new TDigest();
+  protected final double[] percentiles;
+  protected final String[] percentileNames;
+  protected double[] results;
+  
+  public ApproximatePercentileStatsCollector(StatsCollector delegate, double[] percentiles, String[] percentileNames) {
+    super(delegate);
+    this.percentiles = percentiles;
+    this.percentileNames = percentileNames;
+  }
+
+  @Override
+  public Comparable getStat(String stat) {
+    for( int i=0; i < percentiles.length; i++ ){
+      if (stat.equals(percentileNames[i])) {
+        if (results!=null) {
+          return toComparable(results[i]);
+        } else {
+          return null;
+        }
+      }
+    }
+    return delegate.getStat(stat);
+  }
+
+  protected Comparable toComparable(double percentile) {
+    return new Double(percentile);
+  }
+
+  public void compute(){
+    delegate.compute();
+    if (digest.size()>0) {
+      results = new double[percentiles.length];
+      for (int i = 0; i < percentiles.length; i++) {
+        results[i] = digest.quantile(percentiles[i]);
+      }
+    } else {
+      results = null;
+    }
+  }
+  
+  public void collect(int doc) {
+    super.collect(doc);
+    if (value.exists) {
+      digest.add(function.doubleVal(doc));
+    }
+  }
+
+}
+class DateApproximatePercentileStatsCollector extends ApproximatePercentileStatsCollector{
+  
+  public DateApproximatePercentileStatsCollector(StatsCollector delegate, double[] percentiles, String[] percentileNames) {
+    super(delegate, percentiles, percentileNames);
+  }
+
+  @Override
+  protected Comparable toComparable(double percentile) {
+    return new Date(Math.round(percentile));
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.analytics.statistics;
+
+import java.util.Date;
+
+import org.apache.solr.util.stats.HyperLogLog;
+
+/**
+ * <code>ApproximateUniqueStatsCollector</code> estimates the number of unique values in fixed memory,
+ * with a {@link HyperLogLog} sketch.
+ */
+public class ApproximateUniqueStatsCollector extends AbstractDelegatingStatsCollector{
+  private final HyperLogLog uniqueValues = new HyperLogLog();
+  
+  public ApproximateUniqueStatsCollector(StatsCollector delegate) {
+    super(delegate);
+  }
+  
+  @Override
+  public void collect(int doc) {
+    super.collect(doc);
+    if (value.exists) {
+      Object object = value.toObject();
+      if (object instanceof Number) {
+        uniqueValues.add(HyperLogLog.hash(Double.doubleToLongBits(((Number) object).doubleValue())));
+      } else if (object instanceof Date) {
+        uniqueValues.add(HyperLogLog.hash(((Date) object).getTime()));
+      } else {
+        uniqueValues.add(HyperLogLog.hash(object.toString()));
+      }
+    }
+  }
+
+  @Override
+  public Comparable getStat(String stat) {
+    if (stat.equals("unique")) {
+      return new Long(uniqueValues.cardinality());
+    }
+    return delegate.getStat(stat);
+  }
+
+  @Override
+  public void compute() {
+    delegate.compute();
+  }
+}
@@ -51,11 +51,13 @@ import org.apache.solr.analytics.util.valuesource.FilterFieldSource;
 import org.apache.solr.analytics.util.valuesource.LogDoubleFunction;
 import org.apache.solr.analytics.util.valuesource.MultiDateFunction;
 import org.apache.solr.analytics.util.valuesource.MultiDoubleFunction;
+import org.apache.solr.analytics.util.valuesource.MultiStringFunction;
 import org.apache.solr.analytics.util.valuesource.MultiplyDoubleFunction;
 import org.apache.solr.analytics.util.valuesource.NegateDoubleFunction;
 import org.apache.solr.analytics.util.valuesource.PowDoubleFunction;
 import org.apache.solr.analytics.util.valuesource.ReverseStringFunction;
 import org.apache.solr.analytics.util.valuesource.SingleDoubleFunction;
+import org.apache.solr.analytics.util.valuesource.SingleStringFunction;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.schema.FieldType;
@@ -192,11 +194,17 @@ public class StatsCollectorSupplierFactory {
     final boolean[] dateBools = new boolean[statsArr.length];
     final double[][] percsArr = new double[statsArr.length][];
     final String[][] percsNames = new String[statsArr.length][];
+    final boolean approximate = request.isApproximate();
+    final boolean[] sketchBools = new boolean[statsArr.length];
     for (int count = 0; count < sourceArr.length; count++) {
       uniqueBools[count] = statsArr[count].contains(AnalyticsParams.STAT_UNIQUE);
       medianBools[count] = statsArr[count].contains(AnalyticsParams.STAT_MEDIAN);
       numericBools[count] = statsArr[count].contains(AnalyticsParams.STAT_SUM)||statsArr[count].contains(AnalyticsParams.STAT_SUM_OF_SQUARES)||statsArr[count].contains(AnalyticsParams.STAT_MEAN)||statsArr[count].contains(AnalyticsParams.STAT_STANDARD_DEVIATION);
       dateBools[count] = (sourceArr[count] instanceof DateFieldSource) | (sourceArr[count] instanceof MultiDateFunction) | (sourceArr[count] instanceof ConstDateSource);
+      // medians and percentiles of strings cannot be sketched
+      ValueSource root = sourceArr[count] instanceof FilterFieldSource ? ((FilterFieldSource)sourceArr[count]).getRootSource() : sourceArr[count];
+      boolean stringBool = (root instanceof BytesRefFieldSource) | (root instanceof SingleStringFunction) | (root instanceof MultiStringFunction) | (root instanceof ConstStringSource);
+      sketchBools[count] = approximate && !stringBool;
       Set<Integer> ps = collectorPercs.get(sourceArr[count].toString());
       if (ps!=null) {
         percsArr[count] = new double[ps.size()];
@@ -215,21 +223,21 @@ public class StatsCollectorSupplierFactory {
         for (int count = 0; count < statsArr.length; count++) {
           if(numericBools[count]){
             StatsCollector sc = new NumericStatsCollector(sourceArr[count], statsArr[count]);
-            if(uniqueBools[count]) sc = new UniqueStatsCollector(sc);
-            if(medianBools[count]) sc = new MedianStatsCollector(sc);
-            if(percsArr[count]!=null) sc = new PercentileStatsCollector(sc,percsArr[count],percsNames[count]);
+            if(uniqueBools[count]) sc = approximate ? new ApproximateUniqueStatsCollector(sc) : new UniqueStatsCollector(sc);
+            if(medianBools[count]) sc = sketchBools[count] ? new ApproximateMedianStatsCollector(sc) : new MedianStatsCollector(sc);
+            if(percsArr[count]!=null) sc = sketchBools[count] ? new ApproximatePercentileStatsCollector(sc,percsArr[count],percsNames[count]) : new PercentileStatsCollector(sc,percsArr[count],percsNames[count]);
             collectors[count]=sc;
           } else if (dateBools[count]) {
             StatsCollector sc = new MinMaxStatsCollector(sourceArr[count], statsArr[count]);
-            if(uniqueBools[count]) sc = new UniqueStatsCollector(sc);
-            if(medianBools[count]) sc = new DateMedianStatsCollector(sc);
-            if(percsArr[count]!=null) sc = new PercentileStatsCollector(sc,percsArr[count],percsNames[count]);
+            if(uniqueBools[count]) sc = approximate ? new ApproximateUniqueStatsCollector(sc) : new UniqueStatsCollector(sc);
+            if(medianBools[count]) sc = sketchBools[count] ? new DateApproximateMedianStatsCollector(sc) : new DateMedianStatsCollector(sc);
+            if(percsArr[count]!=null) sc = sketchBools[count] ? new DateApproximatePercentileStatsCollector(sc,percsArr[count],percsNames[count]) : new PercentileStatsCollector(sc,percsArr[count],percsNames[count]);
            collectors[count]=sc;
           } else {
             StatsCollector sc = new MinMaxStatsCollector(sourceArr[count], statsArr[count]);
-            if(uniqueBools[count]) sc = new UniqueStatsCollector(sc);
-            if(medianBools[count]) sc = new MedianStatsCollector(sc);
-            if(percsArr[count]!=null) sc = new PercentileStatsCollector(sc,percsArr[count],percsNames[count]);
+            if(uniqueBools[count]) sc = approximate ? new ApproximateUniqueStatsCollector(sc) : new UniqueStatsCollector(sc);
+            if(medianBools[count]) sc = sketchBools[count] ? new ApproximateMedianStatsCollector(sc) : new MedianStatsCollector(sc);
+            if(percsArr[count]!=null) sc = sketchBools[count] ? new ApproximatePercentileStatsCollector(sc,percsArr[count],percsNames[count]) : new PercentileStatsCollector(sc,percsArr[count],percsNames[count]);
             collectors[count]=sc;
           }
         }
@@ -35,6 +35,7 @@ public interface AnalyticsParams {
 
   public static final String EXPRESSION = "s|stat|statistic";
   public static final String HIDDEN_EXPRESSION = "hs|hiddenstat|hiddenstatistic";
+  public static final String APPROXIMATE = "approx|approximate";
 
   public static final String FIELD_FACET = "ff|fieldfacet";
   public static final String LIMIT = "l|limit";
@@ -63,6 +64,7 @@ public interface AnalyticsParams {
   public static final boolean DEFAULT_HIDDEN = false;
   public static final boolean DEFAULT_HARDEND = false;
   public static final boolean DEFAULT_SHOW_MISSING = false;
+  public static final boolean DEFAULT_APPROXIMATE = false;
   public static final FacetRangeInclude DEFAULT_INCLUDE = FacetRangeInclude.LOWER;
   public static final FacetRangeOther DEFAULT_OTHER = FacetRangeOther.NONE;
   
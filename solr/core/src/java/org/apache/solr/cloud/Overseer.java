@@ -48,6 +48,7 @@ import org.apache.solr.common.cloud.Replica;
 import org.apache.solr.common.cloud.RoutingRule;
 import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.TimeRangeRouter;
 import org.apache.solr.common.cloud.ZkCoreNodeProps;
 import org.apache.solr.common.cloud.ZkNodeProps;
 import org.apache.solr.common.cloud.ZkStateReader;
@@ -79,6 +80,7 @@ public class Overseer implements Closeable {
   public static final int STATE_UPDATE_DELAY = 1500;  // delay between cloud state updates
   public static final String CREATESHARD = "createshard";
   public static final String UPDATESHARDSTATE = "updateshardstate";
+  public static final String UPDATESHARDVALUERANGE = "updateshardvaluerange";
 
   private static Logger log = LoggerFactory.getLogger(Overseer.class);
 
@@ -382,6 +384,8 @@ public class Overseer implements Closeable {
         clusterState = createShard(clusterState, message);
       } else if (UPDATESHARDSTATE.equals(operation))  {
         clusterState = updateShardState(clusterState, message);
+      } else if (UPDATESHARDVALUERANGE.equals(operation))  {
+        clusterState = updateShardValueRange(clusterState, message);
       } else if (OverseerCollectionProcessor.CREATECOLLECTION.equals(operation)) {
          clusterState = buildCollection(clusterState, message);
       } else if(ADDREPLICA.isEqual(operation)){
@@ -456,7 +460,8 @@ public class Overseer implements Closeable {
 
       ArrayList<String> shardNames = new ArrayList<>();
 
-      if(ImplicitDocRouter.NAME.equals( message.getStr("router.name",DocRouter.DEFAULT_NAME))){
+      String routerName = message.getStr("router.name",DocRouter.DEFAULT_NAME);
+      if(ImplicitDocRouter.NAME.equals(routerName) || TimeRangeRouter.NAME.equals(routerName)){
         getShardNames(shardNames,message.getStr("shards",DocRouter.DEFAULT_NAME));
       } else {
         int numShards = message.getInt(ZkStateReader.NUM_SHARDS_PROP, -1);
@@ -492,6 +497,25 @@ public class Overseer implements Closeable {
       return clusterState;
     }
 
+    private ClusterState updateShardValueRange(ClusterState clusterState, ZkNodeProps message) {
+      String collection = message.getStr(ZkStateReader.COLLECTION_PROP);
+      if (!checkCollectionKeyExistence(message)) return clusterState;
+      String shard = message.getStr(ZkStateReader.SHARD_ID_PROP);
+
+      Slice slice = clusterState.getSlice(collection, shard);
+      if (slice == null)  {
+        // the shard was deleted since its leader published its range
+        log.warn("Overseer.updateShardValueRange unknown collection: " + collection + " slice: " + shard);
+        return clusterState;
+      }
+
+      Map<String, Object> props = slice.shallowCopy();
+      props.put(TimeRangeRouter.MIN_VALUE, message.getStr(TimeRangeRouter.MIN_VALUE));
+      props.put(TimeRangeRouter.MAX_VALUE, message.getStr(TimeRangeRouter.MAX_VALUE));
+      Slice newSlice = new Slice(slice.getName(), slice.getReplicasCopy(), props);
+      return updateSlice(clusterState, collection, newSlice);
+    }
+
     private ClusterState addRoutingRule(ClusterState clusterState, ZkNodeProps message) {
       String collection = message.getStr(ZkStateReader.COLLECTION_PROP);
       if (!checkCollectionKeyExistence(message)) return clusterState;
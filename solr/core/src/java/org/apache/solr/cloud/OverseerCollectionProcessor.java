@@ -69,6 +69,7 @@ import org.apache.solr.common.cloud.Replica;
 import org.apache.solr.common.cloud.RoutingRule;
 import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.TimeRangeRouter;
 import org.apache.solr.common.cloud.ZkCoreNodeProps;
 import org.apache.solr.common.cloud.ZkNodeProps;
 import org.apache.solr.common.cloud.ZkStateReader;
@@ -2086,7 +2087,7 @@ public class OverseerCollectionProcessor implements Runnable, Closeable {
       Integer numSlices = message.getInt(NUM_SLICES, null);
       String router = message.getStr("router.name", DocRouter.DEFAULT_NAME);
       List<String> shardNames = new ArrayList<>();
-      if(ImplicitDocRouter.NAME.equals(router)){
+      if(ImplicitDocRouter.NAME.equals(router) || TimeRangeRouter.NAME.equals(router)){
         Overseer.getShardNames(shardNames, message.getStr("shards",null));
         numSlices = shardNames.size();
       } else {
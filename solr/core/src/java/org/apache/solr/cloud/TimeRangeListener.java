@@ -0,0 +1,215 @@
+package org.apache.solr.cloud;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.document.FieldType.NumericType;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.TimeRangeRouter;
+import org.apache.solr.common.cloud.ZkNodeProps;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.TrieDateField;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Publishes the lowest and highest values of the route field of a collection with a {@link TimeRangeRouter}
+ * in the properties of the shard, when the leader of the shard opens a new searcher, so that searches can skip the
+ * shards whose range doesn't intersect theirs.  Deleted documents are included until merged away.
+ * <p/>
+ * The published range is rounded out to whole intervals (hours for dates, and about a sixteenth of the value for
+ * other numbers), so that the shards receiving new documents don't update the cluster state on every commit, but
+ * only when their values pass the end of the published interval.  The Overseer applies the update asynchronously,
+ * so until it does, searches for the values past the published range skip the shard even though its searcher
+ * already has them; rounding up the highest value keeps that to the first documents of each new interval.
+ */
+public class TimeRangeListener implements SolrEventListener {
+  private static Logger log = LoggerFactory.getLogger(TimeRangeListener.class);
+
+  /** Published dates are rounded out to whole hours */
+  static final long DATE_INTERVAL_MS = 60 * 60 * 1000L;
+
+  private final SolrCore core;
+  private final ZkController zkController;
+
+  public TimeRangeListener(SolrCore core, ZkController zkController) {
+    this.core = core;
+    this.zkController = zkController;
+  }
+
+  @Override
+  public void init(NamedList args) {
+  }
+
+  @Override
+  public void postCommit() {
+  }
+
+  @Override
+  public void postSoftCommit() {
+  }
+
+  @Override
+  public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher) {
+    CloudDescriptor cloudDesc = core.getCoreDescriptor().getCloudDescriptor();
+    if (cloudDesc == null || !cloudDesc.isLeader()) return;
+
+    String collection = cloudDesc.getCollectionName();
+    DocCollection coll = zkController.getClusterState().getCollectionOrNull(collection);
+    if (coll == null || !(coll.getRouter() instanceof TimeRangeRouter)) return;
+    String field = ((TimeRangeRouter) coll.getRouter()).getRangeField(coll);
+    Slice slice = coll.getSlice(cloudDesc.getShardId());
+    if (field == null || slice == null) return;
+
+    try {
+      String[] range = getPublishedRange(newSearcher, field);
+      if (range == null) return;
+      if (range[0].equals(slice.getStr(TimeRangeRouter.MIN_VALUE)) && range[1].equals(slice.getStr(TimeRangeRouter.MAX_VALUE))) {
+        return;
+      }
+
+      Map<String,Object> message = ZkNodeProps.makeMap(Overseer.QUEUE_OPERATION, Overseer.UPDATESHARDVALUERANGE,
+          ZkStateReader.COLLECTION_PROP, collection,
+          ZkStateReader.SHARD_ID_PROP, slice.getName(),
+          TimeRangeRouter.MIN_VALUE, range[0],
+          TimeRangeRouter.MAX_VALUE, range[1]);
+      Overseer.getInQueue(zkController.getZkClient()).offer(ZkStateReader.toJSON(message));
+    } catch (Exception e) {
+      log.warn("Unable to publish the range of " + field + " of shard " + slice.getName() + " of " + collection, e);
+    }
+  }
+
+  /** Returns the lowest and highest values of an indexed field, or null if it has none */
+  static String[] getRange(SolrIndexSearcher searcher, String field) throws IOException {
+    return getRange(searcher, field, false);
+  }
+
+  /** Returns the range of an indexed field to publish, with numeric values rounded out to whole intervals */
+  static String[] getPublishedRange(SolrIndexSearcher searcher, String field) throws IOException {
+    return getRange(searcher, field, true);
+  }
+
+  private static String[] getRange(SolrIndexSearcher searcher, String field, boolean round) throws IOException {
+    SchemaField sf = searcher.getSchema().getFieldOrNull(field);
+    if (sf == null || !sf.indexed()) return null;
+    Terms terms = MultiFields.getTerms(searcher.getIndexReader(), field);
+    if (terms == null) return null;
+
+    FieldType ft = sf.getType();
+    BytesRef min, max;
+    NumericType numericType = ft.getNumericType();
+    if (numericType != null) {
+      boolean isInt = numericType == NumericType.INT || numericType == NumericType.FLOAT;
+      // the full precision terms sort first, so the lowest term is the lowest value
+      long minValue = isInt ? NumericUtils.getMinInt(terms) : NumericUtils.getMinLong(terms);
+      long maxValue = getMaxValue(terms.iterator(null), minValue, isInt);
+      if (round) {
+        minValue = roundDown(minValue, getInterval(ft, numericType, minValue), isInt);
+        maxValue = roundUp(maxValue, getInterval(ft, numericType, maxValue), isInt);
+      }
+      min = encode(minValue, isInt);
+      max = encode(maxValue, isInt);
+    } else {
+      min = terms.getMin();
+      max = terms.getMax();
+    }
+    if (min == null || max == null) return null;
+
+    return new String[] {ft.indexedToReadable(min, new CharsRef()).toString(), ft.indexedToReadable(max, new CharsRef()).toString()};
+  }
+
+  /**
+   * Returns the highest full precision value of a numeric field by a binary search of the values whose term has a full
+   * precision term at or after it, since the lower precision terms sort after all the full precision ones.
+   */
+  private static long getMaxValue(TermsEnum termsEnum, long minValue, boolean isInt) throws IOException {
+    long lo = minValue;
+    long hi = isInt ? Integer.MAX_VALUE : Long.MAX_VALUE;
+    while (lo < hi) {
+      long mid = lo + ((hi - lo) >>> 1) + 1;
+      if (termsEnum.seekCeil(encode(mid, isInt)) == TermsEnum.SeekStatus.END) {
+        hi = mid - 1;
+        continue;
+      }
+      BytesRef term = termsEnum.term();
+      if (isInt ? NumericUtils.getPrefixCodedIntShift(term) == 0 : NumericUtils.getPrefixCodedLongShift(term) == 0) {
+        lo = isInt ? NumericUtils.prefixCodedToInt(term) : NumericUtils.prefixCodedToLong(term);
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * The interval that a value is rounded to, in the space of the sortable bits of the value: an hour for dates, the
+   * sixteenth of the highest power of two in the value for other integers, and the sixteenth of the power of two of
+   * the value for floating point numbers, whose sortable bits keep their exponent above the mantissa.
+   */
+  private static long getInterval(FieldType ft, NumericType numericType, long value) {
+    switch (numericType) {
+      case FLOAT:
+        return 1L << 19;  // 4 bits of the 23 bit mantissa are kept
+      case DOUBLE:
+        return 1L << 48;  // 4 bits of the 52 bit mantissa are kept
+      default:
+        if (ft instanceof TrieDateField) {
+          return DATE_INTERVAL_MS;
+        }
+        return Math.max(1, Long.highestOneBit(Math.abs(value)) >>> 4);
+    }
+  }
+
+  private static long roundDown(long value, long interval, boolean isInt) {
+    long rounded = value - (((value % interval) + interval) % interval);
+    long min = isInt ? Integer.MIN_VALUE : Long.MIN_VALUE;
+    return rounded > value || rounded < min ? min : rounded;
+  }
+
+  private static long roundUp(long value, long interval, boolean isInt) {
+    long rounded = roundDown(value, interval, false) + interval - 1;
+    long max = isInt ? Integer.MAX_VALUE : Long.MAX_VALUE;
+    return rounded < value || rounded > max ? max : rounded;
+  }
+
+  private static BytesRef encode(long value, boolean isInt) {
+    BytesRefBuilder bytes = new BytesRefBuilder();
+    if (isInt) {
+      NumericUtils.intToPrefixCoded((int) value, 0, bytes);
+    } else {
+      NumericUtils.longToPrefixCoded(value, 0, bytes);
+    }
+    return bytes.get();
+  }
+}
@@ -41,6 +41,7 @@ import org.apache.lucene.store.SingleInstanceLockFactory;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.search.NativeStoredFieldsCache;
 import org.apache.solr.store.blockcache.BlockDirectory;
 import org.apache.solr.store.hdfs.HdfsDirectory;
 import org.apache.solr.store.hdfs.HdfsLockFactory;
@@ -51,6 +52,10 @@ import org.slf4j.LoggerFactory;
  * A {@link DirectoryFactory} impl base class for caching Directory instances
  * per path. Most DirectoryFactory implementations will want to extend this
  * class and simply implement {@link DirectoryFactory#create(String, DirContext)}.
+ * <p>
+ * The <code>storedFieldsChunkCacheMB</code> parameter enables a
+ * {@link NativeStoredFieldsCache} of the given size for the index directories
+ * of the factory, which is freed when the factory is closed.
  * 
  * This is an expert class and these API's are subject to change.
  * 
@@ -112,6 +117,8 @@ public abstract class CachingDirectoryFactory extends DirectoryFactory {
 
   private Double maxWriteMBPerSecDefault;
 
+  private NativeStoredFieldsCache storedFieldsChunkCache;
+
   private boolean closed;
   
   public interface CloseListener {
@@ -221,6 +228,10 @@ public abstract class CachingDirectoryFactory extends DirectoryFactory {
       for (CacheValue v : closedDirs) {
         removeFromCache(v);
       }
+
+      if (storedFieldsChunkCache != null) {
+        storedFieldsChunkCache.close();
+      }
     }
   }
 
@@ -352,9 +363,13 @@ public abstract class CachingDirectoryFactory extends DirectoryFactory {
         
         directory = rateLimit(directory);
         
-        CacheValue newCacheValue = new CacheValue(fullPath, directory);
-        
         injectLockFactory(directory, fullPath, rawLockType);
+
+        if (storedFieldsChunkCache != null && dirContext == DirContext.DEFAULT) {
+          directory = storedFieldsChunkCache.wrap(directory);
+        }
+        
+        CacheValue newCacheValue = new CacheValue(fullPath, directory);
         
         byDirectoryCache.put(directory, newCacheValue);
         byPathCache.put(fullPath, newCacheValue);
@@ -416,8 +431,20 @@ public abstract class CachingDirectoryFactory extends DirectoryFactory {
     maxWriteMBPerSecMerge = (Double) args.get("maxWriteMBPerSecMerge");
     maxWriteMBPerSecRead = (Double) args.get("maxWriteMBPerSecRead");
     maxWriteMBPerSecDefault = (Double) args.get("maxWriteMBPerSecDefault");
+    Integer chunkCacheMB = (Integer) args.get("storedFieldsChunkCacheMB");
+    if (chunkCacheMB != null && chunkCacheMB > 0) {
+      storedFieldsChunkCache = new NativeStoredFieldsCache(chunkCacheMB * 1024L * 1024L);
+    }
   }
   
+  /**
+   * Returns the cache of stored fields chunks of the index directories,
+   * or null if there is none.
+   */
+  public NativeStoredFieldsCache getStoredFieldsChunkCache() {
+    return storedFieldsChunkCache;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -550,7 +577,7 @@ public abstract class CachingDirectoryFactory extends DirectoryFactory {
   }
   
   /**
-   * Test only method for inspecting the cache
+   * Inspects the cache, for tests and to tell which directories are in use
    * @return paths in the cache which have not been marked "done"
    *
    * @see #doneWithDirectory
@@ -20,14 +20,20 @@ package org.apache.solr.core;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockFactory; // javadocs
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.MMapDirectory.Advice;
+import org.apache.lucene.store.NativeMMapAdvisor;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.core.DirectoryFactory.DirContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
 
 
 /**
@@ -37,6 +43,10 @@ import java.io.IOException;
  * <ul>
  *  <li>unmap -- See {@link MMapDirectory#setUseUnmap(boolean)}</li>
  *  <li>maxChunkSize -- The Max chunk size.  See {@link MMapDirectory#MMapDirectory(File, LockFactory, int)}</li>
+ *  <li>madvise -- Whether to tell the OS how files are accessed, if the NativePosixUtil library can be loaded
+ *  (default false).  Advice that fails is logged and otherwise ignored.  See {@link MMapDirectory#setAdvisor(MMapDirectory.Advisor)}</li>
+ *  <li>preload -- Comma separated extensions of the files to load into memory when they are opened,
+ *  e.g. "tip,dvd".  See {@link MMapDirectory#setPreloadExtensions(Set)}</li>
  * </ul>
  *
  **/
@@ -44,6 +54,8 @@ public class MMapDirectoryFactory extends StandardDirectoryFactory {
   private transient static Logger log = LoggerFactory.getLogger(MMapDirectoryFactory.class);
   boolean unmapHack;
   private int maxChunk;
+  private boolean madvise;
+  private Set<String> preloadExtensions;
 
   @Override
   public void init(NamedList args) {
@@ -54,6 +66,17 @@ public class MMapDirectoryFactory extends StandardDirectoryFactory {
       throw new IllegalArgumentException("maxChunk must be greater than 0");
     }
     unmapHack = params.getBool("unmap", true);
+    madvise = params.getBool("madvise", false);
+    if (madvise && !NativeMMapAdvisor.isAvailable()) {
+      log.info("NativePosixUtil library is not available, continuing on without madvise");
+      madvise = false;
+    }
+    preloadExtensions = new HashSet<>();
+    for (String extension : StrUtils.splitSmart(params.get("preload", ""), ',')) {
+      if (extension.trim().length() > 0) {
+        preloadExtensions.add(extension.trim());
+      }
+    }
   }
 
   @Override
@@ -64,6 +87,10 @@ public class MMapDirectoryFactory extends StandardDirectoryFactory {
     } catch (Exception e) {
       log.warn("Unmap not supported on this JVM, continuing on without setting unmap", e);
     }
+    if (madvise) {
+      mapDirectory.setAdvisor(new LoggingAdvisor(new NativeMMapAdvisor()));
+    }
+    mapDirectory.setPreloadExtensions(preloadExtensions);
     return mapDirectory;
   }
   
@@ -71,4 +98,41 @@ public class MMapDirectoryFactory extends StandardDirectoryFactory {
   public boolean isAbsolute(String path) {
     return new File(path).isAbsolute();
   }
+
+  /** Logs advice that fails, at warn level the first time only */
+  static final class LoggingAdvisor implements MMapDirectory.Advisor {
+    private final MMapDirectory.Advisor delegate;
+    private volatile boolean warned;
+
+    LoggingAdvisor(MMapDirectory.Advisor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void advise(ByteBuffer buffer, Advice advice) {
+      try {
+        delegate.advise(buffer, advice);
+      } catch (IOException e) {
+        failed(e);
+      }
+    }
+
+    @Override
+    public void adviseFile(File file, Advice advice) {
+      try {
+        delegate.adviseFile(file, advice);
+      } catch (IOException e) {
+        failed(e);
+      }
+    }
+
+    private void failed(IOException e) {
+      if (!warned) {
+        warned = true;
+        log.warn("Could not advise the OS about a mapped file, continuing on without advice", e);
+      } else if (log.isDebugEnabled()) {
+        log.debug("Could not advise the OS about a mapped file", e);
+      }
+    }
+  }
 }
@@ -0,0 +1,181 @@
+package org.apache.solr.core;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.NativeMMapAdvisor;
+import org.apache.lucene.store.NativeUnixDirectory;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a {@link NativeUnixDirectory} over the MMapDirectory of {@link MMapDirectoryFactory}:
+ * large merges write their segments with direct I/O, so they don't push the
+ * files used by searches out of the OS cache, and everything else goes through the
+ * MMapDirectory.
+ * <p>
+ * Can set the parameters of {@link MMapDirectoryFactory}, and:
+ * <ul>
+ *  <li>minMergeSizeMB -- Merges expected to be smaller than this are written through the MMapDirectory
+ *  (default 10)</li>
+ *  <li>mergeBufferSize -- Size of the buffer of each file written with direct I/O, a multiple of 512
+ *  (default 262144)</li>
+ *  <li>directReads -- Whether large merges also read their input with direct I/O (default false); if false
+ *  they read through the MMapDirectory, which tells the OS to drop their pages when <code>madvise</code> is
+ *  enabled</li>
+ * </ul>
+ * This requires the NativePosixUtil library from lucene/misc on the library path; without it, or for files
+ * that can't be opened with O_DIRECT, the MMapDirectory is used.
+ * <p>
+ * The statistics report how many files and bytes were written around the OS cache.
+ *
+ **/
+public class NativeUnixDirectoryFactory extends MMapDirectoryFactory implements SolrInfoMBean {
+  private static final Logger log = LoggerFactory.getLogger(NativeUnixDirectoryFactory.class);
+
+  public static final double DEFAULT_MIN_MERGE_SIZE_MB = NativeUnixDirectory.DEFAULT_MIN_BYTES_DIRECT / 1024 / 1024;
+
+  private double minMergeSizeMB = DEFAULT_MIN_MERGE_SIZE_MB;
+  private int mergeBufferSize = NativeUnixDirectory.DEFAULT_MERGE_BUFFER_SIZE;
+  private boolean directReads;
+  private boolean available;
+
+  // the directories that are open, and the totals of those that were closed
+  private final Set<NativeUnixDirectory> directories = Collections.newSetFromMap(new IdentityHashMap<NativeUnixDirectory,Boolean>());
+  private long closedDirectOutputs;
+  private long closedDirectBytesWritten;
+  private long closedDirectInputs;
+  private long closedFallbacks;
+
+  @Override
+  public void init(NamedList args) {
+    super.init(args);
+    SolrParams params = SolrParams.toSolrParams(args);
+    minMergeSizeMB = params.getDouble("minMergeSizeMB", DEFAULT_MIN_MERGE_SIZE_MB);
+    if (minMergeSizeMB < 0) {
+      throw new IllegalArgumentException("minMergeSizeMB must not be negative");
+    }
+    mergeBufferSize = params.getInt("mergeBufferSize", NativeUnixDirectory.DEFAULT_MERGE_BUFFER_SIZE);
+    if (mergeBufferSize <= 0 || mergeBufferSize % 512 != 0) {
+      throw new IllegalArgumentException("mergeBufferSize must be a positive multiple of 512");
+    }
+    directReads = params.getBool("directReads", false);
+    available = NativeMMapAdvisor.isAvailable();
+    if (!available) {
+      log.warn("NativePosixUtil library is not available, merges will not use direct I/O");
+    }
+  }
+
+  @Override
+  protected Directory create(String path, DirContext dirContext) throws IOException {
+    Directory delegate = super.create(path, dirContext);
+    if (!available) {
+      return delegate;
+    }
+    long minBytesDirect = (long) (minMergeSizeMB * 1024 * 1024);
+    NativeUnixDirectory dir = new NativeUnixDirectory(new File(path), mergeBufferSize, minBytesDirect, directReads, delegate) {
+      @Override
+      public synchronized void close() {
+        super.close();
+        closed(this);
+      }
+    };
+    synchronized (directories) {
+      directories.add(dir);
+    }
+    return dir;
+  }
+
+  private void closed(NativeUnixDirectory dir) {
+    synchronized (directories) {
+      if (directories.remove(dir)) {
+        closedDirectOutputs += dir.getDirectOutputCount();
+        closedDirectBytesWritten += dir.getDirectBytesWritten();
+        closedDirectInputs += dir.getDirectInputCount();
+        closedFallbacks += dir.getFallbackCount();
+      }
+    }
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+
+  @Override
+  public String getName() {
+    return NativeUnixDirectoryFactory.class.getName();
+  }
+
+  @Override
+  public String getVersion() {
+    return SolrCore.version;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Directory factory that writes large merges with direct I/O";
+  }
+
+  @Override
+  public Category getCategory() {
+    return Category.OTHER;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+  @Override
+  public URL[] getDocs() {
+    return null;
+  }
+
+  @Override
+  public NamedList getStatistics() {
+    long directOutputs, directBytesWritten, directInputs, fallbacks;
+    synchronized (directories) {
+      directOutputs = closedDirectOutputs;
+      directBytesWritten = closedDirectBytesWritten;
+      directInputs = closedDirectInputs;
+      fallbacks = closedFallbacks;
+      for (NativeUnixDirectory dir : directories) {
+        directOutputs += dir.getDirectOutputCount();
+        directBytesWritten += dir.getDirectBytesWritten();
+        directInputs += dir.getDirectInputCount();
+        fallbacks += dir.getFallbackCount();
+      }
+    }
+    NamedList<Object> lst = new SimpleOrderedMap<>();
+    lst.add("nativeAvailable", available);
+    lst.add("minMergeSizeMB", minMergeSizeMB);
+    lst.add("directReads", directReads);
+    lst.add("directOutputs", directOutputs);
+    lst.add("directBytesWritten", directBytesWritten);
+    lst.add("directInputs", directInputs);
+    lst.add("fallbacks", fallbacks);
+    return lst;
+  }
+}
@@ -246,6 +246,16 @@ public class SolrConfig extends Config {
       conf = new CacheConfig(FastLRUCache.class, args, null);
     }
     fieldValueCacheConfig = conf;
+    conf = CacheConfig.getConfig(this, "query/joinOrdMapCache");
+    if (conf == null) {
+      Map<String,String> args = new HashMap<>();
+      args.put("name","joinOrdMapCache");
+      args.put("size","256");
+      args.put("autowarmCount","100%");
+      args.put("showItems","-1");
+      conf = new CacheConfig(FastLRUCache.class, args, null);
+    }
+    joinOrdMapCacheConfig = conf;
     unlockOnStartup = getBool(indexConfigPrefix+"/unlockOnStartup", false);
     useColdSearcher = getBool("query/useColdSearcher",false);
     dataDir = get("dataDir", null);
@@ -403,6 +413,7 @@ public class SolrConfig extends Config {
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
   public final CacheConfig nCacheConfig;
+  public final CacheConfig joinOrdMapCacheConfig;
   public final CacheConfig[] userCacheConfigs;
   // SolrIndexSearcher - more...
   public final boolean useFilterForSortedQuery;
@@ -28,9 +28,12 @@ import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.solr.cloud.CloudDescriptor;
+import org.apache.solr.cloud.TimeRangeListener;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
 import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.TimeRangeRouter;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.CommonParams.EchoParamStyle;
 import org.apache.solr.common.params.SolrParams;
@@ -74,6 +77,7 @@ import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.IndexSchemaFactory;
 import org.apache.solr.schema.SimilarityFactory;
+import org.apache.solr.search.IdBloomFilterCache;
 import org.apache.solr.search.QParserPlugin;
 import org.apache.solr.search.SolrFieldCacheMBean;
 import org.apache.solr.search.SolrIndexSearcher;
@@ -184,6 +188,7 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
   private final Codec codec;
   
   private final ReentrantLock ruleExpiryLock;
+  private final IdBloomFilterCache idBloomFilters = new IdBloomFilterCache();
   
   public long getStartTime() { return startTime; }
 
@@ -215,6 +220,13 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
   public SolrConfig getSolrConfig() {
     return solrConfig;
   }
+
+  /** The Bloom filters of the ids of the segments of this core's searchers.
+   * @lucene.internal
+   */
+  public IdBloomFilterCache getIdBloomFilters() {
+    return idBloomFilters;
+  }
   
   /**
    * Gets the schema resource name used by this core instance.
@@ -783,6 +795,13 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
       }
       
       initIndex(prev != null);
+      if (directoryFactory instanceof SolrInfoMBean) {
+        infoRegistry.put("directoryFactory", (SolrInfoMBean) directoryFactory);
+      }
+      if (directoryFactory instanceof CachingDirectoryFactory
+          && ((CachingDirectoryFactory) directoryFactory).getStoredFieldsChunkCache() != null) {
+        infoRegistry.put("storedFieldsChunkCache", ((CachingDirectoryFactory) directoryFactory).getStoredFieldsChunkCache());
+      }
       
       initWriters();
       initQParsers();
@@ -912,6 +931,11 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
         // set update log to buffer before publishing the core
         getUpdateHandler().getUpdateLog().bufferUpdates();
       }
+
+      DocCollection coll = clusterState.getCollectionOrNull(cd.getCloudDescriptor().getCollectionName());
+      if (coll != null && coll.getRouter() instanceof TimeRangeRouter) {
+        registerNewSearcherListener(new TimeRangeListener(this, cc.getZkController()));
+      }
     }
     // For debugging   
 //    numOpens.incrementAndGet();
@@ -1114,6 +1138,9 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
         throw (Error) e;
       }
     }
+
+    // segments may outlive the core, e.g. on reload
+    idBloomFilters.close();
     
     if (coreStateClosed) {
       
@@ -1739,6 +1766,24 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
           });
         }
         
+        if (currSearcher == null) {
+          // later searchers do this as part of warm()
+          future = searcherExecutor.submit(new Callable() {
+            @Override
+            public Object call() throws Exception {
+              try {
+                newSearcher.buildIdBloomFilters();
+              } catch (Throwable e) {
+                SolrException.log(log, null, e);
+                if (e instanceof Error) {
+                  throw (Error) e;
+                }
+              }
+              return null;
+            }
+          });
+        }
+
         if (currSearcher == null && firstSearcherListeners.size() > 0) {
           future = searcherExecutor.submit(new Callable() {
             @Override
@@ -22,9 +22,8 @@ import java.io.IOException;
 import org.apache.commons.io.FileUtils;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IOContext;
-import org.apache.lucene.store.NRTCachingDirectory;
-import org.apache.lucene.store.RateLimitedDirectoryWrapper;
 import org.apache.solr.core.CachingDirectoryFactory.CacheValue;
 
 /**
@@ -79,8 +78,10 @@ public class StandardDirectoryFactory extends CachingDirectoryFactory {
    * carefully - some Directory wrappers will
    * cache files for example.
    * 
-   * This implementation works with two wrappers:
-   * NRTCachingDirectory and RateLimitedDirectoryWrapper.
+   * This implementation renames the file if both directories
+   * are FSDirectory instances beneath any number of
+   * FilterDirectory wrappers, such as NRTCachingDirectory,
+   * RateLimitedDirectoryWrapper and the stored fields chunk cache.
    * 
    * You should first {@link Directory#sync(java.util.Collection)} any file that will be 
    * moved or avoid cached files through settings.
@@ -109,17 +110,12 @@ public class StandardDirectoryFactory extends CachingDirectoryFactory {
     super.move(fromDir, toDir, fileName, ioContext);
   }
 
-  // special hack to work with NRTCachingDirectory and RateLimitedDirectoryWrapper
+  // unwraps NRTCachingDirectory, RateLimitedDirectoryWrapper and the other wrappers down to the FSDirectory
   private Directory getBaseDir(Directory dir) {
-    Directory baseDir;
-    if (dir instanceof NRTCachingDirectory) {
-      baseDir = ((NRTCachingDirectory)dir).getDelegate();
-    } else if (dir instanceof RateLimitedDirectoryWrapper) {
-      baseDir = ((RateLimitedDirectoryWrapper)dir).getDelegate();
-    } else {
-      baseDir = dir;
+    Directory baseDir = dir;
+    while (baseDir instanceof FilterDirectory) {
+      baseDir = ((FilterDirectory) baseDir).getDelegate();
     }
-    
     return baseDir;
   }
 
@@ -33,7 +33,10 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
+import org.apache.lucene.queries.TermsFilter;
 import org.apache.lucene.queries.mlt.MoreLikeThis;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.PriorityQueue;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.FacetParams;
@@ -276,7 +279,12 @@ public class MoreLikeThisHandler extends RequestHandlerBase
   }
   
   /**
-   * Helper class for MoreLikeThis that can be called from other request handlers
+   * Helper class for MoreLikeThis that can be called from other request handlers.
+   * <p>
+   * When <code>mlt.signatureField</code> is set, the query for a document of the index is built
+   * from the terms of its {@link MoreLikeThisSignature}, if it has one, rather than by analyzing
+   * the document, and when <code>mlt.lshField</code> is set as well, similar documents must share
+   * a band of the MinHash of the signature.
    */
   public static class MoreLikeThisHelper 
   { 
@@ -285,6 +293,8 @@ public class MoreLikeThisHandler extends RequestHandlerBase
     final IndexReader reader;
     final SchemaField uniqueKeyField;
     final boolean needDocSet;
+    final String signatureField;
+    final SchemaField lshField;
     Map<String,Float> boostFields;
     
     public MoreLikeThisHelper( SolrParams params, SolrIndexSearcher searcher )
@@ -316,6 +326,10 @@ public class MoreLikeThisHandler extends RequestHandlerBase
       mlt.setMaxNumTokensParsed(params.getInt(MoreLikeThisParams.MAX_NUM_TOKENS_PARSED, MoreLikeThis.DEFAULT_MAX_NUM_TOKENS_PARSED));
       mlt.setBoost(            params.getBool(MoreLikeThisParams.BOOST, false ) );
       boostFields = SolrPluginUtils.parseFieldBoosts(params.getParams(MoreLikeThisParams.QF));
+
+      signatureField = params.get(MoreLikeThisParams.SIGNATURE_FIELD);
+      String lsh = params.get(MoreLikeThisParams.LSH_FIELD);
+      lshField = lsh == null ? null : searcher.getSchema().getField(lsh);
     }
     
     private Query rawMLTQuery;
@@ -349,10 +363,77 @@ public class MoreLikeThisHandler extends RequestHandlerBase
       return boostedQuery;
     }
     
+    /** Returns the signature of a document, if signatures are used and the document has one. */
+    private MoreLikeThisSignature getSignature(int id) throws IOException {
+      return signatureField == null ? null : MoreLikeThisSignature.read(searcher, signatureField, id);
+    }
+
+    /**
+     * Builds the query of the most interesting terms of a signature, as {@link MoreLikeThis} does
+     * from the terms of a document: terms are scored by their frequency in the document times their
+     * idf in the field where they are the most frequent.
+     */
+    private Query like(MoreLikeThisSignature signature) throws IOException {
+      String[] fieldNames = mlt.getFieldNames();
+      int numDocs = reader.numDocs();
+      PriorityQueue<ScoreTerm> queue = new PriorityQueue<ScoreTerm>(Math.min(mlt.getMaxQueryTerms(), signature.size())) {
+        @Override
+        protected boolean lessThan(ScoreTerm a, ScoreTerm b) {
+          return a.score < b.score;
+        }
+      };
+      for (int i = 0; i < signature.size(); i++) {
+        int tf = signature.getFreq(i);
+        if (mlt.getMinTermFreq() > 0 && tf < mlt.getMinTermFreq()) {
+          continue;
+        }
+        String word = signature.getTerm(i);
+        String topField = fieldNames[0];
+        int docFreq = 0;
+        for (String fieldName : fieldNames) {
+          int freq = reader.docFreq(new Term(fieldName, word));
+          topField = (freq > docFreq) ? fieldName : topField;
+          docFreq = (freq > docFreq) ? freq : docFreq;
+        }
+        if ((mlt.getMinDocFreq() > 0 && docFreq < mlt.getMinDocFreq()) || docFreq > mlt.getMaxDocFreq() || docFreq == 0) {
+          continue;
+        }
+        float score = tf * mlt.getSimilarity().idf(docFreq, numDocs);
+        queue.insertWithOverflow(new ScoreTerm(new Term(topField, word), score));
+      }
+
+      ScoreTerm[] scored = new ScoreTerm[queue.size()];
+      for (int i = scored.length - 1; i >= 0; i--) {
+        scored[i] = queue.pop();
+      }
+      BooleanQuery query = new BooleanQuery();
+      for (ScoreTerm term : scored) {
+        TermQuery tq = new TermQuery(term.term);
+        if (mlt.isBoost()) {
+          tq.setBoost(mlt.getBoostFactor() * term.score / scored[0].score);
+        }
+        query.add(tq, BooleanClause.Occur.SHOULD);
+      }
+      return query;
+    }
+
+    /** Returns the documents sharing a band of the MinHash of a signature, or null if there is no such filter. */
+    private Filter getCandidateFilter(MoreLikeThisSignature signature) {
+      if (lshField == null || signature == null || signature.getNumBands() == 0) {
+        return null;
+      }
+      List<BytesRef> keys = new ArrayList<>(signature.getNumBands());
+      for (String key : signature.getBandKeys()) {
+        keys.add(new BytesRef(lshField.getType().readableToIndexed(key)));
+      }
+      return new TermsFilter(lshField.getName(), keys);
+    }
+
     public DocListAndSet getMoreLikeThis( int id, int start, int rows, List<Query> filters, List<InterestingTerm> terms, int flags ) throws IOException
     {
       Document doc = reader.document(id);
-      rawMLTQuery = mlt.like(id);
+      MoreLikeThisSignature signature = getSignature(id);
+      rawMLTQuery = signature == null ? mlt.like(id) : like(signature);
       boostedMLTQuery = getBoostedQuery( rawMLTQuery );
       if( terms != null ) {
         fillInterestingTermsFromMLTQuery( rawMLTQuery, terms );
@@ -364,6 +445,12 @@ public class MoreLikeThisHandler extends RequestHandlerBase
       realMLTQuery.add(
           new TermQuery(new Term(uniqueKeyField.getName(), uniqueKeyField.getType().storedToIndexed(doc.getField(uniqueKeyField.getName())))), 
             BooleanClause.Occur.MUST_NOT);
+      Filter candidates = getCandidateFilter(signature);
+      if (candidates != null) {
+        Query candidateQuery = new ConstantScoreQuery(candidates);
+        candidateQuery.setBoost(0);
+        realMLTQuery.add(candidateQuery, BooleanClause.Occur.MUST);
+      }
       
       DocListAndSet results = new DocListAndSet();
       if (this.needDocSet) {
@@ -417,7 +504,8 @@ public class MoreLikeThisHandler extends RequestHandlerBase
         int id = iterator.nextDoc();
         String uniqueId = schema.printableUniqueKey(reader.document(id));
 
-        BooleanQuery mltquery = (BooleanQuery) mlt.like(id);
+        MoreLikeThisSignature signature = getSignature(id);
+        BooleanQuery mltquery = (BooleanQuery) (signature == null ? mlt.like(id) : like(signature));
         if (mltquery.clauses().size() == 0) {
           return result;
         }
@@ -454,6 +542,16 @@ public class MoreLikeThisHandler extends RequestHandlerBase
       return mlt;
     }
   }
+
+  private static class ScoreTerm {
+    final Term term;
+    final float score;
+
+    ScoreTerm(Term term, float score) {
+      this.term = term;
+      this.score = score;
+    }
+  }
   
   
   //////////////////////// SolrInfoMBeans methods //////////////////////
@@ -33,6 +33,12 @@ public class RealTimeGetHandler extends SearchHandler {
     return names;
   }
 
+  @Override
+  protected boolean isShardResponseCacheable() {
+    // documents come from the update log and the realtime searcher, not from the searcher of the request
+    return false;
+  }
+
   //////////////////////// SolrInfoMBeans methods //////////////////////
 
   @Override
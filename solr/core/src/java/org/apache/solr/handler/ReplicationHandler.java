@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -38,6 +39,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
@@ -45,6 +47,7 @@ import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 import java.util.zip.DeflaterOutputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexCommit;
@@ -53,6 +56,7 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
 import org.apache.solr.client.solrj.impl.BinaryResponseParser;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.SolrException;
@@ -70,6 +74,7 @@ import org.apache.solr.core.IndexDeletionPolicyWrapper;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrDeletionPolicy;
 import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.core.StandardDirectoryFactory;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.BinaryQueryResponseWriter;
 import org.apache.solr.response.SolrQueryResponse;
@@ -77,6 +82,7 @@ import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.update.SolrIndexWriter;
 import org.apache.solr.util.NumberUtils;
 import org.apache.solr.util.PropertiesInputStream;
+import org.apache.solr.util.PropertiesOutputStream;
 import org.apache.solr.util.RefCounted;
 import org.apache.solr.util.plugin.SolrCoreAware;
 import org.slf4j.Logger;
@@ -323,6 +329,90 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
 
   private volatile SnapPuller tempSnapPuller;
 
+  /**
+   * Left behind by a failed download, see {@link SnapPuller.ResumableDownload}.  It is kept in
+   * {@link SnapPuller#REPLICATION_PROPERTIES} too, so that it survives restarts.
+   */
+  private SnapPuller.ResumableDownload resumableDownload;
+
+  /** Returns the temp index dir left behind by a failed download, or null, and forgets it. */
+  synchronized SnapPuller.ResumableDownload takeResumableDownload() {
+    SnapPuller.ResumableDownload download = resumableDownload;
+    if (download != null) {
+      resumableDownload = null;
+      saveResumableDownload(null);
+    }
+    return download;
+  }
+
+  /** Keeps the temp index dir left behind by a failed download, for the next fetch to resume. */
+  synchronized void keepResumableDownload(SnapPuller.ResumableDownload download) {
+    resumableDownload = download;
+    saveResumableDownload(download);
+  }
+
+  private void saveResumableDownload(SnapPuller.ResumableDownload download) {
+    Properties props = loadReplicationProperties();
+    if (download == null) {
+      props.remove(SnapPuller.RESUMABLE_MASTER_URL);
+      props.remove(SnapPuller.RESUMABLE_GENERATION);
+      props.remove(SnapPuller.RESUMABLE_INDEX_DIR);
+    } else {
+      props.setProperty(SnapPuller.RESUMABLE_MASTER_URL, download.masterUrl);
+      props.setProperty(SnapPuller.RESUMABLE_GENERATION, String.valueOf(download.generation));
+      props.setProperty(SnapPuller.RESUMABLE_INDEX_DIR, download.tmpIdxDirName);
+    }
+    try {
+      saveReplicationProperties(props);
+    } catch (IOException e) {
+      LOG.warn("Unable to save the download to resume in " + SnapPuller.REPLICATION_PROPERTIES, e);
+    }
+  }
+
+  /**
+   * Loads the download to resume that {@link SnapPuller#REPLICATION_PROPERTIES} records, and removes
+   * the other temp index dirs in the data dir, which are left behind by downloads that failed or were
+   * aborted by a shutdown.  Only index dirs on the local file system that no directory is open on are
+   * removed, so that neither the index nor the download of a core that is being reloaded is removed.
+   */
+  private void cleanupTmpIndexDirs() {
+    Properties props = loadReplicationProperties();
+    String masterUrl = props.getProperty(SnapPuller.RESUMABLE_MASTER_URL);
+    String generation = props.getProperty(SnapPuller.RESUMABLE_GENERATION);
+    String tmpIdxDirName = props.getProperty(SnapPuller.RESUMABLE_INDEX_DIR);
+    synchronized (this) {
+      if (resumableDownload == null && masterUrl != null && generation != null && tmpIdxDirName != null) {
+        resumableDownload = new SnapPuller.ResumableDownload(masterUrl, Long.parseLong(generation), tmpIdxDirName);
+      }
+    }
+
+    if (!(core.getDirectoryFactory() instanceof StandardDirectoryFactory)) {
+      return;
+    }
+    StandardDirectoryFactory directoryFactory = (StandardDirectoryFactory) core.getDirectoryFactory();
+    File[] dirs = new File(core.getDataDir()).listFiles();
+    if (dirs == null) {
+      return;
+    }
+    try {
+      Set<String> keep = new HashSet<>(directoryFactory.getLivePaths());
+      keep.add(directoryFactory.normalize(core.getIndexDir()));
+      keep.add(directoryFactory.normalize(core.getNewIndexDir()));
+      if (tmpIdxDirName != null) {
+        keep.add(directoryFactory.normalize(core.getDataDir() + tmpIdxDirName));
+      }
+      for (File dir : dirs) {
+        if (dir.isDirectory() && dir.getName().startsWith("index.")
+            && !keep.contains(directoryFactory.normalize(dir.getPath()))) {
+          LOG.info("Removing temp index dir " + dir + ", which was left behind by a failed download");
+          FileUtils.deleteDirectory(dir);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to remove the temp index dirs in " + core.getDataDir(), e);
+    }
+  }
+
   public boolean doFetch(SolrParams solrParams, boolean forceReplication) {
     String masterUrl = solrParams == null ? null : solrParams.get(MASTER_URL);
     if (!snapPullLock.tryLock())
@@ -332,6 +422,14 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
       if (masterUrl != null) {
         NamedList<Object> nl = solrParams.toNamedList();
         nl.remove(SnapPuller.POLL_INTERVAL);
+        // download settings of the slave section, or of the handler for SolrCloud recoveries
+        NamedList slave = (NamedList) initArgs.get("slave");
+        for (String name : new String[] {FETCH_THREADS, CHUNK_SIZE_MB, MAX_DOWNLOAD_MB_PER_SEC}) {
+          Object value = slave != null ? slave.get(name) : initArgs.get(name);
+          if (nl.get(name) == null && value != null) {
+            nl.add(name, value);
+          }
+        }
         tempSnapPuller = new SnapPuller(nl, this, core);
       }
       return tempSnapPuller.fetchLatestIndex(core, forceReplication);
@@ -668,6 +766,13 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
       if (snapPuller.getPollInterval() != null) {
         slave.add(SnapPuller.POLL_INTERVAL, snapPuller.getPollInterval());
       }
+      slave.add(FETCH_THREADS, snapPuller.getFetchThreads());
+      if (snapPuller.getChunkSize() > 0) {
+        slave.add("chunkSize", NumberUtils.readableSize(snapPuller.getChunkSize()));
+      }
+      if (snapPuller.getMaxDownloadMBPerSec() > 0) {
+        slave.add(MAX_DOWNLOAD_MB_PER_SEC, snapPuller.getMaxDownloadMBPerSec());
+      }
       if (snapPuller.getNextScheduledExecTime() != null && !isPollingDisabled()) {
         slave.add(NEXT_EXECUTION_AT, new Date(snapPuller.getNextScheduledExecTime()).toString());
       } else if (isPollingDisabled()) {
@@ -730,14 +835,27 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
             currFileSize = (Long) currentFile.get(SIZE);
             if (currentFile.containsKey("bytesDownloaded")) {
               currFileSizeDownloaded = (Long) currentFile.get("bytesDownloaded");
-              bytesDownloaded += currFileSizeDownloaded;
               if (currFileSize > 0)
                 percentDownloaded = (currFileSizeDownloaded * 100) / currFileSize;
             }
           }
+          bytesDownloaded += snapPuller.getPartialBytesDownloaded();
           slave.add("filesDownloaded", filesDownloaded);
           slave.add("numFilesDownloaded", String.valueOf(filesDownloaded.size()));
 
+          List<NamedList<Object>> activeFetches = new ArrayList<>();
+          for (Map<String, Object> fetch : snapPuller.getActiveFetches()) {
+            NamedList<Object> f = new SimpleOrderedMap<>();
+            f.add(NAME, fetch.get(NAME));
+            f.add(OFFSET, fetch.get(OFFSET));
+            f.add(SIZE, fetch.get(SIZE));
+            f.add("bytesDownloaded", fetch.get("bytesDownloaded"));
+            activeFetches.add(f);
+          }
+          if (!activeFetches.isEmpty()) {
+            slave.add("activeFetches", activeFetches);
+          }
+
           long estimatedTimeRemaining = 0;
 
           if (snapPuller.getReplicationStartTime() > 0) {
@@ -820,6 +938,23 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
     return timeElapsed;
   }
 
+  void saveReplicationProperties(Properties props) throws IOException {
+    Directory dir = core.getDirectoryFactory().get(core.getDataDir(), DirContext.META_DATA,
+        core.getSolrConfig().indexConfig.lockType);
+    try {
+      final IndexOutput out = dir.createOutput(SnapPuller.REPLICATION_PROPERTIES, DirectoryFactory.IOCONTEXT_NO_CACHE);
+      Writer outFile = new OutputStreamWriter(new PropertiesOutputStream(out), StandardCharsets.UTF_8);
+      try {
+        props.store(outFile, "Replication details");
+        dir.sync(Collections.singleton(SnapPuller.REPLICATION_PROPERTIES));
+      } finally {
+        IOUtils.closeQuietly(outFile);
+      }
+    } finally {
+      core.getDirectoryFactory().release(dir);
+    }
+  }
+
   Properties loadReplicationProperties() {
     Directory dir = null;
     try {
@@ -866,6 +1001,7 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
     this.core = core;
     registerFileStreamResponseWriter();
     registerCloseHook();
+    cleanupTmpIndexDirs();
     Object nbtk = initArgs.get(NUMBER_BACKUPS_TO_KEEP_INIT_PARAM);
     if(nbtk!=null) {
       numberBackupsToKeep = Integer.parseInt(nbtk.toString());
@@ -1118,6 +1254,7 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
       String cfileName = params.get(CONF_FILE_SHORT);
       String sOffset = params.get(OFFSET);
       String sLen = params.get(LEN);
+      String sEnd = params.get(END_OFFSET);
       String compress = params.get(COMPRESSION);
       String sChecksum = params.get(CHECKSUM);
       String sGen = params.get(GENERATION);
@@ -1158,6 +1295,7 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
         if (useChecksum) checksum = new Adler32();
         
         long filelen = dir.fileLength(fileName);
+        if (sEnd != null) filelen = Math.min(filelen, Long.parseLong(sEnd));
         while (true) {
           offset = offset == -1 ? 0 : offset;
           int read = (int) Math.min(buf.length, filelen - offset);
@@ -1328,6 +1466,9 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
 
   public static final String LEN = "len";
 
+  /** End, exclusive, of the range of the file to stream; the file is streamed to its end by default */
+  public static final String END_OFFSET = "endOffset";
+
   public static final String FILE = "file";
 
   public static final String NAME = "name";
@@ -1354,6 +1495,15 @@ public class ReplicationHandler extends RequestHandlerBase implements SolrCoreAw
 
   public static final String COMPRESSION = "compression";
 
+  /** Slave setting: number of index files, or chunks of index files, downloaded concurrently */
+  public static final String FETCH_THREADS = "fetchThreads";
+
+  /** Slave setting: index files larger than this are downloaded in chunks, which failed fetches resume from */
+  public static final String CHUNK_SIZE_MB = "chunkSizeMB";
+
+  /** Slave setting: limit of the download rate of index files */
+  public static final String MAX_DOWNLOAD_MB_PER_SEC = "maxDownloadMBPerSec";
+
   public static final String EXTERNAL = "external";
 
   public static final String INTERNAL = "internal";
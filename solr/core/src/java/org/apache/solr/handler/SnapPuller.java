@@ -39,6 +39,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -47,6 +50,9 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.Adler32;
@@ -61,6 +67,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.impl.HttpSolrServer;
@@ -93,6 +100,7 @@ import org.slf4j.LoggerFactory;
 
 import static org.apache.solr.handler.ReplicationHandler.ALIAS;
 import static org.apache.solr.handler.ReplicationHandler.CHECKSUM;
+import static org.apache.solr.handler.ReplicationHandler.CHUNK_SIZE_MB;
 import static org.apache.solr.handler.ReplicationHandler.CMD_DETAILS;
 import static org.apache.solr.handler.ReplicationHandler.CMD_GET_FILE;
 import static org.apache.solr.handler.ReplicationHandler.CMD_GET_FILE_LIST;
@@ -101,12 +109,15 @@ import static org.apache.solr.handler.ReplicationHandler.COMMAND;
 import static org.apache.solr.handler.ReplicationHandler.COMPRESSION;
 import static org.apache.solr.handler.ReplicationHandler.CONF_FILES;
 import static org.apache.solr.handler.ReplicationHandler.CONF_FILE_SHORT;
+import static org.apache.solr.handler.ReplicationHandler.END_OFFSET;
 import static org.apache.solr.handler.ReplicationHandler.EXTERNAL;
+import static org.apache.solr.handler.ReplicationHandler.FETCH_THREADS;
 import static org.apache.solr.handler.ReplicationHandler.FILE;
 import static org.apache.solr.handler.ReplicationHandler.FILE_STREAM;
 import static org.apache.solr.handler.ReplicationHandler.GENERATION;
 import static org.apache.solr.handler.ReplicationHandler.INTERNAL;
 import static org.apache.solr.handler.ReplicationHandler.MASTER_URL;
+import static org.apache.solr.handler.ReplicationHandler.MAX_DOWNLOAD_MB_PER_SEC;
 import static org.apache.solr.handler.ReplicationHandler.NAME;
 import static org.apache.solr.handler.ReplicationHandler.OFFSET;
 import static org.apache.solr.handler.ReplicationHandler.SIZE;
@@ -161,6 +172,31 @@ public class SnapPuller {
 
   private boolean useExternal = false;
 
+  /** Number of index files, or chunks of index files, that are downloaded concurrently */
+  private final int fetchThreads;
+
+  /** Index files larger than this are downloaded in chunks of this size; 0 to download whole files */
+  private final long chunkSize;
+
+  /** Limits the rate of the downloads of index files, or null */
+  private final DownloadRateLimiter rateLimiter;
+
+  /** The fetchers of index files that are running, to report their progress */
+  private final Set<DirectoryFileFetcher> activeFetchers =
+      Collections.newSetFromMap(new ConcurrentHashMap<DirectoryFileFetcher,Boolean>());
+
+  /** Bytes downloaded of the index files that are not in filesDownloaded yet */
+  private final AtomicLong partialBytesDownloaded = new AtomicLong();
+
+  /** Set once a concurrent fetch failed, to stop the other fetches */
+  private volatile boolean fetchFailed = false;
+
+  /** Suffix of the files that hold the checksum of a downloaded index file or chunk */
+  static final String CHECKSUM_SUFFIX = ".adler32";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+
   /**
    * Disable the timer task for polling
    */
@@ -205,6 +241,14 @@ public class SnapPuller {
     String httpBasicAuthUser = (String) initArgs.get(HttpClientUtil.PROP_BASIC_AUTH_USER);
     String httpBasicAuthPassword = (String) initArgs.get(HttpClientUtil.PROP_BASIC_AUTH_PASS);
     myHttpClient = createHttpClient(solrCore, connTimeout, readTimeout, httpBasicAuthUser, httpBasicAuthPassword, useExternal);
+    fetchThreads = params.getInt(FETCH_THREADS, 1);
+    if (fetchThreads < 1) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+              "'" + FETCH_THREADS + "' must be at least 1");
+    }
+    chunkSize = (long) (params.getDouble(CHUNK_SIZE_MB, 0) * 1024 * 1024);
+    double maxDownloadMBPerSec = params.getDouble(MAX_DOWNLOAD_MB_PER_SEC, 0);
+    rateLimiter = maxDownloadMBPerSec > 0 ? new DownloadRateLimiter(maxDownloadMBPerSec) : null;
     if (pollInterval != null && pollInterval > 0) {
       startExecutorService();
     } else {
@@ -315,6 +359,8 @@ public class SnapPuller {
     Directory indexDir = null;
     String indexDirPath = null;
     boolean deleteTmpIdxDir = true;
+    String keepTmpIdxDirName = null;
+    long keepGeneration = -1;
     try {
       //get the current 'replicateable' index version in the master
       NamedList response = null;
@@ -391,7 +437,12 @@ public class SnapPuller {
           .getCommitTimestamp(commit) >= latestVersion
           || commit.getGeneration() >= latestGeneration || forceReplication;
 
-      String tmpIdxDirName = "index." + new SimpleDateFormat(SnapShooter.DATE_FMT, Locale.ROOT).format(new Date());
+      String tmpIdxDirName = takeResumableTmpIdxDir(core, latestGeneration);
+      if (tmpIdxDirName == null) {
+        tmpIdxDirName = "index." + new SimpleDateFormat(SnapShooter.DATE_FMT, Locale.ROOT).format(new Date());
+      } else {
+        LOG.info("Resuming the download of generation " + latestGeneration + " into " + tmpIdxDirName);
+      }
       tmpIndex = createTempindexDir(core, tmpIdxDirName);
 
       tmpIndexDir = core.getDirectoryFactory().get(tmpIndex, DirContext.DEFAULT, core.getSolrConfig().indexConfig.lockType);
@@ -421,8 +472,17 @@ public class SnapPuller {
               + isFullCopyNeeded);
           successfulInstall = false;
           
-          downloadIndexFiles(isFullCopyNeeded, indexDir, tmpIndexDir,
-              latestGeneration);
+          try {
+            downloadIndexFiles(isFullCopyNeeded, indexDir, tmpIndexDir,
+                latestGeneration);
+          } catch (Exception e) {
+            if (chunkSize > 0 && !(e instanceof ReplicationHandlerException)) {
+              // keep the chunks downloaded so far for the next attempt
+              keepTmpIdxDirName = tmpIdxDirName;
+              keepGeneration = latestGeneration;
+            }
+            throw e;
+          }
           LOG.info("Total time taken for download : "
               + ((System.currentTimeMillis() - replicationStartTime) / 1000)
               + " secs");
@@ -514,13 +574,19 @@ public class SnapPuller {
         replicationStartTime = 0;
         dirFileFetcher = null;
         localFileFetcher = null;
+        activeFetchers.clear();
+        partialBytesDownloaded.set(0);
+        fetchFailed = false;
         if (fsyncService != null && !fsyncService.isShutdown()) fsyncService
             .shutdownNow();
         fsyncService = null;
         stop = false;
         fsyncException = null;
       } finally {
-        if (deleteTmpIdxDir && tmpIndexDir != null) {
+        if (deleteTmpIdxDir && tmpIndexDir != null && keepTmpIdxDirName != null) {
+          LOG.info("Keeping " + tmpIndexDir + " to resume the download of generation " + keepGeneration);
+          replicationHandler.keepResumableDownload(new ResumableDownload(masterUrl, keepGeneration, keepTmpIdxDirName));
+        } else if (deleteTmpIdxDir && tmpIndexDir != null) {
           try {
             core.getDirectoryFactory().doneWithDirectory(tmpIndexDir);
             core.getDirectoryFactory().remove(tmpIndexDir);
@@ -632,13 +698,8 @@ public class SnapPuller {
       bytesDownloaded += (Long) file.get(SIZE);
     }
 
-    //get size from current file being downloaded
-    Map<String, Object> currentFile = snappuller.getCurrentFile();
-    if (currentFile != null) {
-      if (currentFile.containsKey("bytesDownloaded")) {
-        bytesDownloaded += (Long) currentFile.get("bytesDownloaded");
-      }
-    }
+    //get size from the files being downloaded
+    bytesDownloaded += snappuller.getPartialBytesDownloaded();
     return bytesDownloaded;
   }
 
@@ -703,6 +764,36 @@ public class SnapPuller {
     return tmpIdxDir;
   }
 
+  /**
+   * Returns the name of the temp index dir that a failed download of this generation left
+   * behind, or null. A temp index dir left behind by another generation is removed.
+   */
+  private String takeResumableTmpIdxDir(SolrCore core, long generation) {
+    ResumableDownload download = replicationHandler.takeResumableDownload();
+    if (download == null) {
+      return null;
+    }
+    String tmpIdxDirName = download.tmpIdxDirName;
+    if (download.masterUrl.equals(masterUrl) && download.generation == generation) {
+      return tmpIdxDirName;
+    }
+    LOG.info("Removing " + tmpIdxDirName + ", which holds generation " + download.generation
+        + " of " + download.masterUrl);
+    try {
+      Directory dir = core.getDirectoryFactory().get(createTempindexDir(core, tmpIdxDirName),
+          DirContext.DEFAULT, core.getSolrConfig().indexConfig.lockType);
+      try {
+        core.getDirectoryFactory().doneWithDirectory(dir);
+        core.getDirectoryFactory().remove(dir);
+      } finally {
+        core.getDirectoryFactory().release(dir);
+      }
+    } catch (IOException e) {
+      SolrException.log(LOG, "Error removing directory " + tmpIdxDirName, e);
+    }
+    return null;
+  }
+
   private void reloadCore() {
     final CountDownLatch latch = new CountDownLatch(1);
     new Thread() {
@@ -765,19 +856,289 @@ public class SnapPuller {
     if (LOG.isDebugEnabled()) {
       LOG.debug("Download files to dir: " + Arrays.asList(indexDir.listAll()));
     }
+    List<Map<String,Object>> files = new ArrayList<>();
     for (Map<String,Object> file : filesToDownload) {
-      if (!slowFileExists(indexDir, (String) file.get(NAME))
+      String fileName = (String) file.get(NAME);
+      if (!slowFileExists(indexDir, fileName)
           || downloadCompleteIndex) {
+        if (isDownloaded(tmpIndexDir, fileName, (Long) file.get(SIZE))) {
+          // left by a previous attempt, see takeResumableTmpIdxDir
+          LOG.info("Skipping download for " + fileName
+              + " because it was downloaded by a previous attempt");
+          fsync(tmpIndexDir, fileName);
+          filesDownloaded.add(new HashMap<>(file));
+        } else {
+          files.add(file);
+        }
+      } else {
+        LOG.info("Skipping download for " + file.get(NAME)
+            + " because it already exists");
+      }
+    }
+
+    if (fetchThreads == 1 && chunkSize == 0) {
+      for (Map<String,Object> file : files) {
         dirFileFetcher = new DirectoryFileFetcher(tmpIndexDir, file,
             (String) file.get(NAME), false, latestGeneration);
         currentFile = file;
         dirFileFetcher.fetchFile();
-        filesDownloaded.add(new HashMap<>(file));
+        fileDownloaded(file);
+      }
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (Map<String,Object> file : files) {
+      addFetchTasks(tasks, tmpIndexDir, file, latestGeneration);
+    }
+    LOG.info("Downloading " + files.size() + " files in " + tasks.size()
+        + " chunks with " + fetchThreads + " threads");
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+    ExecutorService fetchService = Executors.newFixedThreadPool(fetchThreads,
+        new DefaultSolrThreadFactory("snapPullerFetch"));
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (final Callable<Void> task : tasks) {
+        futures.add(fetchService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            try {
+              return task.call();
+            } catch (Exception e) {
+              // the first failure stops the other fetches, which then fail too
+              if (failure.compareAndSet(null, e)) {
+                fetchFailed = true;
+              }
+              throw e;
+            }
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // reported below
+        }
+      }
+    } finally {
+      ExecutorUtil.shutdownNowAndAwaitTermination(fetchService);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    // the checksums of the downloaded files are only needed to resume a failed download
+    for (String name : tmpIndexDir.listAll()) {
+      if (name.endsWith(CHECKSUM_SUFFIX)) {
+        tmpIndexDir.deleteFile(name);
+      }
+    }
+  }
+
+  /**
+   * Downloads these files of an index generation into the directory, as a fetch does once
+   * it got the list of files from the master.
+   */
+  void downloadIndexFiles(List<Map<String,Object>> files, Directory tmpIndexDir, long generation)
+      throws Exception {
+    filesToDownload = files;
+    filesDownloaded = Collections.synchronizedList(new ArrayList<Map<String, Object>>());
+    fsyncService = Executors.newSingleThreadExecutor(new DefaultSolrThreadFactory("fsyncService"));
+    try {
+      downloadIndexFiles(true, tmpIndexDir, tmpIndexDir, generation);
+      terminateAndWaitFsyncService();
+    } finally {
+      filesToDownload = filesDownloaded = null;
+      activeFetchers.clear();
+      partialBytesDownloaded.set(0);
+      fetchFailed = false;
+      if (!fsyncService.isShutdown()) fsyncService.shutdownNow();
+      fsyncService = null;
+      fsyncException = null;
+    }
+  }
+
+  /**
+   * Adds the tasks that download a file: a single task, or, if the file is larger than
+   * the chunk size, one task per chunk. Chunks are downloaded to their own files, the
+   * task that completes the last chunk of a file concatenates them. When chunks are
+   * enabled, the checksum of each downloaded file and chunk is saved too, so that a
+   * failed download can be resumed from them, see {@link #isDownloaded}.
+   */
+  private void addFetchTasks(List<Callable<Void>> tasks, final Directory tmpIndexDir,
+      final Map<String,Object> file, final long latestGeneration) {
+    final String fileName = (String) file.get(NAME);
+    final long size = (Long) file.get(SIZE);
+    if (chunkSize == 0 || size <= chunkSize) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          DirectoryFileFetcher fetcher = new DirectoryFileFetcher(tmpIndexDir, file, fileName, false, latestGeneration);
+          fetcher.fetchFile();
+          if (chunkSize > 0) {
+            writeChecksum(tmpIndexDir, fileName, fetcher.getDownloadedChecksum());
+          }
+          fileDownloaded(file);
+          return null;
+        }
+      });
+      return;
+    }
+
+    final int numChunks = (int) ((size + chunkSize - 1) / chunkSize);
+    final AtomicInteger remainingChunks = new AtomicInteger(numChunks);
+    for (int i = 0; i < numChunks; i++) {
+      final String chunkName = chunkName(fileName, i);
+      final long offset = i * chunkSize;
+      final long end = Math.min(size, offset + chunkSize);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          if (isDownloaded(tmpIndexDir, chunkName, end - offset)) {
+            // left by a previous attempt, see takeResumableTmpIdxDir
+            partialBytesDownloaded.addAndGet(end - offset);
+          } else {
+            DirectoryFileFetcher fetcher = new DirectoryFileFetcher(tmpIndexDir, file, chunkName, offset, end, false, latestGeneration);
+            fetcher.fetchFile();
+            writeChecksum(tmpIndexDir, chunkName, fetcher.getDownloadedChecksum());
+          }
+          if (remainingChunks.decrementAndGet() == 0) {
+            concatChunks(tmpIndexDir, fileName, numChunks);
+            fileDownloaded(file);
+          }
+          return null;
+        }
+      });
+    }
+  }
+
+  static String chunkName(String fileName, int chunk) {
+    return fileName + ".chunk" + chunk;
+  }
+
+  /** Joins the chunks of a file, and replaces their checksums with the checksum of the file. */
+  private void concatChunks(Directory dir, String fileName, int numChunks) throws IOException {
+    Checksum checksum = new Adler32();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    IndexOutput out = dir.createOutput(fileName, DirectoryFactory.IOCONTEXT_NO_CACHE);
+    boolean success = false;
+    try {
+      for (int i = 0; i < numChunks; i++) {
+        IndexInput in = dir.openInput(chunkName(fileName, i), IOContext.READONCE);
+        try {
+          for (long remaining = in.length(); remaining > 0; ) {
+            int len = (int) Math.min(buffer.length, remaining);
+            in.readBytes(buffer, 0, len);
+            checksum.update(buffer, 0, len);
+            out.writeBytes(buffer, 0, len);
+            remaining -= len;
+          }
+        } finally {
+          in.close();
+        }
+      }
+      success = true;
+    } finally {
+      if (success) {
+        out.close();
       } else {
-        LOG.info("Skipping download for " + file.get(NAME)
-            + " because it already exists");
+        IOUtils.closeQuietly(out);
+        dir.deleteFile(fileName);
+      }
+    }
+    writeChecksum(dir, fileName, checksum.getValue());
+    for (int i = 0; i < numChunks; i++) {
+      dir.deleteFile(chunkName(fileName, i));
+      dir.deleteFile(checksumName(chunkName(fileName, i)));
+    }
+    fsync(dir, fileName);
+  }
+
+  private static String checksumName(String fileName) {
+    return fileName + CHECKSUM_SUFFIX;
+  }
+
+  private static void writeChecksum(Directory dir, String fileName, long checksum) throws IOException {
+    IndexOutput out = dir.createOutput(checksumName(fileName), DirectoryFactory.IOCONTEXT_NO_CACHE);
+    try {
+      out.writeLong(checksum);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns true if a previous attempt downloaded this file, or chunk, completely: it has the
+   * expected length, and its content matches the checksum that was saved once it was
+   * downloaded. Otherwise the file and its checksum, if they exist, are deleted.
+   */
+  private static boolean isDownloaded(Directory dir, String fileName, long length) throws IOException {
+    long expected = -1;
+    try {
+      IndexInput in = dir.openInput(checksumName(fileName), IOContext.READONCE);
+      try {
+        if (in.length() == 8) {
+          expected = in.readLong();
+        }
+      } finally {
+        in.close();
+      }
+    } catch (NoSuchFileException | FileNotFoundException e) {
+      // not downloaded completely
+    }
+
+    long actual = -1;
+    if (expected != -1) {
+      try {
+        IndexInput in = dir.openInput(fileName, IOContext.READONCE);
+        try {
+          if (in.length() == length) {
+            Checksum checksum = new Adler32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (long remaining = length; remaining > 0; ) {
+              int len = (int) Math.min(buffer.length, remaining);
+              in.readBytes(buffer, 0, len);
+              checksum.update(buffer, 0, len);
+              remaining -= len;
+            }
+            actual = checksum.getValue();
+          }
+        } finally {
+          in.close();
+        }
+      } catch (NoSuchFileException | FileNotFoundException e) {
+        // deleted
       }
+      if (actual == expected) {
+        return true;
+      }
+      LOG.info("Downloading " + fileName + " again, its length or checksum doesn't match");
     }
+
+    for (String name : new String[] {fileName, checksumName(fileName)}) {
+      if (slowFileExists(dir, name)) {
+        dir.deleteFile(name);
+      }
+    }
+    return false;
+  }
+
+  private void fileDownloaded(Map<String,Object> file) {
+    filesDownloaded.add(new HashMap<>(file));
+    partialBytesDownloaded.addAndGet(-(Long) file.get(SIZE));
+  }
+
+  private void fsync(final Directory dir, final String fileName) {
+    fsyncService.submit(new Runnable(){
+      @Override
+      public void run() {
+        try {
+          dir.sync(Collections.singleton(fileName));
+        } catch (IOException e) {
+          fsyncException = e;
+        }
+      }
+    });
   }
 
   /** Returns true if the file exists (can be opened), false
@@ -1101,6 +1462,14 @@ public class SnapPuller {
   Map<String, Object> getCurrentFile() {
     Map<String, Object> tmp = currentFile;
     DirectoryFileFetcher tmpFileFetcher = dirFileFetcher;
+    if (tmpFileFetcher == null) {
+      // concurrent downloads: report any of them
+      for (DirectoryFileFetcher fetcher : activeFetchers) {
+        tmp = fetcher.fileDetails;
+        tmpFileFetcher = fetcher;
+        break;
+      }
+    }
     if (tmp == null)
       return null;
     tmp = new HashMap<>(tmp);
@@ -1109,6 +1478,37 @@ public class SnapPuller {
     return tmp;
   }
 
+  /** Returns the progress of the downloads of index files that are running. */
+  List<Map<String, Object>> getActiveFetches() {
+    List<Map<String, Object>> fetches = new ArrayList<>();
+    for (DirectoryFileFetcher fetcher : activeFetchers) {
+      Map<String, Object> fetch = new HashMap<>();
+      fetch.put(NAME, fetcher.fileName);
+      fetch.put(OFFSET, fetcher.offset);
+      fetch.put(SIZE, fetcher.size);
+      fetch.put("bytesDownloaded", fetcher.bytesDownloaded);
+      fetches.add(fetch);
+    }
+    return fetches;
+  }
+
+  /** Returns the bytes downloaded of the index files that are not downloaded completely yet. */
+  long getPartialBytesDownloaded() {
+    return partialBytesDownloaded.get();
+  }
+
+  int getFetchThreads() {
+    return fetchThreads;
+  }
+
+  long getChunkSize() {
+    return chunkSize;
+  }
+
+  double getMaxDownloadMBPerSec() {
+    return rateLimiter == null ? 0 : rateLimiter.getMbPerSec();
+  }
+
   boolean isPollingDisabled() {
     return pollDisabled.get();
   }
@@ -1120,6 +1520,69 @@ public class SnapPuller {
     return nextTime;
   }
 
+  /**
+   * Limits the rate of all the concurrent downloads of a fetch, like {@link RateLimiter.SimpleRateLimiter}
+   * does for a single stream. Downloads reserve their transfer under the limiter's lock, but pause
+   * outside of it, so that concurrent downloads don't pause one after the other.
+   */
+  static class DownloadRateLimiter {
+    private final double mbPerSec;
+
+    /** Time at which the last reserved transfer may proceed */
+    private long lastNS;
+
+    DownloadRateLimiter(double mbPerSec) {
+      this.mbPerSec = mbPerSec;
+    }
+
+    double getMbPerSec() {
+      return mbPerSec;
+    }
+
+    /**
+     * Reserves the transfer of these bytes, and returns how long, in nanoseconds, the caller
+     * must pause before the transfer to stay at or below the rate limit.
+     */
+    synchronized long reserve(long bytes) {
+      long startNS = System.nanoTime();
+      long targetNS = lastNS + (long) (1000000000 * (bytes / 1024. / 1024.) / mbPerSec);
+      if (startNS >= targetNS) {
+        // enforce the instant rate, not the rate averaged over all history
+        lastNS = startNS;
+        return 0;
+      }
+      lastNS = targetNS;
+      return targetNS - startNS;
+    }
+
+    /** Pauses as long as {@link #reserve} requires, without holding the lock. */
+    void pause(long bytes) throws InterruptedException {
+      long pauseNS = reserve(bytes);
+      if (pauseNS > 0) {
+        Thread.sleep(pauseNS / 1000000, (int) (pauseNS % 1000000));
+      }
+    }
+  }
+
+  /**
+   * A temp index dir that a failed download of chunks left behind: the next fetch of the
+   * same generation from the same master resumes from the chunks it holds. It is kept by
+   * the {@link ReplicationHandler}, since SolrCloud recoveries use a new SnapPuller for
+   * every attempt, and recorded in {@link #REPLICATION_PROPERTIES}, so that it is resumed or
+   * removed after a restart too.
+   */
+  static class ResumableDownload {
+    final String masterUrl;
+    final long generation;
+    final String tmpIdxDirName;
+
+    ResumableDownload(String masterUrl, long generation, String tmpIdxDirName) {
+      this.masterUrl = masterUrl;
+      this.generation = generation;
+      this.tmpIdxDirName = tmpIdxDirName;
+    }
+  }
+
   private static class ReplicationHandlerException extends InterruptedException {
     public ReplicationHandlerException(String message) {
       super(message);
@@ -1140,6 +1603,12 @@ public class SnapPuller {
 
     String saveAs;
 
+    Map<String, Object> fileDetails;
+
+    /** The range of the file to download */
+    long offset, end;
+
+    /** The number of bytes to download */
     long size;
 
     long bytesDownloaded = 0;
@@ -1148,6 +1617,9 @@ public class SnapPuller {
 
     Checksum checksum;
 
+    /** Checksum of all the bytes written to saveAs */
+    private final Checksum downloadedChecksum = new Adler32();
+
     int errorCount = 0;
 
     private boolean isConf;
@@ -1158,11 +1630,27 @@ public class SnapPuller {
 
     private IndexOutput outStream;
 
+    /** Whether saveAs is synced once downloaded, which is not needed for the chunks of a file */
+    private final boolean sync;
+
     DirectoryFileFetcher(Directory tmpIndexDir, Map<String, Object> fileDetails, String saveAs,
                 boolean isConf, long latestGen) throws IOException {
+      this(tmpIndexDir, fileDetails, saveAs, 0, (Long) fileDetails.get(SIZE), isConf, latestGen);
+    }
+
+    /**
+     * Downloads the bytes of the file from <code>offset</code>, inclusive, to
+     * <code>end</code>, exclusive.
+     */
+    DirectoryFileFetcher(Directory tmpIndexDir, Map<String, Object> fileDetails, String saveAs,
+                long offset, long end, boolean isConf, long latestGen) throws IOException {
       this.copy2Dir = tmpIndexDir;
+      this.fileDetails = fileDetails;
       this.fileName = (String) fileDetails.get(NAME);
-      this.size = (Long) fileDetails.get(SIZE);
+      this.offset = offset;
+      this.end = end;
+      this.size = end - offset;
+      this.sync = offset == 0 && end == (Long) fileDetails.get(SIZE);
       this.isConf = isConf;
       this.saveAs = saveAs;
 
@@ -1178,6 +1666,7 @@ public class SnapPuller {
      * The main method which downloads file
      */
     void fetchFile() throws Exception {
+      activeFetchers.add(this);
       try {
         while (true) {
           final FastInputStream is = getStream();
@@ -1195,18 +1684,12 @@ public class SnapPuller {
           }
         }
       } finally {
+        activeFetchers.remove(this);
         cleanup();
         //if cleanup suceeds . The file is downloaded fully. do an fsync
-        fsyncService.submit(new Runnable(){
-          @Override
-          public void run() {
-            try {
-              copy2Dir.sync(Collections.singleton(saveAs));
-            } catch (IOException e) {
-              fsyncException = e;
-            }
-          }
-        });
+        if (sync) {
+          fsync(copy2Dir, saveAs);
+        }
       }
     }
 
@@ -1216,10 +1699,14 @@ public class SnapPuller {
       try {
         while (true) {
           if (stop) {
-            stop = false;
+            // not reset here: it also stops the other concurrent fetches
             aborted = true;
             throw new ReplicationHandlerException("User aborted replication");
           }
+          if (fetchFailed) {
+            aborted = true;
+            throw new ReplicationHandlerException("Download of another file failed");
+          }
           long checkSumServer = -1;
           fis.readFully(intbytes);
           //read the size of the packet
@@ -1243,14 +1730,27 @@ public class SnapPuller {
             checksum.update(buf, 0, packetSize);
             long checkSumClient = checksum.getValue();
             if (checkSumClient != checkSumServer) {
-              LOG.error("Checksum not matched between client and server for: " + currentFile);
-              //if checksum is wrong it is a problem return for retry
-              return 1;
+              LOG.error("Checksum not matched between client and server for: " + fileName
+                  + " at offset " + (offset + bytesDownloaded));
+              //if checksum is wrong it is a problem return for retry, from the last verified packet
+              errorCount++;
+              if (errorCount > MAX_RETRIES) {
+                throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+                        "Checksum mismatch for file:" + fileName);
+              }
+              return ERR;
             }
           }
           //if everything is fine, write down the packet to the file
+          // a master that ignores END_OFFSET streams past the end of the range
+          packetSize = (int) Math.min(packetSize, size - bytesDownloaded);
           writeBytes(packetSize);
           bytesDownloaded += packetSize;
+          partialBytesDownloaded.addAndGet(packetSize);
+          if (rateLimiter != null) {
+            // one limit for all concurrent fetches, which pause concurrently
+            rateLimiter.pause(packetSize);
+          }
           if (bytesDownloaded >= size)
             return 0;
           //errorcount is always set to zero after a successful packet
@@ -1258,6 +1758,12 @@ public class SnapPuller {
         }
       } catch (ReplicationHandlerException e) {
         throw e;
+      } catch (InterruptedException e) {
+        // interrupted while pausing: the download is stopped
+        aborted = true;
+        throw e;
+      } catch (SolrException e) {
+        throw e;
       } catch (Exception e) {
         LOG.warn("Error in fetching packets ", e);
         //for any failure , increment the error count
@@ -1273,6 +1779,12 @@ public class SnapPuller {
 
     protected void writeBytes(int packetSize) throws IOException {
       outStream.writeBytes(buf, 0, packetSize);
+      downloadedChecksum.update(buf, 0, packetSize);
+    }
+
+    /** Returns the checksum of the bytes downloaded so far */
+    long getDownloadedChecksum() {
+      return downloadedChecksum.getValue();
     }
 
     /**
@@ -1306,6 +1818,7 @@ public class SnapPuller {
           LOG.error("Error closing the file stream: "+ this.saveAs ,e);
       }
       if (bytesDownloaded != size) {
+        partialBytesDownloaded.addAndGet(-bytesDownloaded);
         //if the download is not complete then
         //delete the file being downloaded
         try {
@@ -1350,21 +1863,17 @@ public class SnapPuller {
       params.set(CommonParams.WT, FILE_STREAM);
         // This happen if there is a failure there is a retry. the offset=<sizedownloaded> ensures that
         // the server starts from the offset
-      if (bytesDownloaded > 0) {
-        params.set(OFFSET, Long.toString(bytesDownloaded));
+      if (offset + bytesDownloaded > 0) {
+        params.set(OFFSET, Long.toString(offset + bytesDownloaded));
+      }
+      if (end < (Long) fileDetails.get(SIZE)) {
+        params.set(END_OFFSET, Long.toString(end));
       }
       
 
-      NamedList response;
       InputStream is = null;
-      
-      HttpSolrServer s = new HttpSolrServer(masterUrl, myHttpClient, null);  //XXX use shardhandler
       try {
-        s.setSoTimeout(60000);
-        s.setConnectionTimeout(15000);
-        QueryRequest req = new QueryRequest(params);
-        response = s.request(req);
-        is = (InputStream) response.get("stream");
+        is = openIndexFileStream(params);
         if(useInternal) {
           is = new InflaterInputStream(is);
         }
@@ -1373,11 +1882,26 @@ public class SnapPuller {
         //close stream on error
         IOUtils.closeQuietly(is);
         throw new IOException("Could not download file '" + fileName + "'", e);
-      } finally {
-        s.shutdown();
       }
     }
   }
+
+  /**
+   * Sends this request for the content of an index file to the master, and returns the
+   * stream of packets of the response.
+   */
+  InputStream openIndexFileStream(SolrParams params) throws Exception {
+    HttpSolrServer s = new HttpSolrServer(masterUrl, myHttpClient, null);  //XXX use shardhandler
+    try {
+      s.setSoTimeout(60000);
+      s.setConnectionTimeout(15000);
+      QueryRequest req = new QueryRequest(params);
+      NamedList response = s.request(req);
+      return (InputStream) response.get("stream");
+    } finally {
+      s.shutdown();
+    }
+  }
   
   /**
    * The class acts as a client for ReplicationHandler.FileStream. It understands the protocol of wt=filestream
@@ -1749,4 +2273,10 @@ public class SnapPuller {
   static final String INDEX_REPLICATED_AT_LIST = "indexReplicatedAtList";
 
   static final String REPLICATION_FAILED_AT_LIST = "replicationFailedAtList";
+
+  static final String RESUMABLE_MASTER_URL = "resumableMasterUrl";
+
+  static final String RESUMABLE_GENERATION = "resumableGeneration";
+
+  static final String RESUMABLE_INDEX_DIR = "resumableIndexDir";
 }
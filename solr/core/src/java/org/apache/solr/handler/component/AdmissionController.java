@@ -0,0 +1,198 @@
+package org.apache.solr.handler.component;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.search.SortSpec;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the cost of the requests a {@link SearchHandler} executes at once on a node.  Each request is given a cost,
+ * estimated from its parsed query, filters, facets and the number of documents it asks for, and waits in a fair queue
+ * until the cost of the requests in flight leaves room for it, so that a few expensive requests count as many cheap
+ * ones.  A request that finds the queue full, or that waits longer than <code>maxWaitMs</code>, is rejected with a 503.
+ * <p/>
+ * Configured on a search handler with:
+ * <pre class="prettyprint">
+ * &lt;lst name="admission"&gt;
+ *   &lt;int name="maxCost"&gt;64&lt;/int&gt;
+ *   &lt;int name="maxQueued"&gt;100&lt;/int&gt;
+ *   &lt;int name="maxWaitMs"&gt;1000&lt;/int&gt;
+ * &lt;/lst&gt;
+ * </pre>
+ *
+ * @lucene.experimental
+ */
+public class AdmissionController {
+  public static final String INIT_ADMISSION = "admission";
+
+  /** The number of query and filter clauses that cost as much as a simple request */
+  static final int CLAUSES_PER_UNIT = 16;
+  /** The number of documents asked for (start + rows) that cost as much as a simple request */
+  static final int DOCS_PER_UNIT = 1000;
+
+  private final int maxCost;
+  private final int maxQueued;
+  private final long maxWaitMs;
+  private final Semaphore permits;
+
+  private final AtomicLong admitted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+
+  /**
+   * @param maxCost the total cost of the requests executed at once
+   * @param maxQueued the number of requests that may wait, or -1 for no limit
+   * @param maxWaitMs how long a request may wait before it is rejected
+   */
+  public AdmissionController(int maxCost, int maxQueued, long maxWaitMs) {
+    if (maxCost <= 0) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "maxCost of admission must be positive: " + maxCost);
+    }
+    this.maxCost = maxCost;
+    this.maxQueued = maxQueued;
+    this.maxWaitMs = maxWaitMs;
+    this.permits = new Semaphore(maxCost, true);
+  }
+
+  /** Creates the admission controller of a handler from its init args, or returns null if it has none */
+  public static AdmissionController create(NamedList initArgs) {
+    Object args = initArgs == null ? null : initArgs.get(INIT_ADMISSION);
+    if (args == null) {
+      return null;
+    }
+    SolrParams params = SolrParams.toSolrParams((NamedList) args);
+    int maxCost = params.getInt("maxCost", Runtime.getRuntime().availableProcessors() * 4);
+    int maxQueued = params.getInt("maxQueued", -1);
+    long maxWaitMs = params.getInt("maxWaitMs", 1000);
+    return new AdmissionController(maxCost, maxQueued, maxWaitMs);
+  }
+
+  /**
+   * Waits until the request may be executed.
+   * @return the cost of the request, to {@link #release} when it is done
+   * @throws SolrException with a 503 if the request is rejected
+   */
+  public int acquire(ResponseBuilder rb) {
+    int cost = estimateCost(rb);
+    boolean mustWait = permits.hasQueuedThreads() || permits.availablePermits() < cost;
+    if (mustWait && maxQueued >= 0 && permits.getQueueLength() >= maxQueued) {
+      rejected.incrementAndGet();
+      throw new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE,
+          "Too many requests waiting to be executed: " + maxQueued);
+    }
+
+    boolean acquired;
+    try {
+      // waits behind the requests already queued, even if there is room for this one
+      acquired = permits.tryAcquire(cost, maxWaitMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejected.incrementAndGet();
+      throw new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE, "Interrupted while waiting to be executed", e);
+    }
+    if (!acquired) {
+      timedOut.incrementAndGet();
+      throw new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE,
+          "Request of cost " + cost + " waited more than " + maxWaitMs + "ms to be executed");
+    }
+    admitted.incrementAndGet();
+    return cost;
+  }
+
+  public void release(int cost) {
+    permits.release(cost);
+  }
+
+  /**
+   * Estimates the cost of a request from its parsed query and filters, its facets and the number of documents
+   * it asks for, where 1 is the cost of a simple request.  The cost is at most the maximum cost, so that any
+   * request can be executed.
+   */
+  public int estimateCost(ResponseBuilder rb) {
+    long cost = 1;
+
+    long clauses = countClauses(rb.getQuery());
+    List<Query> filters = rb.getFilters();
+    if (filters != null) {
+      for (Query filter : filters) {
+        clauses += countClauses(filter);
+      }
+    }
+    cost += clauses / CLAUSES_PER_UNIT;
+
+    SolrParams params = rb.req.getParams();
+    if (params.getBool(FacetParams.FACET, false)) {
+      String[] fields = params.getParams(FacetParams.FACET_FIELD);
+      if (fields != null) {
+        for (String field : fields) {
+          // an unlimited facet sorts and returns all the terms of the field
+          cost += params.getFieldInt(field, FacetParams.FACET_LIMIT, 10) < 0 ? 2 : 1;
+        }
+      }
+      String[] pivots = params.getParams(FacetParams.FACET_PIVOT);
+      if (pivots != null) {
+        for (String pivot : pivots) {
+          cost += pivot.split(",").length;
+        }
+      }
+    }
+    if (params.get("json.facet") != null) {
+      cost += 2;
+    }
+
+    SortSpec sortSpec = rb.getSortSpec();
+    if (sortSpec != null) {
+      cost += ((long) sortSpec.getOffset() + Math.max(0, sortSpec.getCount())) / DOCS_PER_UNIT;
+    }
+
+    return (int) Math.min(cost, maxCost);
+  }
+
+  private static long countClauses(Query query) {
+    if (!(query instanceof BooleanQuery)) {
+      return query == null ? 0 : 1;
+    }
+    long count = 0;
+    for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+      count += countClauses(clause.getQuery());
+    }
+    return count;
+  }
+
+  public NamedList<Object> getStatistics() {
+    NamedList<Object> lst = new SimpleOrderedMap<>();
+    lst.add("maxCost", maxCost);
+    lst.add("costInFlight", maxCost - permits.availablePermits());
+    lst.add("queued", permits.getQueueLength());
+    lst.add("admitted", admitted.get());
+    lst.add("rejected", rejected.get());
+    lst.add("timedOut", timedOut.get());
+    return lst;
+  }
+}
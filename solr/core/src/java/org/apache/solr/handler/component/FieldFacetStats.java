@@ -48,7 +48,7 @@ public class FieldFacetStats {
   public final String name;
   final SchemaField facet_sf;
   final SchemaField field_sf;
-  final boolean calcDistinct;
+  final StatsOptions options;
 
   public final Map<String, StatsValues> facetStatsValues;
 
@@ -64,10 +64,14 @@ public class FieldFacetStats {
   SortedDocValues topLevelSortedValues = null;
 
   public FieldFacetStats(SolrIndexSearcher searcher, String name, SchemaField field_sf, SchemaField facet_sf, boolean calcDistinct) throws IOException {
+    this(searcher, name, field_sf, facet_sf, new StatsOptions(calcDistinct));
+  }
+
+  public FieldFacetStats(SolrIndexSearcher searcher, String name, SchemaField field_sf, SchemaField facet_sf, StatsOptions options) throws IOException {
     this.name = name;
     this.field_sf = field_sf;
     this.facet_sf = facet_sf;
-    this.calcDistinct = calcDistinct;
+    this.options = options;
 
     topLevelReader = searcher.getAtomicReader();
     valueSource = facet_sf.getType().getValueSource(facet_sf, null);
@@ -80,7 +84,7 @@ public class FieldFacetStats {
   private StatsValues getStatsValues(String key) throws IOException {
     StatsValues stats = facetStatsValues.get(key);
     if (stats == null) {
-      stats = StatsValuesFactory.createStatsValues(qcontext, field_sf, calcDistinct);
+      stats = StatsValuesFactory.createStatsValues(qcontext, field_sf, options);
       facetStatsValues.put(key, stats);
       stats.setNextReader(context);
     }
@@ -139,7 +143,7 @@ public class FieldFacetStats {
       String key = (String) pairs.getKey();
       StatsValues facetStats = facetStatsValues.get(key);
       if (facetStats == null) {
-        facetStats = StatsValuesFactory.createStatsValues(qcontext, field_sf, calcDistinct);
+        facetStats = StatsValuesFactory.createStatsValues(qcontext, field_sf, options);
         facetStatsValues.put(key, facetStats);
       }
       Integer count = (Integer) pairs.getValue();
@@ -113,8 +113,13 @@ public class HttpShardHandler extends ShardHandler {
 
   @Override
   public void submit(final ShardRequest sreq, final String shard, final ModifiableSolrParams params) {
+    final ShardResponseCache responseCache = params.getBool(ShardParams.SHARDS_CACHE, false)
+        ? httpShardHandlerFactory.getShardResponseCache() : null;
+    // only a sub-request with a cached response is sent to the replica that returned it
+    final String cacheKey = responseCache == null ? null : ShardResponseCache.getKey(shard, params);
+    final ShardResponseCache.Entry cached = responseCache == null ? null : responseCache.get(cacheKey);
     // do this outside of the callable for thread safety reasons
-    final List<String> urls = getURLs(shard);
+    final List<String> urls = ShardResponseCache.preferReplica(cached, getURLs(shard));
 
     Callable<ShardResponse> task = new Callable<ShardResponse>() {
       @Override
@@ -142,6 +147,10 @@ public class HttpShardHandler extends ShardHandler {
           // no need to set the response parser as binary is the default
           // req.setResponseParser(new BinaryResponseParser());
 
+          if (responseCache != null) {
+            params.set(ShardParams.SHARDS_CACHE_VERSION, cached == null ? "" : cached.version);
+          }
+
           // if there are no shards available for a slice, urls.size()==0
           if (urls.size()==0) {
             // TODO: what's the right error code here? We should use the same thing when
@@ -163,6 +172,15 @@ public class HttpShardHandler extends ShardHandler {
             ssr.nl = rsp.getResponse();
             srsp.setShardAddress(rsp.getServer());
           }
+
+          if (cacheKey != null) {
+            NamedList<Object> cachedResponse = responseCache.getNotModified(cached, ssr.nl);
+            if (cachedResponse != null) {
+              ssr.nl = cachedResponse;
+            } else {
+              responseCache.put(cacheKey, srsp.getShardAddress(), ssr.nl);
+            }
+          }
         }
         catch( ConnectException cex ) {
           srsp.setException(cex); //????
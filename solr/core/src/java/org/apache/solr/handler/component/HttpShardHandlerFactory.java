@@ -74,8 +74,11 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   int keepAliveTime = 5;
   int queueSize = -1;
   boolean accessPolicy = false;
+  int shardResponseCacheMaxRamMB = 16;
+  int shardResponseCacheMaxEntryBytes = 256 << 10;
 
   private String scheme = null;
+  private ShardResponseCache shardResponseCache;
 
   private final Random r = new Random();
 
@@ -97,6 +100,12 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   // Configure if the threadpool favours fairness over throughput
   static final String INIT_FAIRNESS_POLICY = "fairnessPolicy";
 
+  // The megabytes of shard responses cached for requests with shards.cache=true (0 to disable)
+  static final String INIT_SHARD_RESPONSE_CACHE_MAX_RAM_MB = "shardResponseCacheMaxRamMB";
+
+  // Shard responses larger than this number of bytes are not cached
+  static final String INIT_SHARD_RESPONSE_CACHE_MAX_ENTRY_BYTES = "shardResponseCacheMaxEntryBytes";
+
   /**
    * Get {@link ShardHandler} that uses the default http client.
    */
@@ -127,6 +136,11 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     this.keepAliveTime = getParameter(args, MAX_THREAD_IDLE_TIME, keepAliveTime);
     this.queueSize = getParameter(args, INIT_SIZE_OF_QUEUE, queueSize);
     this.accessPolicy = getParameter(args, INIT_FAIRNESS_POLICY, accessPolicy);
+    this.shardResponseCacheMaxRamMB = getParameter(args, INIT_SHARD_RESPONSE_CACHE_MAX_RAM_MB, shardResponseCacheMaxRamMB);
+    this.shardResponseCacheMaxEntryBytes = getParameter(args, INIT_SHARD_RESPONSE_CACHE_MAX_ENTRY_BYTES, shardResponseCacheMaxEntryBytes);
+    if (shardResponseCacheMaxRamMB > 0) {
+      this.shardResponseCache = new ShardResponseCache(shardResponseCacheMaxRamMB * (1L << 20), shardResponseCacheMaxEntryBytes);
+    }
     
     // magic sysprop to make tests reproducible: set by SolrTestCaseJ4.
     String v = System.getProperty("tests.shardhandler.randomSeed");
@@ -189,6 +203,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
         if (loadbalancer != null) {
           loadbalancer.shutdown();
         }
+        if (shardResponseCache != null) {
+          shardResponseCache.destroy();
+        }
       }
     }
   }
@@ -205,6 +222,14 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     return loadbalancer.request(new LBHttpSolrServer.Req(req, urls));
   }
 
+  /**
+   * The cache of shard responses used by requests with {@link org.apache.solr.common.params.ShardParams#SHARDS_CACHE},
+   * or null if it is disabled.
+   */
+  public ShardResponseCache getShardResponseCache() {
+    return shardResponseCache;
+  }
+
   /**
    * Creates a randomized list of urls for the given shard.
    *
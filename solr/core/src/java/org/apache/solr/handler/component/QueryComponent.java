@@ -332,6 +332,9 @@ public class QueryComponent extends SearchComponent
 
     SolrIndexSearcher.QueryCommand cmd = rb.getQueryCommand();
     cmd.setTimeAllowed(timeAllowed);
+    if (params.getBool(CommonParams.APPROX_NUM_FOUND, false)) {
+      cmd.setFlags(SolrIndexSearcher.APPROXIMATE_NUMFOUND);
+    }
     SolrIndexSearcher.QueryResult result = new SolrIndexSearcher.QueryResult();
 
     //
@@ -354,6 +357,7 @@ public class QueryComponent extends SearchComponent
                 .setGroupSort(groupingSpec.getGroupSort())
                 .setTopNGroups(cmd.getOffset() + cmd.getLen())
                 .setIncludeGroupCount(groupingSpec.isIncludeGroupCount())
+                .setSearcher(searcher)
                 .build()
             );
           }
@@ -395,6 +399,7 @@ public class QueryComponent extends SearchComponent
                     .setMaxDocPerGroup(groupingSpec.getGroupOffset() + groupingSpec.getGroupLimit())
                     .setNeedScores(needScores)
                     .setNeedMaxScore(needScores)
+                    .setSearcher(searcher)
                     .build()
             );
           }
@@ -936,6 +941,7 @@ public class QueryComponent extends SearchComponent
       long numFound = 0;
       Float maxScore=null;
       boolean partialResults = false;
+      boolean approxNumFound = false;
       for (ShardResponse srsp : sreq.responses) {
         SolrDocumentList docs = null;
 
@@ -981,6 +987,9 @@ public class QueryComponent extends SearchComponent
         if (responseHeader != null && Boolean.TRUE.equals(responseHeader.get("partialResults"))) {
           partialResults = true;
         }
+        if (responseHeader != null && Boolean.TRUE.equals(responseHeader.get("approxNumFound"))) {
+          approxNumFound = true;
+        }
         
         // calculate global maxScore and numDocsFound
         if (docs.getMaxScore() != null) {
@@ -1071,6 +1080,11 @@ public class QueryComponent extends SearchComponent
           rb.rsp.getResponseHeader().add("partialResults", Boolean.TRUE);
         }
       }
+      if (approxNumFound) {
+        if(rb.rsp.getResponseHeader().get("approxNumFound") == null) {
+          rb.rsp.getResponseHeader().add("approxNumFound", Boolean.TRUE);
+        }
+      }
   }
 
   /**
@@ -20,6 +20,8 @@ package org.apache.solr.handler.component;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -124,68 +126,99 @@ public class RealTimeGetComponent extends SearchComponent
     SchemaField idField = core.getLatestSchema().getUniqueKeyField();
     FieldType fieldType = idField.getType();
 
-    SolrDocumentList docList = new SolrDocumentList();
     UpdateLog ulog = core.getUpdateHandler().getUpdateLog();
 
-    RefCounted<SolrIndexSearcher> searcherHolder = null;
-
     DocTransformer transformer = rsp.getReturnFields().getTransformer();
     if (transformer != null) {
       TransformContext context = new TransformContext();
       context.req = req;
       transformer.setContext(context);
     }
-   try {
-     SolrIndexSearcher searcher = null;
-
-     BytesRef idBytes = new BytesRef();
-     for (String idStr : allIds) {
-       fieldType.readableToIndexed(idStr, idBytes);
-       if (ulog != null) {
-         Object o = ulog.lookup(idBytes);
-         if (o != null) {
-           // should currently be a List<Oper,Ver,Doc/Id>
-           List entry = (List)o;
-           assert entry.size() >= 3;
-           int oper = (Integer)entry.get(0) & UpdateLog.OPERATION_MASK;
-           switch (oper) {
-             case UpdateLog.ADD:
-               SolrDocument doc = toSolrDoc((SolrInputDocument)entry.get(entry.size()-1), core.getLatestSchema());
-               if(transformer!=null) {
-                 transformer.transform(doc, -1); // unknown docID
-               }
-              docList.add(doc);
-              break;
-             case UpdateLog.DELETE:
-              break;
-             default:
-               throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,  "Unknown Operation! " + oper);
-           }
-           continue;
+   // the documents found, by position in the request
+   SolrDocument[] docs = new SolrDocument[allIds.length];
+   // the positions of the ids that have to be looked up in the index
+   List<Integer> misses = new ArrayList<>();
+   final BytesRef[] idBytes = new BytesRef[allIds.length];
+
+   for (int i=0; i<allIds.length; i++) {
+     BytesRef b = new BytesRef();
+     fieldType.readableToIndexed(allIds[i], b);
+     idBytes[i] = b;
+     if (ulog != null) {
+       Object o = ulog.lookup(b);
+       if (o != null) {
+         // should currently be a List<Oper,Ver,Doc/Id>
+         List entry = (List)o;
+         assert entry.size() >= 3;
+         int oper = (Integer)entry.get(0) & UpdateLog.OPERATION_MASK;
+         switch (oper) {
+           case UpdateLog.ADD:
+             SolrDocument doc = toSolrDoc((SolrInputDocument)entry.get(entry.size()-1), core.getLatestSchema());
+             if(transformer!=null) {
+               transformer.transform(doc, -1); // unknown docID
+             }
+             docs[i] = doc;
+             break;
+           case UpdateLog.DELETE:
+             break;
+           default:
+             throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,  "Unknown Operation! " + oper);
          }
+         continue;
        }
+     }
+     misses.add(i);
+   }
 
-       // didn't find it in the update log, so it should be in the newest searcher opened
-       if (searcher == null) {
-         searcherHolder = core.getRealtimeSearcher();
-         searcher = searcherHolder.get();
-       }
-
+   if (!misses.isEmpty()) {
+     // didn't find them in the update log, so they should be in the newest searcher opened
+     RefCounted<SolrIndexSearcher> searcherHolder = core.getRealtimeSearcher();
+     try {
+       SolrIndexSearcher searcher = searcherHolder.get();
        // SolrCore.verbose("RealTimeGet using searcher ", searcher);
 
-       int docid = searcher.getFirstMatch(new Term(idField.getName(), idBytes));
-       if (docid < 0) continue;
-       Document luceneDocument = searcher.doc(docid);
-       SolrDocument doc = toSolrDoc(luceneDocument,  core.getLatestSchema());
-       if( transformer != null ) {
-         transformer.transform(doc, docid);
+       // probe the segments with the ids in index order...
+       Integer[] order = misses.toArray(new Integer[misses.size()]);
+       Arrays.sort(order, new Comparator<Integer>() {
+         @Override
+         public int compare(Integer a, Integer b) {
+           return idBytes[a].compareTo(idBytes[b]);
+         }
+       });
+       BytesRef[] sortedIds = new BytesRef[order.length];
+       for (int i=0; i<order.length; i++) {
+         sortedIds[i] = idBytes[order[i]];
        }
-       docList.add(doc);
+       int[] docids = searcher.lookupIds(sortedIds);
+
+       // ...then load the stored fields in docid order, segment by segment
+       long[] found = new long[docids.length];
+       int nFound = 0;
+       for (int i=0; i<docids.length; i++) {
+         if (docids[i] >= 0) {
+           found[nFound++] = (((long)docids[i]) << 32) | order[i];
+         }
+       }
+       Arrays.sort(found, 0, nFound);
+       for (int i=0; i<nFound; i++) {
+         int docid = (int)(found[i] >>> 32);
+         int pos = (int)found[i];
+         Document luceneDocument = searcher.doc(docid);
+         SolrDocument doc = toSolrDoc(luceneDocument,  core.getLatestSchema());
+         if( transformer != null ) {
+           transformer.transform(doc, docid);
+         }
+         docs[pos] = doc;
+       }
+     } finally {
+       searcherHolder.decref();
      }
+   }
 
-   } finally {
-     if (searcherHolder != null) {
-       searcherHolder.decref();
+   SolrDocumentList docList = new SolrDocumentList();
+   for (SolrDocument doc : docs) {
+     if (doc != null) {
+       docList.add(doc);
      }
    }
 
@@ -22,6 +22,7 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrException;
@@ -37,6 +38,7 @@ import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.RequestHandlerBase;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.RequestBudget;
 import org.apache.solr.util.RTimer;
 import org.apache.solr.util.SolrPluginUtils;
 import org.apache.solr.util.plugin.PluginInfoInitialized;
@@ -64,6 +66,8 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
   protected List<SearchComponent> components = null;
   private ShardHandlerFactory shardHandlerFactory ;
   private PluginInfo shfInfo;
+  private AdmissionController admission;
+  private final AtomicLong budgetExceeded = new AtomicLong();
 
   protected List<String> getDefaultComponents()
   {
@@ -79,6 +83,15 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
     return names;
   }
 
+  /**
+   * True if the responses of this handler to shard requests only depend on the request and the searcher,
+   * so that the coordinator may cache them.
+   * @see ShardResponseCache
+   */
+  protected boolean isShardResponseCacheable() {
+    return true;
+  }
+
   @Override
   public void init(PluginInfo info) {
     init(info.initArgs);
@@ -159,6 +172,7 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
       });
     }
 
+    admission = AdmissionController.create(initArgs);
   }
 
   public List<SearchComponent> getComponents() {
@@ -192,6 +206,13 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
     ShardHandler shardHandler1 = shardHandlerFactory.getShardHandler();
     shardHandler1.checkDistributed(rb);
 
+    boolean cacheable = !rb.isDistrib && isShardResponseCacheable();
+    if (cacheable && ShardResponseCache.checkNotModified(req, rsp)) {
+      // the coordinator already has the response of this shard
+      return;
+    }
+    RequestBudget.init(req);
+
     if (timer == null) {
       // non-debugging prepare phase
       for( SearchComponent c : components ) {
@@ -210,29 +231,42 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
 
     if (!rb.isDistrib) {
       // a normal non-distributed request
-
-      // The semantics of debugging vs not debugging are different enough that
-      // it makes sense to have two control loops
-      if(!rb.isDebug()) {
-        // Process
-        for( SearchComponent c : components ) {
-          c.process(rb);
+      int cost = admission == null ? 0 : admission.acquire(rb);
+      try {
+        // The semantics of debugging vs not debugging are different enough that
+        // it makes sense to have two control loops
+        if(!rb.isDebug()) {
+          // Process
+          for( SearchComponent c : components ) {
+            c.process(rb);
+          }
         }
-      }
-      else {
-        // Process
-        RTimer subt = timer.sub( "process" );
-        for( SearchComponent c : components ) {
-          rb.setTimer( subt.sub( c.getName() ) );
-          c.process(rb);
-          rb.getTimer().stop();
+        else {
+          // Process
+          RTimer subt = timer.sub( "process" );
+          for( SearchComponent c : components ) {
+            rb.setTimer( subt.sub( c.getName() ) );
+            c.process(rb);
+            rb.getTimer().stop();
+          }
+          subt.stop();
+          timer.stop();
+
+          // add the timing info
+          if (rb.isDebugTimings()) {
+            rb.addDebugInfo("timing", timer.asNamedList() );
+          }
         }
-        subt.stop();
-        timer.stop();
 
-        // add the timing info
-        if (rb.isDebugTimings()) {
-          rb.addDebugInfo("timing", timer.asNamedList() );
+        if (cacheable) {
+          ShardResponseCache.addShardVersion(req, rsp);
+        }
+      } catch (RequestBudget.ExceededException e) {
+        budgetExceeded.incrementAndGet();
+        throw e;
+      } finally {
+        if (admission != null) {
+          admission.release(cost);
         }
       }
     } else {
@@ -276,6 +310,9 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
               params.remove(CommonParams.HEADER_ECHO_PARAMS);
               params.set(ShardParams.IS_SHARD, true);  // a sub (shard) request
               params.set(ShardParams.SHARD_URL, shard); // so the shard knows what was asked
+              if (req.getParams().getBool(ShardParams.SHARDS_CACHE, false)) {
+                params.set(ShardParams.SHARDS_CACHE, true);  // for sub-requests that don't copy the original params
+              }
               if (rb.requestInfo != null) {
                 // we could try and detect when this is needed, but it could be tricky
                 params.set("NOW", Long.toString(rb.requestInfo.getNOW().getTime()));
@@ -386,6 +423,16 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware ,
   public String getSource() {
     return null;
   }
+
+  @Override
+  public NamedList<Object> getStatistics() {
+    NamedList<Object> lst = super.getStatistics();
+    lst.add("budgetExceeded", budgetExceeded.get());
+    if (admission != null) {
+      lst.add("admission", admission.getStatistics());
+    }
+    return lst;
+  }
 }
 
 
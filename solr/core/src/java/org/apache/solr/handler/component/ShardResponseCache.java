@@ -0,0 +1,245 @@
+package org.apache.solr.handler.component;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Responses of shards to the sub-requests of distributed requests, kept by the coordinator so that a sub-request
+ * repeated against a shard whose index has not changed is neither executed nor sent back again.
+ * <p/>
+ * A response is cached with the version the shard returned with it, which identifies the core and the searcher
+ * that produced it.  When the same sub-request is sent to the shard again, the cached version is sent
+ * with it in {@link ShardParams#SHARDS_CACHE_VERSION}, and if the shard still has that version it only answers
+ * {@link #NOT_MODIFIED}, and the cached response is used.  A shard doesn't return a version for responses that
+ * depend on the time of the request (that used <code>NOW</code>), or that are partial, and those aren't cached.
+ * <p/>
+ * The cache is bounded by the serialized size of the responses, and the least recently used ones are evicted first.
+ * Since a version is only valid for the replica that returned it, a sub-request that has a cached response
+ * is sent to that replica first; other sub-requests are load balanced as usual.
+ *
+ * @see ShardParams#SHARDS_CACHE
+ */
+public class ShardResponseCache {
+  /** The response header entry of a shard that has the version of the cached response */
+  public static final String NOT_MODIFIED = "notModified";
+
+  private final LinkedHashMap<String,Entry> cache = new LinkedHashMap<>(16, 0.75f, true);  // in access order
+  private final long maxRamBytes;
+  private final int maxEntryBytes;
+  private long ramBytes;
+  private final AtomicLong notModified = new AtomicLong();
+
+  /**
+   * @param maxRamBytes the maximum total size of the cached responses, once serialized
+   * @param maxEntryBytes responses larger than this, once serialized, are not cached
+   */
+  public ShardResponseCache(long maxRamBytes, int maxEntryBytes) {
+    this.maxRamBytes = maxRamBytes;
+    this.maxEntryBytes = (int) Math.min(maxEntryBytes, maxRamBytes);
+  }
+
+  /** A cached response, serialized so that each use gets its own copy */
+  public static class Entry {
+    final String version;
+    final String replica;
+    final byte[] response;
+
+    Entry(String version, String replica, byte[] response) {
+      this.version = version;
+      this.replica = replica;
+      this.response = response;
+    }
+
+    long ramBytesUsed() {
+      // the key is about as large as the version and the replica
+      return response.length + 4 * (version.length() + (replica == null ? 0 : replica.length()));
+    }
+
+    NamedList<Object> getResponse() throws IOException {
+      return (NamedList<Object>) new JavaBinCodec().unmarshal(new ByteArrayInputStream(response));
+    }
+  }
+
+  /**
+   * The key of a sub-request to a shard: the shard and the parameters, in a canonical order,
+   * without the ones that are set per request.
+   */
+  public static String getKey(String shard, SolrParams params) {
+    List<String> names = new ArrayList<>();
+    for (Iterator<String> it = params.getParameterNamesIterator(); it.hasNext(); ) {
+      String name = it.next();
+      if (CommonParams.NOW.equals(name) || ShardParams.SHARDS_CACHE_VERSION.equals(name)
+          || ShardParams.SHARD_URL.equals(name) || CommonParams.WT.equals(name) || CommonParams.VERSION.equals(name)) continue;
+      names.add(name);
+    }
+    Collections.sort(names);
+
+    StringBuilder sb = new StringBuilder(shard);
+    for (String name : names) {
+      for (String val : params.getParams(name)) {
+        sb.append('&').append(name).append('=').append(val);
+      }
+    }
+    return sb.toString();
+  }
+
+  public synchronized Entry get(String key) {
+    return cache.get(key);
+  }
+
+  /**
+   * Returns the replicas of a shard with the one that returned a cached response first, since the
+   * response can only be revalidated by that replica, or the replicas unchanged if there is none.
+   * @param urls the replicas of the shard, in the order they are queried, which are not modified
+   */
+  public static List<String> preferReplica(Entry entry, List<String> urls) {
+    if (entry == null || entry.replica == null || urls.size() <= 1 || !urls.contains(entry.replica)) {
+      return urls;
+    }
+    List<String> preferred = new ArrayList<>(urls.size());
+    preferred.add(entry.replica);
+    for (String url : urls) {
+      if (!url.equals(entry.replica)) preferred.add(url);
+    }
+    return preferred;
+  }
+
+  /** Caches the response of a shard if it returned its version with it */
+  public void put(String key, String replica, NamedList<Object> response) throws IOException {
+    String version = getVersion(response);
+    if (version == null) return;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JavaBinCodec().marshal(response, out);
+    if (out.size() > maxEntryBytes) {
+      remove(key);
+      return;
+    }
+
+    Entry entry = new Entry(version, replica, out.toByteArray());
+    synchronized (this) {
+      Entry old = cache.put(key, entry);
+      if (old != null) ramBytes -= old.ramBytesUsed();
+      ramBytes += entry.ramBytesUsed();
+      for (Iterator<Entry> it = cache.values().iterator(); ramBytes > maxRamBytes && it.hasNext(); ) {
+        ramBytes -= it.next().ramBytesUsed();
+        it.remove();
+      }
+    }
+  }
+
+  private synchronized void remove(String key) {
+    Entry old = cache.remove(key);
+    if (old != null) ramBytes -= old.ramBytesUsed();
+  }
+
+  /**
+   * Returns the cached response if the shard answered that it did not change,
+   * or null if the shard sent a new response.
+   */
+  public NamedList<Object> getNotModified(Entry entry, NamedList<Object> response) throws IOException {
+    NamedList header = (NamedList) response.get("responseHeader");
+    if (entry == null || header == null || !Boolean.TRUE.equals(header.get(NOT_MODIFIED))) {
+      return null;
+    }
+    notModified.incrementAndGet();
+    return entry.getResponse();
+  }
+
+  private static String getVersion(NamedList<Object> response) {
+    NamedList header = (NamedList) response.get("responseHeader");
+    return header == null ? null : (String) header.get(ShardParams.SHARDS_CACHE_VERSION);
+  }
+
+  /** The number of sub-requests answered from the cache */
+  public long getNotModifiedCount() {
+    return notModified.get();
+  }
+
+  /** The number of cached responses */
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  /** The total size of the cached responses */
+  public synchronized long ramBytesUsed() {
+    return ramBytes;
+  }
+
+  public synchronized void destroy() {
+    cache.clear();
+    ramBytes = 0;
+  }
+
+
+  //////////////////////// shard side ////////////////////////
+
+  /**
+   * The version of the responses of a shard, which changes when the core is reloaded or opens a new searcher.
+   */
+  public static String getShardVersion(SolrQueryRequest req) {
+    SolrCore core = req.getCore();
+    SolrIndexSearcher searcher = req.getSearcher();
+    return core.getName() + '_' + core.getStartTime() + '_' + searcher.getOpenTime() + '_' + searcher.getIndexReader().getVersion();
+  }
+
+  /**
+   * Answers a sub-request with {@link #NOT_MODIFIED} if it carries the current version of the shard.
+   * @return true if the request does not need to be executed
+   */
+  public static boolean checkNotModified(SolrQueryRequest req, SolrQueryResponse rsp) {
+    String cachedVersion = req.getParams().get(ShardParams.SHARDS_CACHE_VERSION);
+    if (cachedVersion == null || !cachedVersion.equals(getShardVersion(req))) {
+      return false;
+    }
+    rsp.getResponseHeader().add(NOT_MODIFIED, true);
+    return true;
+  }
+
+  /**
+   * Adds the version of the shard to the response of a sub-request that asked for it, if the response
+   * can be reused as long as the shard doesn't change.
+   */
+  public static void addShardVersion(SolrQueryRequest req, SolrQueryResponse rsp) {
+    if (req.getParams().get(ShardParams.SHARDS_CACHE_VERSION) == null) return;
+    if (rsp.getException() != null || rsp.getResponseHeader().get("partialResults") != null) return;
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    if (requestInfo == null || requestInfo.isNOWUsed()) return;
+    rsp.getResponseHeader().add(ShardParams.SHARDS_CACHE_VERSION, getShardVersion(req));
+  }
+}
@@ -186,10 +186,10 @@ class StatsInfo {
     String[] statsFs = params.getParams(StatsParams.STATS_FIELD);
     if (statsFs != null) {
       for (String field : statsFs) {
-        boolean calcDistinct = params.getFieldBool(field, StatsParams.STATS_CALC_DISTINCT, false);
+        StatsOptions options = StatsOptions.parse(params, field);
         SchemaField sf = rb.req.getSchema().getField(field);
         QueryContext qcontext = QueryContext.newContext(rb.req.getSearcher());
-        statsFields.put(field, StatsValuesFactory.createStatsValues(qcontext, sf, calcDistinct));
+        statsFields.put(field, StatsValuesFactory.createStatsValues(qcontext, sf, options));
       }
     }
   }
@@ -305,7 +305,7 @@ class SimpleStats {
     if (null != statsFs) {
       final IndexSchema schema = searcher.getSchema();
       for (String f : statsFs) {
-        boolean calcDistinct = params.getFieldBool(f, StatsParams.STATS_CALC_DISTINCT, false);
+        StatsOptions options = StatsOptions.parse(params, f);
 
         parseParams(f);
 
@@ -320,9 +320,9 @@ class SimpleStats {
         if (sf.multiValued() || ft.multiValuedFieldCache()) {
           //use UnInvertedField for multivalued fields
           UnInvertedField uif = UnInvertedField.getUnInvertedField(statsField, searcher);
-          stv = uif.getStats(searcher, docs, calcDistinct, facets).getStatsValues();
+          stv = uif.getStats(searcher, docs, options, facets).getStatsValues();
         } else {
-          stv = getFieldCacheStats(statsField, calcDistinct, facets);
+          stv = getFieldCacheStats(statsField, options, facets);
         }
         if (isShard == true || (Long) stv.get("count") > 0) {
           res.add(key, stv);
@@ -335,11 +335,15 @@ class SimpleStats {
   }
 
   public NamedList<?> getFieldCacheStats(String fieldName, boolean calcDistinct, String[] facet) throws IOException {
+    return getFieldCacheStats(fieldName, new StatsOptions(calcDistinct), facet);
+  }
+
+  public NamedList<?> getFieldCacheStats(String fieldName, StatsOptions options, String[] facet) throws IOException {
     IndexSchema schema = searcher.getSchema();
     final SchemaField sf = schema.getField(fieldName);
 
     QueryContext qcontext = QueryContext.newContext(searcher);
-    final StatsValues allstats = StatsValuesFactory.createStatsValues(qcontext, sf, calcDistinct);
+    final StatsValues allstats = StatsValuesFactory.createStatsValues(qcontext, sf, options);
 
     List<FieldFacetStats> facetStats = new ArrayList<>();
     for( String facetField : facet ) {
@@ -350,7 +354,7 @@ class SimpleStats {
           "Stats can only facet on single-valued fields, not: " + facetField );
       }
 
-      facetStats.add(new FieldFacetStats(searcher, facetField, sf, fsf, calcDistinct));
+      facetStats.add(new FieldFacetStats(searcher, facetField, sf, fsf, options));
     }
 
     final Iterator<AtomicReaderContext> ctxIt = searcher.getIndexReader().leaves().iterator();
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.handler.component;
+
+import java.util.List;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.StatsParams;
+import org.apache.solr.common.util.StrUtils;
+
+/**
+ * The statistics that a {@link StatsValues} computes besides the minimum and the maximum, and
+ * how it computes them.
+ * <p>
+ * Distinct values are either collected, and shipped from the shards to the coordinator, or
+ * counted with a {@link org.apache.solr.util.stats.HyperLogLog} sketch when
+ * <code>stats.approximate</code> is true.  Percentiles are always estimated with a
+ * {@link org.apache.solr.util.stats.TDigest}.  Shards return the serialized sketches, which the
+ * coordinator merges.
+ */
+public class StatsOptions {
+  /** Whether distinct values are counted */
+  public final boolean calcDistinct;
+  /** Whether distinct values are counted with a sketch rather than collected */
+  public final boolean approximate;
+  /** Percentiles to estimate, between 0 and 100, possibly empty */
+  public final double[] percentiles;
+  /** Names of the percentiles in responses */
+  public final String[] percentileNames;
+  /** Whether the statistics are computed for a coordinator, which expects sketches */
+  public final boolean isShard;
+
+  public StatsOptions(boolean calcDistinct) {
+    this(calcDistinct, false, new String[0], false);
+  }
+
+  public StatsOptions(boolean calcDistinct, boolean approximate, String[] percentileNames, boolean isShard) {
+    this.calcDistinct = calcDistinct;
+    this.approximate = approximate;
+    this.percentileNames = percentileNames;
+    this.percentiles = new double[percentileNames.length];
+    for (int i = 0; i < percentileNames.length; i++) {
+      try {
+        percentiles[i] = Double.parseDouble(percentileNames[i]);
+      } catch (NumberFormatException e) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Invalid percentile: " + percentileNames[i], e);
+      }
+      if (!(percentiles[i] >= 0 && percentiles[i] <= 100)) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Percentiles must be between 0 and 100: " + percentileNames[i]);
+      }
+    }
+    this.isShard = isShard;
+  }
+
+  /**
+   * Reads the options of a <code>stats.field</code> parameter from the request parameters.
+   *
+   * @param params the request parameters
+   * @param field the value of the <code>stats.field</code> parameter
+   */
+  public static StatsOptions parse(SolrParams params, String field) {
+    boolean calcDistinct = params.getFieldBool(field, StatsParams.STATS_CALC_DISTINCT, false);
+    boolean approximate = params.getFieldBool(field, StatsParams.STATS_APPROXIMATE, false);
+    String percentiles = params.getFieldParam(field, StatsParams.STATS_PERCENTILES);
+    String[] names = new String[0];
+    if (percentiles != null && percentiles.trim().length() > 0) {
+      List<String> list = StrUtils.splitSmart(percentiles, ',');
+      names = new String[list.size()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = list.get(i).trim();
+      }
+    }
+    boolean isShard = params.getBool(ShardParams.IS_SHARD, false);
+    return new StatsOptions(calcDistinct, approximate, names, isShard);
+  }
+}
@@ -30,6 +30,8 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.*;
+import org.apache.solr.util.stats.HyperLogLog;
+import org.apache.solr.util.stats.TDigest;
 
 /**
  * Factory class for creating instance of {@link org.apache.solr.handler.component.StatsValues}
@@ -43,6 +45,17 @@ public class StatsValuesFactory {
    * @return Instance of StatsValues that will create statistics from values from a field of the given type
    */
   public static StatsValues createStatsValues(QueryContext qcontext, SchemaField sf, boolean calcDistinct) {
+    return createStatsValues(qcontext, sf, new StatsOptions(calcDistinct));
+  }
+
+  /**
+   * Creates an instance of StatsValues which supports values from a field of the given FieldType
+   *
+   * @param sf SchemaField for the field whose statistics will be created by the resulting StatsValues
+   * @param options the statistics to compute besides the minimum and the maximum
+   * @return Instance of StatsValues that will create statistics from values from a field of the given type
+   */
+  public static StatsValues createStatsValues(QueryContext qcontext, SchemaField sf, StatsOptions options) {
     // TODO: allow for custom field types
     FieldType fieldType = sf.getType();
     if (DoubleField.class.isInstance(fieldType) ||
@@ -54,13 +67,13 @@ public class StatsValuesFactory {
         SortableIntField.class.isInstance(fieldType) ||
         SortableLongField.class.isInstance(fieldType) ||
         SortableFloatField.class.isInstance(fieldType)) {
-      return new NumericStatsValues(qcontext, sf, calcDistinct);
+      return new NumericStatsValues(qcontext, sf, options);
     } else if (DateField.class.isInstance(fieldType)) {
-      return new DateStatsValues(qcontext, sf, calcDistinct);
+      return new DateStatsValues(qcontext, sf, options);
     } else if (StrField.class.isInstance(fieldType)) {
-      return new StringStatsValues(qcontext, sf, calcDistinct);
+      return new StringStatsValues(qcontext, sf, options);
     } else if (sf.getType().getClass().equals(EnumField.class)) {
-      return new EnumStatsValues(qcontext, sf, calcDistinct);
+      return new EnumStatsValues(qcontext, sf, options);
     } else {
       throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Field type " + fieldType + " is not currently supported");
     }
@@ -76,6 +89,8 @@ public class StatsValuesFactory {
  */
 abstract class AbstractStatsValues<T> implements StatsValues {
   private static final String FACETS = "facets";
+  private static final String DISTINCT_VALUES_SKETCH = "distinctValuesSketch";
+  private static final String PERCENTILES = "percentiles";
   final protected SchemaField sf;
   final protected FieldType ft;
   protected T max;
@@ -84,19 +99,26 @@ abstract class AbstractStatsValues<T> implements StatsValues {
   protected long count;
   protected long countDistinct;
   protected Set<T> distinctValues;
+  protected HyperLogLog distinctValuesSketch;
+  protected TDigest percentilesDigest;
   private ValueSource valueSource;
   private final QueryContext qcontext;
   protected FuncValues values;
   protected boolean calcDistinct = false;
+  protected final StatsOptions options;
   
   // facetField   facetValue
   protected Map<String, Map<String, StatsValues>> facets = new HashMap<>();
 
-  protected AbstractStatsValues(QueryContext qcontext, SchemaField sf, boolean calcDistinct) {
+  protected AbstractStatsValues(QueryContext qcontext, SchemaField sf, StatsOptions options) {
     this.sf = sf;
     this.ft = sf.getType();
     this.distinctValues = new TreeSet<>();
-    this.calcDistinct = calcDistinct;
+    this.calcDistinct = options.calcDistinct;
+    this.options = options;
+    if (calcDistinct && options.approximate) {
+      distinctValuesSketch = new HyperLogLog();
+    }
     // this.valueSource = ft.getValueSource(sf, null);  // FIXME - throws exception for multi-valued fields.... why doesn't it later on?  setNextReader must never be called?
     this.qcontext = qcontext;
   }
@@ -108,10 +130,18 @@ abstract class AbstractStatsValues<T> implements StatsValues {
   public void accumulate(NamedList stv) {
     count += (Long) stv.get("count");
     missing += (Long) stv.get("missing");
-    if (calcDistinct) {
+    if (distinctValuesSketch != null) {
+      distinctValuesSketch.add(HyperLogLog.fromBytes((byte[]) stv.get(DISTINCT_VALUES_SKETCH)));
+    } else if (calcDistinct) {
       distinctValues.addAll((Collection<T>) stv.get("distinctValues"));
       countDistinct = distinctValues.size();
     }
+    if (percentilesDigest != null) {
+      byte[] digest = (byte[]) stv.get(PERCENTILES);
+      if (digest != null) {
+        percentilesDigest.add(TDigest.fromBytes(digest));
+      }
+    }
 
     updateMinMax((T) stv.get("min"), (T) stv.get("max"));
     updateTypeSpecificStats(stv);
@@ -133,7 +163,7 @@ abstract class AbstractStatsValues<T> implements StatsValues {
         String val = vals.getName(j);
         StatsValues vvals = addTo.get(val);
         if (vvals == null) {
-          vvals = StatsValuesFactory.createStatsValues(qcontext, sf, calcDistinct);
+          vvals = StatsValuesFactory.createStatsValues(qcontext, sf, options);
           addTo.put(val, vvals);
         }
         vvals.accumulate((NamedList) vals.getVal(j));
@@ -152,7 +182,9 @@ abstract class AbstractStatsValues<T> implements StatsValues {
 
   public void accumulate(T value, int count) {
     this.count += count;
-    if (calcDistinct) {
+    if (distinctValuesSketch != null) {
+      distinctValuesSketch.add(hash(value));
+    } else if (calcDistinct) {
       distinctValues.add(value);
       countDistinct = distinctValues.size();
     }
@@ -195,13 +227,31 @@ abstract class AbstractStatsValues<T> implements StatsValues {
     res.add("max", max);
     res.add("count", count);
     res.add("missing", missing);
-    if (calcDistinct) {
+    if (distinctValuesSketch != null) {
+      if (options.isShard) {
+        res.add(DISTINCT_VALUES_SKETCH, distinctValuesSketch.toBytes());
+      }
+      res.add("countDistinct", distinctValuesSketch.cardinality());
+    } else if (calcDistinct) {
       res.add("distinctValues", distinctValues);
       res.add("countDistinct", countDistinct);
     }
 
     addTypeSpecificStats(res);
 
+    if (percentilesDigest != null) {
+      if (options.isShard) {
+        res.add(PERCENTILES, percentilesDigest.toBytes());
+      } else {
+        NamedList<Object> percentiles = new SimpleOrderedMap<>();
+        for (int i = 0; i < options.percentiles.length; i++) {
+          double value = percentilesDigest.quantile(options.percentiles[i] / 100);
+          percentiles.add(options.percentileNames[i], Double.isNaN(value) ? null : toPercentileValue(value));
+        }
+        res.add(PERCENTILES, percentiles);
+      }
+    }
+
      // add the facet stats
     NamedList<NamedList<?>> nl = new SimpleOrderedMap<>();
     for (Map.Entry<String, Map<String, StatsValues>> entry : facets.entrySet()) {
@@ -222,6 +272,30 @@ abstract class AbstractStatsValues<T> implements StatsValues {
     values = valueSource.getValues(qcontext, ctx);
   }
 
+  /**
+   * Estimates percentiles of the values, for the types of values that can be
+   * converted to doubles
+   */
+  protected void estimatePercentiles() {
+    if (options.percentiles.length > 0) {
+      percentilesDigest = new TDigest();
+    }
+  }
+
+  /**
+   * Returns a 64 bits hash of the given value, to count distinct values with a sketch
+   */
+  protected long hash(T value) {
+    return HyperLogLog.hash(value.toString());
+  }
+
+  /**
+   * Converts an estimated percentile to the type of the values
+   */
+  protected Object toPercentileValue(double value) {
+    return value;
+  }
+
   /**
    * Updates the minimum and maximum statistics based on the given values
    *
@@ -261,10 +335,11 @@ class NumericStatsValues extends AbstractStatsValues<Number> {
   double sum;
   double sumOfSquares;
 
-  public NumericStatsValues(QueryContext qcontext, SchemaField sf, boolean calcDistinct) {
-    super(qcontext, sf, calcDistinct);
+  public NumericStatsValues(QueryContext qcontext, SchemaField sf, StatsOptions options) {
+    super(qcontext, sf, options);
     min = Double.POSITIVE_INFINITY;
     max = Double.NEGATIVE_INFINITY;
+    estimatePercentiles();
   }
 
   @Override
@@ -293,6 +368,17 @@ class NumericStatsValues extends AbstractStatsValues<Number> {
     double value = v.doubleValue();
     sumOfSquares += (value * value * count); // for std deviation
     sum += value * count;
+    if (percentilesDigest != null) {
+      percentilesDigest.add(value, count);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected long hash(Number value) {
+    return HyperLogLog.hash(Double.doubleToLongBits(value.doubleValue()));
   }
 
    /**
@@ -336,8 +422,8 @@ class NumericStatsValues extends AbstractStatsValues<Number> {
  */
 class EnumStatsValues extends AbstractStatsValues<EnumFieldValue> {
 
-  public EnumStatsValues(QueryContext qcontext, SchemaField sf, boolean calcDistinct) {
-    super(qcontext, sf, calcDistinct);
+  public EnumStatsValues(QueryContext qcontext, SchemaField sf, StatsOptions options) {
+    super(qcontext, sf, options);
   }
 
   /**
@@ -405,8 +491,9 @@ class DateStatsValues extends AbstractStatsValues<Date> {
   private long sum = 0;
   double sumOfSquares = 0;
 
-  public DateStatsValues(QueryContext qcontext, SchemaField sf, boolean calcDistinct) {
-    super(qcontext, sf, calcDistinct);
+  public DateStatsValues(QueryContext qcontext, SchemaField sf, StatsOptions options) {
+    super(qcontext, sf, options);
+    estimatePercentiles();
   }
 
   @Override
@@ -438,6 +525,25 @@ class DateStatsValues extends AbstractStatsValues<Date> {
     long value = v.getTime();
     sumOfSquares += (value * value * count); // for std deviation
     sum += value * count;
+    if (percentilesDigest != null) {
+      percentilesDigest.add(value, count);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected long hash(Date value) {
+    return HyperLogLog.hash(value.getTime());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Object toPercentileValue(double value) {
+    return new Date(Math.round(value));
   }
 
    /**
@@ -491,8 +597,8 @@ class DateStatsValues extends AbstractStatsValues<Date> {
  */
 class StringStatsValues extends AbstractStatsValues<String> {
 
-  public StringStatsValues(QueryContext qcontext, SchemaField sf, boolean calcDistinct) {
-    super(qcontext, sf, calcDistinct);
+  public StringStatsValues(QueryContext qcontext, SchemaField sf, StatsOptions options) {
+    super(qcontext, sf, options);
   }
 
   @Override
@@ -28,8 +28,14 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.SchemaField;
 import org.apache.solr.schema.StrField;
 import org.apache.solr.request.SimpleFacets.CountPair;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.TermsFSTFieldValues;
+import org.apache.solr.search.field.TermsFSTLeafValues;
+import org.apache.solr.search.field.TermsFSTTopValues;
 import org.apache.solr.util.BoundedTreeSet;
 import org.apache.solr.client.solrj.response.TermsResponse;
 
@@ -117,8 +123,13 @@ public class TermsComponent extends SearchComponent {
 
     boolean raw = params.getBool(TermsParams.TERMS_RAW, false);
 
+    SolrIndexSearcher searcher = rb.req.getSearcher();
+    QueryContext qcontext = null;
+    if (params.getBool(TermsParams.TERMS_CACHE, false) && searcher.getnCache() != null) {
+      qcontext = QueryContext.newContext(searcher);
+    }
 
-    final AtomicReader indexReader = rb.req.getSearcher().getAtomicReader();
+    final AtomicReader indexReader = searcher.getAtomicReader();
     Fields lfields = indexReader.fields();
 
     for (String field : fields) {
@@ -162,8 +173,28 @@ public class TermsComponent extends SearchComponent {
       }
 
 
-     TermsEnum termsEnum = terms.iterator(null);
-     BytesRef term = null;
+      TermsFSTTopValues cached = null;
+      if (qcontext != null) {
+        SchemaField sf = rb.req.getSchema().getFieldOrNull(field);
+        if (sf != null && sf.indexed()) {
+          cached = new TermsFSTFieldValues(sf).getTopValues(qcontext);
+        }
+      }
+
+      CharsRef external = new CharsRef();
+      if (cached != null && sort && limit != Integer.MAX_VALUE && lowerStr == null && upperBytes == null
+          && pattern == null && freqmax == Integer.MAX_VALUE) {
+        // the most frequent terms with the prefix come straight from the FST, by decreasing frequency
+        for (TermsFSTLeafValues.TermCount item : cached.getTopTerms(qcontext, prefixBytes, limit)) {
+          if (item.docFreq < freqmin) break;
+          ft.indexedToReadable(item.term, external);
+          fieldTerms.add(external.toString(), item.docFreq);
+        }
+        continue;
+      }
+
+      TermsEnum termsEnum = cached != null ? cached.termsEnum(qcontext) : terms.iterator(null);
+      BytesRef term = null;
 
       if (lowerBytes != null) {
         if (termsEnum.seekCeil(lowerBytes) == TermsEnum.SeekStatus.END) {
@@ -182,7 +213,6 @@ public class TermsComponent extends SearchComponent {
 
       int i = 0;
       BoundedTreeSet<CountPair<BytesRef, Integer>> queue = (sort ? new BoundedTreeSet<CountPair<BytesRef, Integer>>(limit) : null);
-      CharsRef external = new CharsRef();
       while (term != null && (i<limit || sort)) {
         boolean externalized = false; // did we fill in "external" yet for this term?
 
@@ -114,6 +114,11 @@ public class SolrRequestInfo {
     return now;
   }
 
+  /** True if {@link #getNOW} was called, in which case the response may depend on when the request was made */
+  public boolean isNOWUsed() {
+    return now != null;
+  }
+
   /** The TimeZone specified by the request, or null if none was specified */
   public TimeZone getClientTimeZone() {    
 
@@ -19,15 +19,24 @@ package org.apache.solr.schema;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.Base64;
 import org.apache.solr.response.TextResponseWriter;
 
 
+/**
+ * A field of arbitrary bytes, that may be stored, and may have single valued binary doc values.
+ * Values are base64 encoded in requests and responses.
+ */
 public class BinaryField extends FieldType  {
 
   private String toBase64String(ByteBuffer buf) {
@@ -56,6 +65,29 @@ public class BinaryField extends FieldType  {
     return  ByteBuffer.wrap(bytes.bytes, bytes.offset, bytes.length);
   }
 
+  @Override
+  public void checkSchemaField(SchemaField field) {
+    if (field.hasDocValues() && field.multiValued()) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Field type " + this + " does not support multi-valued doc values: " + field.getName());
+    }
+  }
+
+  @Override
+  public List<IndexableField> createFields(SchemaField field, Object val, float boost) {
+    if (val == null) return Collections.emptyList();
+    if (!field.hasDocValues()) {
+      IndexableField f = createField(field, val, boost);
+      return f == null ? Collections.<IndexableField>emptyList() : Collections.singletonList(f);
+    }
+    List<IndexableField> fields = new ArrayList<>(2);
+    BytesRef bytes = toBytesRef(val);
+    if (field.stored()) {
+      fields.add(createField(field, val, boost));
+    }
+    fields.add(new BinaryDocValuesField(field.getName(), bytes));
+    return fields;
+  }
+
   @Override
   public IndexableField createField(SchemaField field, Object val, float boost) {
     if (val == null) return null;
@@ -63,6 +95,13 @@ public class BinaryField extends FieldType  {
       log.trace("Ignoring unstored binary field: " + field);
       return null;
     }
+    BytesRef bytes = toBytesRef(val);
+    Field f = new org.apache.lucene.document.StoredField(field.getName(), bytes.bytes, bytes.offset, bytes.length);
+    f.setBoost(boost);
+    return f;
+  }
+
+  private BytesRef toBytesRef(Object val) {
     byte[] buf = null;
     int offset = 0, len = 0;
     if (val instanceof byte[]) {
@@ -80,9 +119,6 @@ public class BinaryField extends FieldType  {
       offset = 0;
       len = buf.length;
     }
-
-    Field f = new org.apache.lucene.document.StoredField(field.getName(), buf, offset, len);
-    f.setBoost(boost);
-    return f;
+    return new BytesRef(buf, offset, len);
   }
 }
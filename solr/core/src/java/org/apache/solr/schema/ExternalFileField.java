@@ -22,6 +22,7 @@ import org.apache.lucene.search.SortField;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.response.TextResponseWriter;
 import org.apache.solr.search.QParser;
+import org.apache.solr.search.field.FileFloatFieldValues;
 import org.apache.solr.search.function.FileFloatSource;
 
 import java.io.IOException;
@@ -53,6 +54,12 @@ import java.util.Map;
  * <p/>The external file may be sorted or unsorted by the key field, but it will be substantially slower (untested) if it isn't sorted.
  * <p/>Fields of this type may currently only be used as a ValueSource in a FunctionQuery.
  *
+ * <p/>With <code>offHeap="true"</code> the values are kept off-heap per segment (in the nCache) instead of in a
+ * heap array for the whole index.  Values for unchanged segments are then reused by new searchers until the
+ * external file itself changes, and only new segments need to be loaded.  Each load is a merge of the
+ * file against the terms of the key field, so a file sorted by key loads fastest.  The file may also be
+ * in the binary sorted format written by {@link org.apache.solr.search.field.ExternalFloatFile#writeSorted}.
+ *
  * @see ExternalFileFieldReloader
  */
 public class ExternalFileField extends FieldType implements SchemaAware {
@@ -60,6 +67,7 @@ public class ExternalFileField extends FieldType implements SchemaAware {
   private String keyFieldName;
   private IndexSchema schema;
   private float defVal;
+  private boolean offHeap;
 
   @Override
   protected void init(IndexSchema schema, Map<String, String> args) {
@@ -77,6 +85,8 @@ public class ExternalFileField extends FieldType implements SchemaAware {
     keyFieldName = args.remove("keyField");
     String defValS = args.remove("defVal");
     defVal = defValS == null ? 0 : Float.parseFloat(defValS);
+    String offHeapS = args.remove("offHeap");
+    offHeap = offHeapS != null && Boolean.parseBoolean(offHeapS);
     this.schema = schema;
   }
 
@@ -87,13 +97,36 @@ public class ExternalFileField extends FieldType implements SchemaAware {
 
   @Override
   public SortField getSortField(SchemaField field,boolean reverse) {
+    if (offHeap) {
+      return getFileFloatFieldValues(field, schema.getResourceLoader().getDataDir()).getSortField(reverse);
+    }
     FileFloatSource source = getFileFloatSource(field);
     return source.getSortField(reverse);
   }
 
   @Override
   public ValueSource getValueSource(SchemaField field, QParser parser) {
-    return getFileFloatSource(field, parser.getReq().getCore().getDataDir());
+    String dataDir = parser.getReq().getCore().getDataDir();
+    if (offHeap) {
+      return getFileFloatFieldValues(field, dataDir);
+    }
+    return getFileFloatSource(field, dataDir);
+  }
+
+  /** Returns true if values are kept off-heap per segment, see {@link FileFloatFieldValues} */
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * Get a FileFloatFieldValues for the given field.  This is the source used
+   * when <code>offHeap</code> is set.
+   * @param field the field to get a source for
+   * @param datadir the data directory in which to look for the external file
+   * @return a FileFloatFieldValues
+   */
+  public FileFloatFieldValues getFileFloatFieldValues(SchemaField field, String datadir) {
+    return new FileFloatFieldValues(field, getKeyField(), defVal, datadir);
   }
 
   /**
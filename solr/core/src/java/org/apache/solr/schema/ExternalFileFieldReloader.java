@@ -18,10 +18,18 @@
 package org.apache.solr.schema;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.AbstractSolrEventListener;
 import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.QueryContext;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.FileFloatFieldValues;
 import org.apache.solr.search.function.FileFloatSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +60,7 @@ public class ExternalFileFieldReloader extends AbstractSolrEventListener {
 
   private String datadir;
   private List<FileFloatSource> fieldSources = new ArrayList<>();
+  private List<FileFloatFieldValues> offHeapSources = new ArrayList<>();
 
   private static final Logger log = LoggerFactory.getLogger(ExternalFileFieldReloader.class);
 
@@ -75,16 +84,49 @@ public class ExternalFileFieldReloader extends AbstractSolrEventListener {
     for (FileFloatSource fieldSource : fieldSources) {
       fieldSource.refreshCache(reader);
     }
+    if (!offHeapSources.isEmpty()) {
+      warmOffHeapSources(newSearcher);
+    }
+  }
+
+  /** Loads the off-heap values of segments that couldn't be carried over from the previous searcher */
+  private void warmOffHeapSources(final SolrIndexSearcher newSearcher) {
+    SolrQueryRequest req = new LocalSolrQueryRequest(getCore(), new ModifiableSolrParams()) {
+      @Override
+      public SolrIndexSearcher getSearcher() {
+        return newSearcher;
+      }
+      @Override
+      public void close() {
+      }
+    };
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, new SolrQueryResponse()));
+    try {
+      QueryContext context = QueryContext.newContext(newSearcher);
+      for (FileFloatFieldValues fieldSource : offHeapSources) {
+        log.info("Loading off-heap values for field {}", fieldSource.getFieldName());
+        fieldSource.warm(context);
+      }
+    } catch (Exception e) {
+      SolrException.log(log, "Error loading off-heap external file values", e);
+    } finally {
+      SolrRequestInfo.clearRequestInfo();
+    }
   }
 
   /** Caches FileFloatSource's from all ExternalFileField instances in the schema */
   public void cacheFieldSources(IndexSchema schema) {
     fieldSources.clear();
+    offHeapSources.clear();
     for (SchemaField field : schema.getFields().values()) {
       FieldType type = field.getType();
       if (type instanceof ExternalFileField) {
         ExternalFileField eff = (ExternalFileField)type;
-        fieldSources.add(eff.getFileFloatSource(field, datadir));
+        if (eff.isOffHeap()) {
+          offHeapSources.add(eff.getFileFloatFieldValues(field, datadir));
+        } else {
+          fieldSources.add(eff.getFileFloatSource(field, datadir));
+        }
         log.info("Adding ExternalFileFieldReloader listener for field {}", field.getName());
       }
     }
@@ -0,0 +1,177 @@
+package org.apache.solr.schema;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.codecs.idversion.IDVersionPostingsFormat;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+
+/**
+ * A string field type for the <code>uniqueKey</code> that indexes each id with the
+ * <code>_version_</code> of its document, using the <code>IDVersion</code> postings format.
+ * <p>
+ * The terms dictionary then knows the version of every id, and the maximum version of
+ * every block of ids, so the version of a document can be looked up without reading
+ * doc values, and segments whose ids are all older than a given version can be skipped
+ * (see {@link org.apache.solr.search.SolrIndexSearcher#lookupIdVersion}).
+ * <p>
+ * Versions are assigned by the update log, so it must be enabled, and documents must be
+ * added with <code>overwrite=true</code> since an id may only be indexed once per segment.
+ * The postings format is only used if the <code>codecFactory</code> is
+ * <code>solr.SchemaCodecFactory</code>.
+ * <p>
+ * Optional arguments:
+ * <ul>
+ *   <li><code>bloomFilter</code> - if true (the default), segments keep a Bloom filter of
+ *   their ids, built when a searcher is warmed, so lookups of new ids can skip them without a seek</li>
+ * </ul>
+ */
+public class IDVersionField extends StrField implements SchemaAware {
+  public static final String POSTINGS_FORMAT_NAME = "IDVersion";
+
+  private static final org.apache.lucene.document.FieldType INDEXED_TYPE = new org.apache.lucene.document.FieldType();
+  static {
+    INDEXED_TYPE.setIndexed(true);
+    INDEXED_TYPE.setTokenized(true);
+    INDEXED_TYPE.setOmitNorms(true);
+    INDEXED_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+    INDEXED_TYPE.freeze();
+  }
+
+  private boolean bloomFilter = true;
+
+  @Override
+  protected void init(IndexSchema schema, Map<String,String> args) {
+    String arg = args.remove("bloomFilter");
+    if (arg != null) {
+      bloomFilter = Boolean.parseBoolean(arg);
+    }
+    super.init(schema, args);
+  }
+
+  @Override
+  public void inform(IndexSchema schema) {
+    if (postingsFormat != null && !POSTINGS_FORMAT_NAME.equals(postingsFormat)) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "fieldType " + typeName + " can not use postingsFormat " + postingsFormat);
+    }
+    postingsFormat = POSTINGS_FORMAT_NAME;
+
+    SchemaField uniqueKey = schema.getUniqueKeyField();
+    for (SchemaField field : schema.getFields().values()) {
+      if (field.getType() == this && field != uniqueKey) {
+        throw new SolrException(ErrorCode.SERVER_ERROR, "field " + field.getName() + " of type " + typeName
+            + " must be the " + IndexSchema.UNIQUE_KEY);
+      }
+    }
+    for (IndexSchema.DynamicField dynamicField : schema.getDynamicFields()) {
+      if (dynamicField.getPrototype().getType() == this) {
+        throw new SolrException(ErrorCode.SERVER_ERROR, "dynamic field " + dynamicField.getRegex() + " can not be of type " + typeName);
+      }
+    }
+  }
+
+  /** True if segments should keep a Bloom filter of their ids */
+  public boolean hasBloomFilter() {
+    return bloomFilter;
+  }
+
+  /**
+   * Returns the stored value of an id: the id is only indexed by
+   * {@link #createIndexedField}, which needs the version of the document.
+   */
+  @Override
+  public IndexableField createField(SchemaField field, Object value, float boost) {
+    if (!field.stored()) {
+      return null;
+    }
+    return new StoredField(field.getName(), toInternal(value.toString()));
+  }
+
+  @Override
+  public List<IndexableField> createFields(SchemaField field, Object value, float boost) {
+    List<IndexableField> fields = new ArrayList<>(2);
+    IndexableField stored = createField(field, value, boost);
+    if (stored != null) {
+      fields.add(stored);
+    }
+    if (field.hasDocValues()) {
+      fields.add(new SortedDocValuesField(field.getName(), new BytesRef(value.toString())));
+    }
+    return fields;
+  }
+
+  /** Creates the indexed (but not stored) field for an id, with the version of its document as payload */
+  public IndexableField createIndexedField(SchemaField field, Object value, long version) {
+    if (version < IDVersionPostingsFormat.MIN_VERSION || version > IDVersionPostingsFormat.MAX_VERSION) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "version " + version + " of " + field.getName() + "=" + value
+          + " can not be indexed by " + typeName);
+    }
+    return new Field(field.getName(), new IdVersionTokenStream(toInternal(value.toString()), version), INDEXED_TYPE);
+  }
+
+  @Override
+  public void checkSchemaField(SchemaField field) {
+    if (field.multiValued()) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "field " + field.getName() + " of type " + typeName + " can not be multiValued");
+    }
+  }
+
+  /** A single token, with the version as payload */
+  private static final class IdVersionTokenStream extends TokenStream {
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PayloadAttribute payloadAtt = addAttribute(PayloadAttribute.class);
+    private final String id;
+    private final BytesRef payload = new BytesRef(8);
+    private boolean done;
+
+    IdVersionTokenStream(String id, long version) {
+      this.id = id;
+      IDVersionPostingsFormat.longToBytes(version, payload);
+    }
+
+    @Override
+    public boolean incrementToken() {
+      if (done) {
+        return false;
+      }
+      clearAttributes();
+      termAtt.append(id);
+      payloadAtt.setPayload(payload);
+      done = true;
+      return true;
+    }
+
+    @Override
+    public void reset() {
+      done = false;
+    }
+  }
+}
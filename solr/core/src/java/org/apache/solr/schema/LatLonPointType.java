@@ -0,0 +1,508 @@
+package org.apache.solr.schema;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.spatial4j.core.context.SpatialContext;
+import com.spatial4j.core.distance.DistanceUtils;
+import com.spatial4j.core.shape.Point;
+import com.spatial4j.core.shape.Rectangle;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.ComplexExplanation;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.response.TextResponseWriter;
+import org.apache.solr.search.DelegatingCollector;
+import org.apache.solr.search.ExtendedQueryBase;
+import org.apache.solr.search.PostFilter;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SpatialOptions;
+import org.apache.solr.search.field.LatLonPointFieldValues;
+import org.apache.solr.search.function.FuncValues;
+import org.apache.solr.search.function.ValueSource;
+import org.apache.solr.search.function.distance.LatLonPointDistanceFunction;
+import org.apache.solr.search.function.valuesource.LatLonPointValueSource;
+import org.apache.solr.util.SpatialUtils;
+
+
+/**
+ * A Latitude/Longitude point kept in a single numeric doc values field.  Latitude is <b>always</b> specified first.
+ * <p/>
+ * Unlike {@link LatLonType}, which indexes the latitude and the longitude in two sub-fields, the point is
+ * quantized to 32 bits per dimension (a precision of about a centimeter) and both are packed in one long:
+ * the latitude in the upper 32 bits, the longitude in the lower 32 bits.  Distances, the <code>geofilt</code>
+ * and <code>bbox</code> filters, and field and range queries are computed from the packed values of each
+ * segment, copied off-heap once per segment (see {@link LatLonPointFieldValues}).  The filters check the
+ * bounding box of the circle on the quantized values first, and only compute the distance of the points
+ * inside of it.
+ * <p/>
+ * Fields of this type must have <code>docValues="true"</code> and be single valued.  Nothing is indexed, so
+ * the filters look at every document: they are best used as post filters (<code>cost</code> of 100 or more).
+ */
+public class LatLonPointType extends FieldType implements SpatialQueryable {
+
+  private static final double LAT_SCALE = 0x1p32 / 180.0;
+  private static final double LON_SCALE = 0x1p32 / 360.0;
+
+  /** Quantizes a latitude in degrees.  The encoding is monotonic, so boxes can be checked on encoded values. */
+  public static int encodeLat(double lat) {
+    return (int) Math.floor(lat * LAT_SCALE);  // 90 saturates to Integer.MAX_VALUE
+  }
+
+  /** Quantizes a longitude in degrees.  The encoding is monotonic, so boxes can be checked on encoded values. */
+  public static int encodeLon(double lon) {
+    return (int) Math.floor(lon * LON_SCALE);  // 180 saturates to Integer.MAX_VALUE
+  }
+
+  /** Packs a point, see {@link #encodeLat} and {@link #encodeLon} */
+  public static long encode(double lat, double lon) {
+    return ((long) encodeLat(lat) << 32) | (encodeLon(lon) & 0xFFFFFFFFL);
+  }
+
+  public static double decodeLat(long packed) {
+    return (int) (packed >> 32) / LAT_SCALE;
+  }
+
+  public static double decodeLon(long packed) {
+    return (int) packed / LON_SCALE;
+  }
+
+  /** The external form of a packed point */
+  public static String toExternal(long packed) {
+    return decodeLat(packed) + "," + decodeLon(packed);
+  }
+
+  @Override
+  public void checkSchemaField(SchemaField field) {
+    if (!field.hasDocValues() || field.multiValued()) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+          "Field type " + this + " requires single valued doc values: " + field.getName());
+    }
+  }
+
+  @Override
+  public List<IndexableField> createFields(SchemaField field, Object value, float boost) {
+    String externalVal = value.toString();
+    Point point = SpatialUtils.parsePointSolrException(externalVal, SpatialContext.GEO);
+    List<IndexableField> f = new ArrayList<>(2);
+    f.add(new NumericDocValuesField(field.getName(), encode(point.getY(), point.getX())));
+    if (field.stored()) {
+      f.add(new StoredField(field.getName(), externalVal));
+    }
+    return f;
+  }
+
+  @Override
+  public IndexableField createField(SchemaField field, Object value, float boost) {
+    throw new UnsupportedOperationException("LatLonPointType uses multiple fields.  field=" + field.getName());
+  }
+
+  /** Matches the points of the box with the given corners.  Boxes can't cross the dateline. */
+  @Override
+  public Query getRangeQuery(QParser parser, SchemaField field, String part1, String part2, boolean minInclusive, boolean maxInclusive) {
+    Point p1 = SpatialUtils.parsePointSolrException(part1, SpatialContext.GEO);
+    Point p2 = SpatialUtils.parsePointSolrException(part2, SpatialContext.GEO);
+    LatLonPointDistanceQuery box = new LatLonPointDistanceQuery(field, parser);
+    box.setBox(p1.getY(), p2.getY(), p1.getX(), p2.getX(), -180, 180);
+    box.excludeBounds(!minInclusive, !maxInclusive);
+    box.latCenter = (p1.getY() + p2.getY()) / 2;
+    box.lonCenter = (p1.getX() + p2.getX()) / 2;
+    box.planetRadius = DistanceUtils.EARTH_MEAN_RADIUS_KM;
+    box.calcDist = false;
+    return box;
+  }
+
+  /** Matches the points that are quantized to the same value as the given point */
+  @Override
+  public Query getFieldQuery(QParser parser, SchemaField field, String externalVal) {
+    return getRangeQuery(parser, field, externalVal, externalVal, true, true);
+  }
+
+  @Override
+  public Query createSpatialQuery(QParser parser, SpatialOptions options) {
+    Point point = SpatialUtils.parsePointSolrException(options.pointStr, SpatialContext.GEO);
+
+    // lat & lon in degrees
+    double latCenter = point.getY();
+    double lonCenter = point.getX();
+
+    double distDeg = DistanceUtils.dist2Degrees(options.distance, options.radius);
+    Rectangle bbox = DistanceUtils.calcBoxByDistFromPtDEG(latCenter, lonCenter, distDeg, SpatialContext.GEO, null);
+    LatLonPointDistanceQuery spatial = new LatLonPointDistanceQuery(options.field, parser);
+    if (bbox.getCrossesDateLine()) {
+      spatial.setBox(bbox.getMinY(), bbox.getMaxY(), -180, bbox.getMaxX(), bbox.getMinX(), 180);
+    } else {
+      spatial.setBox(bbox.getMinY(), bbox.getMaxY(), bbox.getMinX(), bbox.getMaxX(), -180, 180);
+    }
+
+    spatial.latCenter = latCenter;
+    spatial.lonCenter = lonCenter;
+    spatial.dist = options.distance;
+    spatial.planetRadius = options.radius;
+    spatial.calcDist = !options.bbox;
+    return spatial;
+  }
+
+  @Override
+  public ValueSource getValueSource(SchemaField field, QParser parser) {
+    return new LatLonPointValueSource(new LatLonPointFieldValues(field, parser));
+  }
+
+  @Override
+  public void write(TextResponseWriter writer, String name, IndexableField f) throws IOException {
+    writer.writeStr(name, f.stringValue(), true);
+  }
+
+  @Override
+  public SortField getSortField(SchemaField field, boolean top) {
+    throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Sorting not supported on LatLonPointType " + field.getName());
+  }
+}
+
+
+/**
+ * Matches the points of a {@link LatLonPointType} field in a box, and optionally within a distance of
+ * the center of the box.  The box is checked on the quantized values, so it may include points up to one
+ * quantization step outside of it.
+ */
+class LatLonPointDistanceQuery extends ExtendedQueryBase implements PostFilter {
+  final String origField;
+  final ValueSource pointSource;
+  int latMin, latMax, lonMin, lonMax, lon2Min, lon2Max;
+  boolean lon2;
+
+  boolean calcDist;  // actually calculate the distance with haversine
+
+  double latCenter;
+  double lonCenter;
+  double dist;
+  double planetRadius;
+
+  LatLonPointDistanceQuery(SchemaField field, QParser parser) {
+    this.origField = field.getName();
+    this.pointSource = new LatLonPointFieldValues(field, parser);
+  }
+
+  /** Sets the box in degrees, with an optional second longitude range when the box crosses the dateline */
+  void setBox(double latMin, double latMax, double lonMin, double lonMax, double lon2Min, double lon2Max) {
+    this.latMin = LatLonPointType.encodeLat(latMin);
+    this.latMax = LatLonPointType.encodeLat(latMax);
+    this.lonMin = LatLonPointType.encodeLon(lonMin);
+    this.lonMax = LatLonPointType.encodeLon(lonMax);
+    this.lon2Min = LatLonPointType.encodeLon(lon2Min);
+    this.lon2Max = LatLonPointType.encodeLon(lon2Max);
+    this.lon2 = lon2Min != -180 || lon2Max != 180;
+  }
+
+  /**
+   * Excludes the points on the lower or upper bounds of the box, as quantized.  Only for boxes without a
+   * second longitude range.
+   */
+  void excludeBounds(boolean excludeMin, boolean excludeMax) {
+    if (excludeMin) {
+      if (latMin == Integer.MAX_VALUE || lonMin == Integer.MAX_VALUE) {
+        latMin = Integer.MAX_VALUE;
+        latMax = Integer.MIN_VALUE;  // matches nothing
+        return;
+      }
+      latMin++;
+      lonMin++;
+    }
+    if (excludeMax) {
+      if (latMax == Integer.MIN_VALUE || lonMax == Integer.MIN_VALUE) {
+        latMin = Integer.MAX_VALUE;
+        latMax = Integer.MIN_VALUE;
+        return;
+      }
+      latMax--;
+      lonMax--;
+    }
+  }
+
+  @Override
+  public void extractTerms(Set terms) {}
+
+
+  protected class PointWeight extends Weight {
+    protected float queryNorm;
+    protected float queryWeight;
+    protected final QueryContext context;
+
+    public PointWeight(IndexSearcher searcher) throws IOException {
+      this.context = QueryContext.newContext(searcher);
+      pointSource.createWeight(context);
+    }
+
+    @Override
+    public Query getQuery() {
+      return LatLonPointDistanceQuery.this;
+    }
+
+    @Override
+    public float getValueForNormalization() throws IOException {
+      queryWeight = getBoost();
+      return queryWeight * queryWeight;
+    }
+
+    @Override
+    public void normalize(float norm, float topLevelBoost) {
+      this.queryNorm = norm * topLevelBoost;
+      queryWeight *= this.queryNorm;
+    }
+
+    @Override
+    public Scorer scorer(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+      return new PointScorer(context, acceptDocs, this, queryWeight);
+    }
+
+    @Override
+    public Explanation explain(AtomicReaderContext context, int doc) throws IOException {
+      return ((PointScorer)scorer(context, context.reader().getLiveDocs())).explain(doc);
+    }
+  }
+
+  protected class PointScorer extends Scorer {
+    final PointWeight weight;
+    final int maxDoc;
+    final float qWeight;
+    int doc=-1;
+    final FuncValues points;
+    final Bits acceptDocs;
+
+    final int lonMin, lonMax, lon2Min, lon2Max, latMin, latMax;
+    final boolean lon2;
+    final boolean calcDist;
+
+    final double latCenterRad;
+    final double lonCenterRad;
+    final double latCenterRad_cos;
+    final double dist;
+    final double planetDiameter;
+
+    public PointScorer(AtomicReaderContext readerContext, Bits acceptDocs, PointWeight w, float qWeight) throws IOException {
+      super(w);
+      this.weight = w;
+      this.qWeight = qWeight;
+      this.maxDoc = readerContext.reader().maxDoc();
+      this.acceptDocs = acceptDocs;
+      this.points = pointSource.getValues(weight.context, readerContext);
+
+      LatLonPointDistanceQuery q = LatLonPointDistanceQuery.this;
+      this.lonMin = q.lonMin;
+      this.lonMax = q.lonMax;
+      this.lon2Min = q.lon2Min;
+      this.lon2Max = q.lon2Max;
+      this.latMin = q.latMin;
+      this.latMax = q.latMax;
+      this.lon2 = q.lon2;
+      this.calcDist = q.calcDist;
+
+      this.latCenterRad = q.latCenter * DistanceUtils.DEGREES_TO_RADIANS;
+      this.lonCenterRad = q.lonCenter * DistanceUtils.DEGREES_TO_RADIANS;
+      this.latCenterRad_cos = Math.cos(latCenterRad);
+      this.dist = q.dist;
+      this.planetDiameter = q.planetRadius * 2;
+    }
+
+    boolean match() {
+      long packed = points.longVal(doc);
+      // a packed value of 0 is also the value of documents without a point
+      if (packed == 0 && !points.exists(doc)) {
+        return false;
+      }
+
+      // check the box on the quantized values first: longitude is generally more restrictive than latitude
+      int lon = (int) packed;
+      if (! ((lon >= lonMin && lon <= lonMax) || (lon2 && lon >= lon2Min && lon <= lon2Max)) ) {
+        return false;
+      }
+
+      int lat = (int) (packed >> 32);
+      if ( !(lat >= latMin && lat <= latMax) ) {
+        return false;
+      }
+
+      if (!calcDist) return true;
+
+      return dist(packed) <= dist;
+    }
+
+    double dist(long packed) {
+      return LatLonPointDistanceFunction.distance(packed, latCenterRad, lonCenterRad, latCenterRad_cos, planetDiameter);
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      for(;;) {
+        ++doc;
+        if (doc>=maxDoc) {
+          return doc=NO_MORE_DOCS;
+        }
+        if (acceptDocs != null && !acceptDocs.get(doc)) continue;
+        if (!match()) continue;
+        return doc;
+      }
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      // this will work even if target==NO_MORE_DOCS
+      doc=target-1;
+      return nextDoc();
+    }
+
+    @Override
+    public float score() throws IOException {
+      return (float)(dist(points.longVal(doc)) * qWeight);
+    }
+
+    @Override
+    public int freq() throws IOException {
+      return 1;
+    }
+
+    @Override
+    public long cost() {
+      return maxDoc;
+    }
+
+    public Explanation explain(int doc) throws IOException {
+      advance(doc);
+      boolean matched = this.doc == doc;
+      this.doc = doc;
+
+      float sc = matched ? score() : 0;
+      long packed = points.longVal(doc);
+
+      Explanation result = new ComplexExplanation
+        (matched, sc, LatLonPointDistanceQuery.this.toString() + " product of:");
+      result.addDetail(new Explanation((float)dist(packed), "hsin(" + LatLonPointType.toExternal(packed) + ")"));
+      result.addDetail(new Explanation(getBoost(), "boost"));
+      result.addDetail(new Explanation(weight.queryNorm,"queryNorm"));
+      return result;
+    }
+  }
+
+  @Override
+  public DelegatingCollector getFilterCollector(IndexSearcher searcher) {
+    try {
+      return new PointCollector(new PointWeight(searcher));
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, e);
+    }
+  }
+
+
+  class PointCollector extends DelegatingCollector {
+    final PointWeight weight;
+    PointScorer pointScorer;
+
+    public PointCollector(PointWeight weight) {
+      this.weight = weight;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      pointScorer.doc = doc;
+      if (pointScorer.match()) delegate.collect(doc);
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+      pointScorer = new PointScorer(context, null, weight, 1.0f);
+      super.setNextReader(context);
+    }
+  }
+
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher) throws IOException {
+    return new PointWeight(searcher);
+  }
+
+
+  /** Prints a user-readable version of this query. */
+  @Override
+  public String toString(String field)
+  {
+    float boost = getBoost();
+    return super.getOptions() + (boost!=1.0?"(":"") +
+            (calcDist ? "geofilt" : "bbox") + "(latlonPoint="+origField
+            +",latCenter="+latCenter+",lonCenter="+lonCenter
+            +",dist=" + dist
+            +",latMin=" + latMin + ",latMax="+latMax
+            +",lonMin=" + lonMin + ",lonMax="+lonMax
+            +",lon2Min=" + lon2Min + ",lon2Max=" + lon2Max
+            +",calcDist="+calcDist
+            +",planetRadius="+planetRadius
+            +")"
+            + (boost==1.0 ? "" : ")^"+boost);
+  }
+
+
+  /** Returns true if <code>o</code> is equal to this. */
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+    LatLonPointDistanceQuery other = (LatLonPointDistanceQuery)o;
+    return     this.latCenter == other.latCenter
+            && this.lonCenter == other.lonCenter
+            && this.latMin == other.latMin
+            && this.latMax == other.latMax
+            && this.lonMin == other.lonMin
+            && this.lonMax == other.lonMax
+            && this.lon2Min == other.lon2Min
+            && this.lon2Max == other.lon2Max
+            && this.dist == other.dist
+            && this.planetRadius == other.planetRadius
+            && this.calcDist == other.calcDist
+            && this.pointSource.equals(other.pointSource)
+            && this.getBoost() == other.getBoost()
+        ;
+  }
+
+  /** Returns a hash code value for this object. */
+  @Override
+  public int hashCode() {
+    // don't bother making the hash expensive - the center latitude + min longitude will be very unique
+    long hash = Double.doubleToLongBits(latCenter);
+    hash = hash * 31 + lonMin;
+    hash = hash * 31 + (long)super.hashCode();
+    return (int)(hash ^ (hash >>> 32));
+  }
+
+}
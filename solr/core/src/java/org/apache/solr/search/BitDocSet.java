@@ -115,6 +115,16 @@ public class BitDocSet extends DocSetBase {
         return old;
       }
 
+      @Override
+      public int nextDocs(int[] target) {
+        int n = 0;
+        while (n < target.length && pos != DocIdSetIterator.NO_MORE_DOCS) {
+          target[n++] = pos;
+          pos = iter.nextDoc();
+        }
+        return n;
+      }
+
       @Override
       public float score() {
         return 0.0f;
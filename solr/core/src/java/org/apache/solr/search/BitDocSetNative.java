@@ -110,6 +110,29 @@ public class BitDocSetNative extends DocSetBaseNative implements Bits, Cloneable
         return old;
       }
 
+      public int nextDocs(int[] target) {
+        if (pos < 0) return 0;
+        int n = 0;
+        int i = pos >> 6;
+        long word = HS.getLong(array, i) & (-1L << pos);  // the bits at or after pos
+        for (;;) {
+          while (word != 0) {
+            int doc = (i<<6) + Long.numberOfTrailingZeros(word);
+            if (n == target.length) {
+              pos = doc;
+              return n;
+            }
+            target[n++] = doc;
+            word &= word - 1;  // clear the lowest set bit
+          }
+          if (++i >= wlen) {
+            pos = -1;
+            return n;
+          }
+          word = HS.getLong(array, i);
+        }
+      }
+
       public float score() {
         return 0.0f;
       }
@@ -253,6 +276,12 @@ public class BitDocSetNative extends DocSetBaseNative implements Bits, Cloneable
 
   public static native void setBits(long words, long wlen, long intArr, int size);
 
+  /**
+   * Puts the ids of the sorted int array that are also set in the bits into target
+   * and returns the number found.  If target is 0, the ids are only counted.
+   */
+  public static native int intersectionInts(long words, long wlen, long intArr, int size, long target);
+
   /**
    * The number of set bits - size - is cached.  If the bitset is changed externally,
    * this method should be used to invalidate the previously cached size.
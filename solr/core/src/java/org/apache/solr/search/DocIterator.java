@@ -42,6 +42,16 @@ public interface DocIterator extends Iterator<Integer> {
    */
   public int nextDoc();
 
+  /**
+   * Fills <code>docs</code> with the following document ids, up to <code>docs.length</code> of them,
+   * and returns how many were filled.  0 is returned when there are no more documents.
+   *
+   * This is equivalent to calling <code>nextDoc()</code> while <code>hasNext()</code>, but avoids
+   * the per-document calls.  <code>score()</code> is undefined after this method is called.
+   * @see #nextDoc()
+   */
+  public int nextDocs(int[] docs);
+
   /**
    * Returns the score for the document just returned by <code>nextDoc()</code>
    *
@@ -17,70 +17,126 @@ package org.apache.solr.search;
  * limitations under the License.
  */
 
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Scorer;
-import org.apache.lucene.util.OpenBitSet;
+import org.apache.solr.core.HS;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- *DocSetCollector must be closed after use.
+ * Collects docs (in order) straight into off-heap buffers.  While the number of docs is small enough
+ * for a {@link SortedIntDocSetNative} the buffers are kept, after that a {@link BitDocSetNative} is
+ * allocated and each full buffer is added to it in a single native call.
+ * <p/>
+ * DocSetCollector must be closed after use.
  */
 
 public class DocSetCollector extends Collector implements AutoCloseable {
-  int pos=0;
-  BitDocSetNative bits;
+  private long buffer;
+  private int pos=0;  // position in the current buffer
+  private int globalPos = 0;  // number of docs in previous buffers
+  private BitDocSetNative bits;
+  private List<Long> bufferList;  // full buffers, only used before switching to bits
+  private final int bufferSize = HS.BUFFER_SIZE_BYTES >>> 2;
   final int maxDoc;
   final int smallSetSize;
   int base;
 
-  // in case there aren't that many hits, we may not want a very sparse
-  // bit array.  Optimistically collect the first few docs in an array
-  // in case there are only a few.
-  final int[] scratch;
-
   public DocSetCollector(int smallSetSize, int maxDoc) {
     this.smallSetSize = smallSetSize;
     this.maxDoc = maxDoc;
-    this.scratch = new int[smallSetSize];
+    this.buffer = HS.getBuffer();
   }
 
   @Override
   public void collect(int doc) throws IOException {
-    doc += base;
-    // optimistically collect the first docs in an array
-    // in case the total number will be small enough to represent
-    // as a small set like SortedIntDocSet instead...
-    // Storing in this array will be quicker to convert
-    // than scanning through a potentially huge bit vector.
-    // FUTURE: when search methods all start returning docs in order, maybe
-    // we could have a ListDocSet() and use the collected array directly.
-    if (pos < scratch.length) {
-      scratch[pos]=doc;
-    } else {
-      // this conditional could be removed if BitSet was preallocated, but that
-      // would take up more memory, and add more GC time...
-      if (bits==null) bits = new BitDocSetNative(maxDoc);
-      bits.fastSet(doc);
+    if (pos >= bufferSize) {
+      newBuffer();
+    }
+    HS.setInt(buffer, pos++, doc + base);
+  }
+
+  private void newBuffer() {
+    assert pos == bufferSize;
+    globalPos += pos;
+    pos = 0;
+
+    if (bits == null && globalPos > smallSetSize) {
+      // too many docs for a small set... switch to bits
+      bits = new BitDocSetNative(maxDoc);
+      if (bufferList != null) {
+        for (long buf : bufferList) {
+          setBits(buf, bufferSize);
+          HS.freeArray(buf);
+        }
+        bufferList = null;
+      }
+    }
+
+    // once we have bits, just set them and reuse the buffer
+    if (bits != null) {
+      setBits(buffer, bufferSize);
+      return;
     }
 
-    pos++;
+    if (bufferList == null) {
+      bufferList = new ArrayList<>();
+    }
+    bufferList.add(buffer);
+    buffer = 0;  // zero out in case getBuffer fails
+    buffer = HS.getBuffer();
   }
 
-  public DocSet getDocSet() {
-    if (pos<=scratch.length) {
-      // assumes docs were collected in sorted order!
-      return new SortedIntDocSetNative(scratch, pos);
+  private void setBits(long buf, int sz) {
+    if (HS.loaded) {
+      BitDocSetNative.setBits(bits.array, bits.wlen, buf, sz);
     } else {
-      // set the bits for ids that were collected in the array
-      for (int i=0; i<scratch.length; i++) bits.fastSet(scratch[i]);
-      bits.setSize(pos);
-      DocSet answer = bits;
+      for (int i=0; i<sz; i++) {
+        bits.fastSet(HS.getInt(buf, i));
+      }
+    }
+  }
+
+  public DocSet getDocSet() {
+    int sz = globalPos + pos;
+
+    if (bits == null && sz > smallSetSize) {
+      bits = new BitDocSetNative(maxDoc);
+      if (bufferList != null) {
+        for (long buf : bufferList) {
+          setBits(buf, bufferSize);
+        }
+      }
+    }
+
+    DocSet answer;
+    if (bits != null) {
+      setBits(buffer, pos);
+      bits.setSize(sz);
+      answer = bits;
       bits = null; // null out so we know we don't need to free later
-      return answer;
+    } else {
+      // assumes docs were collected in sorted order!
+      // always copy, since the buffers are bigger than needed
+      long all = HS.allocArray(sz, 4, false);
+      int allPos = 0;
+      if (bufferList != null) {
+        for (long buf : bufferList) {
+          HS.copyInts(buf, 0, all, allPos, bufferSize);
+          allPos += bufferSize;
+        }
+      }
+      HS.copyInts(buffer, 0, all, allPos, pos);
+      assert allPos + pos == sz;
+      answer = new SortedIntDocSetNative(all, sz);
     }
+
+    // the buffers are no longer needed, even if the caller doesn't close us
+    freeBuffers();
+    return answer;
   }
 
   @Override
@@ -103,5 +159,19 @@ public class DocSetCollector extends Collector implements AutoCloseable {
       bits.decref();
       bits = null;
     }
+    freeBuffers();
+  }
+
+  private void freeBuffers() {
+    if (buffer != 0) {
+      HS.freeArray(buffer);
+      buffer = 0;
+    }
+    if (bufferList != null) {
+      for (long buf : bufferList) {
+        HS.freeArray(buf);
+      }
+      bufferList = null;
+    }
   }
 }
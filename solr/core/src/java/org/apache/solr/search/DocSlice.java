@@ -132,6 +132,14 @@ public class DocSlice extends DocSetBase implements DocList {
         return docs[pos++];
       }
 
+      @Override
+      public int nextDocs(int[] target) {
+        int n = Math.min(target.length, end - pos);
+        System.arraycopy(docs, pos, target, 0, n);
+        pos += n;
+        return n;
+      }
+
       @Override
       public float score() {
         return scores[pos-1];
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+
+/**
+ * Computes the documents that a join matches from the doc values of the from and to fields,
+ * segment by segment, rather than from their terms.
+ * <p>
+ * The ordinals of the values of the documents that match the from query are marked in a bitset
+ * per from segment.  These ordinals are translated to the ordinals of the same values in each to
+ * segment with an {@link OrdMap}, and the documents of the to segment that have one of the
+ * resulting ordinals are collected with a scan of its doc values.
+ * <p>
+ * An {@link OrdMap} only depends on the values of two segments, so ordinal maps are cached per
+ * pair of segment cores, in the <code>joinOrdMapCache</code> of the to searcher.  Autowarming
+ * copies the maps of the to segments that the new searcher still has, see
+ * {@link OrdMapRegenerator}.
+ * <p>
+ * Segments written with formats that cannot represent missing values give the empty value to
+ * the documents without a value, which this join then treats as a real value, so it is only
+ * used when requested with <code>method=dv</code>.
+ */
+class DocValuesJoin {
+
+  private final SolrIndexSearcher fromSearcher;
+  private final String fromField;
+  private final SolrIndexSearcher toSearcher;
+  private final String toField;
+  private final SolrCache<Key,OrdMap> ordMaps;
+
+  int fromOrdHits;    // number of from segment ordinals of the documents that match the from query
+  int toOrdHits;      // number of to segment ordinals that these ordinals map to
+  int ordMapsBuilt;   // number of ordinal maps that were not cached yet
+
+  DocValuesJoin(SolrIndexSearcher fromSearcher, String fromField, SolrIndexSearcher toSearcher, String toField) {
+    this.fromSearcher = fromSearcher;
+    this.fromField = fromField;
+    this.toSearcher = toSearcher;
+    this.toField = toField;
+    this.ordMaps = toSearcher.getJoinOrdMapCache();
+  }
+
+  /**
+   * Returns true if the values of the field are indexed as {@link FieldInfo.DocValuesType#SORTED} or
+   * {@link FieldInfo.DocValuesType#SORTED_SET} doc values in all segments that have the field.
+   */
+  static boolean hasSortedDocValues(SolrIndexSearcher searcher, String field) {
+    for (AtomicReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      FieldInfo fi = leaf.reader().getFieldInfos().fieldInfo(field);
+      if (fi == null) continue;
+      FieldInfo.DocValuesType type = fi.getDocValuesType();
+      if (type != FieldInfo.DocValuesType.SORTED && type != FieldInfo.DocValuesType.SORTED_SET) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the live documents of the to searcher that share a value with a document of <code>fromSet</code>. */
+  DocSet getDocSet(DocSet fromSet) throws IOException {
+    List<AtomicReaderContext> fromLeaves = fromSearcher.getTopReaderContext().leaves();
+    List<AtomicReaderContext> toLeaves = toSearcher.getTopReaderContext().leaves();
+
+    // the ordinals of the values of the matching documents, per from segment
+    SortedSetDocValues[] fromValues = new SortedSetDocValues[fromLeaves.size()];
+    LongBitSet[] fromOrds = new LongBitSet[fromLeaves.size()];
+    int leafIdx = -1;
+    int nextBase = 0;
+    SortedSetDocValues values = null;
+    SortedDocValues singleValues = null;
+    LongBitSet ords = null;
+    int base = 0;
+    DocIterator iter = fromSet.iterator();
+    while (iter.hasNext()) {
+      int doc = iter.nextDoc();
+      if (doc >= nextBase) {
+        do {
+          leafIdx++;
+          AtomicReaderContext leaf = fromLeaves.get(leafIdx);
+          base = leaf.docBase;
+          nextBase = base + leaf.reader().maxDoc();
+        } while (doc >= nextBase);
+        values = DocValues.getSortedSet(fromLeaves.get(leafIdx).reader(), fromField);
+        singleValues = DocValues.unwrapSingleton(values);
+        ords = values.getValueCount() == 0 ? null : new LongBitSet(values.getValueCount());
+        fromValues[leafIdx] = values;
+        fromOrds[leafIdx] = ords;
+      }
+      if (ords == null) continue;
+      if (singleValues != null) {
+        int ord = singleValues.getOrd(doc - base);
+        if (ord >= 0) ords.set(ord);
+      } else {
+        values.setDocument(doc - base);
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          ords.set(ord);
+        }
+      }
+    }
+    for (LongBitSet bits : fromOrds) {
+      if (bits != null) fromOrdHits += bits.cardinality();
+    }
+
+    FixedBitSet resultBits = new FixedBitSet(toSearcher.maxDoc());
+    for (AtomicReaderContext toLeaf : toLeaves) {
+      AtomicReader toReader = toLeaf.reader();
+      SortedSetDocValues toValues = DocValues.getSortedSet(toReader, toField);
+      if (toValues.getValueCount() == 0) continue;
+
+      LongBitSet toOrds = new LongBitSet(toValues.getValueCount());
+      for (int i = 0; i < fromOrds.length; i++) {
+        if (fromOrds[i] == null) continue;
+        AtomicReader fromReader = fromLeaves.get(i).reader();
+        if (fromReader.getCoreCacheKey() == toReader.getCoreCacheKey() && fromField.equals(toField)) {
+          // same values, same ordinals
+          toOrds.or(fromOrds[i]);
+          continue;
+        }
+        OrdMap map = getOrdMap(fromReader, fromValues[i], toReader, toValues);
+        LongBitSet bits = fromOrds[i];
+        for (long ord = bits.nextSetBit(0); ord >= 0; ord = ord + 1 < bits.length() ? bits.nextSetBit(ord + 1) : -1) {
+          long toOrd = map.get(ord);
+          if (toOrd >= 0) toOrds.set(toOrd);
+        }
+      }
+
+      long numOrds = toOrds.cardinality();
+      if (numOrds == 0) continue;
+      toOrdHits += numOrds;
+
+      int toBase = toLeaf.docBase;
+      int maxDoc = toReader.maxDoc();
+      Bits liveDocs = toReader.getLiveDocs();
+      SortedDocValues toSingleValues = DocValues.unwrapSingleton(toValues);
+      for (int doc = 0; doc < maxDoc; doc++) {
+        if (liveDocs != null && !liveDocs.get(doc)) continue;
+        if (toSingleValues != null) {
+          int ord = toSingleValues.getOrd(doc);
+          if (ord >= 0 && toOrds.get(ord)) resultBits.set(toBase + doc);
+        } else {
+          toValues.setDocument(doc);
+          for (long ord = toValues.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = toValues.nextOrd()) {
+            if (toOrds.get(ord)) {
+              resultBits.set(toBase + doc);
+              break;
+            }
+          }
+        }
+      }
+    }
+
+    return new BitDocSet(resultBits);
+  }
+
+  private OrdMap getOrdMap(AtomicReader fromReader, SortedSetDocValues fromValues,
+                           AtomicReader toReader, SortedSetDocValues toValues) throws IOException {
+    Key key = null;
+    if (ordMaps != null) {
+      key = new Key(fromReader.getCoreCacheKey(), fromField, toReader.getCoreCacheKey(), toField,
+          fromSearcher.getCore() != toSearcher.getCore());
+      OrdMap map = ordMaps.get(key);
+      if (map != null) return map;
+    }
+
+    OrdMap map = OrdMap.build(fromValues, toValues);
+    ordMapsBuilt++;
+    if (ordMaps != null) {
+      ordMaps.put(key, map);
+    }
+    return map;
+  }
+
+  /** Returns the number of cached ordinal maps. */
+  int getCachedOrdMapCount() {
+    return ordMaps == null ? 0 : ordMaps.size();
+  }
+
+
+  /**
+   * Copies the ordinal maps between segments that the new searcher still has.  The maps of a
+   * cross-core join are dropped, since the from segments are not known to the new searcher.
+   */
+  /**
+   * Copies the maps to the segments that the new searcher still has.  The from segments of a join
+   * within the core must also still be in the new searcher, while those of a join from another
+   * core belong to the searcher of that core, and the maps of the ones it dropped are evicted as
+   * they become least recently used.
+   */
+  static class OrdMapRegenerator implements CacheRegenerator {
+    @Override
+    public boolean regenerateItem(SolrIndexSearcher.WarmContext warmContext, Object oldKey, Object oldVal) throws IOException {
+      Key key = (Key) oldKey;
+      boolean hasFrom = false, hasTo = false;
+      for (AtomicReaderContext leaf : warmContext.searcher.getTopReaderContext().leaves()) {
+        Object core = leaf.reader().getCoreCacheKey();
+        hasFrom |= core == key.fromCore;
+        hasTo |= core == key.toCore;
+      }
+      if (hasTo && (hasFrom || key.crossCore)) {
+        warmContext.cache.put(key, oldVal);
+      }
+      return true;
+    }
+  }
+
+
+  static final class Key {
+    final Object fromCore;
+    final String fromField;
+    final Object toCore;
+    final String toField;
+    final boolean crossCore;  // the from segment belongs to another core, follows from fromCore
+
+    Key(Object fromCore, String fromField, Object toCore, String toField, boolean crossCore) {
+      this.fromCore = fromCore;
+      this.fromField = fromField;
+      this.toCore = toCore;
+      this.toField = toField;
+      this.crossCore = crossCore;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key other = (Key)o;
+      return fromCore == other.fromCore && toCore == other.toCore
+          && fromField.equals(other.fromField) && toField.equals(other.toField);
+    }
+
+    @Override
+    public int hashCode() {
+      int h = System.identityHashCode(fromCore);
+      h = h * 31 + System.identityHashCode(toCore);
+      h = h * 31 + fromField.hashCode();
+      h = h * 31 + toField.hashCode();
+      return h;
+    }
+  }
+
+
+  /**
+   * Maps the ordinals of the values of a segment to the ordinals of the same values in
+   * another segment.
+   * <p>
+   * Both segments sort their values, so the number of values of the to segment that are smaller
+   * than a from value grows with the from ordinal, and is stored as monotonic packed longs.  It is
+   * the to ordinal of the from value when the to segment also has the value.
+   */
+  static final class OrdMap implements Accountable {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OrdMap.class);
+
+    private final LongBitSet found;
+    private final PackedLongValues toOrds;
+
+    private OrdMap(LongBitSet found, PackedLongValues toOrds) {
+      this.found = found;
+      this.toOrds = toOrds;
+    }
+
+    /** Returns the to ordinal of a from ordinal, or -1 if the to segment does not have its value. */
+    long get(long fromOrd) {
+      return found.get(fromOrd) ? toOrds.get(fromOrd) : -1;
+    }
+
+    /** Builds the map with a merge of the sorted values of both segments. */
+    static OrdMap build(SortedSetDocValues fromValues, SortedSetDocValues toValues) throws IOException {
+      long fromCount = fromValues.getValueCount();
+      LongBitSet found = new LongBitSet(fromCount);
+      PackedLongValues.Builder toOrds = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+
+      TermsEnum fromTerms = fromValues.termsEnum();
+      TermsEnum toTerms = toValues.termsEnum();
+      BytesRef toTerm = toTerms.next();
+      long toOrd = 0;
+      for (long fromOrd = 0; fromOrd < fromCount; fromOrd++) {
+        BytesRef fromTerm = fromTerms.next();
+        while (toTerm != null && toTerm.compareTo(fromTerm) < 0) {
+          toTerm = toTerms.next();
+          toOrd++;
+        }
+        if (toTerm != null && toTerm.bytesEquals(fromTerm)) {
+          found.set(fromOrd);
+        }
+        toOrds.add(toOrd);
+      }
+      return new OrdMap(found, toOrds.build());
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(found.getBits()) + toOrds.ramBytesUsed();
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.apache.solr.search.function.ValueSource;
 import org.apache.solr.search.function.valuesource.*;
 import org.apache.lucene.search.Query;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.SchemaField;
 
@@ -35,6 +36,9 @@ public class FunctionQParser extends QParser {
   public static final int FLAG_IS_AGG = 0x02;
   public static final int FLAG_DEFAULT = FLAG_CONSUME_DELIMITER;
 
+  /** Parameter to compile the function into bytecode, see {@link CompiledValueSource} */
+  public static final String COMPILE = "compile";
+
   /** @lucene.internal */
   public QueryParsing.StrParser sp;
   boolean parseMultipleSources = true;
@@ -107,6 +111,8 @@ public class FunctionQParser extends QParser {
 
     if (lst != null) {
       vs = new VectorValueSource(lst);
+    } else if (StrUtils.parseBool(getParam(COMPILE), false)) {
+      vs = CompiledValueSource.compile(vs);
     }
 
     return new FunctionQuery(vs);
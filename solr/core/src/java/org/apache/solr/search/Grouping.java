@@ -28,8 +28,11 @@ import org.apache.solr.search.grouping.FunctionAllGroupHeadsCollector;
 import org.apache.solr.search.grouping.FunctionAllGroupsCollector;
 import org.apache.solr.search.grouping.FunctionFirstPassGroupingCollector;
 import org.apache.solr.search.grouping.FunctionSecondPassGroupingCollector;
-import org.apache.solr.search.grouping.TermAllGroupHeadsCollector;
-import org.apache.solr.search.grouping.TermAllGroupsCollector;
+import org.apache.solr.search.grouping.GlobalOrdAllGroupHeadsCollector;
+import org.apache.solr.search.grouping.GlobalOrdAllGroupsCollector;
+import org.apache.solr.search.grouping.GlobalOrdFirstPassGroupingCollector;
+import org.apache.solr.search.grouping.GlobalOrdSecondPassGroupingCollector;
+import org.apache.solr.search.grouping.GlobalOrdinals;
 import org.apache.solr.search.grouping.TermFirstPassGroupingCollector;
 import org.apache.solr.search.grouping.TermSecondPassGroupingCollector;
 import org.apache.lucene.util.BytesRef;
@@ -680,9 +683,10 @@ public class Grouping {
 
     public String groupBy;
     TermFirstPassGroupingCollector firstPass;
-    TermSecondPassGroupingCollector secondPass;
+    GlobalOrdFirstPassGroupingCollector ordFirstPass;
+    AbstractSecondPassGroupingCollector<BytesRef> secondPass;
 
-    TermAllGroupsCollector allGroupsCollector;
+    AbstractAllGroupsCollector<BytesRef> allGroupsCollector;
 
     // If offset falls outside the number of documents a group can provide use this collector instead of secondPass
     TotalHitCountCollector fallBackCollector;
@@ -708,6 +712,10 @@ public class Grouping {
       }
 
       sort = sort == null ? Sort.RELEVANCE : sort;
+      ordFirstPass = GlobalOrdFirstPassGroupingCollector.create(searcher, groupBy, sort, actualGroupsToFind);
+      if (ordFirstPass != null) {
+        return ordFirstPass;
+      }
       firstPass = new TermFirstPassGroupingCollector(groupBy, sort, actualGroupsToFind);
       return firstPass;
     }
@@ -718,14 +726,15 @@ public class Grouping {
     @Override
     protected Collector createSecondPassCollector() throws IOException {
       if (actualGroupsToFind <= 0) {
-        allGroupsCollector = new TermAllGroupsCollector(groupBy);
+        allGroupsCollector = GlobalOrdAllGroupsCollector.create(searcher, groupBy);
         return totalCount == TotalCount.grouped ? allGroupsCollector : null;
       }
 
-      topGroups = format == Format.grouped ? firstPass.getTopGroups(offset, false) : firstPass.getTopGroups(0, false);
+      int topGroupsOffset = format == Format.grouped ? offset : 0;
+      topGroups = ordFirstPass != null ? ordFirstPass.getTopGroups(topGroupsOffset, false) : firstPass.getTopGroups(topGroupsOffset, false);
       if (topGroups == null) {
         if (totalCount == TotalCount.grouped) {
-          allGroupsCollector = new TermAllGroupsCollector(groupBy);
+          allGroupsCollector = GlobalOrdAllGroupsCollector.create(searcher, groupBy);
           fallBackCollector = new TotalHitCountCollector();
           return MultiCollector.wrap(allGroupsCollector, fallBackCollector);
         } else {
@@ -736,12 +745,19 @@ public class Grouping {
 
       int groupedDocsToCollect = getMax(groupOffset, docsPerGroup, maxDoc);
       groupedDocsToCollect = Math.max(groupedDocsToCollect, 1);
-      secondPass = new TermSecondPassGroupingCollector(
-          groupBy, topGroups, sort, groupSort, groupedDocsToCollect, needScores, needScores, false
-      );
+      GlobalOrdinals ordinals = GlobalOrdinals.get(searcher, groupBy);
+      if (ordinals != null && ordinals.isSingleValued()) {
+        secondPass = new GlobalOrdSecondPassGroupingCollector(
+            ordinals, topGroups, sort, groupSort, groupedDocsToCollect, needScores, needScores, false
+        );
+      } else {
+        secondPass = new TermSecondPassGroupingCollector(
+            groupBy, topGroups, sort, groupSort, groupedDocsToCollect, needScores, needScores, false
+        );
+      }
 
       if (totalCount == TotalCount.grouped) {
-        allGroupsCollector = new TermAllGroupsCollector(groupBy);
+        allGroupsCollector = GlobalOrdAllGroupsCollector.create(searcher, groupBy);
         return MultiCollector.wrap(secondPass, allGroupsCollector);
       } else {
         return secondPass;
@@ -754,7 +770,7 @@ public class Grouping {
     @Override
     public AbstractAllGroupHeadsCollector<?> createAllGroupCollector() throws IOException {
       Sort sortWithinGroup = groupSort != null ? groupSort : new Sort();
-      return TermAllGroupHeadsCollector.create(groupBy, sortWithinGroup);
+      return GlobalOrdAllGroupHeadsCollector.create(searcher, groupBy, sortWithinGroup);
     }
 
     /**
@@ -172,6 +172,16 @@ public final class HashDocSet extends DocSetBase {
         return doc;
       }
 
+      @Override
+      public int nextDocs(int[] target) {
+        int n = 0;
+        while (n < target.length && pos < table.length) {
+          target[n++] = table[pos++];
+          goNext();
+        }
+        return n;
+      }
+
       @Override
       public float score() {
         return 0.0f;
@@ -0,0 +1,165 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.apache.solr.core.HS;
+
+/**
+ * Per segment Bloom filters of the unique key terms, used as a negative cache by id
+ * lookups: a segment whose filter doesn't contain an id can be skipped without seeking
+ * its terms dictionary, so looking up a brand new id usually doesn't seek at all.
+ * <p>
+ * Filters are kept off-heap, keyed by segment core, so the main and realtime searchers
+ * of a core share them, and are freed when the segment is closed.  They are built when a
+ * searcher is warmed, never by a lookup: a segment without a filter yet, such as one only
+ * seen by a realtime searcher, might contain any id.  Lookups don't lock.
+ */
+public final class IdBloomFilterCache {
+  // bits per term of a filter; with 2 probes per term about 3% of lookups of absent ids are false positives
+  private static final int BITS_PER_TERM = 10;
+  // the most bits of a single filter, which is as many as 32 bit hashes can address
+  private static final long MAX_BITS = 1L << 32;
+
+  private final ConcurrentHashMap<Object,Filter> filters = new ConcurrentHashMap<>();
+
+  private final AtomicReader.CoreClosedListener purgeListener = new AtomicReader.CoreClosedListener() {
+    @Override
+    public void onClose(Object ownerCoreCacheKey) {
+      Filter filter = filters.remove(ownerCoreCacheKey);
+      if (filter != null) {
+        filter.free();
+      }
+    }
+  };
+
+  /** Returns false if the segment definitely doesn't have the term <code>id</code> in <code>field</code> */
+  public boolean mightContain(AtomicReader reader, String field, BytesRef id) {
+    Filter filter = filters.get(reader.getCoreCacheKey());
+    return filter == null || !filter.field.equals(field) || filter.mightContain(id);
+  }
+
+  /** Builds the filters of the segments that don't have one yet.  Called when a searcher is warmed. */
+  public void build(List<AtomicReaderContext> leaves, String field) throws IOException {
+    for (AtomicReaderContext leaf : leaves) {
+      AtomicReader reader = leaf.reader();
+      Object key = reader.getCoreCacheKey();
+      // a filter of another field (the unique key changed) is left alone: lookups ignore it
+      if (filters.containsKey(key)) continue;
+
+      Filter filter = Filter.build(reader, field);
+      if (filter == null) continue;
+      if (filters.putIfAbsent(key, filter) != null) {
+        filter.free();
+      } else {
+        reader.addCoreClosedListener(purgeListener);
+      }
+    }
+  }
+
+  /** Frees all filters.  Called when the core is closed, since its segments may outlive it. */
+  public void close() {
+    for (Object key : filters.keySet()) {
+      Filter filter = filters.remove(key);
+      if (filter != null) {
+        filter.free();
+      }
+    }
+  }
+
+  /** The number of segments with a filter */
+  public int size() {
+    return filters.size();
+  }
+
+  private static final class Filter {
+    final String field;
+    private final long bits;  // off-heap
+    private final long mask;  // number of bits - 1
+
+    private Filter(String field, long bits, long mask) {
+      this.field = field;
+      this.bits = bits;
+      this.mask = mask;
+    }
+
+    static Filter build(AtomicReader reader, String field) throws IOException {
+      Terms terms = reader.terms(field);
+      long numTerms = terms == null ? 0 : terms.size();
+      if (numTerms < 0) {
+        numTerms = reader.maxDoc();
+      }
+      long numBits = Math.max(64, Long.highestOneBit(Math.max(1, numTerms * BITS_PER_TERM) - 1) << 1);
+      if (numBits > MAX_BITS) {
+        return null;
+      }
+
+      long bits = HS.allocArray(numBits >>> 6, 8, true);
+      Filter filter = new Filter(field, bits, numBits - 1);
+      if (terms != null) {
+        try {
+          TermsEnum te = terms.iterator(null);
+          for (BytesRef term = te.next(); term != null; term = te.next()) {
+            filter.add(term);
+          }
+        } catch (IOException | RuntimeException e) {
+          filter.free();
+          throw e;
+        }
+      }
+      return filter;
+    }
+
+    private void add(BytesRef term) {
+      int h1 = StringHelper.murmurhash3_x86_32(term, 0);
+      int h2 = StringHelper.murmurhash3_x86_32(term, h1);
+      set(h1);
+      set(h2);
+    }
+
+    boolean mightContain(BytesRef term) {
+      int h1 = StringHelper.murmurhash3_x86_32(term, 0);
+      if (!get(h1)) return false;
+      int h2 = StringHelper.murmurhash3_x86_32(term, h1);
+      return get(h2);
+    }
+
+    private void set(int hash) {
+      long bit = (hash & 0xFFFFFFFFL) & mask;
+      HS.setLongOR(bits, (int) (bit >>> 6), 1L << bit);
+    }
+
+    private boolean get(int hash) {
+      long bit = (hash & 0xFFFFFFFFL) & mask;
+      return (HS.getLong(bits, (int) (bit >>> 6)) & (1L << bit)) != 0;
+    }
+
+    void free() {
+      HS.freeArray(bits);
+    }
+  }
+}
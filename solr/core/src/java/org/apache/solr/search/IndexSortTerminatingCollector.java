@@ -0,0 +1,153 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+/**
+ * <p>
+ *  A wrapper {@link Collector} for queries sorted by a prefix of the index sort
+ *  (see {@link SortingMergePolicy}).  In segments that are sorted by the index sort,
+ *  the first <code>numDocsToCollect</code> matches are the top documents of the
+ *  segment, so only those are passed to the wrapped collector.
+ * </p>
+ * <p>
+ *  The remaining matches of sorted segments are either skipped, in which case the
+ *  total number of hits of the wrapped collector is a lower bound, or only counted
+ *  (see {@link #getNumUncollected()}), which is much cheaper than collecting them.
+ * </p>
+ */
+class IndexSortTerminatingCollector extends Collector {
+
+  private final Collector delegate;
+  private final Sort indexSort;
+  private final int numDocsToCollect;
+  private final boolean countAll;
+  private final boolean trackMaxScore;
+
+  private Scorer scorer;
+  private boolean segmentSorted;
+  private int segmentCollected;
+  private int numUncollected;
+  private float maxScore = Float.NEGATIVE_INFINITY;
+  private boolean terminated;
+
+  /**
+   * @param delegate the collector of the top documents
+   * @param indexSort the sort of the index, the search results must be sorted by a prefix of it
+   * @param numDocsToCollect the number of documents to collect per sorted segment
+   * @param countAll if true, count the matches that are not collected instead of skipping them
+   * @param trackMaxScore if true and counting, also track the maximum score of the matches that are not collected
+   */
+  public IndexSortTerminatingCollector(Collector delegate, Sort indexSort, int numDocsToCollect, boolean countAll, boolean trackMaxScore) {
+    assert 0 < numDocsToCollect;
+    this.delegate = delegate;
+    this.indexSort = indexSort;
+    this.numDocsToCollect = numDocsToCollect;
+    this.countAll = countAll;
+    this.trackMaxScore = trackMaxScore;
+  }
+
+  /**
+   * Returns true if results sorted by <code>sort</code> are in index order in segments sorted
+   * by <code>indexSort</code>, that is if <code>sort</code> is a prefix of <code>indexSort</code>.
+   * Within equal sort values, documents of sorted segments are still ordered by the rest of the
+   * index sort, so their doc ids increase just like the tie break of the search results.
+   */
+  public static boolean canTerminate(Sort sort, Sort indexSort) {
+    if (sort == null || indexSort == null) {
+      return false;
+    }
+    int n = sort.getSort().length;
+    if (n == 0 || n > indexSort.getSort().length) {
+      return false;
+    }
+    for (int i=0; i<n; i++) {
+      // the index sort only has plain Lucene sort fields (see SolrIndexConfig#getIndexSort), while
+      // the sort fields of a request may need to be rewritten, so compare fields and directions
+      SortField sf = sort.getSort()[i];
+      SortField indexSf = indexSort.getSort()[i];
+      if (sf.getField() == null || !sf.getField().equals(indexSf.getField()) || sf.getReverse() != indexSf.getReverse()) {
+        return false;
+      }
+      if (sf.getType() != SortField.Type.REWRITEABLE && sf.getType() != indexSf.getType()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) throws IOException {
+    this.scorer = scorer;
+    delegate.setScorer(scorer);
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    if (!segmentSorted || segmentCollected < numDocsToCollect) {
+      delegate.collect(doc);
+      segmentCollected++;
+      return;
+    }
+    if (!countAll) {
+      terminated = true;
+      throw new CollectionTerminatedException();
+    }
+    numUncollected++;
+    if (trackMaxScore) {
+      float score = scorer.score();
+      if (score > maxScore) maxScore = score;
+    }
+  }
+
+  @Override
+  public void setNextReader(AtomicReaderContext context) throws IOException {
+    delegate.setNextReader(context);
+    segmentSorted = SortingMergePolicy.isSorted(context.reader(), indexSort);
+    segmentCollected = 0;
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return !segmentSorted && delegate.acceptsDocsOutOfOrder();
+  }
+
+  /** The number of matches that were counted but not passed to the wrapped collector */
+  public int getNumUncollected() {
+    return numUncollected;
+  }
+
+  /** The maximum score of the matches that were counted but not collected */
+  public float getMaxScore() {
+    return maxScore;
+  }
+
+  /** True if some matches were neither collected nor counted */
+  public boolean isTerminated() {
+    return terminated;
+  }
+}
@@ -61,6 +61,10 @@ public class JoinQParserPlugin extends QParserPlugin {
         String fromField = getParam("from");
         String fromIndex = getParam("fromIndex");
         String toField = getParam("to");
+        String method = getParam("method");
+        if (method != null && !JoinQuery.METHOD_INDEX.equals(method) && !JoinQuery.METHOD_DV.equals(method)) {
+          throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Unknown join method: " + method);
+        }
         String v = localParams.get("v");
         Query fromQuery;
         long fromCoreOpenTime = 0;
@@ -93,6 +97,7 @@ public class JoinQParserPlugin extends QParserPlugin {
 
         JoinQuery jq = new JoinQuery(fromField, toField, fromIndex, fromQuery);
         jq.fromCoreOpenTime = fromCoreOpenTime;
+        jq.method = method;
         return jq;
       }
     };
@@ -101,11 +106,17 @@ public class JoinQParserPlugin extends QParserPlugin {
 
 
 class JoinQuery extends Query {
+  /** Joins with the terms of the fields */
+  static final String METHOD_INDEX = "index";
+  /** Joins with the ordinals of the doc values of the fields, see {@link DocValuesJoin} */
+  static final String METHOD_DV = "dv";
+
   String fromField;
   String toField;
   String fromIndex;
   Query q;
   long fromCoreOpenTime;
+  String method;  // null for METHOD_INDEX
 
   public JoinQuery(String fromField, String toField, String fromIndex, Query subQuery) {
     this.fromField = fromField;
@@ -233,16 +244,24 @@ class JoinQuery extends Query {
           dbg.add("fromSetSize", fromSetSize);  // the input
           dbg.add("toSetSize", resultSet.size());    // the output
 
-          dbg.add("fromTermCount", fromTermCount);
-          dbg.add("fromTermTotalDf", fromTermTotalDf);
-          dbg.add("fromTermDirectCount", fromTermDirectCount);
-          dbg.add("fromTermHits", fromTermHits);
-          dbg.add("fromTermHitsTotalDf", fromTermHitsTotalDf);
-          dbg.add("toTermHits", toTermHits);
-          dbg.add("toTermHitsTotalDf", toTermHitsTotalDf);
-          dbg.add("toTermDirectCount", toTermDirectCount);
-          dbg.add("smallSetsDeferred", smallSetsDeferred);
-          dbg.add("toSetDocsAdded", resultListDocs);
+          if (dvJoin != null) {
+            dbg.add("method", METHOD_DV);
+            dbg.add("fromOrdHits", dvJoin.fromOrdHits);
+            dbg.add("toOrdHits", dvJoin.toOrdHits);
+            dbg.add("ordMapsBuilt", dvJoin.ordMapsBuilt);
+            dbg.add("ordMapsCached", dvJoin.getCachedOrdMapCount());
+          } else {
+            dbg.add("fromTermCount", fromTermCount);
+            dbg.add("fromTermTotalDf", fromTermTotalDf);
+            dbg.add("fromTermDirectCount", fromTermDirectCount);
+            dbg.add("fromTermHits", fromTermHits);
+            dbg.add("fromTermHitsTotalDf", fromTermHitsTotalDf);
+            dbg.add("toTermHits", toTermHits);
+            dbg.add("toTermHitsTotalDf", toTermHitsTotalDf);
+            dbg.add("toTermDirectCount", toTermDirectCount);
+            dbg.add("smallSetsDeferred", smallSetsDeferred);
+            dbg.add("toSetDocsAdded", resultListDocs);
+          }
 
           // TODO: perhaps synchronize  addDebug in the future...
           rb.addDebug(dbg, "join", JoinQuery.this.toString());
@@ -270,7 +289,13 @@ class JoinQuery extends Query {
     int smallSetsDeferred;    // number of small sets collected to be used later to intersect w/ bitset or create another small set
 
 
+    DocValuesJoin dvJoin;     // non null if the join used doc values
+
     public DocSet getDocSet() throws IOException {
+      if (METHOD_DV.equals(method)) {
+        return getDocValuesDocSet();
+      }
+
       FixedBitSet resultBits = null;
 
       // minimum docFreq to use the cache
@@ -518,6 +543,21 @@ class JoinQuery extends Query {
       }
     }
 
+    private DocSet getDocValuesDocSet() throws IOException {
+      if (!DocValuesJoin.hasSortedDocValues(fromSearcher, fromField) || !DocValuesJoin.hasSortedDocValues(toSearcher, toField)) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "Join method " + METHOD_DV + " requires string doc values in fields " + fromField + " and " + toField);
+      }
+      dvJoin = new DocValuesJoin(fromSearcher, fromField, toSearcher, toField);
+      DocSet fromSet = fromSearcher.getDocSet(q);
+      try {
+        fromSetSize = fromSet.size();
+        return dvJoin.getDocSet(fromSet);
+      } finally {
+        fromSet.decref();
+      }
+    }
+
     @Override
     public Explanation explain(AtomicReaderContext context, int doc) throws IOException {
       Scorer scorer = scorer(context, context.reader().getLiveDocs());
@@ -590,6 +630,7 @@ class JoinQuery extends Query {
   public String toString(String field) {
     return "{!join from="+fromField+" to="+toField
         + (fromIndex != null ? " fromIndex="+fromIndex : "")
+        + (method != null ? " method="+method : "")
         +"}"+q.toString();
   }
 
@@ -603,6 +644,7 @@ class JoinQuery extends Query {
            && this.q.equals(other.q)
            && (this.fromIndex == other.fromIndex || this.fromIndex != null && this.fromIndex.equals(other.fromIndex))
            && this.fromCoreOpenTime == other.fromCoreOpenTime
+           && (this.method == other.method || this.method != null && this.method.equals(other.method))
         ;
   }
 
@@ -0,0 +1,174 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.util.Hash;
+
+/**
+ * The terms of a document that a "more like this" query is built from, computed when the
+ * document is indexed and kept in a binary doc values field, so that the query does not have to
+ * re-analyze the document or read its term vectors.
+ * <p>
+ * A signature holds the most interesting terms of the document with their frequencies, and
+ * optionally a MinHash of the set of its terms.  The MinHash is divided in bands of rows; documents
+ * sharing the values of all rows of at least one band are likely to have many terms in common,
+ * so the keys of the bands, indexed in another field, make a filter of candidate similar documents.
+ *
+ * @see org.apache.solr.update.processor.MoreLikeThisSignatureUpdateProcessorFactory
+ */
+public class MoreLikeThisSignature {
+
+  private final String[] terms;
+  private final int[] freqs;
+  private final int[] minHashes;
+  private final int rowsPerBand;
+
+  /**
+   * @param terms the most interesting terms of the document
+   * @param freqs the frequencies of the terms in the document
+   * @param minHashes the MinHash of the terms of the document, possibly empty
+   * @param rowsPerBand the number of MinHash values per band
+   */
+  public MoreLikeThisSignature(String[] terms, int[] freqs, int[] minHashes, int rowsPerBand) {
+    assert terms.length == freqs.length;
+    assert rowsPerBand > 0 && minHashes.length % rowsPerBand == 0;
+    this.terms = terms;
+    this.freqs = freqs;
+    this.minHashes = minHashes;
+    this.rowsPerBand = rowsPerBand;
+  }
+
+  public int size() {
+    return terms.length;
+  }
+
+  public String getTerm(int i) {
+    return terms[i];
+  }
+
+  public int getFreq(int i) {
+    return freqs[i];
+  }
+
+  public int getNumBands() {
+    return minHashes.length / rowsPerBand;
+  }
+
+  /**
+   * Returns the keys of the bands of the MinHash, which documents with many terms in common
+   * are likely to share.
+   */
+  public List<String> getBandKeys() {
+    List<String> keys = new ArrayList<>(getNumBands());
+    for (int band = 0; band < getNumBands(); band++) {
+      int h = band;
+      for (int row = band * rowsPerBand; row < (band + 1) * rowsPerBand; row++) {
+        h = 31 * h + minHashes[row];
+      }
+      keys.add(band + "_" + Integer.toHexString(h));
+    }
+    return keys;
+  }
+
+  /**
+   * Computes the MinHash of a set of terms: the minimum, over the terms, of each of
+   * <code>numHashes</code> hash functions.
+   */
+  public static int[] minHash(Collection<String> terms, int numHashes) {
+    int[] minHashes = new int[numHashes];
+    Arrays.fill(minHashes, Integer.MAX_VALUE);
+    for (String term : terms) {
+      for (int i = 0; i < numHashes; i++) {
+        int h = Hash.murmurhash3_x86_32(term, 0, term.length(), i);
+        if (h < minHashes[i]) {
+          minHashes[i] = h;
+        }
+      }
+    }
+    return minHashes;
+  }
+
+  /** Encodes this signature as the value of a binary doc values field. */
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * terms.length + 4 * minHashes.length + 8);
+    OutputStreamDataOutput out = new OutputStreamDataOutput(bytes);
+    try {
+      out.writeVInt(terms.length);
+      for (int i = 0; i < terms.length; i++) {
+        out.writeString(terms[i]);
+        out.writeVInt(freqs[i]);
+      }
+      out.writeVInt(rowsPerBand);
+      out.writeVInt(minHashes.length);
+      for (int minHash : minHashes) {
+        out.writeInt(minHash);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e); // can't happen, the stream is in memory
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Decodes a signature, or returns null if the value is empty. */
+  public static MoreLikeThisSignature fromBytes(BytesRef bytes) throws IOException {
+    if (bytes.length == 0) {
+      return null;
+    }
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes.bytes, bytes.offset, bytes.length);
+    int numTerms = in.readVInt();
+    String[] terms = new String[numTerms];
+    int[] freqs = new int[numTerms];
+    for (int i = 0; i < numTerms; i++) {
+      terms[i] = in.readString();
+      freqs[i] = in.readVInt();
+    }
+    int rowsPerBand = in.readVInt();
+    int[] minHashes = new int[in.readVInt()];
+    for (int i = 0; i < minHashes.length; i++) {
+      minHashes[i] = in.readInt();
+    }
+    return new MoreLikeThisSignature(terms, freqs, minHashes, rowsPerBand);
+  }
+
+  /**
+   * Reads the signature of a document of the searcher from a binary doc values field, or
+   * returns null if the document has none.
+   */
+  public static MoreLikeThisSignature read(SolrIndexSearcher searcher, String field, int docId) throws IOException {
+    List<AtomicReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+    BinaryDocValues values = leaf.reader().getBinaryDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return fromBytes(values.get(docId - leaf.docBase));
+  }
+}
@@ -0,0 +1,394 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.codecs.compressing.StoredFieldsChunkCache;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.HS;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrInfoMBean;
+
+/**
+ * A {@link StoredFieldsChunkCache} that keeps decompressed chunks of stored fields
+ * in native memory, evicting the least recently used chunks once it holds more than
+ * its maximum size.
+ * <p>
+ * Documents are read straight from the native memory, only the fields that are asked
+ * for are copied to the heap. Since chunks are keyed by segment, they survive commits,
+ * unlike the <code>documentCache</code>.
+ * <p>
+ * Chunks are spread over {@link #NUM_STRIPES} stripes that each have their own lock,
+ * LRU order and share of the maximum size, and index their chunks by segment so that
+ * closing a segment only visits its own chunks.
+ * <p>
+ * The cache is used by the segments of the directories {@link #wrap wrapped} by it,
+ * see the <code>storedFieldsChunkCacheMB</code> parameter of
+ * {@link org.apache.solr.core.CachingDirectoryFactory}.
+ */
+public class NativeStoredFieldsCache extends StoredFieldsChunkCache implements SolrInfoMBean, Closeable {
+
+  /** The number of stripes, a power of two */
+  public static final int NUM_STRIPES = 16;
+
+  private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+  private final long maxBytes;
+  private volatile boolean closed;
+
+  public NativeStoredFieldsCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < NUM_STRIPES; i++) {
+      stripes[i] = new Stripe(maxBytes / NUM_STRIPES);
+    }
+  }
+
+  /** Returns a directory whose segments use this cache for their stored fields */
+  public Directory wrap(Directory dir) {
+    return new CachingDirectory(dir, this);
+  }
+
+  private Stripe stripe(Key key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16) ^ (h >>> 8);
+    return stripes[h & (NUM_STRIPES - 1)];
+  }
+
+  @Override
+  public Chunk get(Object key, long startPointer) {
+    final Key k = new Key(key, startPointer);
+    final Stripe stripe = stripe(k);
+    final Entry entry;
+    synchronized (stripe) {
+      stripe.lookups++;
+      entry = stripe.map.get(k);
+      if (entry == null) {
+        return null;
+      }
+      stripe.hits++;
+      // entries are only referenced while in the map, so this can't resurrect a freed one
+      entry.refCount.incrementAndGet();
+    }
+    return new NativeChunk(entry);
+  }
+
+  @Override
+  public void put(Object key, long startPointer, byte[] bytes, int length) {
+    final Key k = new Key(key, startPointer);
+    final Stripe stripe = stripe(k);
+    if (length > stripe.maxBytes || closed) {
+      return;
+    }
+    // copy outside of the lock
+    Entry entry = new Entry(k, HS.allocArray(length, 1, false), length);
+    HS.copyBytes(bytes, 0, entry.ptr, 0, length);
+
+    synchronized (stripe) {
+      if (closed || stripe.map.containsKey(k)) {
+        // closed or loaded concurrently by another reader
+        decRef(entry);
+        return;
+      }
+      stripe.add(entry);
+      stripe.inserts++;
+      for (Iterator<Entry> it = stripe.map.values().iterator(); stripe.bytes > stripe.maxBytes && it.hasNext(); ) {
+        Entry eldest = it.next();
+        it.remove();
+        stripe.removed(eldest);
+        stripe.evictions++;
+        decRef(eldest);
+      }
+    }
+  }
+
+  @Override
+  public void purge(Object key) {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        Set<Key> keys = stripe.bySegment.remove(key);
+        if (keys == null) {
+          continue;
+        }
+        for (Key k : keys) {
+          Entry entry = stripe.map.remove(k);
+          stripe.bytes -= entry.length;
+          decRef(entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Frees all chunks, except those being read which are freed once released,
+   * and stops caching new ones.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        for (Entry entry : stripe.map.values()) {
+          decRef(entry);
+        }
+        stripe.map.clear();
+        stripe.bySegment.clear();
+        stripe.bytes = 0;
+      }
+    }
+  }
+
+  private static void decRef(Entry entry) {
+    final int refCount = entry.refCount.decrementAndGet();
+    assert refCount >= 0;
+    if (refCount == 0) {
+      HS.freeArray(entry.ptr);
+    }
+  }
+
+  /** Returns the number of bytes of the cached chunks */
+  public long getBytes() {
+    long bytes = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        bytes += stripe.bytes;
+      }
+    }
+    return bytes;
+  }
+
+  /** Returns the number of cached chunks */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.map.size();
+      }
+    }
+    return size;
+  }
+
+  private static final class Stripe {
+    final long maxBytes;
+    final LinkedHashMap<Key,Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    // the keys of the chunks of each segment
+    final HashMap<Object,Set<Key>> bySegment = new HashMap<>();
+    long bytes;
+
+    long lookups;
+    long hits;
+    long inserts;
+    long evictions;
+
+    Stripe(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    void add(Entry entry) {
+      map.put(entry.key, entry);
+      Set<Key> keys = bySegment.get(entry.key.key);
+      if (keys == null) {
+        keys = new HashSet<>();
+        bySegment.put(entry.key.key, keys);
+      }
+      keys.add(entry.key);
+      bytes += entry.length;
+    }
+
+    // called once the entry is removed from the map
+    void removed(Entry entry) {
+      Set<Key> keys = bySegment.get(entry.key.key);
+      keys.remove(entry.key);
+      if (keys.isEmpty()) {
+        bySegment.remove(entry.key.key);
+      }
+      bytes -= entry.length;
+    }
+  }
+
+  private static final class Key {
+    final Object key;
+    final long startPointer;
+
+    Key(Object key, long startPointer) {
+      this.key = key;
+      this.startPointer = startPointer;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(key) * 31 + (int) (startPointer ^ (startPointer >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return key == other.key && startPointer == other.startPointer;
+    }
+  }
+
+  private static final class Entry {
+    final Key key;
+    final long ptr;
+    final int length;
+    // the reference of the map, plus one per chunk being read
+    final AtomicInteger refCount = new AtomicInteger(1);
+
+    Entry(Key key, long ptr, int length) {
+      this.key = key;
+      this.ptr = ptr;
+      this.length = length;
+    }
+  }
+
+  private static final class NativeChunk extends Chunk {
+    private Entry entry;
+    private long pos;
+
+    NativeChunk(Entry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public void seek(int pos) {
+      this.pos = pos;
+    }
+
+    @Override
+    public void release() {
+      if (entry != null) {
+        decRef(entry);
+        entry = null;
+      }
+    }
+
+    @Override
+    public byte readByte() {
+      assert pos < entry.length;
+      return HS.unsafe.getByte(entry.ptr + pos++);
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) {
+      HS.copyBytes(entry.ptr, pos, b, offset, len);
+      pos += len;
+    }
+
+    @Override
+    public int readInt() {
+      assert pos + 4 <= entry.length;
+      final long ptr = entry.ptr + pos;
+      pos += 4;
+      return ((HS.unsafe.getByte(ptr) & 0xFF) << 24) | ((HS.unsafe.getByte(ptr + 1) & 0xFF) << 16)
+          | ((HS.unsafe.getByte(ptr + 2) & 0xFF) << 8) | (HS.unsafe.getByte(ptr + 3) & 0xFF);
+    }
+
+    @Override
+    public void skipBytes(long numBytes) {
+      pos += numBytes;
+    }
+  }
+
+  /** A directory whose segments cache their chunks in a {@link NativeStoredFieldsCache} */
+  private static final class CachingDirectory extends FilterDirectory implements StoredFieldsChunkCache.Provider {
+    private final NativeStoredFieldsCache cache;
+
+    CachingDirectory(Directory in, NativeStoredFieldsCache cache) {
+      super(in);
+      this.cache = cache;
+    }
+
+    @Override
+    public StoredFieldsChunkCache getStoredFieldsChunkCache() {
+      return cache;
+    }
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+
+  @Override
+  public String getName() {
+    return NativeStoredFieldsCache.class.getName();
+  }
+
+  @Override
+  public String getVersion() {
+    return SolrCore.version;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Native memory cache of decompressed stored fields chunks";
+  }
+
+  @Override
+  public Category getCategory() {
+    return Category.CACHE;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+  @Override
+  public URL[] getDocs() {
+    return null;
+  }
+
+  @Override
+  public NamedList getStatistics() {
+    long lookups = 0, hits = 0, inserts = 0, evictions = 0, bytes = 0;
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        lookups += stripe.lookups;
+        hits += stripe.hits;
+        inserts += stripe.inserts;
+        evictions += stripe.evictions;
+        bytes += stripe.bytes;
+        size += stripe.map.size();
+      }
+    }
+    NamedList<Object> lst = new SimpleOrderedMap<>();
+    lst.add("lookups", lookups);
+    lst.add("hits", hits);
+    lst.add("hitratio", lookups == 0 ? 0.0f : (float) hits / lookups);
+    lst.add("inserts", inserts);
+    lst.add("evictions", evictions);
+    lst.add("size", size);
+    lst.add("sizeMB", (float) bytes / (1024 * 1024));
+    lst.add("maxSizeMB", (float) maxBytes / (1024 * 1024));
+    return lst;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + getStatistics();
+  }
+}
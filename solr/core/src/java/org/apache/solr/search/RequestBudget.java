@@ -0,0 +1,201 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The documents a request may visit and the memory it may allocate on a node, set by
+ * {@link CommonParams#BUDGET_MAX_DOCS} and {@link CommonParams#BUDGET_MAX_MEMORY}.
+ * <p/>
+ * Budgets are enforced cooperatively: collectors, facet counting and facet statistics report what they
+ * visit and allocate with {@link #visit} and {@link #allocate}, which throw an {@link ExceededException}
+ * (a 503) as soon as the request goes over its budget.  Memory is counted as it is allocated, and isn't
+ * given back when it is freed, so the budget bounds the total a request allocates.
+ */
+public class RequestBudget {
+  /** The key of the budget in the context of the request */
+  public static final String CONTEXT_KEY = "budget";
+
+  /** Collectors report the documents they collect in batches of at most this size */
+  static final int COLLECT_BATCH = 1024;
+
+  private final long maxDocs;
+  private final long maxMemory;
+  private final AtomicLong docs = new AtomicLong();
+  private final AtomicLong memory = new AtomicLong();
+
+  public RequestBudget(long maxDocs, long maxMemory) {
+    this.maxDocs = maxDocs;
+    this.maxMemory = maxMemory;
+  }
+
+  /** Thrown when a request goes over its budget */
+  public static class ExceededException extends SolrException {
+    public ExceededException(String msg) {
+      super(ErrorCode.SERVICE_UNAVAILABLE, msg);
+    }
+  }
+
+  /** Sets the budget of a request from its parameters, if it has one */
+  public static RequestBudget init(SolrQueryRequest req) {
+    SolrParams params = req.getParams();
+    long maxDocs = getLong(params, CommonParams.BUDGET_MAX_DOCS);
+    long maxMemory = getLong(params, CommonParams.BUDGET_MAX_MEMORY);
+    if (maxDocs < 0 && maxMemory < 0) {
+      return null;
+    }
+    RequestBudget budget = new RequestBudget(maxDocs, maxMemory);
+    req.getContext().put(CONTEXT_KEY, budget);
+    return budget;
+  }
+
+  private static long getLong(SolrParams params, String name) {
+    String value = params.get(name);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Invalid value for " + name + ": " + value, e);
+    }
+  }
+
+  /** Returns the budget of the current request, or null if it has none */
+  public static RequestBudget get() {
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    if (requestInfo == null || requestInfo.getReq() == null) {
+      return null;
+    }
+    return (RequestBudget) requestInfo.getReq().getContext().get(CONTEXT_KEY);
+  }
+
+  /** Counts documents visited by the current request against its budget */
+  public static void visit(long numDocs) {
+    RequestBudget budget = get();
+    if (budget != null) {
+      budget.addDocs(numDocs);
+    }
+  }
+
+  /** Counts memory allocated by the current request against its budget */
+  public static void allocate(long bytes) {
+    RequestBudget budget = get();
+    if (budget != null) {
+      budget.addMemory(bytes);
+    }
+  }
+
+  /** Wraps a collector so that the documents it collects count against the budget of the current request */
+  public static Collector wrap(Collector collector) {
+    RequestBudget budget = get();
+    if (budget == null || budget.maxDocs < 0) {
+      return collector;
+    }
+    return new BudgetCollector(collector, budget);
+  }
+
+  /** Counts the documents that a collector returned by {@link #wrap} collected and didn't report yet */
+  public static void finish(Collector collector) {
+    if (collector instanceof BudgetCollector) {
+      ((BudgetCollector) collector).flush();
+    }
+  }
+
+  public void addDocs(long numDocs) {
+    long total = docs.addAndGet(numDocs);
+    if (maxDocs >= 0 && total > maxDocs) {
+      throw new ExceededException("Request exceeded its budget of " + maxDocs + " documents visited");
+    }
+  }
+
+  public void addMemory(long bytes) {
+    long total = memory.addAndGet(bytes);
+    if (maxMemory >= 0 && total > maxMemory) {
+      throw new ExceededException("Request exceeded its budget of " + maxMemory + " bytes allocated");
+    }
+  }
+
+  public long getDocsVisited() {
+    return docs.get();
+  }
+
+  public long getMemoryAllocated() {
+    return memory.get();
+  }
+
+
+  private static class BudgetCollector extends Collector {
+    private final Collector delegate;
+    private final RequestBudget budget;
+    private int pending;
+    private int flushAt;  // the number of pending documents that are reported, at most one over the budget
+
+    BudgetCollector(Collector delegate, RequestBudget budget) {
+      this.delegate = delegate;
+      this.budget = budget;
+      this.flushAt = nextFlush();
+    }
+
+    private int nextFlush() {
+      return (int) Math.max(1, Math.min(COLLECT_BATCH, budget.maxDocs - budget.docs.get() + 1));
+    }
+
+    void flush() {
+      if (pending == 0) return;
+      budget.addDocs(pending);
+      pending = 0;
+      flushAt = nextFlush();
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      delegate.collect(doc);
+      if (++pending >= flushAt) {
+        flush();
+      }
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+      flush();
+      delegate.setNextReader(context);
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      delegate.setScorer(scorer);
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+      return delegate.acceptsDocsOutOfOrder();
+    }
+  }
+}
@@ -35,6 +35,7 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.lucene.codecs.idversion.IDVersionSegmentTermsEnum;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.DoubleField;
 import org.apache.lucene.document.Field;
@@ -69,6 +70,7 @@ import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
@@ -88,6 +90,7 @@ import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.ModifiableSolrParams;
@@ -103,6 +106,7 @@ import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.search.facet.UnInvertedField;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.IDVersionField;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.field.TopValues;
@@ -128,6 +132,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   private static Logger log = LoggerFactory.getLogger(SolrIndexSearcher.class);
   private final SolrCore core;
   private final IndexSchema schema;
+  private final Sort indexSort;  // the sort of merged segments, or null
+  private volatile Boolean idVersions;  // lazily computed by hasIdVersions()
 
   private boolean debug = log.isDebugEnabled();
 
@@ -148,6 +154,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   private final SolrCache<QueryResultKey,DocList> queryResultCache;
   private final SolrCache<Integer,Document> documentCache;
   private final SolrCache<String,UnInvertedField> fieldValueCache;
+  private final SolrCache<DocValuesJoin.Key,DocValuesJoin.OrdMap> joinOrdMapCache;
 
   private final SolrCache<String,TopValues> nCache;
 
@@ -159,6 +166,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   private final SolrCache[] cacheList;
   private static final SolrCache[] noCaches = new SolrCache[0];
 
+  // the memory of an entry of a hit queue, counted against the budget of the request
+  private static final long BYTES_PER_HIT = RamUsageEstimator.shallowSizeOfInstance(ScoreDoc.class) + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
   private final FieldInfos fieldInfos;
   // TODO: do we need this separate set of field names? we can just use the fieldinfos?
   private final Collection<String> fieldNames;
@@ -201,6 +211,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     if( timeAllowed > 0 ) {
       collector = new TimeLimitingCollector(collector, TimeLimitingCollector.getGlobalCounter(), timeAllowed);
     }
+
+    collector = RequestBudget.wrap(collector);
+    final Collector budgetCollector = collector;
     
     if (postFilter != null) {
       postFilter.setLastDelegate(collector);
@@ -212,6 +225,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       if(collector instanceof DelegatingCollector) {
         ((DelegatingCollector)collector).finish();
       }
+      RequestBudget.finish(budgetCollector);
     }
     catch( TimeLimitingCollector.TimeExceededException x ) {
       log.warn( "Query: " + query + "; " + x.getMessage() );
@@ -233,6 +247,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     this.atomicReader = SlowCompositeReaderWrapper.wrap(this.reader);
     this.core = core;
     this.schema = schema;
+    this.indexSort = config == null ? null : config.getIndexSort(schema);
     this.name = "Searcher@" + Integer.toHexString(hashCode()) + "[" + core.getName() + "]" + (name != null ? " " + name : "");
     log.info("Opening " + this.name);
     this.smallSetSize = (this.reader.maxDoc()>>6)+5;
@@ -269,6 +284,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
  
       fieldValueCache = solrConfig.fieldValueCacheConfig==null ? null : solrConfig.fieldValueCacheConfig.newInstance();
       if (fieldValueCache!=null) clist.add(fieldValueCache);
+      joinOrdMapCache = solrConfig.joinOrdMapCacheConfig==null ? null : solrConfig.joinOrdMapCacheConfig.newInstance();
+      if (joinOrdMapCache!=null) clist.add(joinOrdMapCache);
       filterCache= solrConfig.filterCacheConfig==null ? null : solrConfig.filterCacheConfig.newInstance();
       if (filterCache!=null) clist.add(filterCache);
       queryResultCache = solrConfig.queryResultCacheConfig==null ? null : solrConfig.queryResultCacheConfig.newInstance();
@@ -297,6 +314,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       queryResultCache=null;
       documentCache=null;
       fieldValueCache=null;
+      joinOrdMapCache=null;
       cacheMap = noGenericCaches;
       cacheList= noCaches;
     }
@@ -467,6 +485,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       );
     }
 
+    if (solrConfig.joinOrdMapCacheConfig != null && solrConfig.joinOrdMapCacheConfig.getRegenerator() == null) {
+      solrConfig.joinOrdMapCacheConfig.setRegenerator(new DocValuesJoin.OrdMapRegenerator());
+    }
+
     if (solrConfig.filterCacheConfig != null && solrConfig.filterCacheConfig.getRegenerator() == null) {
       solrConfig.filterCacheConfig.setRegenerator(
           new CacheRegenerator() {
@@ -712,9 +734,15 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
    * and reads them into an array of Documents.
    */
   public void readDocs(Document[] docs, DocList ids, Set<String> fields) throws IOException {
+    // read in index order, so that documents stored in the same chunk are read one after the other
+    long[] sorted = new long[docs.length];
     DocIterator iter = ids.iterator();
     for (int i=0; i<docs.length; i++) {
-      docs[i] = doc(iter.nextDoc(), fields);
+      sorted[i] = (((long) iter.nextDoc()) << 32) | i;
+    }
+    Arrays.sort(sorted);
+    for (long docAndIndex : sorted) {
+      docs[(int) docAndIndex] = doc((int) (docAndIndex >>> 32), fields);
     }
   }
 
@@ -734,6 +762,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     return nCache;
   }
 
+  /** The ordinal maps of doc values joins to this searcher, or null */
+  SolrCache<DocValuesJoin.Key,DocValuesJoin.OrdMap> getJoinOrdMapCache() {
+    return joinOrdMapCache;
+  }
+
   /** Returns a weighted sort according to this searcher */
   public Sort weightSort(Sort sort) throws IOException {
     return (sort != null) ? sort.rewrite(this) : null;
@@ -769,6 +802,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
    */
   public long lookupId(BytesRef idBytes) throws IOException {
     String field = schema.getUniqueKeyField().getName();
+    boolean bloomFilters = hasIdBloomFilters();
+    IdBloomFilterCache idBloomFilters = core.getIdBloomFilters();
 
     for (int i=0, c=leafContexts.size(); i<c; i++) {
       final AtomicReaderContext leaf = leafContexts.get(i);
@@ -776,6 +811,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
       final Terms terms = reader.terms(field);
       if (terms == null) continue;
+      if (bloomFilters && !idBloomFilters.mightContain(reader, field, idBytes)) continue;
 
       TermsEnum te = terms.iterator(null);
       if (te.seekExact(idBytes)) {
@@ -791,6 +827,123 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     return -1;
   }
 
+  /** Looks up many unique keys at once, returning the docid of each, or -1 if it is not found.
+   * Unlike calling {@link #lookupId} for each key, every segment is visited once with a single
+   * TermsEnum that seeks the keys in index order, so the terms index blocks loaded for a key are
+   * reused by the keys that follow it.
+   * @param ids the indexed unique keys, sorted in index order
+   * @lucene.internal
+   */
+  public int[] lookupIds(BytesRef[] ids) throws IOException {
+    final String field = schema.getUniqueKeyField().getName();
+    final boolean bloomFilters = hasIdBloomFilters();
+    final IdBloomFilterCache idBloomFilters = core.getIdBloomFilters();
+
+    int[] result = new int[ids.length];
+    Arrays.fill(result, -1);
+    int remaining = ids.length;
+    DocsEnum docsEnum = null;
+    for (AtomicReaderContext leaf : leafContexts) {
+      final AtomicReader reader = leaf.reader();
+      final Terms terms = reader.terms(field);
+      if (terms == null) continue;
+
+      TermsEnum te = terms.iterator(null);
+      for (int i=0; i<ids.length; i++) {
+        assert i == 0 || ids[i-1].compareTo(ids[i]) <= 0 : "ids are not sorted";
+        // like lookupId, the first segment with a live document for the key wins
+        if (result[i] >= 0) continue;
+        if (bloomFilters && !idBloomFilters.mightContain(reader, field, ids[i])) continue;
+        if (!te.seekExact(ids[i])) continue;
+        docsEnum = te.docs(reader.getLiveDocs(), docsEnum, DocsEnum.FLAG_NONE);
+        int id = docsEnum.nextDoc();
+        if (id == DocIdSetIterator.NO_MORE_DOCS) continue;
+        result[i] = leaf.docBase + id;
+        remaining--;
+      }
+      if (remaining == 0) break;
+    }
+    return result;
+  }
+
+  /** True if the unique key is an {@link IDVersionField} and every segment indexed it with the IDVersion postings format,
+   * in which case {@link #lookupIdVersion} may be used.
+   * @lucene.internal
+   */
+  public boolean hasIdVersions() throws IOException {
+    if (idVersions == null) {
+      boolean all = false;
+      SchemaField uniqueKey = schema.getUniqueKeyField();
+      if (uniqueKey != null && uniqueKey.getType() instanceof IDVersionField) {
+        all = true;
+        for (AtomicReaderContext leaf : leafContexts) {
+          Terms terms = leaf.reader().terms(uniqueKey.getName());
+          if (terms != null && !(terms.iterator(null) instanceof IDVersionSegmentTermsEnum)) {
+            all = false;
+            break;
+          }
+        }
+      }
+      idVersions = all;
+    }
+    return idVersions;
+  }
+
+  private boolean hasIdBloomFilters() {
+    SchemaField uniqueKey = schema.getUniqueKeyField();
+    return uniqueKey != null && uniqueKey.getType() instanceof IDVersionField && ((IDVersionField) uniqueKey.getType()).hasBloomFilter();
+  }
+
+  /** Builds the id Bloom filters of segments that don't have one yet, if the unique key keeps them.
+   * Done when the searcher is warmed, so that lookups never build them.
+   * @lucene.internal
+   */
+  public void buildIdBloomFilters() throws IOException {
+    if (hasIdBloomFilters()) {
+      core.getIdBloomFilters().build(leafContexts, schema.getUniqueKeyField().getName());
+    }
+  }
+
+  /** lookup the version that the unique key was indexed with, see {@link #hasIdVersions()}.
+   * -1 is returned if not found.
+   * @lucene.internal
+   */
+  public long lookupIdVersion(BytesRef idBytes) throws IOException {
+    String field = schema.getUniqueKeyField().getName();
+    boolean bloomFilters = hasIdBloomFilters();
+    IdBloomFilterCache idBloomFilters = core.getIdBloomFilters();
+
+    // A document that is added again never gets a lower version, and its older copies
+    // are deleted, so only the highest version of the id can be live.  Segments are
+    // visited from the newest, and once a version is found the other segments only need
+    // to be checked for versions at least as high, which usually fails by just looking
+    // at the terms index.
+    long version = -1;
+    boolean live = false;
+    for (int i=leafContexts.size()-1; i>=0; i--) {
+      final AtomicReader reader = leafContexts.get(i).reader();
+
+      final Terms terms = reader.terms(field);
+      if (terms == null) continue;
+      if (bloomFilters && !idBloomFilters.mightContain(reader, field, idBytes)) continue;
+
+      IDVersionSegmentTermsEnum te = (IDVersionSegmentTermsEnum) terms.iterator(null);
+      if (te.seekExact(idBytes, Math.max(version, 0))) {
+        long segVersion = te.getVersion();
+        DocsEnum docs = te.docs(reader.getLiveDocs(), null, DocsEnum.FLAG_NONE);
+        boolean segLive = docs != null && docs.nextDoc() != DocIdSetIterator.NO_MORE_DOCS;
+        if (segVersion > version) {
+          version = segVersion;
+          live = segLive;
+        } else {
+          live |= segLive;
+        }
+      }
+    }
+
+    return live ? version : -1;
+  }
+
 
   /**
    * Compute and cache the DocSet that matches a query.
@@ -969,14 +1122,18 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       collector = pf.postFilter;
     }
 
-    search(main, pf.filter, collector);
+    try {
+      search(main, pf.filter, collector);
 
-    if(collector instanceof DelegatingCollector) {
-      ((DelegatingCollector) collector).finish();
-    }
+      if(collector instanceof DelegatingCollector) {
+        ((DelegatingCollector) collector).finish();
+      }
 
-    DocSet docSet = setCollector.getDocSet();
-    return docSet;
+      DocSet docSet = setCollector.getDocSet();
+      return docSet;
+    } finally {
+      setCollector.close();
+    }
   }
 
   /**
@@ -1285,6 +1442,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     if (query instanceof DocSetProducer) {
       QueryContext queryContext = QueryContext.newContext(this);
       DocSet answer = ((DocSetProducer)query).createDocSet(queryContext);
+      try {
+        RequestBudget.visit(answer.size());
+      } catch (RequestBudget.ExceededException e) {
+        answer.decref();
+        throw e;
+      }
       if (filter != null) {
         // TODO: do this in-place?  Only if refcount==1
         DocSet union = answer.union(filter);
@@ -1313,6 +1476,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
             final TermsEnum termsEnum = terms.iterator(null);
             if (!termsEnum.seekExact(termBytes)) continue;
+            RequestBudget.visit(termsEnum.docFreq());
             Bits liveDocs = reader.getLiveDocs();
             DocsEnum docsEnum = termsEnum.docs(liveDocs, null, DocsEnum.FLAG_NONE);
             // docsEnum currently defined to not return null
@@ -1323,13 +1487,17 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
           }
         } else {
-          super.search(query,null,collector);
+          Collector budgetCollector = RequestBudget.wrap(collector);
+          super.search(query,null,budgetCollector);
+          RequestBudget.finish(budgetCollector);
         }
         return collector.getDocSet();
 
       } else {
         Filter luceneFilter = filter.getTopFilter();
-        super.search(query, luceneFilter, collector);
+        Collector budgetCollector = RequestBudget.wrap(collector);
+        super.search(query, luceneFilter, budgetCollector);
+        RequestBudget.finish(budgetCollector);
         return collector.getDocSet();
       }
     }
@@ -1451,6 +1619,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   static final int NO_CHECK_FILTERCACHE  = 0x20000000;
   static final int NO_SET_QCACHE         = 0x10000000;
   public static final int TERMINATE_EARLY = 0x04;
+  /** Only score the documents that may make it to the top, so that numFound is a lower bound */
+  public static final int APPROXIMATE_NUMFOUND = 0x08;
   public static final int GET_DOCLIST           =        0x02; // get the documents actually returned in a response
   public static final int GET_SCORES             =       0x01;
 
@@ -1477,7 +1647,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         flags |= (NO_CHECK_QCACHE | NO_SET_QCACHE | NO_CHECK_FILTERCACHE);
       }
     }
-
+    if ((flags & APPROXIMATE_NUMFOUND) != 0) {
+      // an exact cached result is fine, but the cache key doesn't tell approximate results apart
+      flags |= NO_SET_QCACHE;
+    }
 
     // we can try and look up the complete query in the cache.
     // we can't do that if filter!=null though (we don't want to
@@ -1676,6 +1849,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
    *        TopDocsCollector to use.
    */
   private TopDocsCollector buildTopDocsCollector(int len, QueryCommand cmd) throws IOException {
+    RequestBudget.allocate((long) len * BYTES_PER_HIT);
 
     Query q = cmd.getQuery();
     if(q instanceof RankQuery) {
@@ -1786,14 +1960,34 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         qr.setNextCursorMark(cmd.getCursorMark());
       } else {
         final TopDocsCollector topCollector = buildTopDocsCollector(len, cmd);
-        Collector collector = topCollector;
-        buildAndRunCollectorChain(qr, query, luceneFilter, collector, cmd, pf.postFilter);
+        IndexSortTerminatingCollector sortedCollector = null;
+        if (isTopScoresOnly(cmd, pf)) {
+          searchTopScores(query, luceneFilter, topCollector);
+          qr.setApproximateNumFound(true);
+        } else {
+          Collector collector = topCollector;
+          if (canTerminateSortedSegments(cmd)) {
+            // only count the rest of the matches of sorted segments, or skip them if an approximate count is fine
+            boolean countAll = (cmd.getFlags() & APPROXIMATE_NUMFOUND) == 0;
+            collector = sortedCollector = new IndexSortTerminatingCollector(collector, indexSort, len, countAll, needScores);
+          }
+          buildAndRunCollectorChain(qr, query, luceneFilter, collector, cmd, pf.postFilter);
+        }
 
         totalHits = topCollector.getTotalHits();
         TopDocs topDocs = topCollector.topDocs(0, len);
         populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
 
         maxScore = totalHits > 0 ? topDocs.getMaxScore() : 0.0f;
+        if (sortedCollector != null) {
+          totalHits += sortedCollector.getNumUncollected();
+          if (sortedCollector.isTerminated()) {
+            qr.setApproximateNumFound(true);
+          }
+          if (needScores && sortedCollector.getNumUncollected() > 0) {
+            maxScore = Math.max(maxScore, sortedCollector.getMaxScore());
+          }
+        }
         nDocsReturned = topDocs.scoreDocs.length;
         ids = new int[nDocsReturned];
         scores = (cmd.getFlags() & GET_SCORES) != 0 ? new float[nDocsReturned] : null;
@@ -1814,6 +2008,63 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   }
 
 
+  /** True if segments sorted by the index sort only need to be collected up to the requested number of documents */
+  private boolean canTerminateSortedSegments(QueryCommand cmd) {
+    return indexSort != null
+        && cmd.getCursorMark() == null
+        && !(cmd.getQuery() instanceof RankQuery)
+        && IndexSortTerminatingCollector.canTerminate(cmd.getSort(), indexSort);
+  }
+
+  /** True if only the top scoring documents need to be collected for an {@link #APPROXIMATE_NUMFOUND} request */
+  private boolean isTopScoresOnly(QueryCommand cmd, ProcessedFilter pf) {
+    int flags = cmd.getFlags();
+    return (flags & APPROXIMATE_NUMFOUND) != 0
+        && (flags & TERMINATE_EARLY) == 0
+        && cmd.getSort() == null
+        && cmd.getCursorMark() == null
+        && cmd.getTimeAllowed() <= 0
+        && pf.postFilter == null
+        && !(cmd.getQuery() instanceof RankQuery);
+  }
+
+  /**
+   * Collects the top scoring documents with {@link Weight#topScoresScorer}, which may skip the
+   * documents that can't compete, so that the collector's total hits is only a lower bound.
+   */
+  private void searchTopScores(Query query, Filter luceneFilter, TopDocsCollector topCollector) throws IOException {
+    Collector collector = RequestBudget.wrap(topCollector);
+    Weight weight = createNormalizedWeight(query);
+    Weight filteredWeight = null;
+    for (AtomicReaderContext ctx : leafContexts) {
+      Bits acceptDocs = ctx.reader().getLiveDocs();
+      Scorer scorer;
+      if (luceneFilter == null) {
+        scorer = weight.topScoresScorer(ctx, acceptDocs);
+      } else {
+        DocIdSet set = luceneFilter.getDocIdSet(ctx, acceptDocs);
+        if (set == null) continue;
+        Bits bits = set.bits();
+        if (bits != null) {
+          scorer = weight.topScoresScorer(ctx, bits);
+        } else {
+          // no random access to the filter, score the regular way
+          if (filteredWeight == null) {
+            filteredWeight = createNormalizedWeight(new FilteredQuery(query, luceneFilter));
+          }
+          scorer = filteredWeight.scorer(ctx, acceptDocs);
+        }
+      }
+      if (scorer == null) continue;
+      collector.setNextReader(ctx);
+      collector.setScorer(scorer);
+      for (int doc = scorer.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.nextDoc()) {
+        collector.collect(doc);
+      }
+    }
+    RequestBudget.finish(collector);
+  }
+
   // any DocSet returned is for the query only, without any filtering... that way it may
   // be cached if desired.
   private DocSet getDocListAndSetNC(QueryResult qr,QueryCommand cmd) throws IOException {
@@ -1870,9 +2121,13 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
         });
       }
 
-      buildAndRunCollectorChain(qr, query, luceneFilter, collector, cmd, pf.postFilter);
+      try {
+        buildAndRunCollectorChain(qr, query, luceneFilter, collector, cmd, pf.postFilter);
 
-      set = setCollector.getDocSet();
+        set = setCollector.getDocSet();
+      } finally {
+        setCollector.close();
+      }
 
       nDocsReturned = 0;
       ids = new int[nDocsReturned];
@@ -1887,9 +2142,13 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       setCollector = new DocSetDelegateCollector(maxDoc>>6, maxDoc, topCollector);
       Collector collector = setCollector;
 
-      buildAndRunCollectorChain(qr, query, luceneFilter, collector, cmd, pf.postFilter);
+      try {
+        buildAndRunCollectorChain(qr, query, luceneFilter, collector, cmd, pf.postFilter);
 
-      set = setCollector.getDocSet();
+        set = setCollector.getDocSet();
+      } finally {
+        setCollector.close();
+      }
 
       totalHits = topCollector.getTotalHits();
       assert(totalHits == set.size());
@@ -2326,6 +2585,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
 
     // Make sure nCache is first, followed by filters... then filters can help queryResults execute!
     long warmingStartTime = System.nanoTime();
+    try {
+      buildIdBloomFilters();
+    } catch (IOException e) {
+      // not fatal: lookups only use the filters of segments that have one
+      SolrException.log(log, "Error building id Bloom filters", e);
+    }
     // warm the caches in order...
     ModifiableSolrParams params = new ModifiableSolrParams();
     params.add("warming","true");
@@ -2574,6 +2839,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
    */
   public static class QueryResult {
     private boolean partialResults;
+    private boolean approximateNumFound;
     private DocListAndSet docListAndSet;
     private CursorMark nextCursorMark;
 
@@ -2601,6 +2867,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     public boolean isPartialResults() { return partialResults; }
     public void setPartialResults(boolean partialResults) { this.partialResults = partialResults; }
 
+    /** True if only the top documents were scored exactly, so that the number of matches is only a lower bound */
+    public boolean isApproximateNumFound() { return approximateNumFound; }
+    public void setApproximateNumFound(boolean approximateNumFound) { this.approximateNumFound = approximateNumFound; }
+
     public void setDocListAndSet( DocListAndSet listSet ) { docListAndSet = listSet; }
     public DocListAndSet getDocListAndSet() { return docListAndSet; }
 
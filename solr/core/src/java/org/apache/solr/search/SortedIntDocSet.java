@@ -622,6 +622,14 @@ public class SortedIntDocSet extends DocSetBase {
         return docs[pos++];
       }
 
+      @Override
+      public int nextDocs(int[] target) {
+        int n = Math.min(target.length, docs.length - pos);
+        System.arraycopy(docs, pos, target, 0, n);
+        pos += n;
+        return n;
+      }
+
       @Override
       public float score() {
         return 0.0f;
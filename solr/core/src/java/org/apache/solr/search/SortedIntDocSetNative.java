@@ -236,6 +236,11 @@ public class SortedIntDocSetNative extends DocSetBaseNative implements RefCount
 
   @Override
   public int intersectionSize(DocSet other) {
+    if (other instanceof BitDocSetNative && HS.loaded) {
+      BitDocSetNative bits = (BitDocSetNative)other;
+      return BitDocSetNative.intersectionInts(bits.array, bits.wlen, array, len, 0);
+    }
+
     if (!(other instanceof SortedIntDocSetNative)) {
       // assume other implementations are better at random access than we are,
       // true of BitDocSet and HashDocSet.
@@ -357,6 +362,10 @@ public class SortedIntDocSetNative extends DocSetBaseNative implements RefCount
     return false;
   }
 
+  /** Puts the intersection of a and b into the native target array and returns the size.
+   * The target must have room for the smaller of the two. */
+  public static native int intersectionNative(long a, int lena, long b, int lenb, long target);
+
   /** puts the intersection of a and b into the target array and returns the size */
   public static int intersection(long a, int lena, long b, int lenb, int[] target) {
     if (lena > lenb) {
@@ -460,6 +469,32 @@ public class SortedIntDocSetNative extends DocSetBaseNative implements RefCount
 
   @Override
   public DocSet intersection(DocSet other) {
+    if (HS.loaded && (other instanceof SortedIntDocSetNative || other instanceof BitDocSetNative)) {
+      // intersect straight into native memory
+      int maxsz = len;
+      long target;
+      int sz;
+      if (other instanceof SortedIntDocSetNative) {
+        SortedIntDocSetNative otherNative = (SortedIntDocSetNative)other;
+        maxsz = Math.min(len, otherNative.len);
+        target = HS.allocArray(maxsz, 4, false);
+        sz = intersectionNative(array, len, otherNative.array, otherNative.len, target);
+      } else {
+        BitDocSetNative bits = (BitDocSetNative)other;
+        target = HS.allocArray(maxsz, 4, false);
+        sz = BitDocSetNative.intersectionInts(bits.array, bits.wlen, array, len, target);
+      }
+
+      // resize if more than 1/16 slop
+      if (sz < maxsz - (maxsz>>4)) {
+        long arr2 = HS.allocArray(sz, 4, false);
+        HS.copyInts(target, 0, arr2, 0, sz);
+        HS.freeArray(target);
+        target = arr2;
+      }
+      return new SortedIntDocSetNative(target, sz);
+    }
+
     if (!(other instanceof SortedIntDocSetNative)) {
       int icount = 0;
       int arr[] = new int[len];
@@ -667,6 +702,14 @@ public class SortedIntDocSetNative extends DocSetBaseNative implements RefCount
         return HS.getInt(array, pos++);
       }
 
+      @Override
+      public int nextDocs(int[] target) {
+        int n = Math.min(target.length, len - pos);
+        HS.copyInts(array, pos, target, 0, n);
+        pos += n;
+        return n;
+      }
+
       @Override
       public float score() {
         return 0.0f;
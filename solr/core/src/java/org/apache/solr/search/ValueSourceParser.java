@@ -1187,7 +1187,7 @@ abstract class DoubleParser extends NamedParser {
     return new Function(fp.parseValueSource());
   }
 
-  class Function extends SingleFunction {
+  class Function extends SingleFunction implements CompiledValueSource.MathFunction {
     public Function(ValueSource source) {
       super(source);
     }
@@ -1197,6 +1197,11 @@ abstract class DoubleParser extends NamedParser {
       return DoubleParser.this.name();
     }
 
+    @Override
+    public ValueSource[] getArgs() {
+      return new ValueSource[] {source};
+    }
+
     @Override
     public FuncValues getValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
       final FuncValues vals =  source.getValues(context, readerContext);
@@ -1227,7 +1232,7 @@ abstract class Double2Parser extends NamedParser {
     return new Function(fp.parseValueSource(), fp.parseValueSource());
   }
 
-  class Function extends ValueSource {
+  class Function extends ValueSource implements CompiledValueSource.MathFunction {
     private final ValueSource a;
     private final ValueSource b;
 
@@ -1240,6 +1245,16 @@ abstract class Double2Parser extends NamedParser {
       this.b = b;
     }
 
+    @Override
+    public String name() {
+      return Double2Parser.this.name();
+    }
+
+    @Override
+    public ValueSource[] getArgs() {
+      return new ValueSource[] {a, b};
+    }
+
     @Override
     public String description() {
       return name() + "(" + a.description() + "," + b.description() + ")";
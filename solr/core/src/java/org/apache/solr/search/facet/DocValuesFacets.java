@@ -33,12 +33,14 @@ import org.apache.lucene.search.Filter;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.params.FacetParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DocSet;
+import org.apache.solr.search.RequestBudget;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.util.LongPriorityQueue;
 
@@ -113,6 +115,7 @@ public class DocValuesFacets {
 
       // count collection array only needs to be as big as the number of terms we are
       // going to collect counts for.
+      RequestBudget.allocate((long) nTerms * RamUsageEstimator.NUM_BYTES_INT);
       final int[] counts = new int[nTerms];
 
       Filter filter = docs.getTopFilter();
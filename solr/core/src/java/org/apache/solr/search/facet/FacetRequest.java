@@ -37,6 +37,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.FacetParams;
@@ -60,6 +61,7 @@ import org.apache.solr.search.FunctionQParser;
 import org.apache.solr.search.FunctionQParserPlugin;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.RequestBudget;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SyntaxError;
 import org.apache.solr.search.field.FieldUtil;
@@ -240,6 +242,7 @@ class FacetProcessor<FacetRequestT extends FacetRequest>  {
 
 
   protected int collect(DocSet docs) throws IOException {
+    RequestBudget.visit(docs.size());
     int count = 0;
     SolrIndexSearcher searcher = fcontext.searcher;
 
@@ -474,6 +477,8 @@ class FacetFieldProcessor extends FacetProcessor<FacetField> {
 
     // count collection array only needs to be as big as the number of terms we are
     // going to collect counts for.
+    RequestBudget.allocate((long) nTerms * RamUsageEstimator.NUM_BYTES_INT);
+    RequestBudget.visit(docs.size());
     final int[] counts = new int[nTerms];
 
     DocIterator iter = docs.iterator();
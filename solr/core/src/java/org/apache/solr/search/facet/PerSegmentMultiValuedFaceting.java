@@ -0,0 +1,374 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.RequestBudget;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.GlobalOrdFieldValues;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+import org.apache.solr.search.field.GlobalOrdTopValues;
+import org.apache.solr.util.LongPriorityQueue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computes term facets for multi-valued fields by counting per segment and folding the counts into a
+ * global ordinal space.
+ * <p>
+ * Unlike {@link UnInvertedField} (which is built over the top-level reader) and {@link DocValuesFacets}
+ * (whose OrdinalMap is built per reopen), the segment to global ordinal mappings are kept off-heap
+ * in the nCache and are carried over to new searchers, so only new segments are mapped on reopen.
+ * Global ordinals are not in index order, so terms are ordered by merging the (sorted) segment ordinals
+ * of the terms that made the cut.
+ *
+ * @see GlobalOrdTopValues
+ */
+class PerSegmentMultiValuedFaceting {
+
+  // input params
+  SolrIndexSearcher searcher;
+  DocSet docs;
+  String fieldName;
+  int offset;
+  int limit;
+  int mincount;
+  boolean missing;
+  String sort;
+  String prefix;
+
+  int[] counts;        // counts by global ord
+  int minAccept;       // the minimum count of terms to return while merging
+
+  public PerSegmentMultiValuedFaceting(SolrIndexSearcher searcher, DocSet docs, String fieldName, int offset, int limit, int mincount, boolean missing, String sort, String prefix) {
+    this.searcher = searcher;
+    this.docs = docs;
+    this.fieldName = fieldName;
+    this.offset = offset;
+    this.limit = limit;
+    this.mincount = mincount;
+    this.missing = missing;
+    this.sort = sort;
+    this.prefix = prefix;
+  }
+
+  NamedList<Integer> getFacetCounts() throws IOException {
+    SchemaField sf = searcher.getSchema().getField(fieldName);
+    FieldType ft = sf.getType();
+    NamedList<Integer> res = new NamedList<>();
+
+    QueryContext context = QueryContext.newContext(searcher);
+    GlobalOrdFieldValues fieldValues = new GlobalOrdFieldValues(sf);
+    GlobalOrdTopValues topValues = (GlobalOrdTopValues) fieldValues.getTopValues(context);
+
+    BytesRef prefixRef = null;
+    BytesRef prefixEnd = null;
+    if (prefix != null && prefix.length() > 0) {
+      prefixRef = new BytesRef(prefix);
+      prefixEnd = BytesRef.deepCopyOf(prefixRef);
+      prefixEnd.append(UnicodeUtil.BIG_TERM);
+    }
+
+    List<AtomicReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    Segment[] segs = new Segment[leaves.size()];
+    for (int i=0; i<segs.length; i++) {
+      AtomicReaderContext leaf = leaves.get(i);
+      segs[i] = new Segment(leaf, fieldValues.getSegmentOrds(leaf.reader()), topValues.getLeafValues(context, leaf), prefixRef, prefixEnd);
+    }
+
+    // all segments are mapped, so all of our global ords are smaller than this
+    RequestBudget.allocate((long) topValues.getNumGlobalOrds() * RamUsageEstimator.NUM_BYTES_INT);
+    counts = new int[topValues.getNumGlobalOrds()];
+
+    int missingCount = -1;
+    if (docs.size() >= mincount) {
+      missingCount = 0;
+      Filter filter = docs.getTopFilter();
+      for (Segment seg : segs) {
+        DocIdSet dis = filter.getDocIdSet(seg.readerContext, null); // solr docsets already exclude any deleted docs
+        DocIdSetIterator disi = dis == null ? null : dis.iterator();
+        if (disi != null) {
+          missingCount += seg.count(disi, counts);
+        }
+      }
+
+      final CharsRef charsRef = new CharsRef(10);
+      if (FacetParams.FACET_SORT_COUNT.equals(sort) || FacetParams.FACET_SORT_COUNT_LEGACY.equals(sort)) {
+        getCountSorted(segs, ft, charsRef, res);
+      } else {
+        getIndexSorted(segs, ft, charsRef, res);
+      }
+    }
+
+    return DocValuesFacets.finalize(res, searcher, sf, docs, missingCount, missing);
+  }
+
+  private void getIndexSorted(Segment[] segs, final FieldType ft, final CharsRef charsRef, final NamedList<Integer> res) throws IOException {
+    minAccept = mincount;
+    merge(segs, new TermCollector() {
+      int off = offset;
+      int lim = limit >= 0 ? limit : Integer.MAX_VALUE;
+
+      @Override
+      public boolean collect(int ord, BytesRef term) {
+        if (--off >= 0) return true;
+        if (--lim < 0) return false;
+        ft.indexedToReadable(term, charsRef);
+        res.add(charsRef.toString(), counts[ord]);
+        return true;
+      }
+    });
+  }
+
+  private void getCountSorted(Segment[] segs, final FieldType ft, final CharsRef charsRef, NamedList<Integer> res) throws IOException {
+    int maxsize = limit >= 0 ? offset+limit : Integer.MAX_VALUE-1;
+    maxsize = Math.min(maxsize, counts.length);
+    if (maxsize <= 0) return;
+
+    // Find the smallest count that makes the top 'N'.  Since global ords are not in index order,
+    // the terms with exactly that count are resolved in index order by the merge.
+    LongPriorityQueue queue = new LongPriorityQueue(Math.min(maxsize,1000), maxsize, Long.MIN_VALUE);
+    int min = Math.max(mincount, 1) - 1;
+    for (int ord=0; ord<counts.length; ord++) {
+      int c = counts[ord];
+      if (c > min) {
+        boolean displaced = queue.insert((((long)c)<<32) + ord);
+        if (displaced) min = (int)(queue.top() >>> 32);
+      }
+    }
+
+    final int threshold = queue.size() == maxsize ? (int)(queue.top() >>> 32) : Math.max(mincount, 0);
+    int above = 0;
+    for (int c : counts) {
+      if (c > threshold) above++;
+    }
+
+    final int needed = maxsize;
+    final int ties = maxsize - above;
+    final List<Entry> entries = new ArrayList<>(Math.min(maxsize, 1000));
+
+    minAccept = ties > 0 ? threshold : threshold + 1;
+    merge(segs, new TermCollector() {
+      int tiesTaken;
+
+      @Override
+      public boolean collect(int ord, BytesRef term) {
+        int c = counts[ord];
+        if (c == threshold) {
+          if (++tiesTaken >= ties) {
+            // the rest of the terms with this count don't make the cut
+            minAccept = threshold + 1;
+          }
+        }
+        ft.indexedToReadable(term, charsRef);
+        entries.add(new Entry(charsRef.toString(), c));
+        return entries.size() < needed;
+      }
+    });
+
+    // stable, so equal counts stay in index order
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry a, Entry b) {
+        return Integer.compare(b.count, a.count);
+      }
+    });
+
+    for (int i=offset; i<entries.size(); i++) {
+      Entry entry = entries.get(i);
+      res.add(entry.term, entry.count);
+    }
+  }
+
+  /** Calls the collector for each term with a count of at least {@link #minAccept}, in index order. */
+  private void merge(Segment[] segs, TermCollector collector) throws IOException {
+    PriorityQueue<Segment> queue = new PriorityQueue<Segment>(segs.length) {
+      @Override
+      protected boolean lessThan(Segment a, Segment b) {
+        // the same term maps to the same global ord in every segment
+        return a.globalOrd != b.globalOrd && a.term.compareTo(b.term) < 0;
+      }
+    };
+
+    for (Segment seg : segs) {
+      if (seg.nextTerm()) {
+        queue.add(seg);
+      }
+    }
+
+    int lastOrd = -1;
+    while (queue.size() > 0) {
+      Segment top = queue.top();
+      int ord = top.globalOrd;
+      // minAccept may have changed since this segment was positioned
+      if (ord != lastOrd && counts[ord] >= minAccept) {
+        lastOrd = ord;
+        if (!collector.collect(ord, top.term)) {
+          break;
+        }
+      }
+
+      if (top.nextTerm()) {
+        queue.updateTop();
+      } else {
+        queue.pop();
+      }
+    }
+  }
+
+
+  private interface TermCollector {
+    /** Returns false if no more terms are needed */
+    boolean collect(int globalOrd, BytesRef term);
+  }
+
+  private static class Entry {
+    final String term;
+    final int count;
+
+    Entry(String term, int count) {
+      this.term = term;
+      this.count = count;
+    }
+  }
+
+
+  /** Counting and term iteration state of a single segment. */
+  private class Segment {
+    final AtomicReaderContext readerContext;
+    final SortedSetDocValues si;
+    final GlobalOrdLeafValues ordMap;
+    final int startOrd;  // the range of segment ords matching the prefix
+    final int endOrd;
+
+    TermsEnum te;
+    int teOrd = -1;      // the ord te is positioned on
+    int ord;             // the current segment ord of the merge
+    int globalOrd;
+    BytesRef term;
+
+    Segment(AtomicReaderContext readerContext, SortedSetDocValues si, GlobalOrdLeafValues ordMap, BytesRef prefixRef, BytesRef prefixEnd) {
+      this.readerContext = readerContext;
+      this.si = si;
+      this.ordMap = ordMap;
+
+      if (prefixRef == null) {
+        startOrd = 0;
+        endOrd = ordMap.getValueCount();
+      } else {
+        int start = (int) si.lookupTerm(prefixRef);
+        startOrd = start < 0 ? -start-1 : start;
+        int end = (int) si.lookupTerm(prefixEnd);
+        assert end < 0;
+        endOrd = -end-1;
+      }
+      ord = startOrd - 1;
+    }
+
+    /** Counts the docs in global ord space, returning the number of docs without a value. */
+    int count(DocIdSetIterator disi, int[] counts) throws IOException {
+      int missingCount = 0;
+      int doc;
+
+      if (startOrd >= endOrd) {
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          si.setDocument(doc);
+          if (si.nextOrd() == SortedSetDocValues.NO_MORE_ORDS) missingCount++;
+        }
+        return missingCount;
+      }
+
+      if (ordMap.getValueCount() < disi.cost()*10) {
+        // not too many unique values wrt matching docs (lucene/facets heuristic):
+        // count in segment ord space, then map to global ords
+        int[] segCounts = new int[ordMap.getValueCount()];
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          si.setDocument(doc);
+          int term = (int) si.nextOrd();
+          if (term < 0) {
+            missingCount++;
+            continue;
+          }
+          do {
+            segCounts[term]++;
+          } while ((term = (int) si.nextOrd()) >= 0);
+        }
+        ordMap.migrate(segCounts, startOrd, endOrd, counts);
+      } else {
+        // otherwise map to global ords on the fly
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          si.setDocument(doc);
+          int term = (int) si.nextOrd();
+          if (term < 0) {
+            missingCount++;
+            continue;
+          }
+          do {
+            if (term >= startOrd && term < endOrd) {
+              counts[ordMap.getGlobalOrd(term)]++;
+            }
+          } while ((term = (int) si.nextOrd()) >= 0);
+        }
+      }
+
+      return missingCount;
+    }
+
+    /** Positions on the next term with a count of at least minAccept */
+    boolean nextTerm() throws IOException {
+      while (++ord < endOrd) {
+        int g = ordMap.getGlobalOrd(ord);
+        if (counts[g] < minAccept) continue;
+        globalOrd = g;
+
+        if (te == null) {
+          te = si.termsEnum();
+        }
+        if (ord == teOrd + 1) {
+          term = te.next();
+        } else {
+          te.seekExact(ord);
+          term = te.term();
+        }
+        teOrd = ord;
+        return true;
+      }
+      return false;
+    }
+  }
+}
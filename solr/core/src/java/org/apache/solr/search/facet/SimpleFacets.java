@@ -72,6 +72,7 @@ import org.apache.solr.search.HashDocSet;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryContext;
 import org.apache.solr.search.QueryParsing;
+import org.apache.solr.search.RequestBudget;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SortedIntDocSetNative;
 import org.apache.solr.search.SyntaxError;
@@ -80,8 +81,11 @@ import org.apache.solr.search.field.LongArray;
 import org.apache.solr.search.field.NativeSortedDocValues;
 import org.apache.solr.search.field.StrLeafValues;
 import org.apache.solr.search.grouping.AbstractAllGroupHeadsCollector;
+import org.apache.solr.search.grouping.AbstractAllGroupsCollector;
+import org.apache.solr.search.grouping.AbstractGroupFacetCollector;
+import org.apache.solr.search.grouping.GlobalOrdAllGroupsCollector;
+import org.apache.solr.search.grouping.GlobalOrdGroupFacetCollector;
 import org.apache.solr.search.grouping.GroupingSpecification;
-import org.apache.solr.search.grouping.TermAllGroupsCollector;
 import org.apache.solr.search.grouping.TermGroupFacetCollector;
 import org.apache.solr.util.BoundedTreeSet;
 import org.apache.solr.util.DateMathParser;
@@ -466,7 +470,7 @@ public class SimpleFacets {
       );
     }
 
-    TermAllGroupsCollector collector = new TermAllGroupsCollector(groupField);
+    AbstractAllGroupsCollector<BytesRef> collector = GlobalOrdAllGroupsCollector.create(searcher, groupField);
     Filter mainQueryFilter = docs.getTopFilter(); // This returns a filter that only matches documents matching with q param and fq params
     searcher.search(facetQuery, mainQueryFilter, collector);
     return collector.getGroupCount();
@@ -492,6 +496,7 @@ public class SimpleFacets {
     int limit = params.getFieldInt(f, FacetParams.FACET_LIMIT, 10);
 
     if (limit == 0) return new NamedList<Integer>();
+    RequestBudget.visit(base.size());
     Integer mincount = params.getFieldInt(f, FacetParams.FACET_MINCOUNT);
     if (mincount==null) {
       if (version >= 2) {
@@ -563,8 +568,9 @@ public class SimpleFacets {
       method = FacetMethod.FC;
     }
 
-    if (method == FacetMethod.FCS && multiToken) {
-      // only fc knows how to deal with multi-token fields
+    if (method == FacetMethod.FCS && multiToken && (ft.getNumericType() != null || searcher.getnCache() == null)) {
+      // per-segment faceting of multi-token fields keeps its global ords in the nCache,
+      // and leaves numeric fields (which may index several terms per value) to fc
       method = FacetMethod.FC;
     }
 
@@ -583,8 +589,10 @@ public class SimpleFacets {
           counts = getFacetTermEnumCounts(searcher, base, field, offset, limit, mincount,missing,sort,prefix);
           break;
         case FCS:
-          assert !multiToken;
-          if (ft.getNumericType() != null && !sf.multiValued()) {
+          if (multiToken) {
+            PerSegmentMultiValuedFaceting ps = new PerSegmentMultiValuedFaceting(searcher, base, field, offset, limit, mincount, missing, sort, prefix);
+            counts = ps.getFacetCounts();
+          } else if (ft.getNumericType() != null && !sf.multiValued()) {
             // force numeric faceting
             if (prefix != null && !prefix.isEmpty()) {
               throw new SolrException(ErrorCode.BAD_REQUEST, FacetParams.FACET_PREFIX + " is not supported on numeric types");
@@ -640,6 +648,7 @@ public class SimpleFacets {
     int offset = params.getFieldInt(field, FacetParams.FACET_OFFSET, 0);
     int limit = params.getFieldInt(field, FacetParams.FACET_LIMIT, 100);
     if (limit == 0) return new NamedList<>();
+    RequestBudget.visit(base.size());
     if (mincount==null) {
       Boolean zeros = params.getFieldBool(field, FacetParams.FACET_ZEROS);
       // mincount = (zeros!=null && zeros) ? 0 : 1;
@@ -696,8 +705,9 @@ public class SimpleFacets {
       method = FacetMethod.FC;
     }
 
-    if (method == FacetMethod.FCS && multiToken) {
-      // only fc knows how to deal with multi-token fields
+    if (method == FacetMethod.FCS && multiToken && (ft.getNumericType() != null || searcher.getnCache() == null)) {
+      // per-segment faceting of multi-token fields keeps its global ords in the nCache,
+      // and leaves numeric fields (which may index several terms per value) to fc
       method = FacetMethod.FC;
     }
 
@@ -716,8 +726,10 @@ public class SimpleFacets {
           counts = getFacetTermEnumCounts(searcher, base, field, offset, limit, mincount,missing,sort,prefix);
           break;
         case FCS:
-          assert !multiToken;
-          if (ft.getNumericType() != null && !sf.multiValued()) {
+          if (multiToken) {
+            PerSegmentMultiValuedFaceting ps = new PerSegmentMultiValuedFaceting(searcher, base, field, offset, limit, mincount, missing, sort, prefix);
+            counts = ps.getFacetCounts();
+          } else if (ft.getNumericType() != null && !sf.multiValued()) {
             // force numeric faceting
             if (prefix != null && !prefix.isEmpty()) {
               throw new SolrException(ErrorCode.BAD_REQUEST, FacetParams.FACET_PREFIX + " is not supported on numeric types");
@@ -768,20 +780,25 @@ public class SimpleFacets {
     }
 
     BytesRef prefixBR = prefix != null ? new BytesRef(prefix) : null;
-    TermGroupFacetCollector collector = TermGroupFacetCollector.createTermGroupFacetCollector(groupField, field, multiToken, prefixBR, 128);
-    searcher.search(new MatchAllDocsQuery(), base.getTopFilter(), collector);
     boolean orderByCount = sort.equals(FacetParams.FACET_SORT_COUNT) || sort.equals(FacetParams.FACET_SORT_COUNT_LEGACY);
-    TermGroupFacetCollector.GroupedFacetResult result
-      = collector.mergeSegmentResults(limit < 0 ? Integer.MAX_VALUE :
-                                      (offset + limit),
-                                      mincount, orderByCount);
+    int size = limit < 0 ? Integer.MAX_VALUE : (offset + limit);
+    AbstractGroupFacetCollector.GroupedFacetResult result;
+    GlobalOrdGroupFacetCollector ordCollector = GlobalOrdGroupFacetCollector.create(searcher, groupField, field, prefixBR);
+    if (ordCollector != null) {
+      searcher.search(new MatchAllDocsQuery(), base.getTopFilter(), ordCollector);
+      result = ordCollector.getGroupedFacetResult(size, mincount, orderByCount);
+    } else {
+      TermGroupFacetCollector collector = TermGroupFacetCollector.createTermGroupFacetCollector(groupField, field, multiToken, prefixBR, 128);
+      searcher.search(new MatchAllDocsQuery(), base.getTopFilter(), collector);
+      result = collector.mergeSegmentResults(size, mincount, orderByCount);
+    }
 
     CharsRef charsRef = new CharsRef();
     FieldType facetFieldType = searcher.getSchema().getFieldType(field);
     NamedList<Integer> facetCounts = new NamedList<Integer>();
-    List<TermGroupFacetCollector.FacetEntry> scopedEntries
+    List<AbstractGroupFacetCollector.FacetEntry> scopedEntries
       = result.getFacetEntries(offset, limit < 0 ? Integer.MAX_VALUE : limit);
-    for (TermGroupFacetCollector.FacetEntry facetEntry : scopedEntries) {
+    for (AbstractGroupFacetCollector.FacetEntry facetEntry : scopedEntries) {
       facetFieldType.indexedToReadable(facetEntry.getValue(), charsRef);
       facetCounts.add(charsRef.toString(), facetEntry.getCount());
     }
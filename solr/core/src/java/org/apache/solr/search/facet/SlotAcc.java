@@ -21,8 +21,10 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.RequestBudget;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.field.FieldUtil;
 import org.apache.solr.search.function.FuncValues;
@@ -91,10 +93,12 @@ abstract class DoubleFuncSlotAcc extends FuncSlotAcc {
 
   public DoubleFuncSlotAcc(MutableValueInt slot, ValueSource values, QueryContext queryContext, int numSlots) {
     super(slot, values, queryContext, numSlots);
+    RequestBudget.allocate((long) numSlots * RamUsageEstimator.NUM_BYTES_DOUBLE);
     result = new double[numSlots];
   }
   public DoubleFuncSlotAcc(MutableValueInt slot, ValueSource values, QueryContext queryContext, int numSlots, double initialValue) {
     super(slot, values, queryContext, numSlots);
+    RequestBudget.allocate((long) numSlots * RamUsageEstimator.NUM_BYTES_DOUBLE);
     result = new double[numSlots];
     for (int i=0; i<result.length; i++) {
       result[i] = initialValue;
@@ -118,6 +122,7 @@ abstract class IntSlotAcc extends SlotAcc {
 
   public IntSlotAcc(MutableValueInt slot, int numSlots) {
     super(slot);
+    RequestBudget.allocate((long) numSlots * RamUsageEstimator.NUM_BYTES_INT);
     result = new int[numSlots];
   }
 
@@ -238,6 +243,7 @@ class AvgSlotAcc extends DoubleFuncSlotAcc {
 
   public AvgSlotAcc(MutableValueInt slot, ValueSource values, QueryContext queryContext, int numSlots) {
     super(slot, values, queryContext, numSlots);
+    RequestBudget.allocate((long) numSlots * RamUsageEstimator.NUM_BYTES_INT);
     counts = new int[numSlots];
   }
 
@@ -337,9 +343,16 @@ abstract class UniqueSlotAcc extends SlotAcc {
 
   public UniqueSlotAcc(MutableValueInt slot, QueryContext qContext, String field, int numSlots) throws IOException {
     super(slot);
+    RequestBudget.allocate((long) numSlots * RamUsageEstimator.NUM_BYTES_OBJECT_REF);
     arr = new FixedBitSet[numSlots];
   }
 
+  /** Allocates the bits of a slot, which count against the budget of the request */
+  FixedBitSet newSlotBits() {
+    RequestBudget.allocate((long) FixedBitSet.bits2words(nTerms) * RamUsageEstimator.NUM_BYTES_LONG);
+    return new FixedBitSet(nTerms);
+  }
+
   @Override
   public void setNextReader(AtomicReaderContext readerContext) throws IOException {
     currentDocBase = readerContext.docBase;
@@ -400,7 +413,7 @@ class UniqueSinglevaluedSlotAcc extends UniqueSlotAcc {
 
     FixedBitSet bits = arr[slotNum];
     if (bits == null) {
-      bits = new FixedBitSet(nTerms);
+      bits = newSlotBits();
       arr[slotNum] = bits;
     }
 
@@ -437,7 +450,7 @@ class UniqueMultivaluedSlotAcc extends UniqueSlotAcc implements UnInvertedField.
     if (slotNum >= 0) {
       bs = arr[slotNum];
       if (bs == null) {
-        bs = new FixedBitSet(nTerms);
+        bs = newSlotBits();
         arr[slotNum] = bs;
       }
     }
@@ -29,6 +29,7 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.FacetParams;
@@ -36,6 +37,7 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.component.FieldFacetStats;
+import org.apache.solr.handler.component.StatsOptions;
 import org.apache.solr.handler.component.StatsValues;
 import org.apache.solr.handler.component.StatsValuesFactory;
 import org.apache.solr.schema.FieldType;
@@ -46,6 +48,7 @@ import org.apache.solr.search.BitDocSetNative;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.RequestBudget;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.facet.SimpleFacetStats.Slot;
@@ -323,6 +326,7 @@ public class UnInvertedField extends DocTermOrds {
         final int[] index = this.index;
         // tricky: we add more more element than we need because we will reuse this array later
         // for ordering term ords before converting to term labels.
+        RequestBudget.allocate((long) (numTermsInField + 1) * RamUsageEstimator.NUM_BYTES_INT);
         final int[] counts = new int[numTermsInField + 1];
 
         //
@@ -406,43 +410,47 @@ public class UnInvertedField extends DocTermOrds {
 
         if (termInstances > 0) {
           DocIterator iter = docs.iterator();
-          while (iter.hasNext()) {
-            int doc = iter.nextDoc();
-            //System.out.println("iter doc=" + doc);
-            int code = index[doc];
-
-            if ((code & 0xff)==1) {
-              //System.out.println("  ptr");
-              int pos = code>>>8;
-              int whichArray = (doc >>> 16) & 0xff;
-              byte[] arr = tnums[whichArray];
-              int tnum = 0;
-              for(;;) {
-                int delta = 0;
+          final int[] docBuf = new int[256];
+          int nDocs;
+          while ((nDocs = iter.nextDocs(docBuf)) > 0) {
+            for (int i=0; i<nDocs; i++) {
+              int doc = docBuf[i];
+              //System.out.println("iter doc=" + doc);
+              int code = index[doc];
+
+              if ((code & 0xff)==1) {
+                //System.out.println("  ptr");
+                int pos = code>>>8;
+                int whichArray = (doc >>> 16) & 0xff;
+                byte[] arr = tnums[whichArray];
+                int tnum = 0;
                 for(;;) {
-                  byte b = arr[pos++];
-                  delta = (delta << 7) | (b & 0x7f);
-                  if ((b & 0x80) == 0) break;
-                }
-                if (delta == 0) break;
-                tnum += delta - TNUM_OFFSET;
-                //System.out.println("    tnum=" + tnum);
-                counts[tnum]++;
-              }
-            } else {
-              //System.out.println("  inlined");
-              int tnum = 0;
-              int delta = 0;
-              for (;;) {
-                delta = (delta << 7) | (code & 0x7f);
-                if ((code & 0x80)==0) {
-                  if (delta==0) break;
+                  int delta = 0;
+                  for(;;) {
+                    byte b = arr[pos++];
+                    delta = (delta << 7) | (b & 0x7f);
+                    if ((b & 0x80) == 0) break;
+                  }
+                  if (delta == 0) break;
                   tnum += delta - TNUM_OFFSET;
                   //System.out.println("    tnum=" + tnum);
                   counts[tnum]++;
-                  delta = 0;
                 }
-                code >>>= 8;
+              } else {
+                //System.out.println("  inlined");
+                int tnum = 0;
+                int delta = 0;
+                for (;;) {
+                  delta = (delta << 7) | (code & 0x7f);
+                  if ((code & 0x80)==0) {
+                    if (delta==0) break;
+                    tnum += delta - TNUM_OFFSET;
+                    //System.out.println("    tnum=" + tnum);
+                    counts[tnum]++;
+                    delta = 0;
+                  }
+                  code >>>= 8;
+                }
               }
             }
           }
@@ -594,6 +602,7 @@ public class UnInvertedField extends DocTermOrds {
         final int[] index = this.index;
         // tricky: we add more more element than we need because we will reuse this array later
         // for ordering term ords before converting to term labels.
+        RequestBudget.allocate((long) (numTermsInField + 1) * RamUsageEstimator.NUM_BYTES_INT);
         final int[] counts = new int[numTermsInField + 1];
 
         //
@@ -820,6 +829,15 @@ public class UnInvertedField extends DocTermOrds {
    * @throws java.io.IOException If there is a low-level I/O error.
    */
   public StatsValues getStats(SolrIndexSearcher searcher, DocSet baseDocs, boolean calcDistinct, String[] facet) throws IOException {
+    return getStats(searcher, baseDocs, new StatsOptions(calcDistinct), facet);
+  }
+
+  /**
+   * Collect statistics about the UninvertedField, see {@link #getStats(SolrIndexSearcher, DocSet, boolean, String[])}.
+   *
+   * @param options the statistics to compute besides the minimum and the maximum
+   */
+  public StatsValues getStats(SolrIndexSearcher searcher, DocSet baseDocs, StatsOptions options, String[] facet) throws IOException {
     //this function is ripped off nearly wholesale from the getCounts function to use
     //for multiValued fields within the StatsComponent.  may be useful to find common
     //functionality between the two and refactor code somewhat
@@ -829,7 +847,7 @@ public class UnInvertedField extends DocTermOrds {
    // FieldType ft = sf.getType();
 
     QueryContext qcontext = QueryContext.newContext(searcher);
-    StatsValues allstats = StatsValuesFactory.createStatsValues(qcontext, sf, calcDistinct);
+    StatsValues allstats = StatsValuesFactory.createStatsValues(qcontext, sf, options);
 
 
     DocSet docs = baseDocs;
@@ -850,11 +868,13 @@ public class UnInvertedField extends DocTermOrds {
       SortedDocValues si;
       for (String f : facet) {
         SchemaField facet_sf = searcher.getSchema().getField(f);
-        finfo[i] = new FieldFacetStats(searcher, f, sf, facet_sf, calcDistinct);
+        finfo[i] = new FieldFacetStats(searcher, f, sf, facet_sf, options);
         i++;
       }
 
       final int[] index = this.index;
+      RequestBudget.allocate((long) numTermsInField * RamUsageEstimator.NUM_BYTES_INT);
+      RequestBudget.visit(baseSize);
       final int[] counts = new int[numTermsInField];//keep track of the number of times we see each word in the field for all the documents in the docset
 
       TermsEnum te = getOrdTermsEnum(searcher.getAtomicReader());
@@ -111,6 +111,20 @@ class Double64LeafValues extends DoubleLeafValues {
     return HS.getDouble(arr, doc);
   }
 
+  @Override
+  public void fillFloats(int[] docs, int n, float[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = (float) HS.getDouble(arr, docs[i]);
+    }
+  }
+
+  @Override
+  public void fillDoubles(int[] docs, int n, double[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = HS.getDouble(arr, docs[i]);
+    }
+  }
+
   @Override
   public boolean exists(int doc) {
     return valid==null || valid.fastGet(doc);
@@ -0,0 +1,336 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.util.VersionedFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A specific version of the external file backing an {@link org.apache.solr.schema.ExternalFileField}.
+ * <p/>
+ * Two formats are understood:
+ * <ul>
+ * <li>text: newline separated <code>keyFieldValue=floatValue</code>, in any order.</li>
+ * <li>binary: written by {@link #writeSorted}, entries sorted by the indexed form of the key
+ * so that loading is a single merge against the terms dictionary.</li>
+ * </ul>
+ * The format is detected from the first bytes of the file, so both use the same naming
+ * scheme (<code>external_&lt;fieldname&gt;</code> or <code>external_&lt;fieldname&gt;.*</code>).
+ */
+public final class ExternalFloatFile {
+  /** 0xFF never occurs in UTF-8 text, so a text file can't be mistaken for a binary one. */
+  static final byte[] MAGIC = {(byte)0xFF, 'E', 'F', 'F'};
+  static final int VERSION_CURRENT = 1;
+
+  // bumped by reset() to invalidate everything loaded so far
+  private static final AtomicLong resetGeneration = new AtomicLong();
+
+  private final String dataDir;
+  private final String fileName;
+  private final File file;
+  private final long lastModified;
+  private final long length;
+  private final long generation;
+
+  private ExternalFloatFile(String dataDir, String fileName, File file, long generation) {
+    this.dataDir = dataDir;
+    this.fileName = fileName;
+    this.file = file;
+    this.lastModified = file == null ? 0 : file.lastModified();
+    this.length = file == null ? 0 : file.length();
+    this.generation = generation;
+  }
+
+  /** Returns the latest version of the external file for the given field. */
+  public static ExternalFloatFile latest(String dataDir, String fieldName) {
+    String fileName = "external_" + fieldName;
+    long gen = resetGeneration.get();
+    return new ExternalFloatFile(dataDir, fileName, VersionedFile.getLatestVersion(dataDir, fileName), gen);
+  }
+
+  /** Marks every previously obtained version as stale so that it will be reloaded. */
+  public static void reset() {
+    resetGeneration.incrementAndGet();
+  }
+
+  /** Returns true if neither the file nor the reset generation changed since this version was obtained. */
+  public boolean isCurrent() {
+    return generation == resetGeneration.get() && equals(latest(dataDir, fileName.substring("external_".length())));
+  }
+
+  /** Cheap check that doesn't touch the filesystem. */
+  public boolean isReset() {
+    return generation != resetGeneration.get();
+  }
+
+  public String getFileName() {
+    return file == null ? fileName : file.getName();
+  }
+
+  /** Opens the entries of this version.  If this version has since been superseded and deleted,
+   * the latest version is used instead.
+   */
+  public Entries open(FieldType keyType) throws IOException {
+    File f = file;
+    if (f == null || !f.exists()) {
+      f = VersionedFile.getLatestVersion(dataDir, fileName);
+    }
+    if (f == null) {
+      throw new IOException("No external file " + fileName + " in " + dataDir);
+    }
+
+    InputStream is = new BufferedInputStream(new FileInputStream(f), 1 << 16);
+    try {
+      is.mark(MAGIC.length);
+      byte[] header = new byte[MAGIC.length];
+      int len = 0;
+      for (int n; len < header.length && (n = is.read(header, len, header.length - len)) > 0; ) {
+        len += n;
+      }
+      if (len == MAGIC.length && Arrays.equals(header, MAGIC)) {
+        return new BinaryEntries(is);
+      }
+      is.reset();
+      return new TextEntries(is, keyType, fileName);
+    } catch (IOException | RuntimeException e) {
+      is.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof ExternalFloatFile)) return false;
+    ExternalFloatFile other = (ExternalFloatFile)o;
+    return this.generation == other.generation
+        && this.lastModified == other.lastModified
+        && this.length == other.length
+        && this.dataDir.equals(other.dataDir)
+        && (this.file == null ? other.file == null : this.file.equals(other.file));
+  }
+
+  @Override
+  public int hashCode() {
+    return (int)(lastModified ^ (lastModified >>> 32)) + (int)length + (int)generation;
+  }
+
+  @Override
+  public String toString() {
+    return "ExternalFloatFile(" + getFileName() + ",lastModified=" + lastModified + ",length=" + length + ",generation=" + generation + ")";
+  }
+
+
+  /** Iterates over the (indexed key, value) entries of an external file. */
+  public static abstract class Entries implements Closeable {
+    /** the current key, in indexed form */
+    public final BytesRef key = new BytesRef();
+    public float value;
+
+    /** Advances to the next entry, returning false when there are no more. */
+    public abstract boolean next() throws IOException;
+
+    /** True if entries are guaranteed to be returned in ascending key order. */
+    public abstract boolean isSorted();
+
+    /** The external (readable) form of the current key, for logging. */
+    public abstract String readableKey();
+  }
+
+
+  static class TextEntries extends Entries {
+    private static final char DELIMITER = '=';
+    private final BufferedReader r;
+    private final FieldType keyType;
+    private final String fileName;
+    private String currentKey;
+    private int otherErrors;
+
+    TextEntries(InputStream is, FieldType keyType, String fileName) {
+      this.r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+      this.keyType = keyType;
+      this.fileName = fileName;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      for (String line; (line = r.readLine()) != null; ) {
+        int delimIndex = line.lastIndexOf(DELIMITER);
+        if (delimIndex < 0) continue;
+
+        String keyStr = line.substring(0, delimIndex);
+        String val = line.substring(delimIndex + 1, line.length());
+
+        try {
+          keyType.readableToIndexed(keyStr, key);
+          value = Float.parseFloat(val);
+        } catch (Exception e) {
+          if (++otherErrors <= 10) {
+            SolrCore.log.error("Error loading external value source " + fileName + ": " + e
+                + (otherErrors < 10 ? "" : "\tSkipping future errors for this file.")
+            );
+          }
+          continue;  // go to next line in file.. leave values as default.
+        }
+
+        currentKey = keyStr;
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isSorted() {
+      return false;
+    }
+
+    @Override
+    public String readableKey() {
+      return currentKey;
+    }
+
+    @Override
+    public void close() throws IOException {
+      r.close();
+    }
+  }
+
+
+  static class BinaryEntries extends Entries {
+    private final InputStream is;
+    private final InputStreamDataInput in;
+    private long remaining;
+
+    BinaryEntries(InputStream is) throws IOException {
+      this.is = is;
+      this.in = new InputStreamDataInput(is);
+      int version = in.readVInt();
+      if (version != VERSION_CURRENT) {
+        throw new IOException("Unsupported external file version " + version);
+      }
+      remaining = in.readVLong();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (remaining <= 0) return false;
+      remaining--;
+      int len = in.readVInt();
+      key.bytes = ArrayUtil.grow(key.bytes, len);
+      key.offset = 0;
+      key.length = len;
+      in.readBytes(key.bytes, 0, len);
+      value = Float.intBitsToFloat(in.readInt());
+      return true;
+    }
+
+    @Override
+    public boolean isSorted() {
+      return true;
+    }
+
+    @Override
+    public String readableKey() {
+      return key.utf8ToString();
+    }
+
+    @Override
+    public void close() throws IOException {
+      is.close();
+    }
+  }
+
+
+  /**
+   * Converts an external file in text format to the binary sorted format.
+   * When a key occurs more than once, the last value wins, as it does when loading the text format.
+   *
+   * @param keyType the type of the key field, used to convert keys to their indexed form
+   * @param text the text format input
+   * @param out where the binary format is written to
+   * @return the number of entries written
+   */
+  public static long writeSorted(FieldType keyType, Reader text, OutputStream out) throws IOException {
+    final List<BytesRef> keys = new ArrayList<>();
+    final List<Float> vals = new ArrayList<>();
+
+    BufferedReader r = new BufferedReader(text);
+    for (String line; (line = r.readLine()) != null; ) {
+      int delimIndex = line.lastIndexOf(TextEntries.DELIMITER);
+      if (delimIndex < 0) continue;
+      BytesRef key = new BytesRef();
+      try {
+        keyType.readableToIndexed(line.substring(0, delimIndex), key);
+        vals.add(Float.parseFloat(line.substring(delimIndex + 1)));
+      } catch (Exception e) {
+        continue;
+      }
+      keys.add(key);
+    }
+
+    Integer[] order = new Integer[keys.size()];
+    for (int i=0; i<order.length; i++) order[i] = i;
+    // stable sort, so the last of a set of duplicates ends up last
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return keys.get(a).compareTo(keys.get(b));
+      }
+    });
+
+    int n = 0;
+    for (int i=0; i<order.length; i++) {
+      if (i+1 < order.length && keys.get(order[i]).equals(keys.get(order[i+1]))) continue;
+      order[n++] = order[i];
+    }
+
+    OutputStreamDataOutput dout = new OutputStreamDataOutput(out);
+    dout.writeBytes(MAGIC, MAGIC.length);
+    dout.writeVInt(VERSION_CURRENT);
+    dout.writeVLong(n);
+    for (int i=0; i<n; i++) {
+      BytesRef key = keys.get(order[i]);
+      dout.writeVInt(key.length);
+      dout.writeBytes(key.bytes, key.offset, key.length);
+      dout.writeInt(Float.floatToIntBits(vals.get(order[i])));
+    }
+    out.flush();
+    return n;
+  }
+}
@@ -62,15 +62,7 @@ public abstract class FieldValues extends ValueSource {
     // TODO: return null for no values indexed???
     // prevent memory filling up by misspelled fields?
 
-    String key = field.getName();
-
-    if (this instanceof StrFieldValues) {
-      // string values are special... they can be requested on non-string fields
-      FieldType ft = field.getType();
-      if (!(ft instanceof StrField || ft instanceof TextField)) {
-        key = key + "__FORCED_STRING__";
-      }
-    }
+    String key = getCacheKey();
 
     // check context cache first
     TopValues entry = context.getTopValues(key);
@@ -123,6 +115,21 @@ public abstract class FieldValues extends ValueSource {
     return entry;
   }
 
+  /** The key of the values in the nCache (and in the request context) */
+  protected String getCacheKey() {
+    String key = field.getName();
+
+    if (this instanceof StrFieldValues) {
+      // string values are special... they can be requested on non-string fields
+      FieldType ft = field.getType();
+      if (!(ft instanceof StrField || ft instanceof TextField)) {
+        key = key + "__FORCED_STRING__";
+      }
+    }
+
+    return key;
+  }
+
   public boolean accept(TopValues values) {
     return true;
   }
@@ -0,0 +1,120 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.SortField;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.function.FileFloatSource;
+import org.apache.solr.search.function.FuncValues;
+
+import java.io.IOException;
+
+/**
+ * Off-heap version of {@link FileFloatSource}.  Values are kept per segment in the nCache
+ * and are carried over to new searchers for unchanged segments until the external file changes.
+ *
+ * @see org.apache.solr.schema.ExternalFileField
+ */
+public class FileFloatFieldValues extends FieldValues {
+  private final SchemaField keyField;
+  private final float defVal;
+  private final String dataDir;
+
+  public FileFloatFieldValues(SchemaField field, SchemaField keyField, float defVal, String dataDir) {
+    super(field, null);
+    this.keyField = keyField;
+    this.defVal = defVal;
+    this.dataDir = dataDir;
+  }
+
+  public SchemaField getKeyField() {
+    return keyField;
+  }
+
+  public float getDefVal() {
+    return defVal;
+  }
+
+  ExternalFloatFile latestFile() {
+    return ExternalFloatFile.latest(dataDir, field.getName());
+  }
+
+  @Override
+  public FuncValues getValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
+    if (context.searcher()==null || context.searcher().getnCache() == null) {
+      // backup for delete-by-query or realtime searchers
+      return new FileFloatSource(field, keyField, defVal, dataDir).getValues(context, readerContext);
+    }
+    return super.getValues(context, readerContext);
+  }
+
+  @Override
+  public boolean accept(TopValues values) {
+    return values instanceof FileFloatTopValues && !((FileFloatTopValues)values).getFile().isReset();
+  }
+
+  @Override
+  public TopValues createTopValues(SolrIndexSearcher searcher) {
+    return new FileFloatTopValues(this, null);
+  }
+
+  /** Loads the values for every segment of the searcher that doesn't have them yet. */
+  public void warm(QueryContext context) throws IOException {
+    FileFloatTopValues topValues = (FileFloatTopValues)getTopValues(context);
+    topValues.loadAll(context.searcher().getTopReaderContext().leaves());
+  }
+
+  @Override
+  public SortField getSortField(boolean reverse) {
+    return new ValueSourceSortField(reverse);
+  }
+
+  @Override
+  public SortField getSortField(boolean top, boolean sortMissingFirst, boolean sortMissingLast, Object missVal) {
+    return getSortField(top);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == null || o.getClass() != FileFloatFieldValues.class) return false;
+    FileFloatFieldValues other = (FileFloatFieldValues) o;
+    return this.field.getName().equals(other.field.getName())
+        && this.keyField.getName().equals(other.keyField.getName())
+        && this.defVal == other.defVal
+        && this.dataDir.equals(other.dataDir);
+  }
+
+  @Override
+  public int hashCode() {
+    return FileFloatFieldValues.class.hashCode() + field.getName().hashCode();
+  }
+
+  @Override
+  public String description() {
+    return "float(" + getFieldName() + ')';
+  }
+
+  @Override
+  public String toString() {
+    return "FileFloatFieldValues(field=" + field.getName() + ",keyField=" + keyField.getName()
+        + ",defVal=" + defVal + ",dataDir=" + dataDir + ")";
+  }
+}
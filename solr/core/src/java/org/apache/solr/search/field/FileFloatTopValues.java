@@ -0,0 +1,301 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.solr.core.HS;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap, per-segment values of an external file.  Segments that are unchanged across searchers
+ * keep their values as long as the external file itself hasn't changed.
+ */
+public class FileFloatTopValues extends TopValues {
+  // number of terms to step through with next() before falling back to a seek
+  private static final int MAX_SCAN = 8;
+
+  // the version of the external file all segments are loaded from, resolved lazily on first use
+  // when no segments were carried over.
+  private ExternalFloatFile file;
+
+  // set when the external file couldn't be read completely, so that no values are carried over to new searchers
+  private volatile boolean loadFailed;
+
+  public FileFloatTopValues(FileFloatFieldValues fieldValues, ExternalFloatFile file) {
+    super(fieldValues);
+    this.file = file;
+  }
+
+  public synchronized ExternalFloatFile getFile() {
+    if (file == null) {
+      file = ((FileFloatFieldValues)fieldValues).latestFile();
+    }
+    return file;
+  }
+
+  @Override
+  public LeafValues createValue(QueryContext context, CreationLeafValue create, AtomicReaderContext readerContext) throws IOException {
+    return load(Collections.singletonList(readerContext))[0];
+  }
+
+  /**
+   * Loads all segments that don't have values yet with a single pass over the external file.
+   */
+  public void loadAll(List<AtomicReaderContext> leaves) throws IOException {
+    List<AtomicReaderContext> missing = new ArrayList<>();
+    List<CreationLeafValue> placeholders = new ArrayList<>();
+
+    synchronized (this) {
+      if (leafValues == null) {
+        leafValues = new LeafValues[leaves.size()];
+      }
+      for (AtomicReaderContext leaf : leaves) {
+        if (leafValues[leaf.ord] == null) {
+          CreationLeafValue create = new CreationLeafValue(fieldValues);
+          leafValues[leaf.ord] = create;
+          missing.add(leaf);
+          placeholders.add(create);
+        }
+      }
+    }
+
+    if (missing.isEmpty()) return;
+
+    LeafValues[] loaded = load(missing);
+
+    for (int i=0; i<loaded.length; i++) {
+      CreationLeafValue create = placeholders.get(i);
+      synchronized (create) {
+        if (create.value == null) {
+          create.value = loaded[i];
+          synchronized (this) {
+            leafValues[missing.get(i).ord] = loaded[i];
+            nSegs++;
+          }
+        } else {
+          // a concurrent request beat us to this segment
+          loaded[i].decref();
+        }
+      }
+    }
+  }
+
+
+  private FloatLeafValues[] load(List<AtomicReaderContext> leaves) throws IOException {
+    FileFloatFieldValues ffv = (FileFloatFieldValues)fieldValues;
+    SchemaField keyField = ffv.getKeyField();
+
+    Segment[] segs = new Segment[leaves.size()];
+    try {
+      for (int i=0; i<segs.length; i++) {
+        segs[i] = new Segment(leaves.get(i), keyField.getName(), ffv.getDefVal());
+      }
+
+      List<String> notFound = new ArrayList<>();
+      long notFoundCount = 0;
+
+      ExternalFloatFile file = getFile();
+      try (ExternalFloatFile.Entries entries = file.open(keyField.getType())) {
+        final boolean sorted = entries.isSorted();
+        BytesRefBuilder prev = new BytesRefBuilder();
+        boolean first = true;
+
+        while (entries.next()) {
+          BytesRef key = entries.key;
+          boolean inOrder = first || key.compareTo(prev.get()) >= 0;
+          if (!sorted) {
+            prev.copyBytes(key);
+          }
+          first = false;
+
+          boolean found = false;
+          int live = 0;
+          for (Segment seg : segs) {
+            found |= seg.set(key, entries.value, inOrder);
+            if (!seg.isExhausted()) live++;
+          }
+
+          if (!found) {
+            if (notFoundCount < 10) {  // collect first 10 not found for logging
+              notFound.add(entries.readableKey());
+            }
+            notFoundCount++;
+          }
+
+          // nothing further in a sorted file can match
+          if (live == 0 && sorted) break;
+        }
+      } catch (IOException e) {
+        // log, and drop the values read so far in favor of the defaults, which won't be carried over
+        SolrCore.log.error("Error loading external value source " + file.getFileName() + ": " + e);
+        loadFailed = true;
+        for (Segment seg : segs) {
+          seg.reset(ffv.getDefVal());
+        }
+      }
+
+      SolrCore.log.info("Loaded external value source " + file.getFileName() + " for " + segs.length + " segment(s)"
+          + (notFoundCount == 0 ? "" : " :" + notFoundCount + " missing keys " + notFound)
+      );
+
+      FloatLeafValues[] result = new FloatLeafValues[segs.length];
+      for (int i=0; i<segs.length; i++) {
+        result[i] = segs[i].steal();
+      }
+      return result;
+
+    } finally {
+      for (Segment seg : segs) {
+        if (seg != null) seg.close();
+      }
+    }
+  }
+
+
+  /** The merge state of a single segment's terms against the external file. */
+  private class Segment {
+    final int maxDoc;
+    final TermsEnum te;
+    long arr;
+    BytesRef term;       // the term the enum is positioned on, null if exhausted
+    boolean positioned;  // is term valid?
+    DocsEnum docs;
+    FloatFieldStats stats = new FloatFieldStats();
+
+    Segment(AtomicReaderContext readerContext, String keyField, float defVal) throws IOException {
+      maxDoc = readerContext.reader().maxDoc();
+      arr = HS.allocArray(maxDoc, 4, defVal == 0);
+      if (defVal != 0) {
+        for (int i=0; i<maxDoc; i++) {
+          HS.setFloat(arr, i, defVal);
+        }
+      }
+      Terms terms = readerContext.reader().terms(keyField);
+      te = terms == null ? null : terms.iterator(null);
+    }
+
+    boolean isExhausted() {
+      return te == null || (positioned && term == null);
+    }
+
+    boolean set(BytesRef key, float val, boolean inOrder) throws IOException {
+      if (te == null) return false;
+
+      boolean found;
+      if (!inOrder) {
+        found = te.seekExact(key);
+        // only a successful seekExact leaves the enum on a known term
+        positioned = found;
+        term = found ? te.term() : null;
+      } else if (!positioned) {
+        found = seekCeil(key);
+      } else {
+        if (term == null) return false;
+        int cmp = term.compareTo(key);
+        int steps = 0;
+        while (cmp < 0) {
+          if (++steps > MAX_SCAN) {
+            break;
+          }
+          term = te.next();
+          if (term == null) return false;
+          cmp = term.compareTo(key);
+        }
+        found = cmp < 0 ? seekCeil(key) : cmp == 0;
+      }
+
+      if (!found) return false;
+
+      docs = te.docs(null, docs, DocsEnum.FLAG_NONE);
+      int doc;
+      while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        HS.setFloat(arr, doc, val);
+        stats.numDocsWithField++;
+      }
+      stats.numUniqueValues++;
+      return true;
+    }
+
+    private boolean seekCeil(BytesRef key) throws IOException {
+      TermsEnum.SeekStatus status = te.seekCeil(key);
+      positioned = true;
+      term = status == TermsEnum.SeekStatus.END ? null : te.term();
+      return status == TermsEnum.SeekStatus.FOUND;
+    }
+
+    /** Sets every document back to the default value */
+    void reset(float defVal) {
+      for (int i=0; i<maxDoc; i++) {
+        HS.setFloat(arr, i, defVal);
+      }
+      stats = new FloatFieldStats();
+    }
+
+    FloatLeafValues steal() {
+      long values = arr;
+      arr = 0;
+      return new Float32LeafValues(fieldValues, values, null, stats);
+    }
+
+    void close() {
+      if (arr != 0) {
+        HS.freeArray(arr);
+        arr = 0;
+      }
+    }
+  }
+
+
+  @Override
+  public void addInfo(Map<String, Object> map) {
+    super.addInfo(map);
+    map.put("file", String.valueOf(getFile()));
+  }
+
+  @Override
+  public FileFloatTopValues create(SolrIndexSearcher.WarmContext warmContext) {
+    FileFloatFieldValues ffv = (FileFloatFieldValues)fieldValues;
+    ExternalFloatFile oldFile = getFile();
+    if (!oldFile.isCurrent() || loadFailed) {
+      // the external file changed or couldn't be read, so none of the old values can be reused
+      return new FileFloatTopValues(ffv, null);
+    }
+    FileFloatTopValues tv = new FileFloatTopValues(ffv, oldFile);
+    tv.create(warmContext, this);
+    if (tv.carriedOver == 0) {
+      // nothing to be consistent with, so pick up the latest file when first used
+      tv.file = null;
+    }
+    return tv;
+  }
+}
@@ -111,6 +111,20 @@ class Float32LeafValues extends FloatLeafValues {
     return HS.getFloat(arr, doc);
   }
 
+  @Override
+  public void fillFloats(int[] docs, int n, float[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = HS.getFloat(arr, docs[i]);
+    }
+  }
+
+  @Override
+  public void fillDoubles(int[] docs, int n, double[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = HS.getFloat(arr, docs[i]);
+    }
+  }
+
   @Override
   public boolean exists(int doc) {
     return valid==null || valid.fastGet(doc);
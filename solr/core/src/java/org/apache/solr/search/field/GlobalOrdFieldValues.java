@@ -0,0 +1,79 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.FieldCache;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.io.IOException;
+
+/**
+ * The term ordinals of each segment of a (typically multi-valued) string field, mapped to a global ordinal
+ * space that is shared by consecutive searchers.  Segments that are unchanged across a reopen keep their
+ * mapping, so only new segments need to be mapped.
+ *
+ * @see GlobalOrdTopValues
+ * @see org.apache.solr.search.facet.PerSegmentMultiValuedFaceting
+ */
+public class GlobalOrdFieldValues extends FieldValues {
+
+  public GlobalOrdFieldValues(SchemaField field) {
+    super(field, null);
+  }
+
+  /**
+   * Returns the ordinals of a single segment, either from docValues or by uninverting the segment
+   * through the per-segment field cache.  The returned instance is not thread safe.
+   */
+  public SortedSetDocValues getSegmentOrds(AtomicReader reader) throws IOException {
+    return FieldCache.DEFAULT.getDocTermOrds(reader, field.getName());
+  }
+
+  @Override
+  protected String getCacheKey() {
+    return field.getName() + "__GLOBAL_ORDS__";
+  }
+
+  @Override
+  public boolean accept(TopValues values) {
+    return values instanceof GlobalOrdTopValues;
+  }
+
+  @Override
+  public TopValues createTopValues(SolrIndexSearcher searcher) {
+    return new GlobalOrdTopValues(this, new GlobalOrdTopValues.TermDictionary());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof GlobalOrdFieldValues && this.field.equals(((GlobalOrdFieldValues)o).field);
+  }
+
+  @Override
+  public int hashCode() {
+    return field.hashCode() + 0x676f7264;
+  }
+
+  @Override
+  public String description() {
+    return "globalOrds(" + getFieldName() + ')';
+  }
+}
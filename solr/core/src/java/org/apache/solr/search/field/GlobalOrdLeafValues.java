@@ -0,0 +1,94 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.core.HS;
+
+/**
+ * The mapping of one segment's term ordinals to global ordinals, stored off-heap.
+ */
+public class GlobalOrdLeafValues extends LeafValues {
+  private final long ordMap;  // segment ord -> global ord, 0 if the segment has no terms
+  private final int valueCount;
+  private final StrFieldStats stats;
+
+  public GlobalOrdLeafValues(FieldValues fieldValues, long ordMap, int valueCount) {
+    super(fieldValues);
+    this.ordMap = ordMap;
+    this.valueCount = valueCount;
+    this.stats = new StrFieldStats();
+    this.stats.numUniqueValues = valueCount;
+  }
+
+  /** The number of terms in the segment */
+  public int getValueCount() {
+    return valueCount;
+  }
+
+  /** Returns the global ordinal of the given segment ordinal */
+  public int getGlobalOrd(int segOrd) {
+    return HS.getInt(ordMap, segOrd);
+  }
+
+  /**
+   * Adds counts in segment ordinal space to counts in global ordinal space.
+   * Only segment ordinals in the range [start,end) are migrated.
+   */
+  public void migrate(int[] segCounts, int start, int end, int[] globalCounts) {
+    for (int ord=start; ord<end; ord++) {
+      int count = segCounts[ord];
+      if (count != 0) {
+        globalCounts[HS.getInt(ordMap, ord)] += count;
+      }
+    }
+  }
+
+  /** Returns a copy of this mapping with each global ordinal g replaced by the int at index g of remap */
+  public GlobalOrdLeafValues remap(long remap) {
+    if (valueCount == 0) {
+      return new GlobalOrdLeafValues(fieldValues, 0, 0);
+    }
+    long newOrdMap = HS.allocArray(valueCount, 4, false);
+    for (int ord=0; ord<valueCount; ord++) {
+      HS.setInt(newOrdMap, ord, HS.getInt(remap, HS.getInt(ordMap, ord)));
+    }
+    return new GlobalOrdLeafValues(fieldValues, newOrdMap, valueCount);
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return ordMap == 0 ? 0 : HS.arraySizeBytes(ordMap);
+  }
+
+  @Override
+  public StrFieldStats getFieldStats() {
+    return stats;
+  }
+
+  @Override
+  public String toString(int doc) {
+    return fieldValues.description();
+  }
+
+  @Override
+  protected void free() {
+    if (ordMap != 0) {
+      HS.freeArray(ordMap);
+    }
+  }
+}
@@ -0,0 +1,380 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.core.HS;
+import org.apache.solr.core.RefCountBase;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-segment mappings to a global ordinal space.  Global ordinals are handed out in the order terms are
+ * first seen, and the mappings of existing segments stay valid as new segments are added, so consecutive
+ * searchers share the dictionary.  The ordinals of terms that only occurred in deleted or merged away segments
+ * are reclaimed on reopen: once enough of the dictionary is garbage, the new searcher gets a compacted copy of
+ * it, with only the terms of its segments, and the mappings of the segments it shares with the old searcher are
+ * renumbered rather than rebuilt.
+ * <p/>
+ * Global ordinals are not in index order.  Use the segment ordinals (which are) to order terms.
+ */
+public class GlobalOrdTopValues extends TopValues {
+  // compact the dictionary on reopen if more than 1 in COMPACT_RATIO terms are no longer referenced...
+  static final int COMPACT_RATIO = 8;
+  // ...or at least this many are.
+  static final int MAX_GARBAGE = 1024;
+
+  // at most this many arrays of each kind are kept for reuse
+  static final int MAX_POOLED_ARRAYS = 4;
+
+  protected final TermDictionary dict;
+
+  // zeroed arrays of an entry per global ordinal, reused by the requests against this searcher
+  private final List<int[]> intArrays = new ArrayList<>();
+  private final List<long[]> longArrays = new ArrayList<>();
+
+  /** Takes over a reference to the dictionary, which is released when these values are freed. */
+  public GlobalOrdTopValues(GlobalOrdFieldValues fieldValues, TermDictionary dict) {
+    super(fieldValues);
+    this.dict = dict;
+  }
+
+  /** The number of global ordinals handed out so far.  All global ordinals of loaded segments are smaller. */
+  public int getNumGlobalOrds() {
+    return dict.size();
+  }
+
+  /** Returns the term of a global ordinal, in a new BytesRef. */
+  public BytesRef lookupOrd(int globalOrd) {
+    BytesRef term = new BytesRef();
+    dict.get(globalOrd, term);
+    return term;
+  }
+
+  /** Returns the global ordinal of a term, or -1 if no segment mapped so far has it. */
+  public int lookupTerm(BytesRef term) {
+    return dict.find(term);
+  }
+
+  /**
+   * Returns a zeroed array of at least the given size, taken from the arrays given back by earlier requests
+   * if there is one.  Arrays that are given back with {@link #returnIntArray} must be zeroed again.
+   */
+  public int[] takeIntArray(int size) {
+    synchronized (intArrays) {
+      for (int i = intArrays.size() - 1; i >= 0; i--) {
+        if (intArrays.get(i).length >= size) {
+          return intArrays.remove(i);
+        }
+      }
+    }
+    return new int[size];
+  }
+
+  /** Gives back a zeroed array taken with {@link #takeIntArray} for reuse by other requests. */
+  public void returnIntArray(int[] array) {
+    synchronized (intArrays) {
+      if (intArrays.size() < MAX_POOLED_ARRAYS) {
+        intArrays.add(array);
+      }
+    }
+  }
+
+  /** Like {@link #takeIntArray}, for the words of bitsets. */
+  public long[] takeLongArray(int size) {
+    synchronized (longArrays) {
+      for (int i = longArrays.size() - 1; i >= 0; i--) {
+        if (longArrays.get(i).length >= size) {
+          return longArrays.remove(i);
+        }
+      }
+    }
+    return new long[size];
+  }
+
+  /** Like {@link #returnIntArray}, for the words of bitsets. */
+  public void returnLongArray(long[] array) {
+    synchronized (longArrays) {
+      if (longArrays.size() < MAX_POOLED_ARRAYS) {
+        longArrays.add(array);
+      }
+    }
+  }
+
+  @Override
+  public void addInfo(Map<String, Object> map) {
+    super.addInfo(map);
+    map.put("globalOrds", dict.size());
+    map.put("dictionarySize", dict.getSizeInBytes());
+  }
+
+  @Override
+  public GlobalOrdLeafValues getLeafValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
+    return (GlobalOrdLeafValues) super.getLeafValues(context, readerContext);
+  }
+
+  @Override
+  public GlobalOrdLeafValues createValue(QueryContext context, CreationLeafValue create, AtomicReaderContext readerContext) throws IOException {
+    SortedSetDocValues si = ((GlobalOrdFieldValues)fieldValues).getSegmentOrds(readerContext.reader());
+    long valueCount = si.getValueCount();
+    if (valueCount >= Integer.MAX_VALUE) {
+      throw new UnsupportedOperationException("Currently global ordinals are limited to " + Integer.MAX_VALUE + " unique terms per segment");
+    }
+    if (valueCount == 0) {
+      return new GlobalOrdLeafValues(fieldValues, 0, 0);
+    }
+
+    long ordMap = HS.allocArray(valueCount, 4, false);
+    try {
+      TermsEnum te = si.termsEnum();
+      synchronized (dict) {
+        for (int ord=0; ord<valueCount; ord++) {
+          BytesRef term = te.next();
+          HS.setInt(ordMap, ord, dict.add(term));
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      HS.freeArray(ordMap);
+      throw e;
+    }
+
+    return new GlobalOrdLeafValues(fieldValues, ordMap, (int)valueCount);
+  }
+
+  /** Maps any segments of the searcher that aren't mapped yet. */
+  public void loadAll(QueryContext context) throws IOException {
+    for (AtomicReaderContext leaf : context.searcher().getTopReaderContext().leaves()) {
+      getLeafValues(context, leaf);
+    }
+  }
+
+  @Override
+  public GlobalOrdTopValues create(SolrIndexSearcher.WarmContext warmContext) {
+    dict.incref();
+    GlobalOrdTopValues tv = new GlobalOrdTopValues((GlobalOrdFieldValues)fieldValues, dict);
+    tv.create(warmContext, this);
+    tv = tv.compact();
+
+    // map the new segments now rather than on the first request against the new searcher
+    QueryContext context = QueryContext.newContext(warmContext.searcher);
+    try {
+      tv.loadAll(context);
+    } catch (IOException e) {
+      // not fatal... segments that weren't mapped will be mapped on first use
+      SolrCore.log.error("Error mapping global ordinals of " + fieldValues.getFieldName(), e);
+    }
+
+    return tv;
+  }
+
+  /**
+   * Returns these values, or a replacement with a compacted dictionary if too many of the terms are no longer
+   * referenced by the segments carried over, in which case these values are released.
+   * Only called from create(), before any segments other than those carried over are loaded.
+   */
+  private GlobalOrdTopValues compact() {
+    int numOrds = dict.size();
+    if (numOrds == 0) return this;
+
+    FixedBitSet used = new FixedBitSet(numOrds);
+    if (leafValues != null) {
+      for (LeafValues lv : leafValues) {
+        if (lv == null) continue;
+        GlobalOrdLeafValues leaf = (GlobalOrdLeafValues)lv;
+        for (int ord=0; ord<leaf.getValueCount(); ord++) {
+          used.set(leaf.getGlobalOrd(ord));
+        }
+      }
+    }
+
+    int garbage = numOrds - used.cardinality();
+    if (garbage == 0 || ((long)garbage * COMPACT_RATIO <= numOrds && garbage < MAX_GARBAGE)) {
+      return this;
+    }
+
+    GlobalOrdTopValues tv = new GlobalOrdTopValues((GlobalOrdFieldValues)fieldValues, new TermDictionary());
+    long remap = HS.allocArray(numOrds, 4, false);
+    try {
+      dict.copyTo(used, tv.dict, remap);
+      if (leafValues != null) {
+        tv.leafValues = new LeafValues[leafValues.length];
+        for (int i=0; i<leafValues.length; i++) {
+          if (leafValues[i] == null) continue;
+          tv.leafValues[i] = ((GlobalOrdLeafValues)leafValues[i]).remap(remap);
+          tv.nSegs++;
+        }
+        tv.carriedOver = carriedOver;
+      }
+    } catch (RuntimeException | Error e) {
+      tv.decref();
+      throw e;
+    } finally {
+      HS.freeArray(remap);
+    }
+
+    decref();
+    return tv;
+  }
+
+  @Override
+  public void free() {
+    super.free();
+    dict.decref();
+  }
+
+
+  /**
+   * Assigns global ordinals to terms in the order they are first added, keeping the terms and the hash table
+   * off-heap.  Shared by consecutive searchers, and freed when the last one releases it.
+   */
+  public static class TermDictionary extends RefCountBase {
+    // a page holds any term (at most 32766 bytes) with its length
+    private static final int PAGE_SIZE = 1 << 16;
+
+    private final List<Long> pages = new ArrayList<>();
+    private long page;               // the page terms are added to
+    private int pageUpto = PAGE_SIZE;
+    private long termPointers;       // global ord -> address of the length prefixed term
+    private long table;              // open addressing hash table of global ord + 1, where 0 is an empty slot
+    private int tableMask;
+    private int size;
+
+    public TermDictionary() {
+      termPointers = HS.allocArray(16, 8, false);
+      table = HS.allocArray(32, 4, true);
+      tableMask = 31;
+    }
+
+    /** Returns the global ordinal of the term, assigning a new one if the term hasn't been seen before. */
+    public synchronized int add(BytesRef term) {
+      int slot = term.hashCode() & tableMask;
+      for (int entry; (entry = HS.getInt(table, slot)) != 0; slot = (slot + 1) & tableMask) {
+        if (HS.compareLengthPrefixBytes(HS.getLong(termPointers, entry - 1), term) == 0) {
+          return entry - 1;
+        }
+      }
+
+      int ord = size;
+      if (ord >= HS.arraySizeBytes(termPointers) >>> 3) {
+        long newPointers = HS.allocArray((long)ord << 1, 8, false);
+        HS.copyBytes(termPointers, 0, newPointers, 0, (long)ord << 3);
+        HS.freeArray(termPointers);
+        termPointers = newPointers;
+      }
+      HS.setLong(termPointers, ord, store(term));
+      HS.setInt(table, slot, ord + 1);
+      size++;
+
+      if (size << 1 > tableMask) {
+        rehash();
+      }
+      return ord;
+    }
+
+    /** Copies the term of a global ordinal into the given BytesRef. */
+    public synchronized void get(int ord, BytesRef term) {
+      HS.copyLengthPrefixBytes(HS.getLong(termPointers, ord), term);
+    }
+
+    /** Returns the global ordinal of the term, or -1 if it hasn't been added. */
+    public synchronized int find(BytesRef term) {
+      int slot = term.hashCode() & tableMask;
+      for (int entry; (entry = HS.getInt(table, slot)) != 0; slot = (slot + 1) & tableMask) {
+        if (HS.compareLengthPrefixBytes(HS.getLong(termPointers, entry - 1), term) == 0) {
+          return entry - 1;
+        }
+      }
+      return -1;
+    }
+
+    private long store(BytesRef term) {
+      if (pageUpto + term.length + 2 > PAGE_SIZE) {
+        page = HS.allocArray(PAGE_SIZE, 1, false);
+        pages.add(page);
+        pageUpto = 0;
+      }
+      long address = page + pageUpto;
+      if (term.length < 128) {
+        HS.setByte(page, pageUpto++, (byte)term.length);
+      } else {
+        HS.setByte(page, pageUpto++, (byte)(0x80 | (term.length >> 8)));
+        HS.setByte(page, pageUpto++, (byte)term.length);
+      }
+      HS.copyBytes(term.bytes, term.offset, page, pageUpto, term.length);
+      pageUpto += term.length;
+      return address;
+    }
+
+    private void rehash() {
+      int newMask = (tableMask << 1) | 1;
+      long newTable = HS.allocArray(newMask + 1L, 4, true);
+      BytesRef term = new BytesRef();
+      for (int ord=0; ord<size; ord++) {
+        HS.copyLengthPrefixBytes(HS.getLong(termPointers, ord), term);
+        int slot = term.hashCode() & newMask;
+        while (HS.getInt(newTable, slot) != 0) {
+          slot = (slot + 1) & newMask;
+        }
+        HS.setInt(newTable, slot, ord + 1);
+      }
+      HS.freeArray(table);
+      table = newTable;
+      tableMask = newMask;
+    }
+
+    /**
+     * Adds the terms of the given global ordinals to another dictionary, in order, and records the ordinal
+     * each one gets there in remap.
+     */
+    synchronized void copyTo(FixedBitSet ords, TermDictionary target, long remap) {
+      BytesRef term = new BytesRef();
+      for (int ord = ords.nextSetBit(0); ord >= 0; ord = ord + 1 < ords.length() ? ords.nextSetBit(ord + 1) : -1) {
+        HS.copyLengthPrefixBytes(HS.getLong(termPointers, ord), term);
+        HS.setInt(remap, ord, target.add(term));
+      }
+    }
+
+    public synchronized int size() {
+      return size;
+    }
+
+    public synchronized long getSizeInBytes() {
+      return (long)pages.size() * PAGE_SIZE + HS.arraySizeBytes(termPointers) + HS.arraySizeBytes(table);
+    }
+
+    @Override
+    protected synchronized void free() {
+      for (long p : pages) {
+        HS.freeArray(p);
+      }
+      pages.clear();
+      HS.freeArray(termPointers);
+      HS.freeArray(table);
+    }
+  }
+}
@@ -111,6 +111,20 @@ class Int32LeafValues extends IntLeafValues {
     return HS.getInt(arr, doc);
   }
 
+  @Override
+  public void fillFloats(int[] docs, int n, float[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = (float) HS.getInt(arr, docs[i]);
+    }
+  }
+
+  @Override
+  public void fillDoubles(int[] docs, int n, double[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = HS.getInt(arr, docs[i]);
+    }
+  }
+
   @Override
   public boolean exists(int doc) {
     return valid==null || valid.fastGet(doc);
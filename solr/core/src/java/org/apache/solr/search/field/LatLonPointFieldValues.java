@@ -0,0 +1,125 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.schema.LatLonPointType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.function.FuncValues;
+
+import java.io.IOException;
+
+/**
+ * The packed latitude/longitude values of a {@link LatLonPointType} field.  The doc values of each
+ * segment are copied once to an off-heap array of longs that is shared by consecutive searchers, so
+ * that distance calculations and bounding box checks read the values without any decoding or
+ * per-document call into the codec.
+ * <p/>
+ * {@link FuncValues#longVal(int)} returns the packed value of a document, see {@link LatLonPointType#encode}.
+ *
+ * @see LatLonPointTopValues
+ */
+public class LatLonPointFieldValues extends FieldValues {
+
+  public LatLonPointFieldValues(SchemaField field, QParser qparser) {
+    super(field, qparser);
+  }
+
+  @Override
+  protected String getCacheKey() {
+    return field.getName() + "__POINTS__";
+  }
+
+  @Override
+  public boolean accept(TopValues values) {
+    return values instanceof LatLonPointTopValues;
+  }
+
+  @Override
+  public TopValues createTopValues(SolrIndexSearcher searcher) {
+    return new LatLonPointTopValues(this);
+  }
+
+  @Override
+  public FuncValues getValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
+    if (context.searcher() == null || context.searcher().getnCache() == null) {
+      // backup for delete-by-query or realtime searchers: read the doc values directly
+      return new DocValuesPoints(readerContext.reader());
+    }
+    return super.getValues(context, readerContext);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof LatLonPointFieldValues && this.field.equals(((LatLonPointFieldValues)o).field);
+  }
+
+  @Override
+  public int hashCode() {
+    return field.hashCode() + 0x6c6c7074;
+  }
+
+  @Override
+  public String description() {
+    return "latlonpoint(" + getFieldName() + ')';
+  }
+
+  private class DocValuesPoints extends FuncValues {
+    private final NumericDocValues values;
+    private final Bits docsWithField;
+
+    DocValuesPoints(AtomicReader reader) throws IOException {
+      NumericDocValues values = reader.getNumericDocValues(field.getName());
+      Bits docsWithField = reader.getDocsWithField(field.getName());
+      this.values = values == null ? DocValues.emptyNumeric() : values;
+      this.docsWithField = docsWithField == null ? new Bits.MatchNoBits(reader.maxDoc()) : docsWithField;
+    }
+
+    @Override
+    public long longVal(int doc) {
+      return values.get(doc);
+    }
+
+    @Override
+    public boolean exists(int doc) {
+      return docsWithField.get(doc);
+    }
+
+    @Override
+    public String strVal(int doc) {
+      return exists(doc) ? LatLonPointType.toExternal(values.get(doc)) : null;
+    }
+
+    @Override
+    public Object objectVal(int doc) {
+      return strVal(doc);
+    }
+
+    @Override
+    public String toString(int doc) {
+      return description() + '=' + strVal(doc);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.core.HS;
+import org.apache.solr.schema.LatLonPointType;
+import org.apache.solr.search.BitDocSetNative;
+
+/**
+ * The packed points of one segment, stored off-heap.  Documents without a point have a packed value of 0.
+ */
+public class LatLonPointLeafValues extends LeafValues {
+  private long arr;  // 0 if the segment has no points
+  private final BitDocSetNative valid;  // null if all documents have a point
+  private final LongFieldStats stats;
+
+  public LatLonPointLeafValues(FieldValues fieldValues, long longPointer, BitDocSetNative valid, LongFieldStats stats) {
+    super(fieldValues);
+    this.arr = longPointer;
+    this.valid = valid;
+    this.stats = stats;
+  }
+
+  @Override
+  public long longVal(int doc) {
+    return arr == 0 ? 0 : HS.getLong(arr, doc);
+  }
+
+  /** Copies the packed points of the given documents. */
+  public void fillLongs(int[] docs, int n, long[] out) {
+    if (arr == 0) {
+      for (int i=0; i<n; i++) {
+        out[i] = 0;
+      }
+      return;
+    }
+    for (int i=0; i<n; i++) {
+      out[i] = HS.getLong(arr, docs[i]);
+    }
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    return valid == null || valid.fastGet(doc);
+  }
+
+  @Override
+  public String strVal(int doc) {
+    return exists(doc) ? LatLonPointType.toExternal(longVal(doc)) : null;
+  }
+
+  @Override
+  public Object objectVal(int doc) {
+    return strVal(doc);
+  }
+
+  @Override
+  public LongFieldStats getFieldStats() {
+    return stats;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return (arr == 0 ? 0 : HS.arraySizeBytes(arr)) + (valid == null ? 0 : valid.memSize());
+  }
+
+  @Override
+  protected void free() {
+    if (arr != 0) {
+      HS.freeArray(arr);
+      arr = 0;
+    }
+    if (valid != null) {
+      valid.decref();
+    }
+  }
+}
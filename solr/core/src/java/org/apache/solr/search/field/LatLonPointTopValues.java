@@ -0,0 +1,80 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.core.HS;
+import org.apache.solr.search.BitDocSetNative;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.io.IOException;
+
+public class LatLonPointTopValues extends TopValues {
+
+  public LatLonPointTopValues(LatLonPointFieldValues fieldValues) {
+    super(fieldValues);
+  }
+
+  @Override
+  public LatLonPointLeafValues createValue(QueryContext context, CreationLeafValue create, AtomicReaderContext readerContext) throws IOException {
+    AtomicReader reader = readerContext.reader();
+    String field = fieldValues.getFieldName();
+    int maxDoc = reader.maxDoc();
+
+    NumericDocValues values = reader.getNumericDocValues(field);
+    Bits docsWithField = reader.getDocsWithField(field);
+    LongFieldStats stats = new LongFieldStats();
+    if (values == null || docsWithField == null || maxDoc == 0) {
+      return new LatLonPointLeafValues(fieldValues, 0, new BitDocSetNative(maxDoc), stats);
+    }
+
+    long arr = HS.allocArray(maxDoc, 8, false);
+    BitDocSetNative valid = null;
+    try {
+      if (!(docsWithField instanceof Bits.MatchAllBits)) {
+        valid = new BitDocSetNative(maxDoc);
+      }
+      for (int doc = 0; doc < maxDoc; doc++) {
+        HS.setLong(arr, doc, values.get(doc));
+        if (valid == null) {
+          stats.numDocsWithField++;
+        } else if (docsWithField.get(doc)) {
+          valid.fastSet(doc);
+          stats.numDocsWithField++;
+        }
+      }
+    } catch (RuntimeException e) {
+      HS.freeArray(arr);
+      if (valid != null) valid.decref();
+      throw e;
+    }
+
+    return new LatLonPointLeafValues(fieldValues, arr, valid, stats);
+  }
+
+  @Override
+  public LatLonPointTopValues create(SolrIndexSearcher.WarmContext warmContext) {
+    LatLonPointTopValues tv = new LatLonPointTopValues((LatLonPointFieldValues)fieldValues);
+    tv.create(warmContext, this);
+    return tv;
+  }
+}
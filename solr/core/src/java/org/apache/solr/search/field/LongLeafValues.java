@@ -115,6 +115,20 @@ class Long64LeafValues extends LongLeafValues {
     return HS.getLong(arr, doc);
   }
 
+  @Override
+  public void fillFloats(int[] docs, int n, float[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = (float) HS.getLong(arr, docs[i]);
+    }
+  }
+
+  @Override
+  public void fillDoubles(int[] docs, int n, double[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = HS.getLong(arr, docs[i]);
+    }
+  }
+
   @Override
   public boolean exists(int doc) {
     return valid==null || valid.fastGet(doc);
@@ -0,0 +1,71 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * The terms of a field with their document frequencies, in one FST per segment.  The FST of a segment is
+ * built once and carried over when a new searcher is warmed.
+ *
+ * @see TermsFSTTopValues
+ * @see org.apache.solr.handler.component.TermsComponent
+ */
+public class TermsFSTFieldValues extends FieldValues {
+
+  public TermsFSTFieldValues(SchemaField field) {
+    super(field, null);
+  }
+
+  @Override
+  public TermsFSTTopValues getTopValues(QueryContext context) {
+    return (TermsFSTTopValues) super.getTopValues(context);
+  }
+
+  @Override
+  protected String getCacheKey() {
+    return field.getName() + "__TERMS_FST__";
+  }
+
+  @Override
+  public boolean accept(TopValues values) {
+    return values instanceof TermsFSTTopValues;
+  }
+
+  @Override
+  public TopValues createTopValues(SolrIndexSearcher searcher) {
+    return new TermsFSTTopValues(this);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof TermsFSTFieldValues && this.field.equals(((TermsFSTFieldValues)o).field);
+  }
+
+  @Override
+  public int hashCode() {
+    return field.hashCode() + 0x74667374;
+  }
+
+  @Override
+  public String description() {
+    return "termsFST(" + getFieldName() + ')';
+  }
+}
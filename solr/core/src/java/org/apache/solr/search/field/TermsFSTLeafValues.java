@@ -0,0 +1,236 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The terms of a field in one segment, in an FST whose output is <code>Integer.MAX_VALUE - docFreq</code>.
+ * Since FST outputs are pushed towards the root as the minimum of the outputs below, each arc holds the highest
+ * document frequency of the terms it leads to, so the most frequent terms with a prefix are found without
+ * visiting all the terms with the prefix.  Document frequencies include deleted documents, like those of the
+ * terms of the segment.
+ *
+ * @see TermsFSTTopValues
+ */
+public class TermsFSTLeafValues extends LeafValues {
+  private static final Comparator<Long> OUTPUT_COMPARATOR = new Comparator<Long>() {
+    @Override
+    public int compare(Long a, Long b) {
+      return a.compareTo(b);
+    }
+  };
+
+  private final FST<Long> fst;  // null if there are no terms
+  private final StrFieldStats stats;
+
+  private TermsFSTLeafValues(FieldValues fieldValues, FST<Long> fst, StrFieldStats stats) {
+    super(fieldValues);
+    this.fst = fst;
+    this.stats = stats;
+  }
+
+  /** Builds the FST of the terms of a segment */
+  static TermsFSTLeafValues build(FieldValues fieldValues, AtomicReader reader) throws IOException {
+    StrFieldStats stats = new StrFieldStats();
+    Terms terms = reader.terms(fieldValues.getFieldName());
+    if (terms == null) {
+      return new TermsFSTLeafValues(fieldValues, null, stats);
+    }
+    stats.numDocsWithField = Math.max(terms.getDocCount(), 0);
+
+    Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+    IntsRefBuilder scratch = new IntsRefBuilder();
+    TermsEnum termsEnum = terms.iterator(null);
+    BytesRef term;
+    BytesRef last = null;
+    while ((term = termsEnum.next()) != null) {
+      builder.add(Util.toIntsRef(term, scratch), (long) (Integer.MAX_VALUE - termsEnum.docFreq()));
+      if (stats.numUniqueValues++ == 0) {
+        stats.firstValue = BytesRef.deepCopyOf(term);
+      }
+      last = term;
+    }
+    if (last != null) {
+      stats.lastValue = BytesRef.deepCopyOf(last);
+    }
+    return new TermsFSTLeafValues(fieldValues, builder.finish(), stats);
+  }
+
+  /** A term and its document frequency */
+  public static class TermCount {
+    public final BytesRef term;
+    public final int docFreq;
+
+    TermCount(BytesRef term, int docFreq) {
+      this.term = term;
+      this.docFreq = docFreq;
+    }
+  }
+
+  /** Returns an enum of the terms in index order.  Only the methods that don't need postings are supported. */
+  public TermsEnum termsEnum() {
+    return fst == null ? TermsEnum.EMPTY : new FSTTermsEnum(fst);
+  }
+
+  /** Returns the document frequency of a term, or 0 if the segment does not have it */
+  public int docFreq(BytesRef term) throws IOException {
+    if (fst == null) {
+      return 0;
+    }
+    Long output = Util.get(fst, term);
+    return output == null ? 0 : docFreq(output);
+  }
+
+  /**
+   * Returns up to <code>n</code> terms with the given prefix, by decreasing document frequency.
+   * @param prefix the prefix of the terms, or null for all terms
+   */
+  public List<TermCount> getTopTerms(BytesRef prefix, int n) throws IOException {
+    if (fst == null || n <= 0) {
+      return Collections.emptyList();
+    }
+
+    FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<Long>());
+    FST.BytesReader reader = fst.getBytesReader();
+    long prefixOutput = 0;
+    if (prefix != null) {
+      for (int i = prefix.offset; i < prefix.offset + prefix.length; i++) {
+        if (fst.findTargetArc(prefix.bytes[i] & 0xff, arc, arc, reader) == null) {
+          return Collections.emptyList();
+        }
+        prefixOutput += arc.output;
+      }
+    }
+
+    Util.TopResults<Long> completions = Util.shortestPaths(fst, arc, prefixOutput, OUTPUT_COMPARATOR, n, true);
+    List<TermCount> result = new ArrayList<>(completions.topN.size());
+    BytesRefBuilder suffix = new BytesRefBuilder();
+    for (Util.Result<Long> completion : completions) {
+      BytesRefBuilder term = new BytesRefBuilder();
+      if (prefix != null) {
+        term.copyBytes(prefix);
+      }
+      term.append(Util.toBytesRef(completion.input, suffix));
+      result.add(new TermCount(term.get(), docFreq(completion.output)));
+    }
+    return result;
+  }
+
+  private static int docFreq(long output) {
+    return (int) (Integer.MAX_VALUE - output);
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return fst == null ? 0 : fst.ramBytesUsed();
+  }
+
+  @Override
+  public FieldStats getFieldStats() {
+    return stats;
+  }
+
+  @Override
+  protected void free() {
+  }
+
+
+  private static class FSTTermsEnum extends TermsEnum {
+    private final BytesRefFSTEnum<Long> fstEnum;
+    private BytesRefFSTEnum.InputOutput<Long> current;
+
+    FSTTermsEnum(FST<Long> fst) {
+      this.fstEnum = new BytesRefFSTEnum<>(fst);
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      current = fstEnum.next();
+      return current == null ? null : current.input;
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      current = fstEnum.seekCeil(text);
+      if (current == null) {
+        return SeekStatus.END;
+      }
+      return current.input.equals(text) ? SeekStatus.FOUND : SeekStatus.NOT_FOUND;
+    }
+
+    @Override
+    public void seekExact(long ord) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BytesRef term() {
+      return current.input;
+    }
+
+    @Override
+    public long ord() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int docFreq() {
+      return TermsFSTLeafValues.docFreq(current.output);
+    }
+
+    @Override
+    public long totalTermFreq() {
+      return -1;
+    }
+
+    @Override
+    public DocsEnum docs(Bits liveDocs, DocsEnum reuse, int flags) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocsAndPositionsEnum docsAndPositions(Bits liveDocs, DocsAndPositionsEnum reuse, int flags) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Comparator<BytesRef> getComparator() {
+      return BytesRef.getUTF8SortedAsUnicodeComparator();
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package org.apache.solr.search.field;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The terms of a field over all segments of a searcher, as one {@link TermsFSTLeafValues} FST per segment.
+ * <p/>
+ * The FST of a segment is built the first time it is used, and is carried over to new searchers like other
+ * leaf values, so a reopen only builds the FSTs of the new segments.  Requests merge the segments: terms are
+ * enumerated in index order by merging the enums of the segments, and the most frequent terms with a prefix
+ * are found from the most frequent terms of each segment (see {@link #getTopTerms}).  Document frequencies
+ * include deleted documents, like those of the terms of a top-level reader.
+ */
+public class TermsFSTTopValues extends TopValues {
+
+  public TermsFSTTopValues(TermsFSTFieldValues fieldValues) {
+    super(fieldValues);
+  }
+
+  /** The FSTs of all segments of the searcher of the context */
+  private List<TermsFSTLeafValues> getLeaves(QueryContext context) throws IOException {
+    List<AtomicReaderContext> readerContexts = context.searcher().getTopReaderContext().leaves();
+    List<TermsFSTLeafValues> leaves = new ArrayList<>(readerContexts.size());
+    for (AtomicReaderContext readerContext : readerContexts) {
+      leaves.add((TermsFSTLeafValues) getLeafValues(context, readerContext));
+    }
+    return leaves;
+  }
+
+  /** Returns an enum of the terms in index order.  Only the methods that don't need postings are supported. */
+  public TermsEnum termsEnum(QueryContext context) throws IOException {
+    List<TermsEnum> subs = new ArrayList<>();
+    for (TermsFSTLeafValues leaf : getLeaves(context)) {
+      subs.add(leaf.termsEnum());
+    }
+    return new MergedTermsEnum(subs);
+  }
+
+  /**
+   * Returns up to <code>n</code> terms with the given prefix, by decreasing document frequency then in index order.
+   * <p/>
+   * The document frequency of a term is the sum of its frequencies in the segments, so the top terms of the
+   * segments are gathered, <code>k</code> of each, and their frequencies are summed over all segments.  A term
+   * that is in none of these lists has at most the sum of the <code>k</code>-th frequencies of the segments:
+   * once the <code>n</code>-th term has a higher frequency than that, the top terms are known.  Otherwise
+   * <code>k</code> is doubled.
+   *
+   * @param prefix the prefix of the terms, or null for all terms
+   */
+  public List<TermsFSTLeafValues.TermCount> getTopTerms(QueryContext context, BytesRef prefix, int n) throws IOException {
+    if (n <= 0) {
+      return Collections.emptyList();
+    }
+    List<TermsFSTLeafValues> leaves = getLeaves(context);
+
+    for (int k = n; ; k = k > Integer.MAX_VALUE >> 1 ? Integer.MAX_VALUE : k << 1) {
+      Set<BytesRef> candidates = new HashSet<>();
+      long unseenMax = 0;  // the highest possible frequency of a term that is not a candidate
+      boolean exhausted = true;
+      for (TermsFSTLeafValues leaf : leaves) {
+        List<TermsFSTLeafValues.TermCount> top = leaf.getTopTerms(prefix, k);
+        for (TermsFSTLeafValues.TermCount item : top) {
+          candidates.add(item.term);
+        }
+        if (top.size() == k) {
+          unseenMax += top.get(k - 1).docFreq;
+          exhausted = false;
+        }
+      }
+
+      List<TermsFSTLeafValues.TermCount> result = new ArrayList<>(candidates.size());
+      for (BytesRef term : candidates) {
+        long docFreq = 0;
+        for (TermsFSTLeafValues leaf : leaves) {
+          docFreq += leaf.docFreq(term);
+        }
+        result.add(new TermsFSTLeafValues.TermCount(term, (int) docFreq));
+      }
+      Collections.sort(result, new Comparator<TermsFSTLeafValues.TermCount>() {
+        @Override
+        public int compare(TermsFSTLeafValues.TermCount a, TermsFSTLeafValues.TermCount b) {
+          if (a.docFreq != b.docFreq) {
+            return a.docFreq > b.docFreq ? -1 : 1;
+          }
+          return a.term.compareTo(b.term);
+        }
+      });
+
+      if (exhausted || (result.size() >= n && result.get(n - 1).docFreq > unseenMax)) {
+        return result.size() > n ? result.subList(0, n) : result;
+      }
+    }
+  }
+
+  @Override
+  public TermsFSTLeafValues createValue(QueryContext context, CreationLeafValue create, AtomicReaderContext readerContext) throws IOException {
+    return TermsFSTLeafValues.build(fieldValues, readerContext.reader());
+  }
+
+  @Override
+  public TermsFSTTopValues create(SolrIndexSearcher.WarmContext warmContext) {
+    TermsFSTTopValues tv = new TermsFSTTopValues((TermsFSTFieldValues)fieldValues);
+    tv.create(warmContext, this);
+    return tv;
+  }
+
+
+  /** Merges the terms of the segments, summing their document frequencies */
+  private static class MergedTermsEnum extends TermsEnum {
+    private final List<Sub> subs = new ArrayList<>();
+    private final PriorityQueue<Sub> queue;
+    private final BytesRefBuilder current = new BytesRefBuilder();
+    private boolean positioned;
+    private int docFreq;
+
+    MergedTermsEnum(List<TermsEnum> termsEnums) {
+      for (TermsEnum termsEnum : termsEnums) {
+        subs.add(new Sub(termsEnum));
+      }
+      this.queue = new PriorityQueue<Sub>(Math.max(subs.size(), 1)) {
+        @Override
+        protected boolean lessThan(Sub a, Sub b) {
+          return a.term.compareTo(b.term) < 0;
+        }
+      };
+    }
+
+    /** Pops the sub enums positioned on the smallest term, and sums their frequencies */
+    private BytesRef pull() throws IOException {
+      if (queue.size() == 0) {
+        return null;
+      }
+      current.copyBytes(queue.top().term);
+      docFreq = 0;
+      do {
+        Sub top = queue.top();
+        docFreq += top.termsEnum.docFreq();
+        if (top.next()) {
+          queue.updateTop();
+        } else {
+          queue.pop();
+        }
+      } while (queue.size() > 0 && queue.top().term.equals(current.get()));
+      return current.get();
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      if (!positioned) {
+        positioned = true;
+        for (Sub sub : subs) {
+          if (sub.next()) {
+            queue.add(sub);
+          }
+        }
+      }
+      return pull();
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      positioned = true;
+      queue.clear();
+      for (Sub sub : subs) {
+        if (sub.seekCeil(text)) {
+          queue.add(sub);
+        }
+      }
+      BytesRef term = pull();
+      if (term == null) {
+        return SeekStatus.END;
+      }
+      return term.equals(text) ? SeekStatus.FOUND : SeekStatus.NOT_FOUND;
+    }
+
+    @Override
+    public void seekExact(long ord) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BytesRef term() {
+      return current.get();
+    }
+
+    @Override
+    public long ord() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int docFreq() {
+      return docFreq;
+    }
+
+    @Override
+    public long totalTermFreq() {
+      return -1;
+    }
+
+    @Override
+    public DocsEnum docs(Bits liveDocs, DocsEnum reuse, int flags) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocsAndPositionsEnum docsAndPositions(Bits liveDocs, DocsAndPositionsEnum reuse, int flags) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Comparator<BytesRef> getComparator() {
+      return BytesRef.getUTF8SortedAsUnicodeComparator();
+    }
+
+    /** The enum of a segment and its current term */
+    private static class Sub {
+      final TermsEnum termsEnum;
+      BytesRef term;
+
+      Sub(TermsEnum termsEnum) {
+        this.termsEnum = termsEnum;
+      }
+
+      boolean next() throws IOException {
+        term = termsEnum.next();
+        return term != null;
+      }
+
+      boolean seekCeil(BytesRef text) throws IOException {
+        if (termsEnum.seekCeil(text) == SeekStatus.END) {
+          term = null;
+          return false;
+        }
+        term = termsEnum.term();
+        return true;
+      }
+    }
+  }
+}
@@ -33,6 +33,7 @@ import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.field.ExternalFloatFile;
 import org.apache.solr.search.function.funcvalues.FloatFuncValues;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.util.VersionedFile;
@@ -131,6 +132,7 @@ public class FileFloatSource extends ValueSource {
    */
   public static void resetCache() {
     floatCache.resetCache();
+    ExternalFloatFile.reset();
   }
 
   /**
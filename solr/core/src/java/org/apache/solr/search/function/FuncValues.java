@@ -161,6 +161,30 @@ public abstract class FuncValues {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Batch version of {@link #floatVal(int)}: sets <code>out[i] = floatVal(docs[i])</code> for <code>i</code> in <code>[0,n)</code>.
+   * The docs must be in increasing order.  Implementations should override this to avoid
+   * a virtual call per document for each level of a nested function.
+   *
+   * @lucene.experimental
+   */
+  public void fillFloats(int[] docs, int n, float[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = floatVal(docs[i]);
+    }
+  }
+
+  /**
+   * Batch version of {@link #doubleVal(int)}, see {@link #fillFloats}.
+   *
+   * @lucene.experimental
+   */
+  public void fillDoubles(int[] docs, int n, double[] out) {
+    for (int i=0; i<n; i++) {
+      out[i] = doubleVal(docs[i]);
+    }
+  }
+
   public Explanation explain(int doc) {
     return new Explanation(floatVal(doc), toString(doc));
   }
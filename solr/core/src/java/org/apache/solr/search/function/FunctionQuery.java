@@ -121,6 +121,16 @@ public class FunctionQuery extends Query {
     final FuncValues vals;
     final Bits acceptDocs;
 
+    // When every doc is being scored in order, values are computed a block at a time
+    // with FuncValues.fillFloats() to avoid a virtual call per doc per function level.
+    static final int BLOCK_SIZE = 64;
+    int[] blockDocs;
+    float[] blockVals;
+    int blockPos;
+    int blockLen;
+    boolean scored;      // was score() called for the current doc
+    boolean sequential;  // were the previous doc and the current doc both visited by nextDoc()
+
     public AllScorer(AtomicReaderContext context, Bits acceptDocs, FunctionWeight w, float qWeight) throws IOException {
       super(w);
       this.weight = w;
@@ -142,6 +152,8 @@ public class FunctionQuery extends Query {
     // Boost:        foo:myTerm^floatline("myFloatField",1.0,0.0f)
     @Override
     public int nextDoc() throws IOException {
+      sequential = scored;
+      scored = false;
       for (; ; ) {
         ++doc;
         if (doc >= maxDoc) {
@@ -156,12 +168,14 @@ public class FunctionQuery extends Query {
     public int advance(int target) throws IOException {
       // this will work even if target==NO_MORE_DOCS
       doc = target - 1;
-      return nextDoc();
+      nextDoc();
+      sequential = false;
+      return doc;
     }
 
     @Override
     public float score() throws IOException {
-      float score = qWeight * vals.floatVal(doc);
+      float score = qWeight * floatVal();
 
       // Current Lucene priority queues can't handle NaN and -Infinity, so
       // map to -Float.MAX_VALUE. This conditional handles both -infinity
@@ -169,6 +183,37 @@ public class FunctionQuery extends Query {
       return score > Float.NEGATIVE_INFINITY ? score : -Float.MAX_VALUE;
     }
 
+    private float floatVal() {
+      scored = true;
+      while (blockPos < blockLen && blockDocs[blockPos] < doc) {
+        blockPos++;
+      }
+      if (blockPos < blockLen && blockDocs[blockPos] == doc) {
+        return blockVals[blockPos];
+      }
+      if (!sequential) {
+        return vals.floatVal(doc);
+      }
+      fillBlock();
+      return blockVals[blockPos];
+    }
+
+    // fills the block with the current doc and the accepted docs following it
+    private void fillBlock() {
+      if (blockDocs == null) {
+        blockDocs = new int[BLOCK_SIZE];
+        blockVals = new float[BLOCK_SIZE];
+      }
+      int n = 0;
+      for (int d = doc; d < maxDoc && n < BLOCK_SIZE; d++) {
+        if (acceptDocs != null && !acceptDocs.get(d)) continue;
+        blockDocs[n++] = d;
+      }
+      vals.fillFloats(blockDocs, n, blockVals);
+      blockPos = 0;
+      blockLen = n;
+    }
+
     @Override
     public long cost() {
       return maxDoc;
@@ -88,7 +88,7 @@ public abstract class ValueSource {
   }
 
 
-  class ValueSourceSortField extends SortField {
+  protected class ValueSourceSortField extends SortField {
     public ValueSourceSortField(boolean reverse) {
       super(description(), SortField.Type.REWRITEABLE, reverse);
     }
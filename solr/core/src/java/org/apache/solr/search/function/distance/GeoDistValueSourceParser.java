@@ -32,6 +32,7 @@ import org.apache.solr.search.function.ValueSource;
 import org.apache.solr.search.function.ValueSourceAdapter;
 import org.apache.solr.search.function.valuesource.ConstNumberSource;
 import org.apache.solr.search.function.valuesource.DoubleConstValueSource;
+import org.apache.solr.search.function.valuesource.LatLonPointValueSource;
 import org.apache.solr.search.function.valuesource.MultiValueSource;
 import org.apache.solr.search.function.valuesource.VectorValueSource;
 import org.apache.solr.util.SpatialUtils;
@@ -41,7 +42,7 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- * Parses "geodist" creating {@link HaversineConstFunction} or {@link HaversineFunction}
+ * Parses "geodist" creating {@link LatLonPointDistanceFunction}, {@link HaversineConstFunction} or {@link HaversineFunction}
  * or calling {@link SpatialStrategy#makeDistanceValueSource(com.spatial4j.core.shape.Point, double)}.
  */
 public class GeoDistValueSourceParser extends ValueSourceParser {
@@ -124,6 +125,7 @@ public class GeoDistValueSourceParser extends ValueSourceParser {
 
     // At this point we dispatch to one of:
     // * SpatialStrategy.makeDistanceValueSource
+    // * LatLonPointDistanceFunction
     // * HaversineConstFunction
     // * HaversineFunction
 
@@ -138,6 +140,10 @@ public class GeoDistValueSourceParser extends ValueSourceParser {
       return new ValueSourceAdapter(strategy.makeDistanceValueSource(queryPoint, DistanceUtils.DEG_TO_KM));
     }
 
+    if (constants != null && other instanceof LatLonPointValueSource) {
+      return new LatLonPointDistanceFunction(constants[0], constants[1], (LatLonPointValueSource) other);
+    }
+
     if (constants != null && other instanceof VectorValueSource) {
       return new HaversineConstFunction(constants[0], constants[1], (VectorValueSource) other);
     }
@@ -0,0 +1,332 @@
+package org.apache.solr.search.function.distance;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.spatial4j.core.context.SpatialContext;
+import com.spatial4j.core.distance.DistanceUtils;
+import com.spatial4j.core.shape.Rectangle;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SortField;
+import org.apache.solr.schema.LatLonPointType;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.field.LatLonPointLeafValues;
+import org.apache.solr.search.function.FuncValues;
+import org.apache.solr.search.function.ValueSource;
+import org.apache.solr.search.function.funcvalues.DoubleFuncValues;
+import org.apache.solr.search.function.valuesource.LatLonPointValueSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.spatial4j.core.distance.DistanceUtils.DEGREES_TO_RADIANS;
+
+/**
+ * Haversine distance, in kilometers, from a constant point to the points of a {@link LatLonPointType} field.
+ * <p/>
+ * Like {@link HaversineConstFunction}, but the points are decoded from the packed values of the field, and
+ * blocks of documents are computed at once by {@link FuncValues#fillDoubles} and {@link FuncValues#fillFloats}:
+ * the packed values are gathered first, then the distances are computed in a loop over primitive arrays.
+ * <p/>
+ * Sorting by distance uses the same batches: see {@link DistanceComparator}.
+ */
+public class LatLonPointDistanceFunction extends ValueSource {
+
+  private final double latCenter;
+  private final double lonCenter;
+  private final LatLonPointValueSource points;
+
+  private static final double EARTH_MEAN_DIAMETER = DistanceUtils.EARTH_MEAN_RADIUS_KM * 2;
+
+  public LatLonPointDistanceFunction(double latCenter, double lonCenter, LatLonPointValueSource points) {
+    this.latCenter = latCenter;
+    this.lonCenter = lonCenter;
+    this.points = points;
+  }
+
+  protected String name() {
+    return "geodist";
+  }
+
+  /**
+   * Haversine distance between a point in radians and a packed point, on a sphere of the given diameter.
+   * @param latCenterRad_cos the cosine of <code>latCenterRad</code>
+   */
+  public static double distance(long packed, double latCenterRad, double lonCenterRad, double latCenterRad_cos, double diameter) {
+    double latRad = LatLonPointType.decodeLat(packed) * DEGREES_TO_RADIANS;
+    double lonRad = LatLonPointType.decodeLon(packed) * DEGREES_TO_RADIANS;
+    double hsinX = Math.sin((latCenterRad - latRad) * 0.5);
+    double hsinY = Math.sin((lonCenterRad - lonRad) * 0.5);
+    double h = hsinX * hsinX + (latCenterRad_cos * Math.cos(latRad) * hsinY * hsinY);
+    return diameter * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+  }
+
+  @Override
+  public FuncValues getValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
+    final FuncValues vals = points.getPoints().getValues(context, readerContext);
+    final LatLonPointLeafValues leaf = vals instanceof LatLonPointLeafValues ? (LatLonPointLeafValues) vals : null;
+    final double latCenterRad = this.latCenter * DEGREES_TO_RADIANS;
+    final double lonCenterRad = this.lonCenter * DEGREES_TO_RADIANS;
+    final double latCenterRad_cos = Math.cos(latCenterRad);
+
+    return new DoubleFuncValues(this) {
+      private long[] packed;
+
+      @Override
+      public double doubleVal(int doc) {
+        return distance(vals.longVal(doc), latCenterRad, lonCenterRad, latCenterRad_cos, EARTH_MEAN_DIAMETER);
+      }
+
+      private void gather(int[] docs, int n) {
+        if (packed == null || packed.length < n) {
+          packed = new long[Math.max(n, 64)];
+        }
+        if (leaf != null) {
+          leaf.fillLongs(docs, n, packed);
+        } else {
+          for (int i=0; i<n; i++) {
+            packed[i] = vals.longVal(docs[i]);
+          }
+        }
+      }
+
+      @Override
+      public void fillDoubles(int[] docs, int n, double[] out) {
+        gather(docs, n);
+        long[] packed = this.packed;
+        for (int i=0; i<n; i++) {
+          out[i] = distance(packed[i], latCenterRad, lonCenterRad, latCenterRad_cos, EARTH_MEAN_DIAMETER);
+        }
+      }
+
+      @Override
+      public void fillFloats(int[] docs, int n, float[] out) {
+        gather(docs, n);
+        long[] packed = this.packed;
+        for (int i=0; i<n; i++) {
+          out[i] = (float) distance(packed[i], latCenterRad, lonCenterRad, latCenterRad_cos, EARTH_MEAN_DIAMETER);
+        }
+      }
+
+      @Override
+      public String toString(int doc) {
+        return name() + '(' + vals.toString(doc) + ',' + latCenter + ',' + lonCenter + ')';
+      }
+    };
+  }
+
+  @Override
+  public void createWeight(QueryContext context) throws IOException {
+    points.createWeight(context);
+  }
+
+  @Override
+  public SortField getSortField(boolean reverse) {
+    return new DistanceSortField(reverse);
+  }
+
+  class DistanceSortField extends SortField {
+    DistanceSortField(boolean reverse) {
+      super(description(), SortField.Type.REWRITEABLE, reverse);
+    }
+
+    @Override
+    public SortField rewrite(IndexSearcher searcher) throws IOException {
+      final QueryContext context = QueryContext.newContext(searcher);
+      createWeight(context);
+      return new SortField(getField(), new FieldComparatorSource() {
+        @Override
+        public FieldComparator<Double> newComparator(String fieldname, int numHits, int sortPos, boolean reversed) throws IOException {
+          return new DistanceComparator(context, numHits, reversed);
+        }
+      }, getReverse());
+    }
+  }
+
+  /**
+   * Compares documents by distance.  Once the queue is full, the points outside of the bounding box of the
+   * circle through the bottom of the queue are farther than the bottom, which is checked on the packed values
+   * without computing any distance.  Distances are computed by {@link FuncValues#fillDoubles} for blocks of
+   * consecutive documents, and, when sorting by increasing distance, only for the points inside of the box.
+   */
+  class DistanceComparator extends FieldComparator<Double> {
+    private static final int BLOCK_SIZE = 64;
+    // widens the box a little, so that rounding errors can't exclude points at the distance of the bottom
+    private static final double BOX_MARGIN_DEGREES = 1e-6;
+
+    private final QueryContext fcontext;
+    private final double[] values;
+    private final boolean reversed;
+    private final double latCenterRad = latCenter * DEGREES_TO_RADIANS;
+    private final double lonCenterRad = lonCenter * DEGREES_TO_RADIANS;
+    private final double latCenterRad_cos = Math.cos(latCenterRad);
+    private double bottom;
+    private double topValue;
+
+    private FuncValues pointVals;
+    private FuncValues distanceVals;
+    private int maxDoc;
+
+    // the documents of [blockStart, blockEnd) that were computed, and their distances
+    private final int[] blockDocs = new int[BLOCK_SIZE];
+    private final double[] blockDistances = new double[BLOCK_SIZE];
+    private int blockSize;
+    private int blockStart;
+    private int blockEnd;
+
+    // the bounding box of the circle through the bottom, on quantized values
+    private boolean hasBox;
+    private int latMin, latMax, lonMin, lonMax, lon2Min, lon2Max;
+    private boolean lon2;
+
+    DistanceComparator(QueryContext fcontext, int numHits, boolean reversed) {
+      this.fcontext = fcontext;
+      this.values = new double[numHits];
+      this.reversed = reversed;
+    }
+
+    private boolean inBox(long packed) {
+      int lon = (int) packed;
+      if (! ((lon >= lonMin && lon <= lonMax) || (lon2 && lon >= lon2Min && lon <= lon2Max)) ) {
+        return false;
+      }
+      int lat = (int) (packed >> 32);
+      return lat >= latMin && lat <= latMax;
+    }
+
+    private double distance(int doc) {
+      if (doc < blockStart || doc >= blockEnd) {
+        fillBlock(doc);
+      }
+      int i = Arrays.binarySearch(blockDocs, 0, blockSize, doc);
+      if (i >= 0) {
+        return blockDistances[i];
+      }
+      // the box has changed since the block was computed
+      return LatLonPointDistanceFunction.distance(pointVals.longVal(doc), latCenterRad, lonCenterRad, latCenterRad_cos, EARTH_MEAN_DIAMETER);
+    }
+
+    private void fillBlock(int doc) {
+      blockStart = doc;
+      blockEnd = Math.min(doc + BLOCK_SIZE, maxDoc);
+      blockSize = 0;
+      // when sorting by decreasing distance, the points outside of the box are the competitive ones
+      boolean useBox = hasBox && !reversed;
+      for (int d = blockStart; d < blockEnd; d++) {
+        if (d == doc || !useBox || inBox(pointVals.longVal(d))) {
+          blockDocs[blockSize++] = d;
+        }
+      }
+      distanceVals.fillDoubles(blockDocs, blockSize, blockDistances);
+    }
+
+    @Override
+    public int compare(int slot1, int slot2) {
+      return Double.compare(values[slot1], values[slot2]);
+    }
+
+    @Override
+    public int compareBottom(int doc) {
+      if (hasBox && !inBox(pointVals.longVal(doc))) {
+        return -1;  // farther than the bottom
+      }
+      return Double.compare(bottom, distance(doc));
+    }
+
+    @Override
+    public void copy(int slot, int doc) {
+      values[slot] = distance(doc);
+    }
+
+    @Override
+    public FieldComparator setNextReader(AtomicReaderContext context) throws IOException {
+      pointVals = points.getPoints().getValues(fcontext, context);
+      distanceVals = getValues(fcontext, context);
+      maxDoc = context.reader().maxDoc();
+      blockStart = blockEnd = blockSize = 0;
+      return this;
+    }
+
+    @Override
+    public void setBottom(final int bottom) {
+      this.bottom = values[bottom];
+      double distDeg = DistanceUtils.dist2Degrees(this.bottom, DistanceUtils.EARTH_MEAN_RADIUS_KM) + BOX_MARGIN_DEGREES;
+      if (!(distDeg < 90)) {
+        hasBox = false;
+        return;
+      }
+      Rectangle box = DistanceUtils.calcBoxByDistFromPtDEG(latCenter, lonCenter, distDeg, SpatialContext.GEO, null);
+      latMin = LatLonPointType.encodeLat(box.getMinY());
+      latMax = LatLonPointType.encodeLat(box.getMaxY());
+      if (box.getCrossesDateLine()) {
+        lonMin = LatLonPointType.encodeLon(-180);
+        lonMax = LatLonPointType.encodeLon(box.getMaxX());
+        lon2Min = LatLonPointType.encodeLon(box.getMinX());
+        lon2Max = LatLonPointType.encodeLon(180);
+        lon2 = true;
+      } else {
+        lonMin = LatLonPointType.encodeLon(box.getMinX());
+        lonMax = LatLonPointType.encodeLon(box.getMaxX());
+        lon2 = false;
+      }
+      hasBox = true;
+    }
+
+    @Override
+    public void setTopValue(final Double value) {
+      this.topValue = value.doubleValue();
+    }
+
+    @Override
+    public Double value(int slot) {
+      return values[slot];
+    }
+
+    @Override
+    public int compareTop(int doc) {
+      return Double.compare(topValue, distance(doc));
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof LatLonPointDistanceFunction)) return false;
+    LatLonPointDistanceFunction other = (LatLonPointDistanceFunction) o;
+    return this.latCenter == other.latCenter
+        && this.lonCenter == other.lonCenter
+        && this.points.equals(other.points);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = points.hashCode();
+    long temp;
+    temp = Double.doubleToRawLongBits(latCenter);
+    result = 31 * result + (int) (temp ^ (temp >>> 32));
+    temp = Double.doubleToRawLongBits(lonCenter);
+    result = 31 * result + (int) (temp ^ (temp >>> 32));
+    return result;
+  }
+
+  @Override
+  public String description() {
+    return name() + '(' + points + ',' + latCenter + ',' + lonCenter + ')';
+  }
+}
@@ -0,0 +1,174 @@
+package org.apache.solr.search.function.valuesource;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.function.FuncValues;
+import org.apache.solr.search.function.ValueSource;
+import org.apache.solr.search.function.funcvalues.DoubleFuncValues;
+import org.apache.solr.search.function.funcvalues.FloatFuncValues;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+
+/**
+ * A function whose arithmetic (sum, product, div, pow, linear, recip, map, if, max, min and the math functions)
+ * has been compiled into a single generated {@link FuncValues} class.  Any other part of the function, such as
+ * field values or query(), is an input that is evaluated through its own FuncValues.
+ * <p/>
+ * Generated classes are cached by the shape of the function, so functions that differ only in their inputs or
+ * constants share the same class.  The compiled function produces exactly the same values as the original.
+ *
+ * @see #compile(ValueSource)
+ * @lucene.experimental
+ */
+public class CompiledValueSource extends ValueSource {
+  private final ValueSource source;
+  private final ValueSource[] inputs;
+  private final double[] constants;
+  private final Constructor<? extends FuncValues> constructor;
+  private final String shape;
+
+  /**
+   * Returns a compiled version of the function, or the function itself if there is nothing to compile.
+   */
+  public static ValueSource compile(ValueSource source) {
+    return ValueSourceCompiler.compile(source);
+  }
+
+  CompiledValueSource(ValueSource source, ValueSource[] inputs, double[] constants, Constructor<? extends FuncValues> constructor, String shape) {
+    this.source = source;
+    this.inputs = inputs;
+    this.constants = constants;
+    this.constructor = constructor;
+    this.shape = shape;
+  }
+
+  /** The original function */
+  public ValueSource getSource() {
+    return source;
+  }
+
+  /** The normalized expression the generated class was compiled from */
+  public String getShape() {
+    return shape;
+  }
+
+  @Override
+  public FuncValues getValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
+    FuncValues[] vals = new FuncValues[inputs.length];
+    for (int i=0; i<inputs.length; i++) {
+      vals[i] = inputs[i].getValues(context, readerContext);
+    }
+    try {
+      return constructor.newInstance(this, context, readerContext, vals, constants);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create compiled function " + description(), e);
+    }
+  }
+
+  @Override
+  public void createWeight(QueryContext context) throws IOException {
+    source.createWeight(context);
+  }
+
+  @Override
+  public String description() {
+    return source.description();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof CompiledValueSource)) return false;
+    return source.equals(((CompiledValueSource)o).source);
+  }
+
+  @Override
+  public int hashCode() {
+    return source.hashCode() + 0x636f6d70;
+  }
+
+
+  /**
+   * Implemented by the built-in math functions like sqrt, log and pow, which are compiled
+   * into calls to the corresponding {@link Math} method.
+   */
+  public interface MathFunction {
+    String name();
+
+    ValueSource[] getArgs();
+  }
+
+
+  /** Base class of generated classes for float functions. */
+  public static abstract class FloatValues extends FloatFuncValues {
+    private final CompiledValueSource compiled;
+    private final QueryContext context;
+    private final AtomicReaderContext readerContext;
+    private FuncValues interpreted;
+
+    public FloatValues(CompiledValueSource compiled, QueryContext context, AtomicReaderContext readerContext) {
+      super(compiled.source);
+      this.compiled = compiled;
+      this.context = context;
+      this.readerContext = readerContext;
+    }
+
+    @Override
+    public String toString(int doc) {
+      // the generated code doesn't keep the intermediate results, so explain with the original function
+      if (interpreted == null) {
+        interpreted = compiled.interpret(context, readerContext);
+      }
+      return interpreted.toString(doc);
+    }
+  }
+
+
+  /** Base class of generated classes for double functions. */
+  public static abstract class DoubleValues extends DoubleFuncValues {
+    private final CompiledValueSource compiled;
+    private final QueryContext context;
+    private final AtomicReaderContext readerContext;
+    private FuncValues interpreted;
+
+    public DoubleValues(CompiledValueSource compiled, QueryContext context, AtomicReaderContext readerContext) {
+      super(compiled.source);
+      this.compiled = compiled;
+      this.context = context;
+      this.readerContext = readerContext;
+    }
+
+    @Override
+    public String toString(int doc) {
+      if (interpreted == null) {
+        interpreted = compiled.interpret(context, readerContext);
+      }
+      return interpreted.toString(doc);
+    }
+  }
+
+  private FuncValues interpret(QueryContext context, AtomicReaderContext readerContext) {
+    try {
+      return source.getValues(context, readerContext);
+    } catch (IOException e) {
+      throw new RuntimeException("caught exception evaluating " + description(), e);
+    }
+  }
+}
@@ -31,9 +31,9 @@ import java.io.IOException;
  * returns the value of the <code>trueSource</code> or <code>falseSource</code> function.
  */
 public class IfFunction extends BoolFunction {
-  private final ValueSource ifSource;
-  private final ValueSource trueSource;
-  private final ValueSource falseSource;
+  protected final ValueSource ifSource;
+  protected final ValueSource trueSource;
+  protected final ValueSource falseSource;
 
 
   public IfFunction(ValueSource ifSource, ValueSource trueSource, ValueSource falseSource) {
@@ -0,0 +1,123 @@
+package org.apache.solr.search.function.valuesource;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.solr.schema.LatLonPointType;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.function.FuncValues;
+import org.apache.solr.search.function.ValueSource;
+
+import java.io.IOException;
+
+/**
+ * The latitude and longitude of a {@link LatLonPointType} field, decoded from a source of packed points.
+ * Latitude comes first.
+ */
+public class LatLonPointValueSource extends MultiValueSource {
+  private final ValueSource points;
+
+  /**
+   * @param points a source whose {@link FuncValues#longVal(int)} are points packed with {@link LatLonPointType#encode}
+   */
+  public LatLonPointValueSource(ValueSource points) {
+    this.points = points;
+  }
+
+  /** The source of the packed points */
+  public ValueSource getPoints() {
+    return points;
+  }
+
+  @Override
+  public int dimension() {
+    return 2;
+  }
+
+  @Override
+  public void createWeight(QueryContext context) throws IOException {
+    points.createWeight(context);
+  }
+
+  @Override
+  public FuncValues getValues(QueryContext context, AtomicReaderContext readerContext) throws IOException {
+    final FuncValues vals = points.getValues(context, readerContext);
+    return new FuncValues() {
+      @Override
+      public void doubleVal(int doc, double[] latLon) {
+        long packed = vals.longVal(doc);
+        latLon[0] = LatLonPointType.decodeLat(packed);
+        latLon[1] = LatLonPointType.decodeLon(packed);
+      }
+
+      @Override
+      public void floatVal(int doc, float[] latLon) {
+        long packed = vals.longVal(doc);
+        latLon[0] = (float) LatLonPointType.decodeLat(packed);
+        latLon[1] = (float) LatLonPointType.decodeLon(packed);
+      }
+
+      @Override
+      public void strVal(int doc, String[] latLon) {
+        long packed = vals.longVal(doc);
+        latLon[0] = Double.toString(LatLonPointType.decodeLat(packed));
+        latLon[1] = Double.toString(LatLonPointType.decodeLon(packed));
+      }
+
+      @Override
+      public long longVal(int doc) {
+        return vals.longVal(doc);
+      }
+
+      @Override
+      public boolean exists(int doc) {
+        return vals.exists(doc);
+      }
+
+      @Override
+      public String strVal(int doc) {
+        return vals.strVal(doc);
+      }
+
+      @Override
+      public Object objectVal(int doc) {
+        return vals.strVal(doc);
+      }
+
+      @Override
+      public String toString(int doc) {
+        return description() + '=' + vals.strVal(doc);
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof LatLonPointValueSource && points.equals(((LatLonPointValueSource) o).points);
+  }
+
+  @Override
+  public int hashCode() {
+    return points.hashCode() * 31 + 0x6c6c;
+  }
+
+  @Override
+  public String description() {
+    return "latlon(" + points.description() + ')';
+  }
+}
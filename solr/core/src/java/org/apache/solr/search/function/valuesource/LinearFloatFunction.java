@@ -56,6 +56,14 @@ public class LinearFloatFunction extends ValueSource {
         return vals.floatVal(doc) * slope + intercept;
       }
 
+      @Override
+      public void fillFloats(int[] docs, int n, float[] out) {
+        vals.fillFloats(docs, n, out);
+        for (int i=0; i<n; i++) {
+          out[i] = out[i] * slope + intercept;
+        }
+      }
+
       @Override
       public String toString(int doc) {
         return slope + "*float(" + vals.toString(doc) + ")+" + intercept;
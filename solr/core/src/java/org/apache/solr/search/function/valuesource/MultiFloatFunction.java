@@ -45,6 +45,16 @@ public abstract class MultiFloatFunction extends ValueSource {
 
   abstract protected float func(int doc, FuncValues[] valsArr);
 
+  /**
+   * Batch version of {@link #func(int, FuncValues[])}, filling <code>out[0..n)</code> for the given docs.
+   * <code>scratch</code> has room for at least <code>n</code> values and may be used as a temporary buffer.
+   */
+  protected void func(int[] docs, int n, FuncValues[] valsArr, float[] out, float[] scratch) {
+    for (int i=0; i<n; i++) {
+      out[i] = func(docs[i], valsArr);
+    }
+  }
+
   @Override
   public String description() {
     StringBuilder sb = new StringBuilder();
@@ -70,11 +80,29 @@ public abstract class MultiFloatFunction extends ValueSource {
     }
 
     return new FloatFuncValues(this) {
+      private float[] scratch = new float[0];
+      private float[] floats = new float[0];
+
       @Override
       public float floatVal(int doc) {
         return func(doc, valsArr);
       }
 
+      @Override
+      public void fillFloats(int[] docs, int n, float[] out) {
+        if (scratch.length < n) scratch = new float[n];
+        func(docs, n, valsArr, out, scratch);
+      }
+
+      @Override
+      public void fillDoubles(int[] docs, int n, double[] out) {
+        if (floats.length < n) floats = new float[n];
+        fillFloats(docs, n, floats);
+        for (int i=0; i<n; i++) {
+          out[i] = floats[i];
+        }
+      }
+
       @Override
       public String toString(int doc) {
         StringBuilder sb = new StringBuilder();
@@ -20,6 +20,8 @@ package org.apache.solr.search.function.valuesource;
 import org.apache.solr.search.function.FuncValues;
 import org.apache.solr.search.function.ValueSource;
 
+import java.util.Arrays;
+
 /**
  * <code>ProductFloatFunction</code> returns the product of it's components.
  */
@@ -41,4 +43,15 @@ public class ProductFloatFunction extends MultiFloatFunction {
     }
     return val;
   }
+
+  @Override
+  protected void func(int[] docs, int n, FuncValues[] valsArr, float[] out, float[] scratch) {
+    Arrays.fill(out, 0, n, 1.0f);
+    for (FuncValues vals : valsArr) {
+      vals.fillFloats(docs, n, scratch);
+      for (int i=0; i<n; i++) {
+        out[i] *= scratch[i];
+      }
+    }
+  }
 }
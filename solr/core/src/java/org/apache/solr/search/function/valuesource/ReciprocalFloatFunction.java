@@ -66,6 +66,14 @@ public class ReciprocalFloatFunction extends ValueSource {
         return a / (m * vals.floatVal(doc) + b);
       }
 
+      @Override
+      public void fillFloats(int[] docs, int n, float[] out) {
+        vals.fillFloats(docs, n, out);
+        for (int i=0; i<n; i++) {
+          out[i] = a / (m * out[i] + b);
+        }
+      }
+
       @Override
       public String toString(int doc) {
         return Float.toString(a) + "/("
@@ -0,0 +1,459 @@
+package org.apache.solr.search.function.valuesource;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.spatial4j.core.distance.DistanceUtils;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.function.FuncValues;
+import org.apache.solr.search.function.ValueSource;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the arithmetic of a function into bytecode, see {@link CompiledValueSource}.
+ * <p/>
+ * Each node reads its arguments exactly the way the interpreted {@link FuncValues} do
+ * (floatVal, doubleVal or boolVal, and the same float/double conversions), so compiled
+ * and interpreted functions produce identical values.  Only the exact built-in classes
+ * are compiled, since a subclass may change the semantics.
+ */
+final class ValueSourceCompiler {
+
+  static final class Loader extends ClassLoader {
+    Loader(ClassLoader parent) {
+      super(parent);
+    }
+
+    public Class<? extends FuncValues> define(String className, byte[] bytecode) {
+      return defineClass(className, bytecode, 0, bytecode.length).asSubclass(FuncValues.class);
+    }
+  }
+
+  private static final int CLASSFILE_VERSION = Opcodes.V1_7;
+
+  // All generated classes have the same name since each has its own class loader.
+  private static final String COMPILED_CLASS = CompiledValueSource.class.getName() + "$Compiled";
+  private static final Type COMPILED_TYPE = Type.getObjectType(COMPILED_CLASS.replace('.', '/'));
+
+  private static final Type FUNC_VALUES_TYPE = Type.getType(FuncValues.class);
+  private static final Type FLOAT_VALUES_TYPE = Type.getType(CompiledValueSource.FloatValues.class);
+  private static final Type DOUBLE_VALUES_TYPE = Type.getType(CompiledValueSource.DoubleValues.class);
+  private static final Type MATH_TYPE = Type.getType(Math.class);
+
+  private static final Method
+      BASE_CTOR = Method.getMethod("void <init>(" + CompiledValueSource.class.getName() + ", "
+          + QueryContext.class.getName() + ", " + AtomicReaderContext.class.getName() + ")"),
+      COMPILED_CTOR = Method.getMethod("void <init>(" + CompiledValueSource.class.getName() + ", "
+          + QueryContext.class.getName() + ", " + AtomicReaderContext.class.getName() + ", "
+          + FuncValues.class.getName() + "[], double[])"),
+      FLOAT_VAL = Method.getMethod("float floatVal(int)"),
+      DOUBLE_VAL = Method.getMethod("double doubleVal(int)"),
+      BOOL_VAL = Method.getMethod("boolean boolVal(int)"),
+      FLOAT_MAX = Method.getMethod("float max(float, float)"),
+      FLOAT_MIN = Method.getMethod("float min(float, float)"),
+      POW = Method.getMethod("double pow(double, double)");
+
+  // the math functions of ValueSourceParser, all of which operate on doubles
+  private static final Map<String,Method> MATH_FUNCTIONS = new HashMap<>();
+  static {
+    String[] unary = {"sqrt", "cbrt", "exp", "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh", "ceil", "floor", "rint"};
+    for (String name : unary) {
+      MATH_FUNCTIONS.put(name, Method.getMethod("double " + name + "(double)"));
+    }
+    MATH_FUNCTIONS.put("log", Method.getMethod("double log10(double)"));
+    MATH_FUNCTIONS.put("ln", Method.getMethod("double log(double)"));
+    MATH_FUNCTIONS.put("pow", POW);
+    MATH_FUNCTIONS.put("hypot", Method.getMethod("double hypot(double, double)"));
+    MATH_FUNCTIONS.put("atan2", Method.getMethod("double atan2(double, double)"));
+  }
+
+  private static final int MAX_CACHED_CLASSES = 1000;
+  private static final int MAX_SOURCE_LENGTH = 16384;
+
+  // generated classes by shape
+  private static final Map<String, Constructor<? extends FuncValues>> cache =
+      new LinkedHashMap<String, Constructor<? extends FuncValues>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Constructor<? extends FuncValues>> eldest) {
+          return size() > MAX_CACHED_CLASSES;
+        }
+      };
+
+
+  static ValueSource compile(ValueSource source) {
+    Type type = rootType(source);
+    if (type == null) return source;
+
+    ValueSourceCompiler compiler = new ValueSourceCompiler();
+    compiler.visit(source, type);
+    String shape = compiler.shape.toString();
+
+    Constructor<? extends FuncValues> constructor;
+    synchronized (cache) {
+      constructor = cache.get(shape);
+      if (constructor == null) {
+        constructor = compiler.generate(source, type);
+        cache.put(shape, constructor);
+      }
+    }
+
+    double[] constants = new double[compiler.constants.size()];
+    for (int i=0; i<constants.length; i++) {
+      constants[i] = compiler.constants.get(i);
+    }
+    ValueSource[] inputs = compiler.inputs.toArray(new ValueSource[compiler.inputs.size()]);
+    return new CompiledValueSource(source, inputs, constants, constructor, shape);
+  }
+
+  /** The type of the function's value, or null if it isn't worth compiling */
+  private static Type rootType(ValueSource vs) {
+    Class<?> c = vs.getClass();
+    if (c == SumFloatFunction.class || c == ProductFloatFunction.class
+        || c == MaxFloatFunction.class || c == MinFloatFunction.class
+        || c == DivFloatFunction.class || c == PowFloatFunction.class
+        || c == LinearFloatFunction.class || c == ReciprocalFloatFunction.class
+        || c == RangeMapFloatFunction.class) {
+      return Type.FLOAT_TYPE;
+    }
+    if (isMathFunction(vs)) {
+      return Type.DOUBLE_TYPE;
+    }
+    // if() returns a plain FuncValues, and there's nothing to gain for constants or inputs
+    return null;
+  }
+
+  private static boolean isMathFunction(ValueSource vs) {
+    if (!(vs instanceof CompiledValueSource.MathFunction)) return false;
+    CompiledValueSource.MathFunction f = (CompiledValueSource.MathFunction)vs;
+    String name = f.name();
+    int nargs = f.getArgs().length;
+    if (name.equals("rad") || name.equals("deg")) return nargs == 1;
+    Method method = MATH_FUNCTIONS.get(name);
+    return method != null && method.getArgumentTypes().length == nargs;
+  }
+
+
+  private final StringBuilder shape = new StringBuilder();
+  private final List<ValueSource> inputs = new ArrayList<>();
+  private final List<Double> constants = new ArrayList<>();
+  private final List<Type> constantTypes = new ArrayList<>();
+  private GeneratorAdapter gen;  // null while only determining the shape
+
+  private ValueSourceCompiler() {
+  }
+
+  private Constructor<? extends FuncValues> generate(ValueSource source, Type type) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+    Type superType = type == Type.FLOAT_TYPE ? FLOAT_VALUES_TYPE : DOUBLE_VALUES_TYPE;
+
+    classWriter.visit(CLASSFILE_VERSION,
+        Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+        COMPILED_TYPE.getInternalName(), null, superType.getInternalName(), null);
+    // shows up as the source file name in stack traces
+    String sourceText = shape.length() <= MAX_SOURCE_LENGTH ? shape.toString() : shape.substring(0, MAX_SOURCE_LENGTH - 3) + "...";
+    classWriter.visitSource(sourceText, null);
+
+    for (int i=0; i<inputs.size(); i++) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "in" + i, FUNC_VALUES_TYPE.getDescriptor(), null, null).visitEnd();
+    }
+    for (int i=0; i<constants.size(); i++) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "c" + i, constantTypes.get(i).getDescriptor(), null, null).visitEnd();
+    }
+
+    GeneratorAdapter constructor = new GeneratorAdapter(Opcodes.ACC_PUBLIC, COMPILED_CTOR, null, null, classWriter);
+    constructor.loadThis();
+    constructor.loadArg(0);
+    constructor.loadArg(1);
+    constructor.loadArg(2);
+    constructor.invokeConstructor(superType, BASE_CTOR);
+    for (int i=0; i<inputs.size(); i++) {
+      constructor.loadThis();
+      constructor.loadArg(3);
+      constructor.push(i);
+      constructor.arrayLoad(FUNC_VALUES_TYPE);
+      constructor.putField(COMPILED_TYPE, "in" + i, FUNC_VALUES_TYPE);
+    }
+    for (int i=0; i<constants.size(); i++) {
+      constructor.loadThis();
+      constructor.loadArg(4);
+      constructor.push(i);
+      constructor.arrayLoad(Type.DOUBLE_TYPE);
+      constructor.cast(Type.DOUBLE_TYPE, constantTypes.get(i));
+      constructor.putField(COMPILED_TYPE, "c" + i, constantTypes.get(i));
+    }
+    constructor.returnValue();
+    constructor.endMethod();
+
+    // walk the function again, this time generating code
+    shape.setLength(0);
+    inputs.clear();
+    constants.clear();
+    constantTypes.clear();
+    gen = new GeneratorAdapter(Opcodes.ACC_PUBLIC, type == Type.FLOAT_TYPE ? FLOAT_VAL : DOUBLE_VAL, null, null, classWriter);
+    visit(source, type);
+    gen.returnValue();
+    gen.endMethod();
+
+    classWriter.visitEnd();
+
+    try {
+      Class<? extends FuncValues> clazz = new Loader(CompiledValueSource.class.getClassLoader())
+          .define(COMPILED_CLASS, classWriter.toByteArray());
+      return clazz.getConstructor(CompiledValueSource.class, QueryContext.class, AtomicReaderContext.class, FuncValues[].class, double[].class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("An internal error occurred compiling " + source.description(), e);
+    }
+  }
+
+  /**
+   * Appends vs to the shape and, when generating, emits code that leaves its value
+   * on the stack as the type the parent function reads it as.
+   */
+  private void visit(ValueSource vs, Type want) {
+    Class<?> c = vs.getClass();
+
+    if (c == ConstValueSource.class) {
+      constant(Type.FLOAT_TYPE, ((ConstValueSource)vs).getFloat());
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == DoubleConstValueSource.class) {
+      constant(Type.DOUBLE_TYPE, ((DoubleConstValueSource)vs).getDouble());
+      cast(Type.DOUBLE_TYPE, want);
+
+    } else if (c == SumFloatFunction.class || c == ProductFloatFunction.class) {
+      boolean sum = c == SumFloatFunction.class;
+      shape.append(sum ? "sum(" : "product(");
+      if (gen != null) gen.push(sum ? 0.0f : 1.0f);
+      ValueSource[] sources = ((MultiFloatFunction)vs).sources;
+      for (int i=0; i<sources.length; i++) {
+        if (i > 0) shape.append(',');
+        visit(sources[i], Type.FLOAT_TYPE);
+        op(sum ? Opcodes.FADD : Opcodes.FMUL);
+      }
+      shape.append(')');
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == MaxFloatFunction.class || c == MinFloatFunction.class) {
+      boolean max = c == MaxFloatFunction.class;
+      shape.append(max ? "max(" : "min(");
+      ValueSource[] sources = ((MultiFloatFunction)vs).sources;
+      if (gen != null) {
+        gen.push(sources.length == 0 ? 0.0f : (max ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY));
+      }
+      for (int i=0; i<sources.length; i++) {
+        if (i > 0) shape.append(',');
+        visit(sources[i], Type.FLOAT_TYPE);
+        if (gen != null) gen.invokeStatic(MATH_TYPE, max ? FLOAT_MAX : FLOAT_MIN);
+      }
+      shape.append(')');
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == DivFloatFunction.class) {
+      DualFloatFunction f = (DualFloatFunction)vs;
+      shape.append("div(");
+      visit(f.a, Type.FLOAT_TYPE);
+      shape.append(',');
+      visit(f.b, Type.FLOAT_TYPE);
+      shape.append(')');
+      op(Opcodes.FDIV);
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == PowFloatFunction.class) {
+      DualFloatFunction f = (DualFloatFunction)vs;
+      shape.append("fpow(");
+      visit(f.a, Type.FLOAT_TYPE);
+      cast(Type.FLOAT_TYPE, Type.DOUBLE_TYPE);
+      shape.append(',');
+      visit(f.b, Type.FLOAT_TYPE);
+      cast(Type.FLOAT_TYPE, Type.DOUBLE_TYPE);
+      shape.append(')');
+      if (gen != null) gen.invokeStatic(MATH_TYPE, POW);
+      cast(Type.DOUBLE_TYPE, Type.FLOAT_TYPE);
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == LinearFloatFunction.class) {
+      // x * slope + intercept
+      LinearFloatFunction f = (LinearFloatFunction)vs;
+      shape.append("linear(");
+      visit(f.source, Type.FLOAT_TYPE);
+      shape.append(',');
+      constant(Type.FLOAT_TYPE, f.slope);
+      op(Opcodes.FMUL);
+      shape.append(',');
+      constant(Type.FLOAT_TYPE, f.intercept);
+      op(Opcodes.FADD);
+      shape.append(')');
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == ReciprocalFloatFunction.class) {
+      // a / (m * x + b)
+      ReciprocalFloatFunction f = (ReciprocalFloatFunction)vs;
+      shape.append("recip(");
+      constant(Type.FLOAT_TYPE, f.a);
+      shape.append(',');
+      constant(Type.FLOAT_TYPE, f.m);
+      shape.append(',');
+      visit(f.source, Type.FLOAT_TYPE);
+      op(Opcodes.FMUL);
+      shape.append(',');
+      constant(Type.FLOAT_TYPE, f.b);
+      op(Opcodes.FADD);
+      op(Opcodes.FDIV);
+      shape.append(')');
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == RangeMapFloatFunction.class) {
+      // (val >= min && val <= max) ? target : (default == null ? val : default)
+      RangeMapFloatFunction f = (RangeMapFloatFunction)vs;
+      shape.append("map(");
+      visit(f.source, Type.FLOAT_TYPE);
+      int val = -1;
+      Label outside = null, end = null;
+      if (gen != null) {
+        val = gen.newLocal(Type.FLOAT_TYPE);
+        gen.storeLocal(val);
+        outside = new Label();
+        end = new Label();
+        gen.loadLocal(val);
+      }
+      shape.append(',');
+      constant(Type.FLOAT_TYPE, f.min);
+      if (gen != null) {
+        // NaN compares as less, so it's outside of the range
+        gen.visitInsn(Opcodes.FCMPL);
+        gen.visitJumpInsn(Opcodes.IFLT, outside);
+        gen.loadLocal(val);
+      }
+      shape.append(',');
+      constant(Type.FLOAT_TYPE, f.max);
+      if (gen != null) {
+        gen.visitInsn(Opcodes.FCMPG);
+        gen.visitJumpInsn(Opcodes.IFGT, outside);
+      }
+      shape.append(',');
+      visit(f.target, Type.FLOAT_TYPE);
+      if (gen != null) {
+        gen.goTo(end);
+        gen.mark(outside);
+      }
+      if (f.defaultVal == null) {
+        if (gen != null) gen.loadLocal(val);
+      } else {
+        shape.append(',');
+        visit(f.defaultVal, Type.FLOAT_TYPE);
+      }
+      if (gen != null) gen.mark(end);
+      shape.append(')');
+      cast(Type.FLOAT_TYPE, want);
+
+    } else if (c == IfFunction.class) {
+      // the branches are read the same way if() itself is read
+      IfFunction f = (IfFunction)vs;
+      shape.append("if(");
+      input(f.ifSource, Type.BOOLEAN_TYPE);
+      Label otherwise = null, end = null;
+      if (gen != null) {
+        otherwise = new Label();
+        end = new Label();
+        gen.ifZCmp(GeneratorAdapter.EQ, otherwise);
+      }
+      shape.append(',');
+      visit(f.trueSource, want);
+      if (gen != null) {
+        gen.goTo(end);
+        gen.mark(otherwise);
+      }
+      shape.append(',');
+      visit(f.falseSource, want);
+      if (gen != null) gen.mark(end);
+      shape.append(')');
+
+    } else if (isMathFunction(vs)) {
+      CompiledValueSource.MathFunction f = (CompiledValueSource.MathFunction)vs;
+      String name = f.name();
+      ValueSource[] args = f.getArgs();
+      shape.append(name).append('(');
+      for (int i=0; i<args.length; i++) {
+        if (i > 0) shape.append(',');
+        visit(args[i], Type.DOUBLE_TYPE);
+      }
+      shape.append(')');
+      if (gen != null) {
+        if (name.equals("rad")) {
+          gen.push(DistanceUtils.DEGREES_TO_RADIANS);
+          gen.visitInsn(Opcodes.DMUL);
+        } else if (name.equals("deg")) {
+          gen.push(DistanceUtils.RADIANS_TO_DEGREES);
+          gen.visitInsn(Opcodes.DMUL);
+        } else {
+          gen.invokeStatic(MATH_TYPE, MATH_FUNCTIONS.get(name));
+        }
+      }
+      cast(Type.DOUBLE_TYPE, want);
+
+    } else {
+      input(vs, want);
+    }
+  }
+
+  /** A function evaluated by its own FuncValues */
+  private void input(ValueSource vs, Type want) {
+    int idx = inputs.size();
+    inputs.add(vs);
+    shape.append('$').append(want.getDescriptor());
+    if (gen != null) {
+      gen.loadThis();
+      gen.getField(COMPILED_TYPE, "in" + idx, FUNC_VALUES_TYPE);
+      gen.loadArg(0);
+      Method method = want == Type.FLOAT_TYPE ? FLOAT_VAL : want == Type.DOUBLE_TYPE ? DOUBLE_VAL : BOOL_VAL;
+      gen.invokeVirtual(FUNC_VALUES_TYPE, method);
+    }
+  }
+
+  /** Constants are kept in fields rather than in the code so that the class can be shared */
+  private void constant(Type type, double value) {
+    int idx = constants.size();
+    constants.add(value);
+    constantTypes.add(type);
+    shape.append('#').append(type.getDescriptor());
+    if (gen != null) {
+      gen.loadThis();
+      gen.getField(COMPILED_TYPE, "c" + idx, type);
+    }
+  }
+
+  private void op(int opcode) {
+    if (gen != null) gen.visitInsn(opcode);
+  }
+
+  private void cast(Type from, Type to) {
+    if (gen != null) gen.cast(from, to);
+  }
+}
@@ -161,17 +161,17 @@ public class CommandHandler implements AutoCloseable {
 
   private DocSet computeGroupedDocSet(Query query, ProcessedFilter filter, List<Collector> collectors) throws IOException {
     Command firstCommand = commands.get(0);
-    AbstractAllGroupHeadsCollector termAllGroupHeadsCollector =
-        TermAllGroupHeadsCollector.create(firstCommand.getKey(), firstCommand.getSortWithinGroup());
+    AbstractAllGroupHeadsCollector allGroupHeadsCollector =
+        GlobalOrdAllGroupHeadsCollector.create(searcher, firstCommand.getKey(), firstCommand.getSortWithinGroup());
     if (collectors.isEmpty()) {
-      searchWithTimeLimiter(query, filter, termAllGroupHeadsCollector);
+      searchWithTimeLimiter(query, filter, allGroupHeadsCollector);
     } else {
-      collectors.add(termAllGroupHeadsCollector);
+      collectors.add(allGroupHeadsCollector);
       searchWithTimeLimiter(query, filter, MultiCollector.wrap(collectors.toArray(new Collector[collectors.size()])));
     }
 
     int maxDoc = searcher.maxDoc();
-    FixedBitSet fbs = termAllGroupHeadsCollector.retrieveGroupHeads(maxDoc);
+    FixedBitSet fbs = allGroupHeadsCollector.retrieveGroupHeads(maxDoc);
     return new BitDocSet(fbs);
   }
 
@@ -0,0 +1,236 @@
+package org.apache.solr.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collects the most relevant document of each group, for a group field with single valued sorted doc
+ * values, like {@link TermAllGroupHeadsCollector}, but finds the head of the group of a document by its
+ * {@link GlobalOrdinals global ordinal} in an array, rather than by its value or segment ordinal.
+ *
+ * @lucene.experimental
+ */
+public abstract class GlobalOrdAllGroupHeadsCollector<GH extends AbstractAllGroupHeadsCollector.GroupHead<Integer>> extends AbstractAllGroupHeadsCollector<GH> {
+
+  final GlobalOrdinals ordinals;
+  final List<GH> collectedGroups = new ArrayList<>();
+  private int[] headIndexes;    // global ord + 1 -> index of the group head in collectedGroups + 1, or 0
+
+  AtomicReaderContext readerContext;
+  private SortedDocValues index;
+  private GlobalOrdLeafValues leafOrds;
+
+  /**
+   * Returns a {@link GlobalOrdAllGroupHeadsCollector} if the group field has single valued sorted doc
+   * values in all segments of the searcher, and a {@link TermAllGroupHeadsCollector} otherwise.
+   */
+  public static AbstractAllGroupHeadsCollector<?> create(SolrIndexSearcher searcher, String groupField, Sort sortWithinGroup) throws IOException {
+    GlobalOrdinals ordinals = GlobalOrdinals.get(searcher, groupField);
+    if (ordinals == null || !ordinals.isSingleValued()) {
+      return TermAllGroupHeadsCollector.create(groupField, sortWithinGroup);
+    }
+    SortField[] sortFields = sortWithinGroup.getSort();
+    if (sortFields.length == 1 && sortFields[0].getType() == SortField.Type.SCORE && !sortFields[0].getReverse()) {
+      return new ScoreAllGroupHeadsCollector(ordinals);
+    }
+    return new GeneralAllGroupHeadsCollector(ordinals, sortWithinGroup);
+  }
+
+  GlobalOrdAllGroupHeadsCollector(GlobalOrdinals ordinals, int numberOfSorts) {
+    super(numberOfSorts);
+    this.ordinals = ordinals;
+    this.headIndexes = ordinals.takeOrdArray();
+  }
+
+  /** Creates the head of a group, whose first document is doc */
+  abstract GH newGroupHead(int key, int doc) throws IOException;
+
+  @Override
+  protected void retrieveGroupHeadAndAddIfNotExist(int doc) throws IOException {
+    final int ord = index.getOrd(doc);
+    final int key = ord == -1 ? 0 : leafOrds.getGlobalOrd(ord) + 1;
+    final int headIndex = headIndexes[key];
+    if (headIndex == 0) {
+      GH groupHead = newGroupHead(key, doc);
+      collectedGroups.add(groupHead);
+      headIndexes[key] = collectedGroups.size();
+      temporalResult.groupHead = groupHead;
+      temporalResult.stop = true;
+    } else {
+      temporalResult.groupHead = collectedGroups.get(headIndex - 1);
+      temporalResult.stop = false;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The array of head indexes is given back for reuse, so no more documents can be collected.
+   */
+  @Override
+  protected Collection<GH> getCollectedGroupHeads() {
+    if (headIndexes != null) {
+      for (GH groupHead : collectedGroups) {
+        headIndexes[groupHead.groupValue] = 0;
+      }
+      ordinals.returnOrdArray(headIndexes);
+      headIndexes = null;
+    }
+    return collectedGroups;
+  }
+
+  @Override
+  public void setNextReader(AtomicReaderContext context) throws IOException {
+    readerContext = context;
+    index = DocValues.unwrapSingleton(ordinals.getSegmentValues(context));
+    leafOrds = ordinals.getLeafValues(context);
+  }
+
+
+  // Group heads by score, which only keep the score of their document
+  static class ScoreAllGroupHeadsCollector extends GlobalOrdAllGroupHeadsCollector<ScoreAllGroupHeadsCollector.GroupHead> {
+
+    private Scorer scorer;
+    private float score;    // the score of the document being collected, once compared
+
+    ScoreAllGroupHeadsCollector(GlobalOrdinals ordinals) {
+      super(ordinals, 1);
+      reversed[0] = 1;
+    }
+
+    @Override
+    GroupHead newGroupHead(int key, int doc) throws IOException {
+      return new GroupHead(key, doc + readerContext.docBase, scorer.score());
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      this.scorer = scorer;
+    }
+
+    class GroupHead extends AbstractAllGroupHeadsCollector.GroupHead<Integer> {
+
+      float headScore;
+
+      GroupHead(int key, int doc, float headScore) {
+        super(key, doc);
+        this.headScore = headScore;
+      }
+
+      @Override
+      protected int compare(int compIDX, int doc) throws IOException {
+        score = scorer.score();
+        return Float.compare(score, headScore);
+      }
+
+      @Override
+      protected void updateDocHead(int doc) throws IOException {
+        this.headScore = score;
+        this.doc = doc + readerContext.docBase;
+      }
+    }
+  }
+
+
+  // Group heads for any sort, with a comparator per sort field per group
+  static class GeneralAllGroupHeadsCollector extends GlobalOrdAllGroupHeadsCollector<GeneralAllGroupHeadsCollector.GroupHead> {
+
+    private final Sort sortWithinGroup;
+    private Scorer scorer;
+
+    GeneralAllGroupHeadsCollector(GlobalOrdinals ordinals, Sort sortWithinGroup) {
+      super(ordinals, sortWithinGroup.getSort().length);
+      this.sortWithinGroup = sortWithinGroup;
+      final SortField[] sortFields = sortWithinGroup.getSort();
+      for (int i = 0; i < sortFields.length; i++) {
+        reversed[i] = sortFields[i].getReverse() ? -1 : 1;
+      }
+    }
+
+    @Override
+    GroupHead newGroupHead(int key, int doc) throws IOException {
+      return new GroupHead(key, doc);
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+      super.setNextReader(context);
+      for (GroupHead groupHead : collectedGroups) {
+        for (int i = 0; i < groupHead.comparators.length; i++) {
+          groupHead.comparators[i] = groupHead.comparators[i].setNextReader(context);
+        }
+      }
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      this.scorer = scorer;
+      for (GroupHead groupHead : collectedGroups) {
+        for (FieldComparator<?> comparator : groupHead.comparators) {
+          comparator.setScorer(scorer);
+        }
+      }
+    }
+
+    class GroupHead extends AbstractAllGroupHeadsCollector.GroupHead<Integer> {
+
+      final FieldComparator<?>[] comparators;
+
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      GroupHead(int key, int doc) throws IOException {
+        super(key, doc + readerContext.docBase);
+        final SortField[] sortFields = sortWithinGroup.getSort();
+        comparators = new FieldComparator[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+          comparators[i] = sortFields[i].getComparator(1, i).setNextReader(readerContext);
+          comparators[i].setScorer(scorer);
+          comparators[i].copy(0, doc);
+          comparators[i].setBottom(0);
+        }
+      }
+
+      @Override
+      protected int compare(int compIDX, int doc) throws IOException {
+        return comparators[compIDX].compareBottom(doc);
+      }
+
+      @Override
+      protected void updateDocHead(int doc) throws IOException {
+        for (FieldComparator<?> comparator : comparators) {
+          comparator.copy(0, doc);
+          comparator.setBottom(0);
+        }
+        this.doc = doc + readerContext.docBase;
+      }
+    }
+  }
+}
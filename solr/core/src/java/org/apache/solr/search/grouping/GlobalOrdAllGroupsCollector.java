@@ -0,0 +1,126 @@
+package org.apache.solr.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A collector that collects all groups that match the
+ * query, for a group field with single valued sorted doc values.
+ * <p/>
+ * <p/>
+ * Implementation detail: the {@link GlobalOrdinals} of the groups
+ * are marked in a bitset, so that unlike {@link TermAllGroupsCollector}
+ * no group value is copied or looked up while collecting, and
+ * the number of groups is the cardinality of the bitset.  Group
+ * values are only looked up by {@link #getGroups()}.
+ *
+ * @lucene.experimental
+ */
+public class GlobalOrdAllGroupsCollector extends AbstractAllGroupsCollector<BytesRef> {
+
+  private final GlobalOrdinals ordinals;
+  private final FixedBitSet groupOrds;
+  private final List<AtomicReaderContext> readerContexts = new ArrayList<>();
+  private boolean missing;
+
+  private SortedDocValues index;
+  private GlobalOrdLeafValues leafOrds;
+
+  /**
+   * Returns a {@link GlobalOrdAllGroupsCollector} if the group field has single valued
+   * sorted doc values in all segments of the searcher, and a {@link TermAllGroupsCollector}
+   * otherwise.
+   */
+  public static AbstractAllGroupsCollector<BytesRef> create(SolrIndexSearcher searcher, String groupField) throws IOException {
+    GlobalOrdinals ordinals = GlobalOrdinals.get(searcher, groupField);
+    if (ordinals == null || !ordinals.isSingleValued()) {
+      return new TermAllGroupsCollector(groupField);
+    }
+    return new GlobalOrdAllGroupsCollector(ordinals);
+  }
+
+  /**
+   * Constructs a {@link GlobalOrdAllGroupsCollector}.
+   *
+   * @param ordinals The global ordinals of a single valued group field
+   */
+  public GlobalOrdAllGroupsCollector(GlobalOrdinals ordinals) {
+    this.ordinals = ordinals;
+    this.groupOrds = ordinals.takeBits();
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    int ord = index.getOrd(doc);
+    if (ord == -1) {
+      missing = true;
+    } else {
+      groupOrds.set(leafOrds.getGlobalOrd(ord));
+    }
+  }
+
+  @Override
+  public int getGroupCount() {
+    return groupOrds.cardinality() + (missing ? 1 : 0);
+  }
+
+  @Override
+  public Collection<BytesRef> getGroups() {
+    List<BytesRef> groups = new ArrayList<>(getGroupCount());
+    if (missing) {
+      groups.add(null);
+    }
+    // global ordinals have no value, look the values up in the segments that were collected
+    FixedBitSet remaining = groupOrds.clone();
+    try {
+      for (AtomicReaderContext readerContext : readerContexts) {
+        SortedDocValues values = DocValues.unwrapSingleton(ordinals.getSegmentValues(readerContext));
+        GlobalOrdLeafValues ords = ordinals.getLeafValues(readerContext);
+        for (int ord = 0; ord < ords.getValueCount(); ord++) {
+          int globalOrd = ords.getGlobalOrd(ord);
+          if (remaining.get(globalOrd)) {
+            remaining.clear(globalOrd);
+            groups.add(BytesRef.deepCopyOf(values.lookupOrd(ord)));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return groups;
+  }
+
+  @Override
+  public void setNextReader(AtomicReaderContext context) throws IOException {
+    index = DocValues.unwrapSingleton(ordinals.getSegmentValues(context));
+    leafOrds = ordinals.getLeafValues(context);
+    readerContexts.add(context);
+  }
+}
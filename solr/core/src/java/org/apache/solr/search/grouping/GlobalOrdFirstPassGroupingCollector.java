@@ -0,0 +1,345 @@
+package org.apache.solr.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * The first pass of grouping by a field with single valued sorted doc values, which finds the top
+ * groups like {@link TermFirstPassGroupingCollector}, but finds the group of a document by its
+ * {@link GlobalOrdinals global ordinal} in an array, rather than by looking up its value and
+ * hashing it.  Group values are only looked up by {@link #getTopGroups}.
+ *
+ * @lucene.experimental
+ */
+public class GlobalOrdFirstPassGroupingCollector extends Collector {
+
+  private final GlobalOrdinals ordinals;
+  private final Sort groupSort;
+  private final FieldComparator<?>[] comparators;
+  private final int[] reversed;
+  private final int topNGroups;
+  private final int compIDXEnd;
+  private final Group[] groups;
+  private int numGroups;
+  private int[] groupIndexes;     // global ord + 1 -> index of the group in groups + 1, or 0
+
+  // Set once we reach topNGroups unique groups:
+  private TreeSet<Group> orderedGroups;
+  private int docBase;
+  private int spareSlot;
+
+  private SortedDocValues index;
+  private GlobalOrdLeafValues leafOrds;
+
+  /**
+   * Returns a {@link GlobalOrdFirstPassGroupingCollector} if the group field has single valued
+   * sorted doc values in all segments of the searcher, or null otherwise.
+   */
+  public static GlobalOrdFirstPassGroupingCollector create(SolrIndexSearcher searcher, String groupField, Sort groupSort, int topNGroups) throws IOException {
+    GlobalOrdinals ordinals = GlobalOrdinals.get(searcher, groupField);
+    if (ordinals == null || !ordinals.isSingleValued()) {
+      return null;
+    }
+    return new GlobalOrdFirstPassGroupingCollector(ordinals, groupSort, topNGroups);
+  }
+
+  /**
+   * Create the first pass collector.
+   *
+   * @param ordinals   The global ordinals of a single valued group field
+   * @param groupSort  The {@link Sort} used to sort the groups, see {@link AbstractFirstPassGroupingCollector}
+   * @param topNGroups How many top groups to keep.
+   * @throws IOException If I/O related errors occur
+   */
+  public GlobalOrdFirstPassGroupingCollector(GlobalOrdinals ordinals, Sort groupSort, int topNGroups) throws IOException {
+    if (topNGroups < 1) {
+      throw new IllegalArgumentException("topNGroups must be >= 1 (got " + topNGroups + ")");
+    }
+    this.ordinals = ordinals;
+    this.groupSort = groupSort;
+    this.topNGroups = topNGroups;
+
+    final SortField[] sortFields = groupSort.getSort();
+    comparators = new FieldComparator[sortFields.length];
+    compIDXEnd = comparators.length - 1;
+    reversed = new int[sortFields.length];
+    for (int i = 0; i < sortFields.length; i++) {
+      final SortField sortField = sortFields[i];
+      // use topNGroups + 1 so we have a spare slot to use for comparing (tracked by this.spareSlot):
+      comparators[i] = sortField.getComparator(topNGroups + 1, i);
+      reversed[i] = sortField.getReverse() ? -1 : 1;
+    }
+
+    spareSlot = topNGroups;
+    groups = new Group[Math.min(topNGroups, ordinals.getNumGlobalOrds() + 1)];
+    groupIndexes = ordinals.takeOrdArray();
+  }
+
+  /**
+   * Returns top groups, starting from offset, like {@link AbstractFirstPassGroupingCollector#getTopGroups}.
+   * The array of group indexes is given back for reuse, so no more documents can be collected.
+   *
+   * @param groupOffset The offset in the collected groups
+   * @param fillFields  Whether to fill to {@link SearchGroup#sortValues}
+   * @return top groups, starting from offset
+   */
+  public Collection<SearchGroup<BytesRef>> getTopGroups(int groupOffset, boolean fillFields) {
+    if (groupOffset < 0) {
+      throw new IllegalArgumentException("groupOffset must be >= 0 (got " + groupOffset + ")");
+    }
+    release();
+
+    if (numGroups <= groupOffset) {
+      return null;
+    }
+
+    if (orderedGroups == null) {
+      buildSortedSet();
+    }
+
+    final Collection<SearchGroup<BytesRef>> result = new ArrayList<>();
+    int upto = 0;
+    final int sortFieldCount = groupSort.getSort().length;
+    for (Group group : orderedGroups) {
+      if (upto++ < groupOffset) {
+        continue;
+      }
+      SearchGroup<BytesRef> searchGroup = new SearchGroup<>();
+      searchGroup.groupValue = group.key == 0 ? null : ordinals.lookupGlobalOrd(group.key - 1);
+      if (fillFields) {
+        searchGroup.sortValues = new Object[sortFieldCount];
+        for (int sortFieldIDX = 0; sortFieldIDX < sortFieldCount; sortFieldIDX++) {
+          searchGroup.sortValues[sortFieldIDX] = comparators[sortFieldIDX].value(group.comparatorSlot);
+        }
+      }
+      result.add(searchGroup);
+    }
+    return result;
+  }
+
+  /** Zeroes the entries of the collected groups, and gives the array of group indexes back. */
+  private void release() {
+    if (groupIndexes == null) return;
+    for (int i = 0; i < numGroups; i++) {
+      groupIndexes[groups[i].key] = 0;
+    }
+    ordinals.returnOrdArray(groupIndexes);
+    groupIndexes = null;
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) throws IOException {
+    for (FieldComparator<?> comparator : comparators) {
+      comparator.setScorer(scorer);
+    }
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    // Once we have collected N groups, the document has to compete with the bottom group
+    // whatever its group is, see AbstractFirstPassGroupingCollector
+    if (orderedGroups != null) {
+      for (int compIDX = 0; ; compIDX++) {
+        final int c = reversed[compIDX] * comparators[compIDX].compareBottom(doc);
+        if (c < 0) {
+          // Definitely not competitive. So don't even bother to continue
+          return;
+        } else if (c > 0) {
+          // Definitely competitive.
+          break;
+        } else if (compIDX == compIDXEnd) {
+          // Here c=0. If we're at the last comparator, this doc is not
+          // competitive, since docs are visited in doc Id order, which means
+          // this doc cannot compete with any other document in the queue.
+          return;
+        }
+      }
+    }
+
+    final int ord = index.getOrd(doc);
+    final int key = ord == -1 ? 0 : leafOrds.getGlobalOrd(ord) + 1;
+    final int groupIndex = groupIndexes[key];
+
+    if (groupIndex == 0) {
+      // First time we are seeing this group, or, we've seen
+      // it before but it fell out of the top N and is now
+      // coming back
+
+      if (numGroups < topNGroups) {
+        // Still in startup transient: we have not
+        // seen enough unique groups to start pruning them
+        Group group = new Group(numGroups);
+        group.key = key;
+        group.comparatorSlot = numGroups;
+        group.topDoc = docBase + doc;
+        for (FieldComparator<?> fc : comparators) {
+          fc.copy(group.comparatorSlot, doc);
+        }
+        groups[numGroups++] = group;
+        groupIndexes[key] = group.index + 1;
+
+        if (numGroups == topNGroups) {
+          // End of startup transient: we now have max
+          // number of groups; from here on we will drop
+          // bottom group when we insert new one:
+          buildSortedSet();
+        }
+        return;
+      }
+
+      // We already tested that the document is competitive, so replace
+      // the bottom group with this new group.
+      final Group bottomGroup = orderedGroups.pollLast();
+      groupIndexes[bottomGroup.key] = 0;
+      bottomGroup.key = key;
+      bottomGroup.topDoc = docBase + doc;
+      for (FieldComparator<?> fc : comparators) {
+        fc.copy(bottomGroup.comparatorSlot, doc);
+      }
+      groupIndexes[key] = bottomGroup.index + 1;
+      orderedGroups.add(bottomGroup);
+
+      final int lastComparatorSlot = orderedGroups.last().comparatorSlot;
+      for (FieldComparator<?> fc : comparators) {
+        fc.setBottom(lastComparatorSlot);
+      }
+      return;
+    }
+
+    // Update existing group:
+    final Group group = groups[groupIndex - 1];
+    for (int compIDX = 0; ; compIDX++) {
+      final FieldComparator<?> fc = comparators[compIDX];
+      fc.copy(spareSlot, doc);
+
+      final int c = reversed[compIDX] * fc.compare(group.comparatorSlot, spareSlot);
+      if (c < 0) {
+        // Definitely not competitive.
+        return;
+      } else if (c > 0) {
+        // Definitely competitive; set remaining comparators:
+        for (int compIDX2 = compIDX + 1; compIDX2 < comparators.length; compIDX2++) {
+          comparators[compIDX2].copy(spareSlot, doc);
+        }
+        break;
+      } else if (compIDX == compIDXEnd) {
+        // Here c=0. If we're at the last comparator, this doc is not
+        // competitive, since docs are visited in doc Id order.
+        return;
+      }
+    }
+
+    // Remove before updating the group since lookup is done via comparators
+    final Group prevLast;
+    if (orderedGroups != null) {
+      prevLast = orderedGroups.last();
+      orderedGroups.remove(group);
+    } else {
+      prevLast = null;
+    }
+
+    group.topDoc = docBase + doc;
+
+    // Swap slots
+    final int tmp = spareSlot;
+    spareSlot = group.comparatorSlot;
+    group.comparatorSlot = tmp;
+
+    // Re-add the changed group
+    if (orderedGroups != null) {
+      orderedGroups.add(group);
+      final Group newLast = orderedGroups.last();
+      // If we changed the value of the last group, or changed which group was last, then update bottom:
+      if (group == newLast || prevLast != newLast) {
+        for (FieldComparator<?> fc : comparators) {
+          fc.setBottom(newLast.comparatorSlot);
+        }
+      }
+    }
+  }
+
+  private void buildSortedSet() {
+    final Comparator<Group> comparator = new Comparator<Group>() {
+      @Override
+      public int compare(Group o1, Group o2) {
+        for (int compIDX = 0; ; compIDX++) {
+          FieldComparator<?> fc = comparators[compIDX];
+          final int c = reversed[compIDX] * fc.compare(o1.comparatorSlot, o2.comparatorSlot);
+          if (c != 0) {
+            return c;
+          } else if (compIDX == compIDXEnd) {
+            return o1.topDoc - o2.topDoc;
+          }
+        }
+      }
+    };
+
+    orderedGroups = new TreeSet<>(comparator);
+    for (int i = 0; i < numGroups; i++) {
+      orderedGroups.add(groups[i]);
+    }
+
+    for (FieldComparator<?> fc : comparators) {
+      fc.setBottom(orderedGroups.last().comparatorSlot);
+    }
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return false;
+  }
+
+  @Override
+  public void setNextReader(AtomicReaderContext readerContext) throws IOException {
+    docBase = readerContext.docBase;
+    for (int i = 0; i < comparators.length; i++) {
+      comparators[i] = comparators[i].setNextReader(readerContext);
+    }
+    index = DocValues.unwrapSingleton(ordinals.getSegmentValues(readerContext));
+    leafOrds = ordinals.getLeafValues(readerContext);
+  }
+
+  /** A collected group, which keeps its index in the groups when it is replaced by another group */
+  private static final class Group {
+    final int index;
+    int key;              // global ord + 1, or 0 for the documents without a value
+    int topDoc;
+    int comparatorSlot;
+
+    Group(int index) {
+      this.index = index;
+    }
+  }
+}
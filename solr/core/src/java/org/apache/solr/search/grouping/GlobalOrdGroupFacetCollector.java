@@ -0,0 +1,325 @@
+package org.apache.solr.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A collector that computes grouped facets from the {@link GlobalOrdinals} of a group field with single
+ * valued sorted doc values and of a facet field with sorted doc values.
+ * <p/>
+ * Each distinct pair of a group and a facet value is counted once, in a single pass over the matching
+ * documents: pairs of global ordinals are marked in a small bitset when there are few possible pairs,
+ * and buffered, then sorted and deduplicated, otherwise, so that memory grows with the pairs that are
+ * collected rather than with the number of values of the fields.  Unlike {@link TermGroupFacetCollector}
+ * no value is copied or looked up while collecting.  Since global ordinals are not in index order, the
+ * values of the counted ordinals are then merged from the segments, in index order.
+ *
+ * @lucene.experimental
+ */
+public class GlobalOrdGroupFacetCollector extends Collector {
+
+  // largest number of possible pairs that are marked in a bitset and counted in an array
+  private static final long MAX_BITSET_PAIRS = 1L << 16;
+
+  private final GlobalOrdinals groupOrdinals;
+  private final GlobalOrdinals facetOrdinals;
+  private final BytesRef facetPrefix;
+  private final BytesRef facetEndPrefix;
+  private final List<Segment> segments = new ArrayList<>();
+
+  // a pair is (groupOrd + 1) * numFacetSlots + (facetOrd + 1), 0 being the missing group or value
+  private final long numFacetSlots;
+  private final LongBitSet pairBits;
+  private int[] counts;           // taken from the facet ordinals, and given back once counted
+  private long[] pairs;
+  private int numPairs;
+
+  private SortedDocValues groupIndex;
+  private GlobalOrdLeafValues groupLeafOrds;
+  private Segment segment;
+
+  /**
+   * Returns a {@link GlobalOrdGroupFacetCollector} if the group field has single valued sorted doc values
+   * and the facet field has sorted doc values in all segments of the searcher, and <code>null</code>
+   * otherwise, in which case the values have to be collected by a {@link TermGroupFacetCollector}.
+   */
+  public static GlobalOrdGroupFacetCollector create(SolrIndexSearcher searcher, String groupField, String facetField,
+                                                    BytesRef facetPrefix) throws IOException {
+    GlobalOrdinals groupOrdinals = GlobalOrdinals.get(searcher, groupField);
+    if (groupOrdinals == null || !groupOrdinals.isSingleValued()) {
+      return null;
+    }
+    GlobalOrdinals facetOrdinals = GlobalOrdinals.get(searcher, facetField);
+    if (facetOrdinals == null) {
+      return null;
+    }
+    return new GlobalOrdGroupFacetCollector(groupOrdinals, facetOrdinals, facetPrefix);
+  }
+
+  public GlobalOrdGroupFacetCollector(GlobalOrdinals groupOrdinals, GlobalOrdinals facetOrdinals, BytesRef facetPrefix) {
+    this.groupOrdinals = groupOrdinals;
+    this.facetOrdinals = facetOrdinals;
+    this.facetPrefix = facetPrefix;
+    if (facetPrefix != null) {
+      facetEndPrefix = BytesRef.deepCopyOf(facetPrefix);
+      facetEndPrefix.append(UnicodeUtil.BIG_TERM);
+    } else {
+      facetEndPrefix = null;
+    }
+
+    numFacetSlots = facetOrdinals.getNumGlobalOrds() + 1;
+    long numPairSlots = (groupOrdinals.getNumGlobalOrds() + 1) * numFacetSlots;
+    if (numPairSlots <= MAX_BITSET_PAIRS) {
+      pairBits = new LongBitSet(numPairSlots);
+      counts = facetOrdinals.takeOrdArray();
+    } else {
+      pairBits = null;
+      counts = null;
+      pairs = new long[64];
+    }
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    int groupOrd = groupIndex.getOrd(doc);
+    long groupSlot = groupOrd == -1 ? 0 : (groupLeafOrds.getGlobalOrd(groupOrd) + 1) * numFacetSlots;
+
+    if (segment.singleValues != null) {
+      int ord = segment.singleValues.getOrd(doc);
+      if (ord == -1) {
+        if (facetPrefix == null) collectPair(groupSlot, 0);
+      } else if (ord >= segment.startOrd && ord < segment.endOrd) {
+        collectPair(groupSlot, segment.leafOrds.getGlobalOrd(ord) + 1);
+      }
+      return;
+    }
+
+    SortedSetDocValues values = segment.values;
+    values.setDocument(doc);
+    long ord = values.nextOrd();
+    if (ord == SortedSetDocValues.NO_MORE_ORDS) {
+      if (facetPrefix == null) collectPair(groupSlot, 0);
+      return;
+    }
+    for (; ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+      if (ord >= segment.startOrd && ord < segment.endOrd) {
+        collectPair(groupSlot, segment.leafOrds.getGlobalOrd((int) ord) + 1);
+      }
+    }
+  }
+
+  private void collectPair(long groupSlot, long facetSlot) {
+    if (pairBits != null) {
+      if (!pairBits.getAndSet(groupSlot + facetSlot)) {
+        counts[(int) facetSlot]++;
+      }
+    } else {
+      if (numPairs == pairs.length) {
+        sortPairs();
+        if (numPairs > pairs.length >> 1) {
+          pairs = ArrayUtil.grow(pairs, numPairs + 1);
+        }
+      }
+      pairs[numPairs++] = groupSlot + facetSlot;
+    }
+  }
+
+  /** Sorts and removes duplicate pairs. */
+  private void sortPairs() {
+    Arrays.sort(pairs, 0, numPairs);
+    int unique = 0;
+    for (int i = 0; i < numPairs; i++) {
+      if (unique == 0 || pairs[i] != pairs[unique - 1]) {
+        pairs[unique++] = pairs[i];
+      }
+    }
+    numPairs = unique;
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) throws IOException {
+  }
+
+  @Override
+  public void setNextReader(AtomicReaderContext context) throws IOException {
+    groupIndex = DocValues.unwrapSingleton(groupOrdinals.getSegmentValues(context));
+    groupLeafOrds = groupOrdinals.getLeafValues(context);
+    segment = new Segment(facetOrdinals.getSegmentValues(context), facetOrdinals.getLeafValues(context));
+    segments.add(segment);
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return true;
+  }
+
+  /**
+   * Returns the grouped facet counts of the collected documents.
+   *
+   * @param size The total number of facets to include, offset plus limit
+   * @param minCount The minimum count a facet must have to be included
+   * @param orderByCount Whether facets are ordered by count, or else by value
+   * @return the grouped facet counts
+   * @throws IOException If I/O related errors occur while looking up values
+   */
+  public AbstractGroupFacetCollector.GroupedFacetResult getGroupedFacetResult(int size, int minCount, boolean orderByCount) throws IOException {
+    // the counted facet slots in increasing order, and their counts
+    int[] slots;
+    int[] slotCounts;
+    int numSlots = 0;
+    if (pairBits != null) {
+      slots = new int[(int) numFacetSlots];
+      slotCounts = new int[(int) numFacetSlots];
+      for (int slot = 0; slot < numFacetSlots; slot++) {
+        if (counts[slot] > 0) {
+          slots[numSlots] = slot;
+          slotCounts[numSlots++] = counts[slot];
+          counts[slot] = 0;
+        }
+      }
+      facetOrdinals.returnOrdArray(counts);
+      counts = null;
+    } else {
+      sortPairs();
+      slots = new int[numPairs];
+      for (int i = 0; i < numPairs; i++) {
+        slots[i] = (int) (pairs[i] % numFacetSlots);
+      }
+      Arrays.sort(slots);
+      slotCounts = new int[numPairs];
+      for (int i = 0; i < numPairs; i++) {
+        if (numSlots == 0 || slots[i] != slots[numSlots - 1]) {
+          slots[numSlots++] = slots[i];
+        }
+        slotCounts[numSlots - 1]++;
+      }
+      pairs = null;
+    }
+
+    int missingCount = numSlots > 0 && slots[0] == 0 ? slotCounts[0] : 0;
+    int firstValueSlot = missingCount > 0 ? 1 : 0;
+    int totalCount = 0;
+    for (int i = firstValueSlot; i < numSlots; i++) {
+      totalCount += slotCounts[i];
+    }
+
+    // only values with at least this count can make it to the result
+    int threshold = minCount;
+    if (orderByCount && size > 0 && size < numSlots - firstValueSlot) {
+      int[] sorted = Arrays.copyOfRange(slotCounts, firstValueSlot, numSlots);
+      Arrays.sort(sorted);
+      threshold = Math.max(threshold, sorted[sorted.length - size]);
+    }
+
+    AbstractGroupFacetCollector.GroupedFacetResult facetResult
+        = new AbstractGroupFacetCollector.GroupedFacetResult(size, minCount, orderByCount, totalCount, missingCount);
+    PriorityQueue<Segment> queue = new PriorityQueue<Segment>(segments.size()) {
+      @Override
+      protected boolean lessThan(Segment a, Segment b) {
+        return a.term.compareTo(b.term) < 0;
+      }
+    };
+    for (Segment seg : segments) {
+      if (seg.nextTerm()) {
+        queue.add(seg);
+      }
+    }
+
+    // the same value has the same global ordinal in all segments, and comes out of the queue consecutively
+    int lastOrd = -1;
+    int added = 0;
+    while (queue.size() > 0) {
+      Segment top = queue.top();
+      int globalOrd = top.globalOrd;
+      if (globalOrd != lastOrd) {
+        lastOrd = globalOrd;
+        int i = Arrays.binarySearch(slots, firstValueSlot, numSlots, globalOrd + 1);
+        int count = i < 0 ? 0 : slotCounts[i];
+        if (count >= threshold) {
+          facetResult.addFacetCount(BytesRef.deepCopyOf(top.term), count);
+          if (!orderByCount && ++added >= size) {
+            // values come in order, the following ones cannot make it
+            break;
+          }
+        }
+      }
+      if (top.nextTerm()) {
+        queue.updateTop();
+      } else {
+        queue.pop();
+      }
+    }
+    return facetResult;
+  }
+
+  /** The facet values of a segment, and its position while values are merged. */
+  private class Segment {
+    final SortedSetDocValues values;
+    final SortedDocValues singleValues;
+    final GlobalOrdLeafValues leafOrds;
+    final int startOrd;  // the range of segment ords matching the prefix
+    final int endOrd;
+
+    int ord;
+    int globalOrd;
+    BytesRef term;
+
+    Segment(SortedSetDocValues values, GlobalOrdLeafValues leafOrds) {
+      this.values = values;
+      this.singleValues = DocValues.unwrapSingleton(values);
+      this.leafOrds = leafOrds;
+      if (facetPrefix == null) {
+        startOrd = 0;
+        endOrd = leafOrds.getValueCount();
+      } else {
+        int start = (int) values.lookupTerm(facetPrefix);
+        startOrd = start < 0 ? -start - 1 : start;
+        int end = (int) values.lookupTerm(facetEndPrefix);
+        endOrd = end < 0 ? -end - 1 : end;
+      }
+      ord = startOrd - 1;
+    }
+
+    boolean nextTerm() {
+      if (++ord >= endOrd) {
+        return false;
+      }
+      term = values.lookupOrd(ord);
+      globalOrd = leafOrds.getGlobalOrd(ord);
+      return true;
+    }
+  }
+}
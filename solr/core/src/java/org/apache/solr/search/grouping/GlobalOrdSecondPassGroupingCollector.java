@@ -0,0 +1,98 @@
+package org.apache.solr.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * The second pass of grouping by a field with single valued sorted doc values, which collects the
+ * documents of the top groups like {@link TermSecondPassGroupingCollector}, but finds the group of a
+ * document by its {@link GlobalOrdinals global ordinal} in an array, rather than looking up the top
+ * groups in each segment.
+ *
+ * @lucene.experimental
+ */
+public class GlobalOrdSecondPassGroupingCollector extends AbstractSecondPassGroupingCollector<BytesRef> {
+
+  private final GlobalOrdinals ordinals;
+  private final int[] keys;      // global ord + 1 of the groups that the searcher has
+  private int numKeys;
+  private int[] groupIndexes;    // global ord + 1 -> index of the group in groupDocs + 1, or 0
+
+  private SortedDocValues index;
+  private GlobalOrdLeafValues leafOrds;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public GlobalOrdSecondPassGroupingCollector(GlobalOrdinals ordinals, Collection<SearchGroup<BytesRef>> groups, Sort groupSort, Sort withinGroupSort,
+                                              int maxDocsPerGroup, boolean getScores, boolean getMaxScores, boolean fillSortFields)
+      throws IOException {
+    super(groups, groupSort, withinGroupSort, maxDocsPerGroup, getScores, getMaxScores, fillSortFields);
+    this.ordinals = ordinals;
+    groupDocs = (SearchGroupDocs<BytesRef>[]) new SearchGroupDocs[groupMap.size()];
+    keys = new int[groupMap.size()];
+    groupIndexes = ordinals.takeOrdArray();
+    for (SearchGroupDocs<BytesRef> group : groupMap.values()) {
+      // the top groups of other shards may not be in this searcher
+      int key = group.groupValue == null ? 0 : ordinals.lookupTerm(group.groupValue) + 1;
+      if (group.groupValue == null || key > 0) {
+        groupDocs[numKeys] = group;
+        keys[numKeys++] = key;
+        groupIndexes[key] = numKeys;
+      }
+    }
+  }
+
+  @Override
+  public void setNextReader(AtomicReaderContext readerContext) throws IOException {
+    super.setNextReader(readerContext);
+    index = DocValues.unwrapSingleton(ordinals.getSegmentValues(readerContext));
+    leafOrds = ordinals.getLeafValues(readerContext);
+  }
+
+  @Override
+  protected SearchGroupDocs<BytesRef> retrieveGroup(int doc) throws IOException {
+    final int ord = index.getOrd(doc);
+    final int groupIndex = groupIndexes[ord == -1 ? 0 : leafOrds.getGlobalOrd(ord) + 1];
+    return groupIndex == 0 ? null : groupDocs[groupIndex - 1];
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The array of group indexes is given back for reuse, so no more documents can be collected.
+   */
+  @Override
+  public TopGroups<BytesRef> getTopGroups(int withinGroupOffset) {
+    if (groupIndexes != null) {
+      for (int i = 0; i < numKeys; i++) {
+        groupIndexes[keys[i]] = 0;
+      }
+      ordinals.returnOrdArray(groupIndexes);
+      groupIndexes = null;
+    }
+    return super.getTopGroups(withinGroupOffset);
+  }
+}
@@ -0,0 +1,161 @@
+package org.apache.solr.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.GlobalOrdFieldValues;
+import org.apache.solr.search.field.GlobalOrdLeafValues;
+import org.apache.solr.search.field.GlobalOrdTopValues;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The global ordinals of a field with sorted doc values, for the grouping collectors that count
+ * groups or pairs of values by global ordinal.
+ * <p/>
+ * The off-heap segment to global ordinal mappings are those of {@link GlobalOrdFieldValues}: they
+ * are cached with the searcher, shared by all requests, and carried over to new searchers, so only
+ * new segments are mapped on reopen.  Global ordinals are not in index order.
+ * <p/>
+ * Top groups ({@link GlobalOrdFirstPassGroupingCollector} and {@link GlobalOrdSecondPassGroupingCollector}),
+ * group heads ({@link GlobalOrdAllGroupHeadsCollector}), the number of groups
+ * ({@link GlobalOrdAllGroupsCollector}) and grouped facets ({@link GlobalOrdGroupFacetCollector}) find
+ * the group of a document by global ordinal, in arrays indexed by global ordinal that are reused by
+ * the requests against the same searcher, see {@link #takeOrdArray()} and {@link #takeBits()}.
+ *
+ * @lucene.experimental
+ */
+public final class GlobalOrdinals {
+
+  private final GlobalOrdFieldValues fieldValues;
+  private final GlobalOrdTopValues topValues;
+  private final QueryContext context;
+  private final boolean singleValued;
+  private final int numGlobalOrds;
+
+  private GlobalOrdinals(GlobalOrdFieldValues fieldValues, GlobalOrdTopValues topValues, QueryContext context, boolean singleValued) {
+    this.fieldValues = fieldValues;
+    this.topValues = topValues;
+    this.context = context;
+    this.singleValued = singleValued;
+    // newer searchers that share the dictionary only add global ordinals above those of this one
+    this.numGlobalOrds = topValues.getNumGlobalOrds();
+  }
+
+  /**
+   * Returns the global ordinals of a field, or <code>null</code> if a segment of the searcher has
+   * the field without {@link FieldInfo.DocValuesType#SORTED} or {@link FieldInfo.DocValuesType#SORTED_SET}
+   * doc values, in which case the ordinals of its segments would have to be uninverted.
+   */
+  public static GlobalOrdinals get(SolrIndexSearcher searcher, String field) throws IOException {
+    SchemaField sf = searcher.getSchema().getFieldOrNull(field);
+    if (sf == null) return null;
+
+    boolean singleValued = true;
+    for (AtomicReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      FieldInfo fi = leaf.reader().getFieldInfos().fieldInfo(field);
+      if (fi == null) continue;
+      FieldInfo.DocValuesType type = fi.getDocValuesType();
+      if (type == FieldInfo.DocValuesType.SORTED_SET) {
+        singleValued = false;
+      } else if (type != FieldInfo.DocValuesType.SORTED) {
+        return null;
+      }
+    }
+
+    QueryContext context = QueryContext.newContext(searcher);
+    GlobalOrdFieldValues fieldValues = new GlobalOrdFieldValues(sf);
+    GlobalOrdTopValues topValues = (GlobalOrdTopValues) fieldValues.getTopValues(context);
+    topValues.loadAll(context);
+    return new GlobalOrdinals(fieldValues, topValues, context, singleValued);
+  }
+
+  /** Returns true if no document has more than one value. */
+  public boolean isSingleValued() {
+    return singleValued;
+  }
+
+  /** Returns an upper bound of the global ordinals of all segments of the searcher. */
+  public int getNumGlobalOrds() {
+    return numGlobalOrds;
+  }
+
+  /** Returns the value of a global ordinal. */
+  public BytesRef lookupGlobalOrd(int globalOrd) {
+    return topValues.lookupOrd(globalOrd);
+  }
+
+  /** Returns the global ordinal of a value, or -1 if no segment of the searcher has it. */
+  public int lookupTerm(BytesRef term) {
+    int globalOrd = topValues.lookupTerm(term);
+    return globalOrd < getNumGlobalOrds() ? globalOrd : -1;
+  }
+
+  /**
+   * Returns a zeroed array with an entry per global ordinal + 1, where the entry at 0 is for the
+   * documents without a value.  The array should be given back with {@link #returnOrdArray} once
+   * its entries are zeroed again, for the next request against the searcher.
+   */
+  public int[] takeOrdArray() {
+    return topValues.takeIntArray(getNumGlobalOrds() + 1);
+  }
+
+  /** Gives back an array taken with {@link #takeOrdArray()}, whose entries must all be zero. */
+  public void returnOrdArray(int[] array) {
+    topValues.returnIntArray(array);
+  }
+
+  /**
+   * Returns an empty bitset of the global ordinals, which is cleared and reused once the current
+   * request is done, or just dropped if there is no current request.
+   */
+  public FixedBitSet takeBits() {
+    final long[] bits = topValues.takeLongArray(FixedBitSet.bits2words(numGlobalOrds));
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    if (requestInfo != null) {
+      requestInfo.addCloseHook(new Closeable() {
+        @Override
+        public void close() {
+          Arrays.fill(bits, 0L);
+          topValues.returnLongArray(bits);
+        }
+      });
+    }
+    return new FixedBitSet(bits, numGlobalOrds);
+  }
+
+  /** Returns the values of a segment of the searcher, by segment ordinal. */
+  public SortedSetDocValues getSegmentValues(AtomicReaderContext readerContext) throws IOException {
+    return fieldValues.getSegmentOrds(readerContext.reader());
+  }
+
+  /** Returns the map from the ordinals of a segment of the searcher to global ordinals. */
+  public GlobalOrdLeafValues getLeafValues(AtomicReaderContext readerContext) throws IOException {
+    return topValues.getLeafValues(context, readerContext);
+  }
+}
@@ -21,7 +21,11 @@ import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.grouping.AbstractAllGroupsCollector;
 import org.apache.solr.search.grouping.Command;
+import org.apache.solr.search.grouping.GlobalOrdAllGroupsCollector;
+import org.apache.solr.search.grouping.GlobalOrdFirstPassGroupingCollector;
 import org.apache.solr.search.grouping.SearchGroup;
 import org.apache.solr.search.grouping.TermAllGroupsCollector;
 import org.apache.solr.search.grouping.TermFirstPassGroupingCollector;
@@ -43,6 +47,7 @@ public class SearchGroupsFieldCommand implements Command<Pair<Integer, Collectio
     private Sort groupSort;
     private Integer topNGroups;
     private boolean includeGroupCount = false;
+    private SolrIndexSearcher searcher;
 
     public Builder setField(SchemaField field) {
       this.field = field;
@@ -64,12 +69,21 @@ public class SearchGroupsFieldCommand implements Command<Pair<Integer, Collectio
       return this;
     }
 
+    /**
+     * Sets the searcher, which lets the collectors group by global ordinal if the field has
+     * single valued sorted doc values.
+     */
+    public Builder setSearcher(SolrIndexSearcher searcher) {
+      this.searcher = searcher;
+      return this;
+    }
+
     public SearchGroupsFieldCommand build() {
       if (field == null || groupSort == null || topNGroups == null) {
         throw new IllegalStateException("All fields must be set");
       }
 
-      return new SearchGroupsFieldCommand(field, groupSort, topNGroups, includeGroupCount);
+      return new SearchGroupsFieldCommand(field, groupSort, topNGroups, includeGroupCount, searcher);
     }
 
   }
@@ -78,26 +92,40 @@ public class SearchGroupsFieldCommand implements Command<Pair<Integer, Collectio
   private final Sort groupSort;
   private final int topNGroups;
   private final boolean includeGroupCount;
+  private final SolrIndexSearcher searcher;
 
   private TermFirstPassGroupingCollector firstPassGroupingCollector;
-  private TermAllGroupsCollector allGroupsCollector;
+  private GlobalOrdFirstPassGroupingCollector ordFirstPassGroupingCollector;
+  private AbstractAllGroupsCollector<BytesRef> allGroupsCollector;
 
-  private SearchGroupsFieldCommand(SchemaField field, Sort groupSort, int topNGroups, boolean includeGroupCount) {
+  private SearchGroupsFieldCommand(SchemaField field, Sort groupSort, int topNGroups, boolean includeGroupCount, SolrIndexSearcher searcher) {
     this.field = field;
     this.groupSort = groupSort;
     this.topNGroups = topNGroups;
     this.includeGroupCount = includeGroupCount;
+    this.searcher = searcher;
   }
 
   @Override
   public List<Collector> create() throws IOException {
     List<Collector> collectors = new ArrayList<>();
     if (topNGroups > 0) {
-      firstPassGroupingCollector = new TermFirstPassGroupingCollector(field.getName(), groupSort, topNGroups);
-      collectors.add(firstPassGroupingCollector);
+      if (searcher != null) {
+        ordFirstPassGroupingCollector = GlobalOrdFirstPassGroupingCollector.create(searcher, field.getName(), groupSort, topNGroups);
+      }
+      if (ordFirstPassGroupingCollector != null) {
+        collectors.add(ordFirstPassGroupingCollector);
+      } else {
+        firstPassGroupingCollector = new TermFirstPassGroupingCollector(field.getName(), groupSort, topNGroups);
+        collectors.add(firstPassGroupingCollector);
+      }
     }
     if (includeGroupCount) {
-      allGroupsCollector = new TermAllGroupsCollector(field.getName());
+      if (searcher != null) {
+        allGroupsCollector = GlobalOrdAllGroupsCollector.create(searcher, field.getName());
+      } else {
+        allGroupsCollector = new TermAllGroupsCollector(field.getName());
+      }
       collectors.add(allGroupsCollector);
     }
     return collectors;
@@ -107,7 +135,8 @@ public class SearchGroupsFieldCommand implements Command<Pair<Integer, Collectio
   public Pair<Integer, Collection<SearchGroup<BytesRef>>> result() {
     final Collection<SearchGroup<BytesRef>> topGroups;
     if (topNGroups > 0) {
-      topGroups = firstPassGroupingCollector.getTopGroups(0, true);
+      topGroups = ordFirstPassGroupingCollector != null ?
+          ordFirstPassGroupingCollector.getTopGroups(0, true) : firstPassGroupingCollector.getTopGroups(0, true);
     } else {
       topGroups = Collections.emptyList();
     }
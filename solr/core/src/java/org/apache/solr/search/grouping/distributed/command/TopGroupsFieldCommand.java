@@ -21,7 +21,11 @@ import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.grouping.AbstractSecondPassGroupingCollector;
 import org.apache.solr.search.grouping.Command;
+import org.apache.solr.search.grouping.GlobalOrdSecondPassGroupingCollector;
+import org.apache.solr.search.grouping.GlobalOrdinals;
 import org.apache.solr.search.grouping.GroupDocs;
 import org.apache.solr.search.grouping.SearchGroup;
 import org.apache.solr.search.grouping.TermSecondPassGroupingCollector;
@@ -47,6 +51,7 @@ public class TopGroupsFieldCommand implements Command<TopGroups<BytesRef>> {
     private Integer maxDocPerGroup;
     private boolean needScores = false;
     private boolean needMaxScore = false;
+    private SolrIndexSearcher searcher;
 
     public Builder setField(SchemaField field) {
       this.field = field;
@@ -83,13 +88,22 @@ public class TopGroupsFieldCommand implements Command<TopGroups<BytesRef>> {
       return this;
     }
 
+    /**
+     * Sets the searcher, which lets the collectors group by global ordinal if the field has
+     * single valued sorted doc values.
+     */
+    public Builder setSearcher(SolrIndexSearcher searcher) {
+      this.searcher = searcher;
+      return this;
+    }
+
     public TopGroupsFieldCommand build() {
       if (field == null || groupSort == null || sortWithinGroup == null || firstPhaseGroups == null ||
           maxDocPerGroup == null) {
         throw new IllegalStateException("All required fields must be set");
       }
 
-      return new TopGroupsFieldCommand(field, groupSort, sortWithinGroup, firstPhaseGroups, maxDocPerGroup, needScores, needMaxScore);
+      return new TopGroupsFieldCommand(field, groupSort, sortWithinGroup, firstPhaseGroups, maxDocPerGroup, needScores, needMaxScore, searcher);
     }
 
   }
@@ -101,7 +115,8 @@ public class TopGroupsFieldCommand implements Command<TopGroups<BytesRef>> {
   private final int maxDocPerGroup;
   private final boolean needScores;
   private final boolean needMaxScore;
-  private TermSecondPassGroupingCollector secondPassCollector;
+  private final SolrIndexSearcher searcher;
+  private AbstractSecondPassGroupingCollector<BytesRef> secondPassCollector;
 
   private TopGroupsFieldCommand(SchemaField field,
                                 Sort groupSort,
@@ -109,7 +124,8 @@ public class TopGroupsFieldCommand implements Command<TopGroups<BytesRef>> {
                                 Collection<SearchGroup<BytesRef>> firstPhaseGroups,
                                 int maxDocPerGroup,
                                 boolean needScores,
-                                boolean needMaxScore) {
+                                boolean needMaxScore,
+                                SolrIndexSearcher searcher) {
     this.field = field;
     this.groupSort = groupSort;
     this.sortWithinGroup = sortWithinGroup;
@@ -117,6 +133,7 @@ public class TopGroupsFieldCommand implements Command<TopGroups<BytesRef>> {
     this.maxDocPerGroup = maxDocPerGroup;
     this.needScores = needScores;
     this.needMaxScore = needMaxScore;
+    this.searcher = searcher;
   }
 
   @Override
@@ -126,9 +143,16 @@ public class TopGroupsFieldCommand implements Command<TopGroups<BytesRef>> {
     }
 
     List<Collector> collectors = new ArrayList<>();
-    secondPassCollector = new TermSecondPassGroupingCollector(
-        field.getName(), firstPhaseGroups, groupSort, sortWithinGroup, maxDocPerGroup, needScores, needMaxScore, true
-    );
+    GlobalOrdinals ordinals = searcher != null ? GlobalOrdinals.get(searcher, field.getName()) : null;
+    if (ordinals != null && ordinals.isSingleValued()) {
+      secondPassCollector = new GlobalOrdSecondPassGroupingCollector(
+          ordinals, firstPhaseGroups, groupSort, sortWithinGroup, maxDocPerGroup, needScores, needMaxScore, true
+      );
+    } else {
+      secondPassCollector = new TermSecondPassGroupingCollector(
+          field.getName(), firstPhaseGroups, groupSort, sortWithinGroup, maxDocPerGroup, needScores, needMaxScore, true
+      );
+    }
     collectors.add(secondPassCollector);
     return collectors;
   }
@@ -29,6 +29,7 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrInputField;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.IDVersionField;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
 
@@ -75,9 +76,30 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<Document
    * will not be reflected in the SolrInputDocument, or future calls to this method.
    */
    public Document getLuceneDocument() {
-     return DocumentBuilder.toDocument(getSolrInputDocument(), req.getSchema());
+     return toDocument(getSolrInputDocument());
    }
 
+  private Document toDocument(SolrInputDocument sdoc) {
+    Document doc = DocumentBuilder.toDocument(sdoc, req.getSchema());
+    SchemaField sf = req.getSchema().getUniqueKeyField();
+    if (sf != null && sf.getType() instanceof IDVersionField) {
+      // the id is indexed with the version of this update
+      if (version <= 0) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+            "uniqueKey field " + sf.getName() + " of type IDVersionField requires the updateLog");
+      }
+      if (!overwrite || updateTerm != null) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "uniqueKey field " + sf.getName() + " of type IDVersionField doesn't support duplicate ids");
+      }
+      Object id = sdoc.getFieldValue(sf.getName());
+      if (id != null) {
+        doc.add(((IDVersionField) sf.getType()).createIndexedField(sf, id, version));
+      }
+    }
+    return doc;
+  }
+
   /** Returns the indexed ID for this document.  The returned BytesRef is retained across multiple calls, and should not be modified. */
    public BytesRef getIndexedId() {
      if (indexedId == null) {
@@ -183,7 +205,7 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<Document
 
       @Override
       public Document next() {
-        return DocumentBuilder.toDocument(iter.next(), req.getSchema());
+        return toDocument(iter.next());
       }
 
       @Override
@@ -22,6 +22,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.store.Directory;
 import org.apache.solr.cloud.RecoveryStrategy;
 import org.apache.solr.common.SolrException;
@@ -276,9 +277,14 @@ public final class DefaultSolrCoreState extends SolrCoreState implements Recover
   }
   
   protected SolrIndexWriter createMainIndexWriter(SolrCore core, String name) throws IOException {
-    return SolrIndexWriter.create(name, core.getNewIndexDir(),
+    SolrIndexWriter writer = SolrIndexWriter.create(name, core.getNewIndexDir(),
         core.getDirectoryFactory(), false, core.getLatestSchema(),
         core.getSolrConfig().indexConfig, core.getDeletionPolicy(), core.getCodec());
+    MergeScheduler mergeScheduler = writer.getConfig().getMergeScheduler();
+    if (mergeScheduler instanceof SolrAdaptiveMergeScheduler) {
+      ((SolrAdaptiveMergeScheduler) mergeScheduler).init(core);
+    }
+    return writer;
   }
 
   @Override
@@ -0,0 +1,179 @@
+package org.apache.solr.update;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.net.URL;
+
+import org.apache.lucene.index.AdaptiveMergeScheduler;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrInfoMBean;
+import org.apache.solr.request.SolrRequestHandler;
+
+/**
+ * An {@link AdaptiveMergeScheduler} that reports its decisions as a {@link SolrInfoMBean}
+ * and that slows down merges when the searches of the core get slower than a target latency.
+ * <p>
+ * Merges are only throttled when the <code>directoryFactory</code> limits the write rate of
+ * merges, with <code>maxWriteMBPerSecMerge</code>, whose value is the initial rate:
+ * <pre class="prettyprint">
+ * &lt;mergeScheduler class="solr.SolrAdaptiveMergeScheduler"&gt;
+ *   &lt;double name="minMBPerSec"&gt;5&lt;/double&gt;
+ *   &lt;double name="maxMBPerSec"&gt;200&lt;/double&gt;
+ *   &lt;str name="latencyHandler"&gt;/select&lt;/str&gt;
+ *   &lt;double name="targetLatencyMs"&gt;50&lt;/double&gt;
+ * &lt;/mergeScheduler&gt;</pre>
+ * The latency of searches is the average time of the requests that the
+ * <code>latencyHandler</code> served since the previous update of the rate; a
+ * <code>targetLatencyMs</code> of 0, the default, ignores the latency of searches.
+ */
+public class SolrAdaptiveMergeScheduler extends AdaptiveMergeScheduler implements SolrInfoMBean {
+
+  /** Name of the scheduler in the info registry of the core */
+  public static final String INFO_NAME = "mergeScheduler";
+
+  private String latencyHandler = "/select";
+  private double targetLatencyMs = 0;
+
+  /** Sets the name of the request handler whose latency is watched, <code>/select</code> by default. */
+  public void setLatencyHandler(String latencyHandler) {
+    this.latencyHandler = latencyHandler;
+  }
+
+  public String getLatencyHandler() {
+    return latencyHandler;
+  }
+
+  /** Sets the average latency of searches above which merges are slowed down, 0 to disable. */
+  public void setTargetLatencyMs(double targetLatencyMs) {
+    if (targetLatencyMs < 0) {
+      throw new IllegalArgumentException("targetLatencyMs must be >= 0 (got " + targetLatencyMs + ")");
+    }
+    this.targetLatencyMs = targetLatencyMs;
+  }
+
+  public double getTargetLatencyMs() {
+    return targetLatencyMs;
+  }
+
+  /**
+   * Called once the index writer of the core is created: registers the scheduler in the
+   * info registry of the core and starts watching the latency of its searches.
+   */
+  public void init(SolrCore core) {
+    if (targetLatencyMs > 0) {
+      setSearchLatencySignal(new HandlerLatencySignal(core, latencyHandler, targetLatencyMs));
+    }
+    core.getInfoRegistry().put(INFO_NAME, this);
+  }
+
+  /**
+   * Computes the ratio of the average time of the requests that a handler served since
+   * the previous call to a target latency.
+   */
+  static class HandlerLatencySignal implements SearchLatencySignal {
+    private final SolrCore core;
+    private final String handlerName;
+    private final double targetMs;
+    private long lastRequests;
+    private double lastTotalTime;
+
+    HandlerLatencySignal(SolrCore core, String handlerName, double targetMs) {
+      this.core = core;
+      this.handlerName = handlerName;
+      this.targetMs = targetMs;
+    }
+
+    @Override
+    public synchronized double getLatencyRatio() {
+      SolrRequestHandler handler = core.getRequestHandler(handlerName);
+      if (handler == null) {
+        return 0;
+      }
+      NamedList stats = handler.getStatistics();
+      Object requests = stats.get("requests");
+      Object totalTime = stats.get("totalTime");
+      if (!(requests instanceof Number) || !(totalTime instanceof Number)) {
+        return 0;
+      }
+      long numRequests = ((Number) requests).longValue() - lastRequests;
+      double time = ((Number) totalTime).doubleValue() - lastTotalTime;
+      lastRequests += numRequests;
+      lastTotalTime += time;
+      if (numRequests <= 0) {
+        // no searches, nothing to protect
+        return 0;
+      }
+      return time / numRequests / targetMs;
+    }
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+
+  @Override
+  public String getName() {
+    return SolrAdaptiveMergeScheduler.class.getName();
+  }
+
+  @Override
+  public String getVersion() {
+    return SolrCore.version;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Merge scheduler adapting the write rate of merges to indexing and search load";
+  }
+
+  @Override
+  public Category getCategory() {
+    return Category.UPDATEHANDLER;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+  @Override
+  public URL[] getDocs() {
+    return null;
+  }
+
+  @Override
+  public NamedList getStatistics() {
+    NamedList<Object> lst = new SimpleOrderedMap<>();
+    lst.add("throttling", isThrottling());
+    lst.add("mbPerSec", getMBPerSec());
+    lst.add("minMBPerSec", getMinMBPerSec());
+    lst.add("maxMBPerSec", getMaxMBPerSec());
+    lst.add("targetLatencyMs", targetLatencyMs);
+    lst.add("rateIncreases", getRateIncreases());
+    lst.add("rateDecreases", getRateDecreases());
+    lst.add("stalls", getStallCount());
+    lst.add("stallMillis", getStallMillis());
+    lst.add("completedMerges", getCompletedMerges());
+    lst.add("lastMergeMBPerSec", getLastMergeMBPerSec());
+    lst.add("bytesWritten", getBytesWritten());
+    lst.add("pausedMillis", getPausedMillis());
+    lst.add("runningMerges", getRunningMergeCount());
+    lst.add("runningMergeProgress", getRunningMergeProgress());
+    return lst;
+  }
+}
@@ -19,6 +19,10 @@ package org.apache.solr.update;
 
 import org.apache.lucene.index.*;
 import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.PrintStreamInfoStream;
 import org.apache.lucene.util.Version;
@@ -28,14 +32,18 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.SolrConfig;
 import org.apache.solr.core.PluginInfo;
 import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
 import org.apache.solr.util.SolrPluginUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * This config object encapsulates IndexWriter config params,
@@ -70,6 +78,8 @@ public class SolrIndexConfig {
   public final int termIndexInterval;
   
   public final PluginInfo mergedSegmentWarmerInfo;
+  /** The sort of merged segments, like "timestamp desc", or null if they aren't sorted */
+  public final String indexSort;
   
   public InfoStream infoStream = InfoStream.NO_OUTPUT;
 
@@ -100,6 +110,7 @@ public class SolrIndexConfig {
     mergeSchedulerInfo = null;
     defaultMergePolicyClassName = TieredMergePolicy.class.getName();
     mergedSegmentWarmerInfo = null;
+    indexSort = null;
     checkIntegrityAtMerge = false;
   }
   
@@ -180,9 +191,46 @@ public class SolrIndexConfig {
       throw new IllegalArgumentException("Supplying a mergedSegmentWarmer will do nothing since nrtMode is false");
     }
 
+    indexSort = solrConfig.get(prefix + "/indexSort", def.indexSort);
+
     checkIntegrityAtMerge = solrConfig.getBool(prefix + "/checkIntegrityAtMerge", def.checkIntegrityAtMerge);
   }
 
+  /**
+   * Returns the sort of merged segments, or null if no index sort is configured.
+   * The index sort is a comma separated list of sortable fields, each followed by asc or desc.
+   * Since segments are sorted while they are merged, without a searcher, the returned sort
+   * only uses plain Lucene sort fields.
+   */
+  public Sort getIndexSort(IndexSchema schema) {
+    if (indexSort == null || indexSort.trim().length() == 0) {
+      return null;
+    }
+    // rewriting against a plain IndexSearcher gives sort fields that don't depend on Solr's caches
+    IndexSearcher searcher = new IndexSearcher(new MultiReader());
+    List<SortField> sortFields = new ArrayList<>();
+    for (String clause : indexSort.split(",")) {
+      String[] parts = clause.trim().split("\\s+");
+      if (parts.length != 2) {
+        throw new SolrException(ErrorCode.SERVER_ERROR, "Invalid indexSort '" + indexSort + "', expected a list of <field> asc|desc");
+      }
+      String dir = parts[1].toLowerCase(Locale.ROOT);
+      if (!dir.equals("asc") && !dir.equals("desc")) {
+        throw new SolrException(ErrorCode.SERVER_ERROR, "Invalid indexSort direction '" + parts[1] + "', expected asc or desc");
+      }
+      SchemaField field = schema.getField(parts[0]);
+      if (field.multiValued()) {
+        throw new SolrException(ErrorCode.SERVER_ERROR, "Can not sort the index on multivalued field " + field.getName());
+      }
+      try {
+        sortFields.add(field.getSortField(dir.equals("desc")).rewrite(searcher));
+      } catch (IOException e) {
+        throw new SolrException(ErrorCode.SERVER_ERROR, "Can not sort the index on field " + field.getName(), e);
+      }
+    }
+    return new Sort(sortFields.toArray(new SortField[sortFields.size()]));
+  }
+
   /*
    * Assert that assertCondition is true.
    * If not, prints reason as log warning.
@@ -295,6 +343,11 @@ public class SolrIndexConfig {
     if (mergePolicyInfo != null)
       SolrPluginUtils.invokeSetters(policy, mergePolicyInfo.initArgs);
 
+    Sort sort = getIndexSort(schema);
+    if (sort != null) {
+      policy = new SortingMergePolicy(policy, sort);
+    }
+
     return policy;
   }
 
@@ -190,6 +190,12 @@ public class VersionInfo {
     RefCounted<SolrIndexSearcher> newestSearcher = ulog.uhandler.core.getRealtimeSearcher();
     try {
       SolrIndexSearcher searcher = newestSearcher.get();
+      if (searcher.hasIdVersions()) {
+        // the version is in the terms dictionary of the id field
+        long ver = searcher.lookupIdVersion(idBytes);
+        return ver < 0 ? null : ver;
+      }
+
       long lookup = searcher.lookupId(idBytes);
       if (lookup < 0) return null;
 
@@ -0,0 +1,244 @@
+package org.apache.solr.update.processor;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.StrUtils;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.BinaryField;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.MoreLikeThisSignature;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+/**
+ * Computes the {@link MoreLikeThisSignature} of documents into a binary doc values field, so that
+ * "more like this" queries with the <code>mlt.signatureField</code> parameter are built from the
+ * signature rather than by re-analyzing the documents.
+ * <p>
+ * The source fields are analyzed with their index analyzers, and the <code>maxTerms</code>
+ * terms with the highest tf-idf, using the document frequencies of the index the document is
+ * added to, are kept.  The weights of the terms are computed again with the current document
+ * frequencies when the query is built.  When <code>bands</code> is set, a MinHash of
+ * <code>bands</code> times <code>rows</code> values is computed as well, and when
+ * <code>lshField</code> is set the keys of its bands are added to that (indexed, multi-valued
+ * string) field, for the <code>mlt.lshField</code> candidate filter.
+ * </p>
+ *
+ * <pre class="prettyprint">
+ * &lt;processor class="solr.MoreLikeThisSignatureUpdateProcessorFactory"&gt;
+ *   &lt;str name="fields"&gt;title,body&lt;/str&gt;
+ *   &lt;str name="signatureField"&gt;mlt_signature&lt;/str&gt;
+ *   &lt;int name="maxTerms"&gt;50&lt;/int&gt;
+ *   &lt;str name="lshField"&gt;mlt_bands&lt;/str&gt;
+ *   &lt;int name="bands"&gt;16&lt;/int&gt;
+ *   &lt;int name="rows"&gt;4&lt;/int&gt;
+ * &lt;/processor&gt;</pre>
+ */
+public class MoreLikeThisSignatureUpdateProcessorFactory
+  extends UpdateRequestProcessorFactory
+  implements SolrCoreAware {
+
+  public static final int DEFAULT_MAX_TERMS = 50;
+  public static final int DEFAULT_ROWS = 4;
+
+  private List<String> fields;
+  private String signatureField;
+  private String lshField;
+  private int maxTerms = DEFAULT_MAX_TERMS;
+  private int minWordLen;
+  private int maxWordLen;
+  private int bands;
+  private int rows = DEFAULT_ROWS;
+
+  @Override
+  public void init(final NamedList args) {
+    SolrParams params = SolrParams.toSolrParams(args);
+    String fieldList = params.get("fields");
+    if (fieldList == null) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "MoreLikeThisSignatureUpdateProcessorFactory requires fields");
+    }
+    fields = StrUtils.splitSmart(fieldList, ",", true);
+    signatureField = params.get("signatureField");
+    if (signatureField == null) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "MoreLikeThisSignatureUpdateProcessorFactory requires a signatureField");
+    }
+    lshField = params.get("lshField");
+    maxTerms = params.getInt("maxTerms", DEFAULT_MAX_TERMS);
+    minWordLen = params.getInt("minWordLen", 0);
+    maxWordLen = params.getInt("maxWordLen", 0);
+    bands = params.getInt("bands", 0);
+    rows = params.getInt("rows", DEFAULT_ROWS);
+    if (maxTerms <= 0 || bands < 0 || rows <= 0) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "maxTerms and rows must be positive, bands must not be negative");
+    }
+    if (lshField != null && bands == 0) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "Can't set an lshField without bands");
+    }
+  }
+
+  @Override
+  public void inform(SolrCore core) {
+    SchemaField field = core.getLatestSchema().getFieldOrNull(signatureField);
+    if (field == null || !(field.getType() instanceof BinaryField) || !field.hasDocValues()) {
+      throw new SolrException(ErrorCode.SERVER_ERROR,
+          "signatureField must be a binary field with doc values: " + signatureField);
+    }
+    if (lshField != null) {
+      SchemaField lsh = core.getLatestSchema().getFieldOrNull(lshField);
+      if (lsh == null || !lsh.indexed() || !lsh.multiValued()) {
+        throw new SolrException(ErrorCode.SERVER_ERROR,
+            "lshField must be an indexed multi-valued field: " + lshField);
+      }
+    }
+  }
+
+  @Override
+  public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+    return new MoreLikeThisSignatureUpdateProcessor(req, next);
+  }
+
+  class MoreLikeThisSignatureUpdateProcessor extends UpdateRequestProcessor {
+    private final SolrQueryRequest req;
+    private final TFIDFSimilarity similarity = new DefaultSimilarity();
+
+    MoreLikeThisSignatureUpdateProcessor(SolrQueryRequest req, UpdateRequestProcessor next) {
+      super(next);
+      this.req = req;
+    }
+
+    @Override
+    public void processAdd(AddUpdateCommand cmd) throws IOException {
+      SolrInputDocument doc = cmd.getSolrInputDocument();
+      boolean isPartialUpdate = DistributedUpdateProcessor.isAtomicUpdate(cmd);
+
+      Map<String,int[]> termFreqs = new HashMap<>();
+      boolean hasField = false;
+      for (String field : fields) {
+        SolrInputField f = doc.getField(field);
+        if (f == null) continue;
+        if (isPartialUpdate) {
+          throw new SolrException(ErrorCode.BAD_REQUEST,
+              "Can't use MoreLikeThisSignatureUpdateProcessor with partial update request containing field: " + field);
+        }
+        hasField = true;
+        for (Object value : f.getValues()) {
+          addTerms(field, String.valueOf(value), termFreqs);
+        }
+      }
+
+      if (hasField) {
+        MoreLikeThisSignature signature = createSignature(termFreqs);
+        doc.setField(signatureField, signature.toBytes());
+        if (lshField != null) {
+          doc.removeField(lshField);
+          for (String key : signature.getBandKeys()) {
+            doc.addField(lshField, key);
+          }
+        }
+      }
+
+      if (next != null)
+        next.processAdd(cmd);
+    }
+
+    private void addTerms(String field, String value, Map<String,int[]> termFreqs) throws IOException {
+      Analyzer analyzer = req.getSchema().getIndexAnalyzer();
+      try (TokenStream ts = analyzer.tokenStream(field, value)) {
+        CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+        ts.reset();
+        while (ts.incrementToken()) {
+          int len = termAtt.length();
+          if ((minWordLen > 0 && len < minWordLen) || (maxWordLen > 0 && len > maxWordLen)) {
+            continue;
+          }
+          String term = termAtt.toString();
+          int[] freq = termFreqs.get(term);
+          if (freq == null) {
+            termFreqs.put(term, new int[] {1});
+          } else {
+            freq[0]++;
+          }
+        }
+        ts.end();
+      }
+    }
+
+    private MoreLikeThisSignature createSignature(Map<String,int[]> termFreqs) throws IOException {
+      IndexReader reader = req.getSearcher().getIndexReader();
+      int numDocs = reader.numDocs();
+      PriorityQueue<ScoredTerm> queue = new PriorityQueue<ScoredTerm>(Math.min(maxTerms, termFreqs.size())) {
+        @Override
+        protected boolean lessThan(ScoredTerm a, ScoredTerm b) {
+          return a.score < b.score;
+        }
+      };
+      for (Map.Entry<String,int[]> entry : termFreqs.entrySet()) {
+        int docFreq = 0;
+        for (String field : fields) {
+          docFreq = Math.max(docFreq, reader.docFreq(new Term(field, entry.getKey())));
+        }
+        int freq = entry.getValue()[0];
+        queue.insertWithOverflow(new ScoredTerm(entry.getKey(), freq, freq * similarity.idf(docFreq, numDocs)));
+      }
+
+      String[] terms = new String[queue.size()];
+      int[] freqs = new int[terms.length];
+      for (int i = terms.length - 1; i >= 0; i--) {
+        ScoredTerm term = queue.pop();
+        terms[i] = term.term;
+        freqs[i] = term.freq;
+      }
+      // a document without terms is not similar to anything, and has no bands
+      int[] minHashes = MoreLikeThisSignature.minHash(termFreqs.keySet(), termFreqs.isEmpty() ? 0 : bands * rows);
+      return new MoreLikeThisSignature(terms, freqs, minHashes, rows);
+    }
+  }
+
+  private static class ScoredTerm {
+    final String term;
+    final int freq;
+    final float score;
+
+    ScoredTerm(String term, int freq, float score) {
+      this.term = term;
+      this.freq = freq;
+      this.score = score;
+    }
+  }
+}
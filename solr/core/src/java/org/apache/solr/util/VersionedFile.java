@@ -88,6 +88,26 @@ public class VersionedFile
     return is;
   }
 
+  /* Find the latest version of a file without opening it or deleting
+   * older versions.  Returns null if no version exists.
+   */
+  public static File getLatestVersion(String dirName, String fileName)
+  {
+    File f = new File(dirName, fileName);
+    if (f.exists()) return f;
+
+    final String prefix = fileName+'.';
+    String[] names = new File(dirName).list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(prefix);
+      }
+    });
+    if (names == null || names.length == 0) return null;
+    Arrays.sort(names);
+    return new File(dirName, names[names.length-1]);
+  }
+
   private static final Set<File> deleteList = new HashSet<>();
   private static synchronized void delete(Collection<File> files) {
     synchronized (deleteList) {
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.util.stats;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.solr.common.util.Hash;
+
+/**
+ * A mergeable sketch of the set of distinct values of a stream, that estimates its
+ * cardinality in fixed memory.
+ * <p>
+ * Values are added as 64 bits hashes, see {@link #hash(long)} and {@link #hash(CharSequence)}.
+ * Until they would take as much memory as the <code>2^precision</code> registers of the
+ * HyperLogLog algorithm, the distinct hashes are kept as is, so that small cardinalities are
+ * exact; the relative standard error of larger cardinalities is about
+ * <code>1.04 / sqrt(2^precision)</code>, 0.8% with the default precision.
+ * <p>
+ * Sketches of different parts of a stream, for instance of the shards of an index, can be
+ * serialized with {@link #toBytes()} and merged with {@link #add(HyperLogLog)}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class HyperLogLog {
+
+  /** Precision of 16K registers, for a relative standard error of 0.8%. */
+  public static final int DEFAULT_PRECISION = 14;
+
+  private static final byte VERSION = 1;
+
+  private final int precision;
+
+  // distinct hashes as long as registers == null, sorted up to numSorted
+  private long[] hashes;
+  private int numHashes;
+  private int numSorted;
+
+  private byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("precision must be in [4, 18] (got " + precision + ")");
+    }
+    this.precision = precision;
+    hashes = new long[16];
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /** Adds the hash of a value. */
+  public void add(long hash) {
+    if (registers != null) {
+      addToRegisters(hash);
+      return;
+    }
+    if (numHashes == hashes.length) {
+      dedup();
+      if (numHashes > maxHashes()) {
+        toRegisters();
+        addToRegisters(hash);
+        return;
+      }
+      if (numHashes > hashes.length / 2) {
+        hashes = ArrayUtil.grow(hashes, numHashes + 1);
+      }
+    }
+    hashes[numHashes++] = hash;
+  }
+
+  /** Adds all values of another sketch of the same precision to this sketch. */
+  public void add(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Cannot merge sketches of different precisions: " + other.precision + " != " + precision);
+    }
+    if (other.registers == null) {
+      for (int i = 0; i < other.numHashes; i++) {
+        add(other.hashes[i]);
+      }
+      return;
+    }
+    if (registers == null) {
+      toRegisters();
+    }
+    for (int i = 0; i < registers.length; i++) {
+      registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+    }
+  }
+
+  /** Returns an estimate of the number of distinct values added to this sketch. */
+  public long cardinality() {
+    if (registers == null) {
+      dedup();
+      return numHashes;
+    }
+    final int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    final double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      // linear counting is more accurate for small cardinalities
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private int maxHashes() {
+    // as many bytes as the registers
+    return (1 << precision) / 8;
+  }
+
+  /** Sorts and removes duplicate hashes. */
+  private void dedup() {
+    if (numSorted == numHashes) {
+      return;
+    }
+    Arrays.sort(hashes, 0, numHashes);
+    int unique = 0;
+    for (int i = 0; i < numHashes; i++) {
+      if (unique == 0 || hashes[i] != hashes[unique - 1]) {
+        hashes[unique++] = hashes[i];
+      }
+    }
+    numHashes = numSorted = unique;
+  }
+
+  private void toRegisters() {
+    registers = new byte[1 << precision];
+    for (int i = 0; i < numHashes; i++) {
+      addToRegisters(hashes[i]);
+    }
+    hashes = null;
+    numHashes = numSorted = 0;
+  }
+
+  private void addToRegisters(long hash) {
+    final int index = (int) (hash >>> (64 - precision));
+    // position of the first 1 bit of the remaining bits, the sentinel bit bounds it
+    final long w = (hash << precision) | (1L << (precision - 1));
+    final byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /** Serializes this sketch, see {@link #fromBytes(byte[])}. */
+  public byte[] toBytes() {
+    final byte[] bytes;
+    ByteArrayDataOutput out;
+    try {
+      if (registers == null) {
+        dedup();
+        bytes = new byte[1 + 1 + 1 + 5 + 8 * numHashes];
+        out = new ByteArrayDataOutput(bytes);
+        out.writeByte(VERSION);
+        out.writeByte((byte) precision);
+        out.writeByte((byte) 0);
+        out.writeVInt(numHashes);
+        for (int i = 0; i < numHashes; i++) {
+          out.writeLong(hashes[i]);
+        }
+      } else {
+        bytes = new byte[1 + 1 + 1 + registers.length];
+        out = new ByteArrayDataOutput(bytes);
+        out.writeByte(VERSION);
+        out.writeByte((byte) precision);
+        out.writeByte((byte) 1);
+        out.writeBytes(registers, registers.length);
+      }
+    } catch (IOException e) {
+      // cannot happen with a byte array
+      throw new RuntimeException(e);
+    }
+    return ArrayUtil.shrink(bytes, out.getPosition());
+  }
+
+  /** Deserializes a sketch serialized with {@link #toBytes()}. */
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes);
+    byte version = in.readByte();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported HyperLogLog version: " + version);
+    }
+    HyperLogLog hll = new HyperLogLog(in.readByte());
+    if (in.readByte() == 0) {
+      int n = in.readVInt();
+      hll.hashes = new long[Math.max(n, 16)];
+      for (int i = 0; i < n; i++) {
+        hll.hashes[i] = in.readLong();
+      }
+      hll.numHashes = hll.numSorted = n;
+    } else {
+      hll.hashes = null;
+      hll.registers = new byte[1 << hll.precision];
+      in.readBytes(hll.registers, 0, hll.registers.length);
+    }
+    return hll;
+  }
+
+  /** Returns a well distributed 64 bits hash of a long. */
+  public static long hash(long value) {
+    // finalization mix of MurmurHash3
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /** Returns a 64 bits hash of the UTF-8 bytes of a string. */
+  public static long hash(CharSequence value) {
+    final int high = Hash.murmurhash3_x86_32(value, 0, value.length(), 0x9747b28c);
+    final int low = Hash.murmurhash3_x86_32(value, 0, value.length(), 0x5bd1e995);
+    return ((long) high << 32) | (low & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public String toString() {
+    return "HyperLogLog(precision=" + precision + ", " + (registers == null ? "sparse" : "dense") + ")";
+  }
+}
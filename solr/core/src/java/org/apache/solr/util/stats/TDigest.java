@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.util.stats;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.InPlaceMergeSorter;
+
+/**
+ * A mergeable sketch of the distribution of a stream of values, that estimates its
+ * quantiles in fixed memory.
+ * <p>
+ * This is the merging variant of Ted Dunning's t-digest: values are grouped into at most
+ * about <code>compression</code> centroids, whose weights are small near both ends of the
+ * distribution and large around the median, so that extreme quantiles are estimated with
+ * a small relative error.  Incoming values are buffered and merged into the centroids when
+ * the buffer is full.  The minimum and maximum values are kept exactly.
+ * <p>
+ * Digests of different parts of a stream, for instance of the shards of an index, can be
+ * serialized with {@link #toBytes()} and merged with {@link #add(TDigest)}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class TDigest {
+
+  /** Compression that estimates quantiles with an error of about 1% in the middle of the distribution. */
+  public static final double DEFAULT_COMPRESSION = 100;
+
+  private static final byte VERSION = 1;
+
+  private final double compression;
+
+  // merged centroids, sorted by mean
+  private double[] mean;
+  private long[] weight;
+  private int numCentroids;
+
+  // values that are not merged yet
+  private double[] bufferMean;
+  private long[] bufferWeight;
+  private int numBuffered;
+
+  private long totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  public TDigest() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  public TDigest(double compression) {
+    if (compression < 10) {
+      throw new IllegalArgumentException("compression must be >= 10 (got " + compression + ")");
+    }
+    this.compression = compression;
+    int capacity = (int) Math.ceil(compression) + 10;
+    mean = new double[capacity];
+    weight = new long[capacity];
+    bufferMean = new double[5 * capacity];
+    bufferWeight = new long[5 * capacity];
+  }
+
+  public double getCompression() {
+    return compression;
+  }
+
+  /** Returns the number of values added to this digest. */
+  public long size() {
+    return totalWeight;
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  /** Adds a value. */
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  /** Adds <code>count</code> occurrences of a value. */
+  public void add(double value, long count) {
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("Cannot add NaN");
+    }
+    if (count <= 0) {
+      return;
+    }
+    if (numBuffered == bufferMean.length) {
+      compress();
+    }
+    bufferMean[numBuffered] = value;
+    bufferWeight[numBuffered] = count;
+    numBuffered++;
+    totalWeight += count;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /** Adds all values of another digest to this digest. */
+  public void add(TDigest other) {
+    other.compress();
+    for (int i = 0; i < other.numCentroids; i++) {
+      if (numBuffered == bufferMean.length) {
+        compress();
+      }
+      bufferMean[numBuffered] = other.mean[i];
+      bufferWeight[numBuffered] = other.weight[i];
+      numBuffered++;
+      totalWeight += other.weight[i];
+    }
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Returns an estimate of the value below which a fraction <code>q</code> of the values fall,
+   * or {@link Double#NaN} if the digest is empty.
+   */
+  public double quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("q must be in [0, 1] (got " + q + ")");
+    }
+    compress();
+    if (numCentroids == 0) {
+      return Double.NaN;
+    }
+    if (numCentroids == 1) {
+      return mean[0];
+    }
+
+    // the centroid i is centered on the rank (sum of previous weights) + weight[i] / 2,
+    // values are interpolated linearly between the centers of neighbour centroids
+    final double rank = q * totalWeight;
+    double center = weight[0] / 2.0;
+    if (rank <= center) {
+      return min + (mean[0] - min) * (center == 0 ? 0 : rank / center);
+    }
+    for (int i = 0; i < numCentroids - 1; i++) {
+      double nextCenter = center + (weight[i] + weight[i + 1]) / 2.0;
+      if (rank <= nextCenter) {
+        return mean[i] + (mean[i + 1] - mean[i]) * (rank - center) / (nextCenter - center);
+      }
+      center = nextCenter;
+    }
+    double lastHalf = totalWeight - center;
+    return mean[numCentroids - 1] + (max - mean[numCentroids - 1]) * (lastHalf == 0 ? 0 : (rank - center) / lastHalf);
+  }
+
+  /** Merges the buffered values into the centroids. */
+  private void compress() {
+    if (numBuffered == 0) {
+      return;
+    }
+    final int n = numCentroids + numBuffered;
+    final double[] allMean = ArrayUtil.grow(bufferMean, n);
+    final long[] allWeight = ArrayUtil.grow(bufferWeight, n);
+    System.arraycopy(mean, 0, allMean, numBuffered, numCentroids);
+    System.arraycopy(weight, 0, allWeight, numBuffered, numCentroids);
+    new InPlaceMergeSorter() {
+      @Override
+      protected int compare(int i, int j) {
+        return Double.compare(allMean[i], allMean[j]);
+      }
+
+      @Override
+      protected void swap(int i, int j) {
+        double m = allMean[i];
+        allMean[i] = allMean[j];
+        allMean[j] = m;
+        long w = allWeight[i];
+        allWeight[i] = allWeight[j];
+        allWeight[j] = w;
+      }
+    }.sort(0, n);
+
+    // a centroid may grow as long as it spans at most one unit of the scale
+    // k(q) = compression * (asin(2q - 1) + pi/2) / pi
+    int count = 0;
+    double curMean = allMean[0];
+    long curWeight = allWeight[0];
+    long weightSoFar = 0;
+    double weightLimit = totalWeight * qLimit(0);
+    for (int i = 1; i < n; i++) {
+      if (weightSoFar + curWeight + allWeight[i] <= weightLimit) {
+        curWeight += allWeight[i];
+        curMean += (allMean[i] - curMean) * allWeight[i] / curWeight;
+      } else {
+        weightSoFar += curWeight;
+        weightLimit = totalWeight * qLimit((double) weightSoFar / totalWeight);
+        count = append(count, curMean, curWeight);
+        curMean = allMean[i];
+        curWeight = allWeight[i];
+      }
+    }
+    count = append(count, curMean, curWeight);
+    numCentroids = count;
+
+    bufferMean = allMean;
+    bufferWeight = allWeight;
+    numBuffered = 0;
+  }
+
+  private int append(int count, double m, long w) {
+    if (count == mean.length) {
+      mean = ArrayUtil.grow(mean, count + 1);
+      weight = ArrayUtil.grow(weight, count + 1);
+    }
+    mean[count] = m;
+    weight[count] = w;
+    return count + 1;
+  }
+
+  /** Returns the largest quantile that a centroid starting at quantile <code>q</code> may reach. */
+  private double qLimit(double q) {
+    double k = compression * (Math.asin(2 * q - 1) + Math.PI / 2) / Math.PI + 1;
+    if (k >= compression) {
+      return 1;
+    }
+    return (Math.sin(k * Math.PI / compression - Math.PI / 2) + 1) / 2;
+  }
+
+  /** Serializes this digest, see {@link #fromBytes(byte[])}. */
+  public byte[] toBytes() {
+    compress();
+    byte[] bytes = new byte[1 + 8 * 3 + 5 + numCentroids * (8 + 9)];
+    ByteArrayDataOutput out = new ByteArrayDataOutput(bytes);
+    try {
+      out.writeByte(VERSION);
+      out.writeLong(Double.doubleToLongBits(compression));
+      out.writeLong(Double.doubleToLongBits(min));
+      out.writeLong(Double.doubleToLongBits(max));
+      out.writeVInt(numCentroids);
+      for (int i = 0; i < numCentroids; i++) {
+        out.writeLong(Double.doubleToLongBits(mean[i]));
+        out.writeVLong(weight[i]);
+      }
+    } catch (IOException e) {
+      // cannot happen with a byte array
+      throw new RuntimeException(e);
+    }
+    return ArrayUtil.shrink(bytes, out.getPosition());
+  }
+
+  /** Deserializes a digest serialized with {@link #toBytes()}. */
+  public static TDigest fromBytes(byte[] bytes) {
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes);
+    byte version = in.readByte();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported t-digest version: " + version);
+    }
+    TDigest digest = new TDigest(Double.longBitsToDouble(in.readLong()));
+    digest.min = Double.longBitsToDouble(in.readLong());
+    digest.max = Double.longBitsToDouble(in.readLong());
+    int n = in.readVInt();
+    for (int i = 0; i < n; i++) {
+      double m = Double.longBitsToDouble(in.readLong());
+      long w = in.readVLong();
+      digest.numCentroids = digest.append(digest.numCentroids, m, w);
+      digest.totalWeight += w;
+    }
+    return digest;
+  }
+
+  @Override
+  public String toString() {
+    return "TDigest(compression=" + compression + ", size=" + totalWeight + ", centroids=" + (numCentroids + numBuffered) + ")";
+  }
+}
@@ -295,6 +295,9 @@ public class TestDistributedSearch extends BaseDistributedSearchTestCase {
           "stats.field", i1,
           "stats.field", tdate_a,
           "stats.field", tdate_b);
+    // sketches of the shards are merged
+    query("q","*:*", "sort",i1+" desc", "stats", "true", "stats.field", i1,
+          "stats.percentiles", "1,50,99", "stats.calcdistinct", "true", "stats.approximate", "true");
 
     /*** TODO: the failure may come back in "exception"
     try {
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr;
+
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.noggit.ObjectBuilder;
+import org.apache.solr.common.SolrException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Tests the join on doc values, <code>{!join method=dv}</code> */
+@SuppressCodecs({"Lucene3x", "Appending", "Lucene40", "Lucene41", "Lucene42"}) // old formats cannot represent missing values
+public class TestDocValuesJoin extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeTests() throws Exception {
+    System.setProperty("enable.update.log", "false"); // schema12 doesn't support _version_
+    initCore("solrconfig.xml","schema12.xml");
+  }
+
+  @Test
+  public void testDocValuesJoin() throws Exception {
+    clearIndex();
+    assertU(add(doc("id", "1","name", "john", "title", "Director", "dept_sdvs","Engineering")));
+    assertU(add(doc("id", "2","name", "mark", "title", "VP", "dept_sdvs","Marketing")));
+    assertU(add(doc("id", "3","name", "nancy", "title", "MTS", "dept_sdvs","Sales")));
+    assertU(commit());
+    assertU(add(doc("id", "4","name", "dave", "title", "MTS", "dept_sdvs","Support", "dept_sdvs","Engineering")));
+    assertU(add(doc("id", "5","name", "tina", "title", "VP", "dept_sdvs","Engineering")));
+    assertU(add(doc("id","10", "dept_id_sdv", "Engineering", "dept_id_s", "Engineering", "text","These guys develop stuff")));
+    assertU(commit());
+    assertU(add(doc("id","11", "dept_id_sdv", "Marketing", "dept_id_s", "Marketing", "text","These guys make you look good")));
+    assertU(add(doc("id","12", "dept_id_sdv", "Sales", "dept_id_s", "Sales", "text","These guys sell stuff")));
+    assertU(add(doc("id","13", "dept_id_sdv", "Support", "dept_id_s", "Support", "text","These guys help customers")));
+    assertU(commit());
+
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS", "fl","id", "debugQuery","true")
+        ,"/debug/join/{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS=={'_MATCH_':'fromSetSize,toSetSize,method', 'fromSetSize':2, 'toSetSize':3, 'method':'dv'}"
+    );
+
+    // the terms of the index are used by default, even if both fields have doc values
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv}title:MTS", "fl","id", "debugQuery","true")
+        ,"/debug/join/{!join from=dept_sdvs to=dept_id_sdv}title:MTS=={'_MATCH_':'fromSetSize,toSetSize,fromTermCount', 'fromSetSize':2, 'toSetSize':3, 'fromTermCount':4}"
+    );
+
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS", "fl","id")
+        ,"/response=={'numFound':3,'start':0,'docs':[{'id':'10'},{'id':'12'},{'id':'13'}]}"
+    );
+
+    // the cached ordinal maps are reused
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS", "fl","id", "fq","id:[* TO *]", "debugQuery","true")
+        ,"/debug/join/{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS=={'_MATCH_':'ordMapsBuilt', 'ordMapsBuilt':0}"
+    );
+
+    // and copied to the next searcher
+    assertU(commit());
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS", "fl","id", "fq","id:[0 TO *]", "debugQuery","true")
+        ,"/debug/join/{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS=={'_MATCH_':'ordMapsBuilt', 'ordMapsBuilt':0}"
+    );
+
+    assertJQ(req("q","{!join from=dept_id_sdv to=dept_sdvs method=dv}text:develop", "fl","id")
+        ,"/response=={'numFound':3,'start':0,'docs':[{'id':'1'},{'id':'4'},{'id':'5'}]}"
+    );
+
+    // same field, including the same segments
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_sdvs method=dv}name:dave", "fl","id")
+        ,"/response=={'numFound':3,'start':0,'docs':[{'id':'1'},{'id':'4'},{'id':'5'}]}"
+    );
+
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}name:dave", "fl","id", "fq", "text:help")
+        ,"/response=={'numFound':1,'start':0,'docs':[{'id':'13'}]}"
+    );
+
+    // deleted documents are not joined to
+    assertU(delI("12"));
+    assertU(commit());
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}title:MTS", "fl","id")
+        ,"/response=={'numFound':2,'start':0,'docs':[{'id':'10'},{'id':'13'}]}"
+    );
+
+    assertJQ(req("q","{!join from=dept_sdvs to=dept_id_sdv method=dv}noexist_s:*", "fl","id")
+        ,"/response=={'numFound':0,'start':0,'docs':[]}"
+    );
+
+    // fields without doc values
+    assertQEx("doc values join on a field without doc values",
+        req("q","{!join from=dept_sdvs to=dept_id_s method=dv}title:MTS"), SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("unknown method",
+        req("q","{!join from=dept_sdvs to=dept_id_sdv method=foo}title:MTS"), SolrException.ErrorCode.BAD_REQUEST);
+  }
+
+  /** The doc values join matches the same documents as the join on the terms of the index */
+  @Test
+  public void testRandomDocValuesJoin() throws Exception {
+    clearIndex();
+    String[] fields = {"small_sdv", "small2_sdv", "small2_sdvs", "small3_sdvs"};
+    int indexSize = atLeast(50);
+    for (int i = 0; i < indexSize; i++) {
+      List<String> doc = new ArrayList<>(Arrays.asList("id", Integer.toString(i)));
+      for (String field : fields) {
+        int numValues = field.endsWith("s") ? random().nextInt(3) : random().nextInt(2);
+        for (int j = 0; j < numValues; j++) {
+          doc.add(field);
+          doc.add(Character.toString((char) ('a' + random().nextInt(10))));
+        }
+      }
+      assertU(adoc(doc.toArray(new String[doc.size()])));
+      if (random().nextInt(10) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    int iters = atLeast(20);
+    for (int iter = 0; iter < iters; iter++) {
+      String from = fields[random().nextInt(fields.length)];
+      String to = fields[random().nextInt(fields.length)];
+      int lo = random().nextInt(indexSize);
+      String fromQuery = "id:[" + lo + " TO " + (lo + random().nextInt(indexSize)) + "]";
+      Object expected = response("{!join from=" + from + " to=" + to + " method=index}" + fromQuery);
+      Object actual = response("{!join from=" + from + " to=" + to + " method=dv}" + fromQuery);
+      assertEquals(from + " -> " + to + " " + fromQuery, expected, actual);
+    }
+  }
+
+  private Object response(String q) throws Exception {
+    String json = JQ(req("q", q, "fl", "id", "sort", "id asc", "rows", "1000", "wt", "json"));
+    return ((Map) ObjectBuilder.fromJSON(json)).get("response");
+  }
+}
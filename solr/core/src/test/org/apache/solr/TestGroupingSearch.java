@@ -19,6 +19,7 @@ package org.apache.solr;
 
 import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
 import org.noggit.JSONUtil;
 import org.noggit.ObjectBuilder;
 import org.apache.solr.client.solrj.impl.BinaryResponseParser;
@@ -47,6 +48,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+@SuppressCodecs({"Lucene3x", "Appending", "Lucene40", "Lucene41", "Lucene42"}) // old formats lack sorted set doc values or missing values
 public class TestGroupingSearch extends SolrTestCaseJ4 {
 
   public static final String FOO_STRING_FIELD = "foo_s1";
@@ -376,6 +378,133 @@ public class TestGroupingSearch extends SolrTestCaseJ4 {
     );
   }
 
+  @Test
+  public void testGroupingDocValuesGroupCountAndFacets() throws Exception {
+    assertU(add(doc("id", "1", "hotel_sdv", "a", "hotel_s1", "a", "airport_sdvs", "ams", "airport_sdvs", "dus", "airport_s", "ams", "airport_s", "dus")));
+    assertU(add(doc("id", "2", "hotel_sdv", "a", "hotel_s1", "a", "airport_sdvs", "ams", "airport_s", "ams")));
+    assertU(commit());
+    assertU(add(doc("id", "3", "hotel_sdv", "b", "hotel_s1", "b", "airport_sdvs", "ams", "airport_s", "ams")));
+    assertU(add(doc("id", "4", "hotel_sdv", "c", "hotel_s1", "c", "airport_sdvs", "fra", "airport_s", "fra")));
+    assertU(commit());
+    assertU(add(doc("id", "5", "hotel_sdv", "b", "hotel_s1", "b", "airport_sdvs", "ams", "airport_sdvs", "fra", "airport_s", "ams", "airport_s", "fra")));
+    assertU(add(doc("id", "6", "hotel_sdv", "d", "hotel_s1", "d", "airport_sdvs", "dus", "airport_s", "dus")));
+    assertU(commit());
+
+    // the number of groups and the grouped facets of doc values fields are counted by global ordinal
+    assertJQ(req("q", "*:*", "fq", "id:[1 TO 5]", "rows", "0", "group", "true", "group.field", "hotel_sdv", "group.ngroups", "true")
+        , "/grouped/hotel_sdv/ngroups==3"
+    );
+    assertJQ(req("q", "*:*", "rows", "0", "group", "true", "group.field", "hotel_sdv", "group.ngroups", "true",
+        "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs")
+        , "/grouped/hotel_sdv/ngroups==4"
+        , "/facet_counts/facet_fields/airport_sdvs==['ams',2,'dus',2,'fra',2]"
+    );
+    assertJQ(req("q", "*:*", "rows", "0", "group", "true", "group.field", "hotel_sdv",
+        "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs", "facet.limit", "1", "facet.offset", "1", "facet.sort", "index")
+        , "/facet_counts/facet_fields/airport_sdvs==['dus',2]"
+    );
+    assertJQ(req("q", "*:*", "fq", "id:[1 TO 4]", "rows", "0", "group", "true", "group.field", "hotel_sdv",
+        "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs", "facet.prefix", "d", "facet.mincount", "0")
+        , "/facet_counts/facet_fields/airport_sdvs==['dus',1]"
+    );
+    assertJQ(req("q", "*:*", "fq", "id:[1 TO 4]", "rows", "0", "group", "true", "group.field", "hotel_sdv",
+        "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs", "facet.limit", "2")
+        , "/facet_counts/facet_fields/airport_sdvs==['ams',2,'dus',1]"
+    );
+    assertJQ(req("q", "*:*", "fq", "id:[1 TO 4]", "rows", "0", "group", "true", "group.field", "hotel_sdv",
+        "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs", "facet.mincount", "1", "facet.prefix", "x")
+        , "/facet_counts/facet_fields/airport_sdvs==[]"
+    );
+
+    // and are the same as those of indexed fields
+    for (String fq : new String[] {"*:*", "id:[1 TO 3]", "id:(2 4 6)", "id:7"}) {
+      Map dv = (Map) ObjectBuilder.fromJSON(JQ(req("q", "*:*", "fq", fq, "rows", "0", "group", "true",
+          "group.field", "hotel_sdv", "group.ngroups", "true",
+          "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs", "facet.missing", "true")));
+      Map indexed = (Map) ObjectBuilder.fromJSON(JQ(req("q", "*:*", "fq", fq, "rows", "0", "group", "true",
+          "group.field", "hotel_s1", "group.ngroups", "true",
+          "group.facet", "true", "facet", "true", "facet.field", "airport_s", "facet.missing", "true")));
+      assertEquals(((Map) indexed.get("grouped")).get("hotel_s1"), ((Map) dv.get("grouped")).get("hotel_sdv"));
+      assertEquals(((Map) ((Map) indexed.get("facet_counts")).get("facet_fields")).get("airport_s"),
+          ((Map) ((Map) dv.get("facet_counts")).get("facet_fields")).get("airport_sdvs"));
+    }
+
+    // too many groups and values to mark all pairs in a bitset, pairs are buffered
+    for (int i = 100; i < 400; i++) {
+      String hotel = "h" + (i % 257);
+      if (random().nextInt(10) == 0) {
+        assertU(add(doc("id", Integer.toString(i), "hotel_sdv", hotel, "hotel_s1", hotel)));
+      } else {
+        String airport = "x" + random().nextInt(300);
+        assertU(add(doc("id", Integer.toString(i), "hotel_sdv", hotel, "hotel_s1", hotel, "airport_sdvs", airport, "airport_s", airport)));
+      }
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+    String[][] facetParams = {
+        {"facet.missing", "true"},
+        {"facet.limit", "5"},
+        {"facet.limit", "5", "facet.offset", "3", "facet.sort", "index"},
+        {"facet.limit", "-1", "facet.mincount", "2"},
+        {"facet.limit", "10", "facet.prefix", "x1"}
+    };
+    for (String[] params : facetParams) {
+      Map dv = (Map) ObjectBuilder.fromJSON(JQ(req(params, "q", "*:*", "fq", "id:[150 TO 399]", "rows", "0", "group", "true",
+          "group.field", "hotel_sdv", "group.facet", "true", "facet", "true", "facet.field", "airport_sdvs")));
+      Map indexed = (Map) ObjectBuilder.fromJSON(JQ(req(params, "q", "*:*", "fq", "id:[150 TO 399]", "rows", "0", "group", "true",
+          "group.field", "hotel_s1", "group.facet", "true", "facet", "true", "facet.field", "airport_s")));
+      assertEquals(((Map) ((Map) indexed.get("facet_counts")).get("facet_fields")).get("airport_s"),
+          ((Map) ((Map) dv.get("facet_counts")).get("facet_fields")).get("airport_sdvs"));
+    }
+  }
+
+  @Test
+  public void testGroupingDocValuesTopGroupsAndHeads() throws Exception {
+    // doc values fields are grouped by global ordinal, and must be grouped like indexed fields
+    for (int i = 0; i < 200; i++) {
+      String id = Integer.toString(i);
+      String words = "w" + (i % 3) + (i % 5 == 0 ? " w1 w1" : "") + (i % 7 == 0 ? " w2" : "");
+      if (i % 11 == 0) {
+        assertU(add(doc("id", id, "name_t", words, "weight_i", Integer.toString(i % 13), "airport_s", "a" + (i % 4))));
+      } else {
+        String hotel = "h" + (i * 7 % 37);
+        assertU(add(doc("id", id, "name_t", words, "weight_i", Integer.toString(i % 13), "airport_s", "a" + (i % 4),
+            "hotel_sdv", hotel, "hotel_s1", hotel)));
+      }
+      if (random().nextInt(40) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    String[][] groupParams = {
+        {"q", "name_t:(w1 w2)", "fl", "id,score", "rows", "5"},
+        {"q", "name_t:(w1 w2)", "fl", "id", "start", "3", "rows", "4", "group.limit", "3", "group.offset", "1"},
+        {"q", "*:*", "fl", "id", "sort", "weight_i desc, id asc", "group.sort", "weight_i asc, id desc", "group.limit", "2"},
+        {"q", "*:*", "fl", "id", "sort", "weight_i asc, id asc", "rows", "50", "group.ngroups", "true"},
+        {"q", "name_t:w2", "fl", "id", "group.format", "simple", "rows", "7"},
+        {"q", "name_t:w1", "fl", "id", "group.main", "true", "start", "2", "rows", "6"},
+        {"q", "name_t:(w0 w1)", "fl", "id", "rows", "0", "group.truncate", "true", "facet", "true", "facet.field", "airport_s"},
+        {"q", "name_t:(w0 w1)", "fl", "id", "rows", "0", "group.truncate", "true", "group.sort", "weight_i desc, id asc",
+            "facet", "true", "facet.field", "airport_s"},
+    };
+    // twice, so that the second requests reuse the arrays of the first ones
+    for (int iter = 0; iter < 2; iter++) {
+      for (String[] params : groupParams) {
+        Map dv = (Map) ObjectBuilder.fromJSON(JQ(req(params, "group", "true", "group.field", "hotel_sdv")));
+        Map indexed = (Map) ObjectBuilder.fromJSON(JQ(req(params, "group", "true", "group.field", "hotel_s1")));
+        String message = Arrays.toString(params);
+        assertEquals(message, indexed.get("response"), dv.get("response"));
+        assertEquals(message, indexed.get("facet_counts"), dv.get("facet_counts"));
+        if (indexed.containsKey("grouped")) {
+          assertEquals(message, ((Map) indexed.get("grouped")).get("hotel_s1"), ((Map) dv.get("grouped")).get("hotel_sdv"));
+        }
+      }
+    }
+  }
+
   @Test
   public void testGroupingGroupedBasedFacetingWithTaggedFilter() throws Exception {
     assertU(add(doc("id", "1", "cat_sI", "a", "bday", "2012-11-20T00:00:00Z")));
@@ -478,5 +478,49 @@ public class NoFacetTest extends AbstractAnalyticsStatsTest {
     long stringResult = (Long)getStatResult("misr", "string_sd", VAL_TYPE.LONG);
     assertEquals(getRawResponse(), stringMissing, stringResult);
   }
+  
+  @Test
+  public void approximateMedianTest() throws Exception { 
+    //Int
+    Double intResult = (Double)getStatResult("amedr", "int_id", VAL_TYPE.DOUBLE);
+    Double intTest = (Double)calculateNumberStat(intTestStart, "median");
+    assertEquals(getRawResponse(), intTest, intResult, 0.00000001);
+
+    //Double
+    Double doubleResult = (Double)getStatResult("amedr", "double_dd", VAL_TYPE.DOUBLE);
+    Double doubleTest = (Double)calculateNumberStat(doubleTestStart, "median");
+    assertEquals(getRawResponse(), doubleTest, doubleResult, 0.00000001);
+  }
+  
+  @Test
+  public void approximatePerc60Test() throws Exception { 
+    //Float, estimated from the neighbour values
+    Double floatResult = (Double)getStatResult("ap6r", "float_fd", VAL_TYPE.DOUBLE);
+    Float floatTest = (Float)calculateStat(floatTestStart, "perc_60");
+    assertEquals(getRawResponse(), floatTest, floatResult, 1.0);
+
+    //String, not sketched
+    String stringResult = (String)getStatResult("ap6r", "string_sd", VAL_TYPE.STRING);
+    String stringTest = (String)calculateStat(stringTestStart, "perc_60");
+    assertEquals(getRawResponse(), stringTest, stringResult);
+  }
+  
+  @Test
+  public void approximateUniqueTest() throws Exception { 
+    //Long
+    Long longResult = (Long)getStatResult("aur", "long_ld", VAL_TYPE.LONG);
+    Long longTest = (Long)calculateStat(longTestStart, "unique");
+    assertEquals(getRawResponse(), longTest, longResult);
+
+    //Date
+    Long dateResult = (Long)getStatResult("aur", "date_dtd", VAL_TYPE.LONG);
+    Long dateTest = (Long)calculateStat(dateTestStart, "unique");
+    assertEquals(getRawResponse(), dateTest, dateResult);
+
+    //String
+    Long stringResult = (Long)getStatResult("aur", "string_sd", VAL_TYPE.LONG);
+    Long stringTest = (Long)calculateStat(stringTestStart, "unique");
+    assertEquals(getRawResponse(), stringTest, stringResult);
+  }
 
 }
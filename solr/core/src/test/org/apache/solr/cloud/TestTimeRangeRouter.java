@@ -0,0 +1,140 @@
+package org.apache.solr.cloud;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.TimeRangeRouter;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+
+public class TestTimeRangeRouter extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  private static DocCollection collection(String field, Slice... slices) {
+    Map<String,Slice> sliceMap = new LinkedHashMap<>();
+    for (Slice slice : slices) {
+      sliceMap.put(slice.getName(), slice);
+    }
+    Map<String,Object> props = map(DocCollection.DOC_ROUTER, map("name", TimeRangeRouter.NAME, "field", field));
+    return new DocCollection("collection1", sliceMap, props, DocRouter.getDocRouter(TimeRangeRouter.NAME));
+  }
+
+  private static Slice slice(String name, String min, String max) {
+    return new Slice(name, null, min == null ? null : map(TimeRangeRouter.MIN_VALUE, min, TimeRangeRouter.MAX_VALUE, max));
+  }
+
+  private static Slice day(int day) {
+    return slice("day" + day, "2014-01-0" + day + "T00:00:00Z", "2014-01-0" + day + "T23:59:59.999Z");
+  }
+
+  private static void assertSlices(DocCollection coll, String shardKeys, SolrParams p, String... expected) {
+    Collection<Slice> slices = coll.getRouter().getSearchSlices(shardKeys, p, coll);
+    Set<String> names = new HashSet<>();
+    for (Slice slice : slices) {
+      names.add(slice.getName());
+    }
+    assertEquals(p.toString(), new HashSet<>(Arrays.asList(expected)), names);
+  }
+
+  public void testSearchSlices() throws Exception {
+    DocCollection coll = collection("ts_tdt1", day(1), day(2), day(3), day(4), day(5), slice("unknown", null, null));
+    String now = Long.toString(1388923200000L);  // 2014-01-05T12:00:00Z
+
+    assertSlices(coll, null, params(), "day1", "day2", "day3", "day4", "day5", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[2014-01-03T00:00:00Z TO *]"), "day3", "day4", "day5", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[2014-01-02T12:00:00Z TO 2014-01-03T06:00:00.5Z}"), "day2", "day3", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:\"2014-01-02T05:00:00Z\""), "day2", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[* TO 2014-01-01T12:00:00Z]", "fq", "id:1"), "day1", "unknown");
+
+    // date math
+    assertSlices(coll, null, params("fq", "ts_tdt1:[NOW-1DAY TO NOW]", "NOW", now), "day4", "day5", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[NOW/DAY TO *]", "NOW", now), "day5", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[NOW/DAY-2DAYS TO NOW/DAY-1MILLI]", "NOW", now), "day3", "day4", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[NOW/MONTH TO NOW/MONTH+1DAY]", "NOW", now), "day1", "day2", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[2014-01-04T00:00:00Z+1DAY TO *]"), "day5", "unknown");
+
+    // the ranges of several filters intersect
+    assertSlices(coll, null, params("fq", "ts_tdt1:[2014-01-02T00:00:00Z TO *]", "fq", "ts_tdt1:[* TO 2014-01-03T00:00:00Z]"),
+        "day2", "day3", "unknown");
+
+    // filters that aren't only a range of the field don't prune
+    assertSlices(coll, null, params("fq", "other_tdt1:[2014-01-03T00:00:00Z TO *]"), "day1", "day2", "day3", "day4", "day5", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[2014-01-03T00:00:00Z TO *] OR id:1"), "day1", "day2", "day3", "day4", "day5", "unknown");
+    assertSlices(coll, null, params("fq", "ts_tdt1:[NOW-1FORTNIGHT TO *]"), "day1", "day2", "day3", "day4", "day5", "unknown");
+    // tagged filters can be excluded by facets and stats
+    assertSlices(coll, null, params("fq", "{!tag=t}ts_tdt1:[NOW/DAY TO *]", "NOW", now), "day1", "day2", "day3", "day4", "day5", "unknown");
+
+    // named shards are searched as named
+    assertSlices(coll, "day1,day2", params("fq", "ts_tdt1:[2014-01-05T00:00:00Z TO *]"), "day1", "day2");
+
+    // a shard is kept when none can match
+    DocCollection known = collection("ts_tdt1", day(1), day(2));
+    assertEquals(1, known.getRouter().getSearchSlices(null, params("fq", "ts_tdt1:[2015-01-01T00:00:00Z TO *]"), known).size());
+
+    // numbers
+    DocCollection numeric = collection("n_tl1", slice("a", "0", "99"), slice("b", "100", "199"), slice("c", "200", "299"));
+    assertSlices(numeric, null, params("fq", "n_tl1:[150 TO 250]"), "b", "c");
+    assertSlices(numeric, null, params("fq", "n_tl1:42"), "a");
+    assertSlices(numeric, null, params("fq", "n_tl1:[99.5 TO 100.5]"), "b");
+  }
+
+  public void testRange() throws Exception {
+    assertU(adoc("id", "1", "ts_tdt1", "2014-01-02T03:04:05Z", "n_tl1", "-5"));
+    assertU(adoc("id", "2", "ts_tdt1", "2014-01-01T00:00:00.5Z", "n_tl1", "12345678901"));
+    assertU(adoc("id", "3", "ts_tdt1", "2014-01-03T00:00:00Z", "n_tl1", "7"));
+    assertU(commit());
+
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      assertEquals(Arrays.asList("2014-01-01T00:00:00.5Z", "2014-01-03T00:00:00Z"),
+          Arrays.asList(TimeRangeListener.getRange(searcher.get(), "ts_tdt1")));
+      assertEquals(Arrays.asList("-5", "12345678901"), Arrays.asList(TimeRangeListener.getRange(searcher.get(), "n_tl1")));
+      assertEquals(Arrays.asList("1", "3"), Arrays.asList(TimeRangeListener.getRange(searcher.get(), "id")));
+      assertNull(TimeRangeListener.getRange(searcher.get(), "missing_tdt1"));
+
+      // the published range is rounded out, so that it only changes when values pass the end of an interval
+      assertEquals(Arrays.asList("2014-01-01T00:00:00Z", "2014-01-03T00:59:59.999Z"),
+          Arrays.asList(TimeRangeListener.getPublishedRange(searcher.get(), "ts_tdt1")));
+      assertEquals(Arrays.asList("-5", "12348030975"), Arrays.asList(TimeRangeListener.getPublishedRange(searcher.get(), "n_tl1")));
+      assertEquals(Arrays.asList("1", "3"), Arrays.asList(TimeRangeListener.getPublishedRange(searcher.get(), "id")));
+    } finally {
+      searcher.decref();
+    }
+
+    // the published range of a slice prunes a query on its own format
+    DocCollection coll = collection("ts_tdt1", slice("a", "2014-01-01T00:00:00.5Z", "2014-01-03T00:00:00Z"),
+        slice("b", "2014-01-03T00:00:00.001Z", "2014-01-04T00:00:00Z"));
+    assertSlices(coll, null, params("fq", "ts_tdt1:[* TO 2014-01-03T00:00:00Z]"), "a");
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.core;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NativeMMapAdvisor;
+import org.apache.lucene.store.RateLimitedDirectoryWrapper;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.DirectoryFactory.DirContext;
+
+/**
+ * Test-case for MMapDirectoryFactory
+ */
+public class MMapDirectoryFactoryTest extends LuceneTestCase {
+
+  public void testAdviceAndPreload() throws Exception {
+    NamedList<Object> args = new NamedList<>();
+    args.add("preload", "tip, dvd,");
+    MMapDirectoryFactory factory = new MMapDirectoryFactory();
+    factory.init(args);
+    File path = createTempDir("mmap");
+    MMapDirectory dir = (MMapDirectory) factory.create(path.getAbsolutePath(), DirContext.DEFAULT);
+    try {
+      assertEquals(new HashSet<>(Arrays.asList("tip", "dvd")), dir.getPreloadExtensions());
+      assertNull(dir.getAdvisor());
+    } finally {
+      dir.close();
+    }
+
+    args = new NamedList<>();
+    args.add("madvise", "true");
+    factory = new MMapDirectoryFactory();
+    factory.init(args);
+    dir = (MMapDirectory) factory.create(path.getAbsolutePath(), DirContext.DEFAULT);
+    try {
+      // madvise is only used if the native library is available
+      assertEquals(NativeMMapAdvisor.isAvailable(), dir.getAdvisor() != null);
+      assertTrue(dir.getPreloadExtensions().isEmpty());
+    } finally {
+      dir.close();
+    }
+  }
+
+  public void testMoveRenamesWithChunkCache() throws Exception {
+    NamedList<Object> args = new NamedList<>();
+    args.add("storedFieldsChunkCacheMB", 1);
+    args.add("maxWriteMBPerSecDefault", 100.0);
+    MMapDirectoryFactory factory = new MMapDirectoryFactory();
+    factory.init(args);
+    File fromPath = createTempDir("from");
+    File toPath = createTempDir("to");
+    try {
+      // the index dirs are wrapped by the chunk cache, over the rate limiter
+      Directory fromDir = factory.get(fromPath.getAbsolutePath(), DirContext.DEFAULT, "single");
+      Directory toDir = factory.get(toPath.getAbsolutePath(), DirContext.DEFAULT, "single");
+      assertTrue(fromDir instanceof FilterDirectory);
+      assertTrue(((FilterDirectory) fromDir).getDelegate() instanceof RateLimitedDirectoryWrapper);
+
+      IndexOutput out = fromDir.createOutput("_0.fdt", IOContext.DEFAULT);
+      out.writeLong(42);
+      out.close();
+      Object fileKey = Files.readAttributes(new File(fromPath, "_0.fdt").toPath(), BasicFileAttributes.class).fileKey();
+      assumeTrue("no file keys on this file system", fileKey != null);
+
+      factory.move(fromDir, toDir, "_0.fdt", IOContext.DEFAULT);
+
+      // renamed rather than copied
+      assertFalse(new File(fromPath, "_0.fdt").exists());
+      assertEquals(fileKey, Files.readAttributes(new File(toPath, "_0.fdt").toPath(), BasicFileAttributes.class).fileKey());
+      factory.release(fromDir);
+      factory.release(toDir);
+    } finally {
+      factory.close();
+    }
+  }
+}
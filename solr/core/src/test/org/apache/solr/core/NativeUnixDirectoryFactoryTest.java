@@ -0,0 +1,154 @@
+package org.apache.solr.core;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.CheckIndex;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NativeMMapAdvisor;
+import org.apache.lucene.store.NativeUnixDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.DirectoryFactory.DirContext;
+
+/**
+ * Test-case for NativeUnixDirectoryFactory
+ */
+public class NativeUnixDirectoryFactoryTest extends LuceneTestCase {
+
+  public void testMerges() throws Exception {
+    NamedList<Object> args = new NamedList<>();
+    args.add("minMergeSizeMB", "0");
+    args.add("directReads", Boolean.toString(random().nextBoolean()));
+    NativeUnixDirectoryFactory factory = new NativeUnixDirectoryFactory();
+    factory.init(args);
+    File path = createTempDir("direct");
+    Directory dir = factory.create(path.getAbsolutePath(), DirContext.DEFAULT);
+    Object written;
+    try {
+      // falls back to the MMapDirectory if the native library isn't available
+      if (NativeMMapAdvisor.isAvailable()) {
+        assertTrue(dir instanceof NativeUnixDirectory);
+      } else {
+        assertTrue(dir instanceof MMapDirectory);
+      }
+
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMaxBufferedDocs(10);
+      IndexWriter w = new IndexWriter(dir, iwc);
+      int numDocs = atLeast(100);
+      for (int i=0; i<numDocs; i++) {
+        Document doc = new Document();
+        doc.add(new TextField("body", "document " + i, Field.Store.YES));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      w.close();
+      assertTrue(new CheckIndex(dir).checkIndex().clean);
+
+      NamedList stats = factory.getStatistics();
+      assertEquals(NativeMMapAdvisor.isAvailable(), stats.get("nativeAvailable"));
+      long directOutputs = (Long) stats.get("directOutputs");
+      long directBytesWritten = (Long) stats.get("directBytesWritten");
+      if (NativeMMapAdvisor.isAvailable()) {
+        assertTrue(directOutputs > 0 || (Long) stats.get("fallbacks") > 0);
+        assertEquals(directOutputs > 0, directBytesWritten > 0);
+      } else {
+        assertEquals(0L, directOutputs);
+        assertEquals(0L, directBytesWritten);
+      }
+      written = stats.get("directBytesWritten");
+    } finally {
+      dir.close();
+    }
+    // the totals of closed directories are kept
+    assertEquals(written, factory.getStatistics().get("directBytesWritten"));
+  }
+
+  public void testCommitSyncs() throws Exception {
+    final Set<String> synced = Collections.synchronizedSet(new HashSet<String>());
+    final Set<String> syncedDirect = Collections.synchronizedSet(new HashSet<String>());
+    File path = createTempDir("direct");
+    Directory delegate = new MMapDirectory(path) {
+      @Override
+      protected void fsync(String name) throws IOException {
+        synced.add(name);
+        super.fsync(name);
+      }
+    };
+    Directory dir = delegate;
+    if (NativeMMapAdvisor.isAvailable()) {
+      dir = new NativeUnixDirectory(path, NativeUnixDirectory.DEFAULT_MERGE_BUFFER_SIZE, 0, delegate) {
+        @Override
+        protected void fsync(String name) throws IOException {
+          syncedDirect.add(name);
+          super.fsync(name);
+        }
+      };
+    }
+    try {
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMaxBufferedDocs(10);
+      IndexWriter w = new IndexWriter(dir, iwc);
+      for (int i=0; i<50; i++) {
+        Document doc = new Document();
+        doc.add(new TextField("body", "document " + i, Field.Store.YES));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      w.commit();
+      w.close();
+
+      // every file of the commit was synced, by the delegate or by the direct outputs
+      SegmentInfos infos = new SegmentInfos();
+      infos.read(dir);
+      for (String file : infos.files(dir, false)) {
+        assertTrue(file, synced.contains(file) || syncedDirect.contains(file));
+      }
+      if (NativeMMapAdvisor.isAvailable() && ((NativeUnixDirectory) dir).getFallbackCount() == 0) {
+        assertFalse(syncedDirect.isEmpty());
+      }
+      assertFalse(synced.isEmpty());
+    } finally {
+      dir.close();
+    }
+  }
+
+  public void testInvalidBufferSize() throws Exception {
+    NamedList<Object> args = new NamedList<>();
+    args.add("mergeBufferSize", "1000");
+    try {
+      new NativeUnixDirectoryFactory().init(args);
+      fail("mergeBufferSize must be a multiple of 512");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
@@ -72,6 +72,7 @@ public class TestCodecSupport extends SolrTestCaseJ4 {
     assertEquals("Pulsing41", format.getPostingsFormatForField("bar_pulsing").getName());
     assertEquals("Lucene41", format.getPostingsFormatForField("foo_standard").getName());
     assertEquals("Lucene41", format.getPostingsFormatForField("bar_standard").getName());
+    assertEquals("Lucene41Impacts", format.getPostingsFormatForField("foo_impacts").getName());
   }
 
   public void testDynamicFieldsDocValuesFormats() {
@@ -99,6 +99,12 @@ public class TestReplicationHandler extends SolrTestCaseJ4 {
   @Before
   public void setUp() throws Exception {
     super.setUp();
+    if (random().nextBoolean()) {
+      // concurrent, chunked downloads
+      System.setProperty("solr.tests.replication.fetchThreads", Integer.toString(TestUtil.nextInt(random(), 1, 4)));
+      System.setProperty("solr.tests.replication.chunkSizeMB", random().nextBoolean() ? "0" : "0.01");
+      System.setProperty("solr.tests.replication.maxDownloadMBPerSec", random().nextBoolean() ? "0" : "1000");
+    }
 //    System.setProperty("solr.directoryFactory", "solr.StandardDirectoryFactory");
     // For manual testing only
     // useFactory(null); // force an FS factory.
@@ -126,6 +132,9 @@ public class TestReplicationHandler extends SolrTestCaseJ4 {
   @After
   public void tearDown() throws Exception {
     super.tearDown();
+    System.clearProperty("solr.tests.replication.fetchThreads");
+    System.clearProperty("solr.tests.replication.chunkSizeMB");
+    System.clearProperty("solr.tests.replication.maxDownloadMBPerSec");
     masterJetty.stop();
     slaveJetty.stop();
     master.tearDown();
@@ -294,6 +303,9 @@ public class TestReplicationHandler extends SolrTestCaseJ4 {
                    "true", details.get("isSlave"));
       assertNotNull("slave has slave section", 
                     details.get("slave"));
+      assertEquals("slave fetchThreads",
+                   Integer.valueOf(System.getProperty("solr.tests.replication.fetchThreads", "1")),
+                   ((NamedList)details.get("slave")).get(ReplicationHandler.FETCH_THREADS));
       // SOLR-2677: assert not false negatives
       Object timesFailed = ((NamedList)details.get("slave")).get(SnapPuller.TIMES_FAILED);
       assertEquals("slave has fetch error count",
@@ -0,0 +1,404 @@
+package org.apache.solr.handler;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.RequestHandlers;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.BinaryQueryResponseWriter;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Downloads the index of the test core with a {@link SnapPuller} that streams the files
+ * in-process from the core's {@link ReplicationHandler}, which lets tests break the
+ * downloads at will.
+ */
+public class TestSnapPuller extends SolrTestCaseJ4 {
+
+  private static long generation;
+  private static List<Map<String,Object>> files;
+  private static Map<String,byte[]> contents;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // temp index dirs are only removed from the local file system
+    useFactory("solr.MockFSDirectoryFactory");
+    initCore("solrconfig.xml", "schema.xml");
+    for (int i = 0; i < 300; i++) {
+      assertU(adoc("id", Integer.toString(i),
+          "name", "document " + i + " " + Long.toHexString(i * 0x9E3779B97F4A7C15L)));
+    }
+    assertU(commit());
+
+    files = new ArrayList<>();
+    contents = new HashMap<>();
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      IndexCommit commit = searcher.get().getIndexReader().getIndexCommit();
+      generation = commit.getGeneration();
+      Directory dir = commit.getDirectory();
+      for (String name : commit.getFileNames()) {
+        IndexInput in = dir.openInput(name, IOContext.READONCE);
+        try {
+          byte[] bytes = new byte[(int) in.length()];
+          in.readBytes(bytes, 0, bytes.length);
+          contents.put(name, bytes);
+        } finally {
+          in.close();
+        }
+        Map<String,Object> file = new HashMap<>();
+        file.put(ReplicationHandler.NAME, name);
+        file.put(ReplicationHandler.SIZE, (long) contents.get(name).length);
+        files.add(file);
+      }
+    } finally {
+      searcher.decref();
+    }
+    // the largest file first, so that it is the first one that single threaded fetches download
+    Collections.sort(files, new Comparator<Map<String,Object>>() {
+      @Override
+      public int compare(Map<String,Object> a, Map<String,Object> b) {
+        return Long.compare((Long) b.get(ReplicationHandler.SIZE), (Long) a.get(ReplicationHandler.SIZE));
+      }
+    });
+  }
+
+  /** Returns the response of the core's ReplicationHandler to a request for file content */
+  private static byte[] fileStream(SolrParams params) throws Exception {
+    SolrCore core = h.getCore();
+    SolrQueryRequest req = new LocalSolrQueryRequest(core, params);
+    try {
+      SolrQueryResponse rsp = new SolrQueryResponse();
+      core.execute(core.getRequestHandler("/replication"), req, rsp);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ((BinaryQueryResponseWriter) core.getQueryResponseWriter(ReplicationHandler.FILE_STREAM)).write(out, req, rsp);
+      return out.toByteArray();
+    } finally {
+      req.close();
+    }
+  }
+
+  /** Returns the content of a file stream, checking the checksums of its packets */
+  private static byte[] readPackets(byte[] stream) throws Exception {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    while (true) {
+      int size = in.readInt();
+      if (size == 0) {
+        return out.toByteArray();
+      }
+      long checksum = in.readLong();
+      byte[] packet = new byte[size];
+      in.readFully(packet);
+      Adler32 adler = new Adler32();
+      adler.update(packet, 0, size);
+      assertEquals(checksum, adler.getValue());
+      out.write(packet);
+    }
+  }
+
+  private static String largestFile() {
+    return (String) files.get(0).get(ReplicationHandler.NAME);
+  }
+
+  /** A SnapPuller whose downloads stream files from the test core, see {@link #corrupt} */
+  private static class LocalSnapPuller extends SnapPuller {
+    /** The file and offset of each request */
+    final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    LocalSnapPuller(int fetchThreads, long chunkSize) {
+      super(initArgs(fetchThreads, chunkSize), new ReplicationHandler(), h.getCore());
+    }
+
+    private static NamedList<Object> initArgs(int fetchThreads, long chunkSize) {
+      NamedList<Object> args = new NamedList<>();
+      args.add(ReplicationHandler.MASTER_URL, "http://127.0.0.1:1/solr");
+      args.add(ReplicationHandler.FETCH_THREADS, Integer.toString(fetchThreads));
+      args.add(ReplicationHandler.CHUNK_SIZE_MB, Double.toString(chunkSize / 1024. / 1024.));
+      return args;
+    }
+
+    @Override
+    InputStream openIndexFileStream(SolrParams params) throws Exception {
+      assertEquals("/replication", params.get(CommonParams.QT));
+      String request = params.get(ReplicationHandler.FILE) + "@" + params.get(ReplicationHandler.OFFSET, "0");
+      requests.add(request);
+      byte[] stream = fileStream(params);
+      if (corrupt(request)) {
+        // flip a bit of the content of the first packet
+        stream[12] ^= 1;
+      }
+      return new ByteArrayInputStream(stream);
+    }
+
+    /** Whether to corrupt the response to this request */
+    boolean corrupt(String request) {
+      return false;
+    }
+
+    void download(Directory dir) throws Exception {
+      downloadIndexFiles(files, dir, generation);
+    }
+  }
+
+  private static void assertDownloaded(Directory dir) throws Exception {
+    assertEquals(contents.keySet(), new HashSet<>(Arrays.asList(dir.listAll())));
+    for (Map.Entry<String,byte[]> entry : contents.entrySet()) {
+      IndexInput in = dir.openInput(entry.getKey(), IOContext.READONCE);
+      try {
+        byte[] bytes = new byte[(int) in.length()];
+        in.readBytes(bytes, 0, bytes.length);
+        assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), bytes));
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  @Test
+  public void testEndOffset() throws Exception {
+    String name = largestFile();
+    byte[] content = contents.get(name);
+    assertTrue(content.length > 100);
+
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.set(ReplicationHandler.COMMAND, ReplicationHandler.CMD_GET_FILE);
+    params.set(ReplicationHandler.FILE, name);
+    params.set(ReplicationHandler.GENERATION, Long.toString(generation));
+    params.set(ReplicationHandler.CHECKSUM, true);
+    params.set(CommonParams.WT, ReplicationHandler.FILE_STREAM);
+    params.set(ReplicationHandler.OFFSET, "10");
+    params.set(ReplicationHandler.END_OFFSET, Integer.toString(content.length - 10));
+    assertTrue(Arrays.equals(Arrays.copyOfRange(content, 10, content.length - 10), readPackets(fileStream(params))));
+
+    // the end is clamped to the length of the file
+    params.set(ReplicationHandler.END_OFFSET, Integer.toString(content.length + 10));
+    assertTrue(Arrays.equals(Arrays.copyOfRange(content, 10, content.length), readPackets(fileStream(params))));
+  }
+
+  @Test
+  public void testChunkedDownload() throws Exception {
+    long size = contents.get(largestFile()).length;
+    LocalSnapPuller puller = new LocalSnapPuller(3, size / 4);
+    Directory dir = new RAMDirectory();
+    try {
+      puller.download(dir);
+      // the chunks were joined, and neither they nor the checksums are left
+      assertDownloaded(dir);
+      int numChunks = (int) ((size + puller.getChunkSize() - 1) / puller.getChunkSize());
+      assertTrue(numChunks >= 4);
+      int requests = 0;
+      for (String request : puller.requests) {
+        if (request.startsWith(largestFile() + "@")) {
+          requests++;
+        }
+      }
+      assertEquals(numChunks, requests);
+    } finally {
+      puller.destroy();
+      dir.close();
+    }
+  }
+
+  @Test
+  public void testChecksumMismatch() throws Exception {
+    // the first two responses are corrupt: their download is retried
+    final AtomicInteger corrupt = new AtomicInteger(2);
+    LocalSnapPuller puller = new LocalSnapPuller(1, 0) {
+      @Override
+      boolean corrupt(String request) {
+        return corrupt.getAndDecrement() > 0;
+      }
+    };
+    Directory dir = new RAMDirectory();
+    try {
+      puller.download(dir);
+      assertDownloaded(dir);
+      assertEquals(files.size() + 2, puller.requests.size());
+      assertEquals(puller.requests.get(0), puller.requests.get(1));
+      assertEquals(puller.requests.get(0), puller.requests.get(2));
+    } finally {
+      puller.destroy();
+      dir.close();
+    }
+
+    // a response that is always corrupt fails the download after some retries
+    puller = new LocalSnapPuller(1, 0) {
+      @Override
+      boolean corrupt(String request) {
+        return true;
+      }
+    };
+    dir = new RAMDirectory();
+    try {
+      puller.download(dir);
+      fail();
+    } catch (SolrException e) {
+      assertEquals(6, puller.requests.size());
+    } finally {
+      puller.destroy();
+      dir.close();
+    }
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    final String name = largestFile();
+    long size = contents.get(name).length;
+    final long chunkSize = size / 4;
+    final String lastChunk = name + "@" + (size - 1) / chunkSize * chunkSize;
+    // the download of the last chunk of the largest file always fails
+    LocalSnapPuller puller = new LocalSnapPuller(1, chunkSize) {
+      @Override
+      boolean corrupt(String request) {
+        return request.equals(lastChunk);
+      }
+    };
+    assertEquals(chunkSize, puller.getChunkSize());
+    int numChunks = (int) ((size + chunkSize - 1) / chunkSize);
+    Directory dir = new RAMDirectory();
+    try {
+      try {
+        puller.download(dir);
+        fail();
+      } catch (SolrException e) {
+        // expected
+      }
+      puller.destroy();
+
+      // the other chunks are left with their checksums
+      List<String> left = Arrays.asList(dir.listAll());
+      for (int i = 0; i < numChunks - 1; i++) {
+        assertTrue(left.contains(SnapPuller.chunkName(name, i)));
+        assertTrue(left.contains(SnapPuller.chunkName(name, i) + SnapPuller.CHECKSUM_SUFFIX));
+      }
+      assertFalse(left.contains(SnapPuller.chunkName(name, numChunks - 1)));
+
+      // the content of the first chunk changes, but not its length
+      String chunk0 = SnapPuller.chunkName(name, 0);
+      long length = dir.fileLength(chunk0);
+      dir.deleteFile(chunk0);
+      IndexOutput out = dir.createOutput(chunk0, IOContext.DEFAULT);
+      for (long i = 0; i < length; i++) {
+        out.writeByte((byte) 42);
+      }
+      out.close();
+
+      puller = new LocalSnapPuller(1, chunkSize);
+      puller.download(dir);
+      assertDownloaded(dir);
+      // the first chunk failed its checksum, the other chunks that were left are not downloaded again
+      assertTrue(puller.requests.contains(name + "@0"));
+      assertTrue(puller.requests.contains(lastChunk));
+      for (int i = 1; i < numChunks - 1; i++) {
+        assertFalse(puller.requests.contains(name + "@" + (i * chunkSize)));
+      }
+    } finally {
+      puller.destroy();
+      dir.close();
+    }
+  }
+
+  /** Returns the core's ReplicationHandler, which is informed of the core by the first call */
+  private static ReplicationHandler replicationHandler() {
+    return (ReplicationHandler) ((RequestHandlers.LazyRequestHandlerWrapper)
+        h.getCore().getRequestHandler("/replication")).getWrappedHandler();
+  }
+
+  @Test
+  public void testTmpIndexDirsAfterReload() throws Exception {
+    SolrCore core = h.getCore();
+    File dataDir = new File(core.getDataDir());
+    File resumable = new File(dataDir, "index.20140101000000000");
+    File stale = new File(dataDir, "index.20130101000000000");
+    assertTrue(resumable.mkdirs());
+    assertTrue(stale.mkdirs());
+    try {
+      ReplicationHandler handler = replicationHandler();
+      handler.keepResumableDownload(new SnapPuller.ResumableDownload("http://master/solr", generation, resumable.getName()));
+
+      h.reload();
+
+      // the download to resume is read back, and the temp index dir that no download refers to is removed
+      handler = replicationHandler();
+      assertTrue(resumable.isDirectory());
+      assertFalse(stale.exists());
+      assertTrue(new File(h.getCore().getIndexDir()).isDirectory());
+      SnapPuller.ResumableDownload download = handler.takeResumableDownload();
+      assertNotNull(download);
+      assertEquals("http://master/solr", download.masterUrl);
+      assertEquals(generation, download.generation);
+      assertEquals(resumable.getName(), download.tmpIdxDirName);
+      assertNull(handler.takeResumableDownload());
+      assertNull(handler.loadReplicationProperties().getProperty(SnapPuller.RESUMABLE_INDEX_DIR));
+
+      // once taken, it is not resumed after the next reload, and is removed
+      h.reload();
+      replicationHandler();
+      assertFalse(resumable.exists());
+    } finally {
+      FileUtils.deleteDirectory(resumable);
+      FileUtils.deleteDirectory(stale);
+    }
+  }
+
+  @Test
+  public void testRateLimiter() throws Exception {
+    SnapPuller.DownloadRateLimiter limiter = new SnapPuller.DownloadRateLimiter(1);
+    assertEquals(0, limiter.reserve(1024 * 1024));
+    // the following transfers are reserved without pausing, one second after the other
+    long pause1 = limiter.reserve(1024 * 1024);
+    long pause2 = limiter.reserve(1024 * 1024);
+    assertTrue(pause1 > 500000000L);
+    assertTrue(pause2 > pause1 + 500000000L);
+  }
+}
@@ -0,0 +1,110 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AdmissionControllerTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  private ResponseBuilder prepare(SolrQueryRequest req) throws Exception {
+    ResponseBuilder rb = new ResponseBuilder(req, new SolrQueryResponse(), Collections.<SearchComponent>emptyList());
+    new QueryComponent().prepare(rb);
+    return rb;
+  }
+
+  @Test
+  public void testEstimateCost() throws Exception {
+    AdmissionController admission = new AdmissionController(10, -1, 0);
+    SolrQueryRequest req = req("q", "*:*");
+    try {
+      assertEquals(1, admission.estimateCost(prepare(req)));
+    } finally {
+      req.close();
+    }
+
+    StringBuilder q = new StringBuilder();
+    for (int i = 0; i < 32; i++) {
+      q.append(" id:").append(i);
+    }
+    req = req("q", q.toString(), "facet", "true", "facet.field", "cat_s", "facet.field", "name_s", "f.name_s.facet.limit", "-1",
+        "start", "1500", "rows", "500");
+    try {
+      // 32 clauses, 2 facet fields of which one unlimited, and 2000 documents
+      assertEquals(1 + 2 + 3 + 2, admission.estimateCost(prepare(req)));
+    } finally {
+      req.close();
+    }
+
+    req = req("q", q.toString(), "rows", "1000000");
+    try {
+      assertEquals(10, admission.estimateCost(prepare(req)));
+    } finally {
+      req.close();
+    }
+  }
+
+  @Test
+  public void testReject() throws Exception {
+    AdmissionController admission = new AdmissionController(2, 0, 10);
+    SolrQueryRequest req = req("q", "*:*", "rows", "1000");
+    try {
+      ResponseBuilder rb = prepare(req);
+      int cost = admission.acquire(rb);
+      assertEquals(2, cost);
+      try {
+        admission.acquire(rb);
+        fail();
+      } catch (SolrException e) {
+        assertEquals(SolrException.ErrorCode.SERVICE_UNAVAILABLE.code, e.code());
+      }
+      admission.release(cost);
+      admission.release(admission.acquire(rb));
+
+      // a request may wait, but not longer than allowed
+      admission = new AdmissionController(2, 1, 10);
+      cost = admission.acquire(rb);
+      try {
+        admission.acquire(rb);
+        fail();
+      } catch (SolrException e) {
+        assertEquals(SolrException.ErrorCode.SERVICE_UNAVAILABLE.code, e.code());
+      }
+      admission.release(cost);
+
+      NamedList stats = admission.getStatistics();
+      assertEquals(1L, stats.get("admitted"));
+      assertEquals(1L, stats.get("timedOut"));
+      assertEquals(0, stats.get("costInFlight"));
+    } finally {
+      req.close();
+    }
+  }
+}
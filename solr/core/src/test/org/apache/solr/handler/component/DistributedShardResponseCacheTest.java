@@ -0,0 +1,134 @@
+package org.apache.solr.handler.component;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.JettySolrRunner;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.servlet.SolrDispatchFilter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test for the coordinator's cache of shard responses
+ */
+public class DistributedShardResponseCacheTest extends BaseDistributedSearchTestCase {
+
+  @Override
+  public void doTest() throws Exception {
+    del("*:*");
+    for (int i=0; i<30; i++) {
+      index(id, i, "a_t", "doc " + i, "n_ti1", i % 5);
+    }
+    commit();
+
+    handle.clear();
+    handle.put("QTime", SKIPVAL);
+    handle.put("timestamp", SKIPVAL);
+    handle.put("maxScore", SKIPVAL);
+
+    Object[] q = {"q","a_t:doc", "fl","id,n_ti1", "sort","n_ti1 desc,id asc", "rows","7",
+        "facet","true", "facet.field","n_ti1", "shards.cache","true"};
+
+    // the first request fills the cache, the second is answered from it
+    query(q);
+    long notModified = getNotModifiedCount();
+    query(q);
+    assertTrue(getNotModifiedCount() > notModified);
+
+    // after an index change, shards answer again
+    index(id, 100, "a_t", "doc 100", "n_ti1", 4);
+    commit();
+    query(q);
+    notModified = getNotModifiedCount();
+    query(q);
+    assertTrue(getNotModifiedCount() > notModified);
+
+    // responses that depend on the time of the request are not cached
+    Object[] qNow = {"q","a_t:doc", "fq","{!frange l=0}ms(NOW)", "fl","id", "sort","id asc", "shards.cache","true"};
+    query(qNow);
+    notModified = getNotModifiedCount();
+    query(qNow);
+    assertEquals(notModified, getNotModifiedCount());
+
+    // and neither are the responses of requests that didn't ask for it
+    q[q.length - 1] = "false";
+    query(q);
+    query(q);
+    assertEquals(notModified, getNotModifiedCount());
+
+    checkRamBound();
+  }
+
+  private void checkRamBound() throws Exception {
+    ShardResponseCache cache = new ShardResponseCache(10000, 3000);
+    for (int i = 0; i < 10; i++) {
+      cache.put("key" + i, "replica" + (i % 2), response(2000));
+    }
+    assertTrue(cache.ramBytesUsed() <= 10000);
+    assertTrue(cache.size() < 10);
+    assertNull(cache.get("key0"));
+    ShardResponseCache.Entry last = cache.get("key9");
+    assertNotNull(last);
+
+    // responses larger than an entry are not cached
+    cache.put("key9", "replica1", response(4000));
+    assertNull(cache.get("key9"));
+
+    // only sub-requests with a cached response prefer its replica
+    List<String> urls = Arrays.asList("replica0", "replica1");
+    assertEquals(Arrays.asList("replica1", "replica0"), ShardResponseCache.preferReplica(last, urls));
+    assertSame(urls, ShardResponseCache.preferReplica(null, urls));
+  }
+
+  private static NamedList<Object> response(int size) {
+    NamedList<Object> header = new NamedList<>();
+    header.add(ShardParams.SHARDS_CACHE_VERSION, "v1");
+    NamedList<Object> response = new NamedList<>();
+    response.add("responseHeader", header);
+    response.add("data", new byte[size]);
+    return response;
+  }
+
+  @Override
+  protected String getShardsString() {
+    // responses are cached by shard, so don't add random dead replicas to them
+    return shards;
+  }
+
+  @Override
+  protected QueryResponse queryServer(ModifiableSolrParams params) throws SolrServerException {
+    // the cache is kept by the coordinator, so always use the same one
+    return clients.get(0).query(params);
+  }
+
+  private long getNotModifiedCount() {
+    long count = 0;
+    for (JettySolrRunner jetty : jettys) {
+      CoreContainer cores = ((SolrDispatchFilter) jetty.getDispatchFilter().getFilter()).getCores();
+      ShardResponseCache cache = ((HttpShardHandlerFactory) cores.getShardHandlerFactory()).getShardResponseCache();
+      count += cache.getNotModifiedCount();
+    }
+    return count;
+  }
+}
@@ -397,6 +397,54 @@ public class StatsComponentTest extends SolrTestCaseJ4 {
 
   }
 
+  public void testPercentilesAndApproximateDistinct() throws Exception {
+    DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    for (int i = 1; i <= 100; i++) {
+      assertU(adoc("id", "" + i, "stats_ti", "" + i, "stats_tis", "" + i, "stats_tis", "" + (1000 + i),
+          "stats_tdt", dateFormat.format(new Date(i * 1000L)) + "Z", "active_s", "" + (i % 2 == 0)));
+      if (i % 30 == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    assertQ("test percentiles and approximate distinct count",
+            req("q", "*:*", "stats", "true", "stats.field", "stats_ti", "stats.percentiles", "50,99",
+                "stats.calcdistinct", "true", "stats.approximate", "true", "stats.facet", "active_s")
+            , "//lst[@name='stats_ti']/lst[@name='percentiles']/double[@name='50'][.='50.5']"
+            , "//lst[@name='stats_ti']/lst[@name='percentiles']/double[@name='99'][.='99.5']"
+            , "//lst[@name='stats_ti']/long[@name='countDistinct'][.='100']"
+            , "count(//lst[@name='stats_ti']/arr[@name='distinctValues'])=0"
+            , "//lst[@name='true']/long[@name='countDistinct'][.='50']"
+            , "//lst[@name='true']/lst[@name='percentiles']/double[@name='50'][.='51.0']"
+    );
+
+    assertQ("test percentiles of a multi-valued field",
+            req("q", "*:*", "stats", "true", "stats.field", "stats_tis", "f.stats_tis.stats.percentiles", "50",
+                "stats.calcdistinct", "true", "stats.approximate", "true")
+            , "//lst[@name='stats_tis']/lst[@name='percentiles']/double[@name='50'][.='550.5']"
+            , "//lst[@name='stats_tis']/long[@name='countDistinct'][.='200']"
+    );
+
+    assertQ("test percentiles of a date field",
+            req("q", "*:*", "stats", "true", "stats.field", "stats_tdt", "stats.percentiles", "0,100")
+            , "//lst[@name='stats_tdt']/lst[@name='percentiles']/date[@name='0'][.='1970-01-01T00:00:01Z']"
+            , "//lst[@name='stats_tdt']/lst[@name='percentiles']/date[@name='100'][.='1970-01-01T00:01:40Z']"
+    );
+
+    assertQ("test sketches returned to the coordinator",
+            req("q", "*:*", "stats", "true", "stats.field", "stats_ti", "stats.percentiles", "50",
+                "stats.calcdistinct", "true", "stats.approximate", "true", "isShard", "true")
+            , "//lst[@name='stats_ti']/str[@name='percentiles']"
+            , "//lst[@name='stats_ti']/str[@name='distinctValuesSketch']"
+    );
+
+    assertQEx("invalid percentile",
+              req("q", "*:*", "stats", "true", "stats.field", "stats_ti", "stats.percentiles", "101"),
+              400);
+  }
+
   //SOLR-3177
   public void testStatsExcludeFilterQuery() throws Exception {
     SolrCore core = h.getCore();
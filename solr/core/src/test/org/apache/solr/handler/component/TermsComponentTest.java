@@ -16,12 +16,21 @@ package org.apache.solr.handler.component;
  * limitations under the License.
  */
 
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.TermsParams;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.TermsFSTTopValues;
+import org.apache.solr.search.field.TopValues;
+import org.apache.solr.util.RefCounted;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -272,4 +281,111 @@ public class TermsComponentTest extends SolrTestCaseJ4 {
        ,"count(//lst[@name='standardfilt']/*)=3"
     );
   }
+
+  @Test
+  public void testCache() throws Exception {
+    String[][] requests = {
+        {"terms.fl","standardfilt"},
+        {"terms.fl","standardfilt", "terms.limit","-1"},
+        {"terms.fl","standardfilt", "terms.prefix","s"},
+        {"terms.fl","standardfilt", "terms.prefix","d", "terms.mincount","4"},
+        {"terms.fl","standardfilt", "terms.lower","d", "terms.mincount","2", "terms.maxcount","3"},
+        {"terms.fl","standardfilt", "terms.sort","index", "terms.lower","b", "terms.upper","d"},
+        {"terms.fl","standardfilt", "terms.regex","s.*", "terms.limit","2"},
+        {"terms.fl","lowerfilt", "terms.prefix","a", "terms.limit","2"},
+        {"terms.fl","lowerfilt", "terms.prefix","zz"},
+        {"terms.fl","cache_s", "terms.limit","3"},
+        {"terms.fl","cache_s", "terms.prefix","b"},
+        {"terms.fl","cache_s", "terms.sort","index", "terms.lower","a", "terms.lower.incl","false"},
+    };
+
+    assertCachedTerms(requests);
+
+    // add a segment, then add and delete in another: the FSTs of the unchanged segments are carried over
+    Set<Object> coreKeys = getCoreKeys();
+    assertU(adoc("id", "100", "cache_s", "a", "cache_s", "b"));
+    assertU(adoc("id", "101", "cache_s", "b", "cache_s", "bc"));
+    assertU(commit());
+    assertCarriedOver("standardfilt", coreKeys);
+    assertCachedTerms(requests);
+
+    coreKeys = getCoreKeys();
+    assertU(adoc("id", "102", "cache_s", "bc", "cache_s", "c"));
+    assertU(adoc("id", "103", "cache_s", "bd"));
+    assertU(commit());
+    assertCarriedOver("cache_s", coreKeys);
+    assertCachedTerms(requests);
+
+    assertQ(req("qt","/terms", "terms","true", "terms.cache","true", "terms.fl","cache_s", "terms.prefix","b")
+        ,"count(//lst[@name='cache_s']/*)=3"
+        ,"//lst[@name='cache_s']/int[1][@name='b'][.='2']"
+        ,"//lst[@name='cache_s']/int[2][@name='bc'][.='2']"
+        ,"//lst[@name='cache_s']/int[3][@name='bd'][.='1']"
+    );
+
+    // the most frequent term is not the most frequent of any segment
+    assertU(adoc("id", "104", "cache_s", "x1", "cache_s", "x2"));
+    assertU(adoc("id", "105", "cache_s", "x1", "cache_s", "x2"));
+    assertU(adoc("id", "106", "cache_s", "x1"));
+    assertU(commit());
+    assertU(adoc("id", "107", "cache_s", "x3", "cache_s", "x2"));
+    assertU(adoc("id", "108", "cache_s", "x3", "cache_s", "x2"));
+    assertU(adoc("id", "109", "cache_s", "x3"));
+    assertU(commit());
+    assertQ(req("qt","/terms", "terms","true", "terms.cache","true", "terms.fl","cache_s", "terms.prefix","x", "terms.limit","1")
+        ,"count(//lst[@name='cache_s']/*)=1"
+        ,"//lst[@name='cache_s']/int[1][@name='x2'][.='4']"
+    );
+    assertCachedTerms(requests);
+
+    assertU(delQ("id:[100 TO 109]"));
+    assertU(commit());
+    assertCachedTerms(requests);
+  }
+
+  /** checks that the cached terms give the same response as the terms of the index */
+  private void assertCachedTerms(String[][] requests) throws Exception {
+    for (String[] request : requests) {
+      ModifiableSolrParams params = params("qt","/terms", "terms","true", "omitHeader","true");
+      for (int i=0; i<request.length; i+=2) {
+        params.add(request[i], request[i+1]);
+      }
+      String expected = h.query(req(params));
+      params.add(TermsParams.TERMS_CACHE, "true");
+      assertEquals(expected, h.query(req(params)));
+    }
+  }
+
+  private Set<Object> getCoreKeys() {
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      Set<Object> coreKeys = new HashSet<>();
+      for (AtomicReaderContext leaf : searcher.get().getTopReaderContext().leaves()) {
+        coreKeys.add(leaf.reader().getCoreCacheKey());
+      }
+      return coreKeys;
+    } finally {
+      searcher.decref();
+    }
+  }
+
+  /** checks that the new searcher has the FSTs of the segments it shares with the old searcher, and only those */
+  private void assertCarriedOver(String field, Set<Object> oldCoreKeys) {
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      int shared = 0;
+      for (AtomicReaderContext leaf : searcher.get().getTopReaderContext().leaves()) {
+        if (oldCoreKeys.contains(leaf.reader().getCoreCacheKey())) shared++;
+      }
+      TopValues values = searcher.get().getnCache().get(field + "__TERMS_FST__");
+      assertTrue(values instanceof TermsFSTTopValues);
+      Map<String,Object> info = new HashMap<>();
+      values.addInfo(info);
+      values.decref();
+      assertEquals(shared, info.get("carriedOver"));
+      assertEquals(shared, info.get("numSegments"));
+    } finally {
+      searcher.decref();
+    }
+  }
 }
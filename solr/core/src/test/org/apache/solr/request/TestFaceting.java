@@ -18,7 +18,10 @@
 package org.apache.solr.request;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Locale;
 import java.util.Random;
 
@@ -29,11 +32,13 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.FacetParams;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.TopValues;
 import org.apache.solr.util.RefCounted;
 import org.apache.solr.search.facet.UnInvertedField;
 import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.noggit.ObjectBuilder;
 
 /**
  *
@@ -297,6 +302,126 @@ public class TestFaceting extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testPerSegmentMultiValued() throws Exception {
+    Random r = random();
+    String field = "pseg_ss";
+    int nTerms = 20 + r.nextInt(50);
+
+    // several commits, some deletes, so that new searchers share some segments with the old
+    for (int commit=0; commit<5; commit++) {
+      for (int i=0; i<30; i++) {
+        int id = commit*30 + i;
+        List<String> fields = new ArrayList<>();
+        fields.add("id");
+        fields.add(Integer.toString(id));
+        int nValues = r.nextInt(4);  // some docs are missing the field
+        for (int j=0; j<nValues; j++) {
+          fields.add(field);
+          fields.add(t(r.nextInt(nTerms)));
+        }
+        assertU(adoc(fields.toArray(new String[fields.size()])));
+      }
+      if (commit > 0) {
+        assertU(delI(Integer.toString(r.nextInt(commit * 30))));
+      }
+      assertU(commit());
+
+      for (String q : new String[] {"*:*", "id:[0 TO 50]", "id:[-1 TO -1]"}) {
+        for (String sort : new String[] {FacetParams.FACET_SORT_COUNT, FacetParams.FACET_SORT_INDEX}) {
+          for (String prefix : new String[] {null, "0000001"}) {
+            String offset = Integer.toString(r.nextInt(5));
+            String limit = Integer.toString(r.nextInt(20) - 1);
+            String mincount = Integer.toString(r.nextInt(3));
+            List<String> params = new ArrayList<>();
+            params.addAll(Arrays.asList("q", q, "rows", "0", "facet", "true", "facet.field", field, "facet.missing", "true",
+                "facet.sort", sort, "facet.offset", offset, "facet.limit", limit, "facet.mincount", mincount));
+            if (prefix != null) {
+              params.add("facet.prefix");
+              params.add(prefix);
+            }
+            Object expected = facetCounts(params, FacetParams.FACET_METHOD_fc, field);
+            Object got = facetCounts(params, FacetParams.FACET_METHOD_fcs, field);
+            assertEquals("params=" + params, expected, got);
+          }
+        }
+      }
+    }
+
+    // unchanged segments should keep their global ord mappings across the reopen
+    RefCounted<SolrIndexSearcher> searcherRef = h.getCore().getSearcher();
+    try {
+      TopValues values = searcherRef.get().getnCache().get(field + "__GLOBAL_ORDS__");
+      assertNotNull(values);
+      Map<String,Object> info = new HashMap<>();
+      values.addInfo(info);
+      values.decref();
+      assertTrue("info=" + info, ((Number)info.get("carriedOver")).intValue() > 0);
+    } finally {
+      searcherRef.decref();
+    }
+  }
+
+  @Test
+  public void testGlobalOrdsCompacted() throws Exception {
+    String field = "churn_ss";
+    List<String> params = Arrays.asList("q", "*:*", "rows", "0", "facet", "true", "facet.field", field,
+        "facet.limit", "-1", "facet.mincount", "1");
+
+    for (int i=0; i<100; i++) {
+      assertU(adoc("id", Integer.toString(10000 + i), field, "a" + i));
+    }
+    assertU(commit());
+    assertEquals(facetCounts(params, FacetParams.FACET_METHOD_fc, field), facetCounts(params, FacetParams.FACET_METHOD_fcs, field));
+    assertEquals(100, globalOrdInfo(field).get("globalOrds"));
+
+    // the terms of the dropped segment are garbage, and aren't carried over to the new searcher
+    for (int i=0; i<10; i++) {
+      assertU(adoc("id", Integer.toString(10000 + i), field, "b" + i));
+    }
+    assertU(delQ("id:[10010 TO 10099]"));
+    assertU(commit());
+    assertEquals(facetCounts(params, FacetParams.FACET_METHOD_fc, field), facetCounts(params, FacetParams.FACET_METHOD_fcs, field));
+    assertEquals(10, globalOrdInfo(field).get("globalOrds"));
+
+    // segments carried over keep working against the compacted dictionary
+    for (int i=0; i<5; i++) {
+      assertU(adoc("id", Integer.toString(10100 + i), field, "c" + i, field, "b" + i));
+    }
+    assertU(commit());
+    assertEquals(facetCounts(params, FacetParams.FACET_METHOD_fc, field), facetCounts(params, FacetParams.FACET_METHOD_fcs, field));
+    Map<String,Object> info = globalOrdInfo(field);
+    assertEquals(15, info.get("globalOrds"));
+    assertTrue("info=" + info, ((Number)info.get("carriedOver")).intValue() > 0);
+
+    assertU(delQ("id:[10000 TO 10200]"));
+    assertU(commit());
+  }
+
+  private Map<String,Object> globalOrdInfo(String field) {
+    RefCounted<SolrIndexSearcher> searcherRef = h.getCore().getSearcher();
+    try {
+      TopValues values = searcherRef.get().getnCache().get(field + "__GLOBAL_ORDS__");
+      assertNotNull(values);
+      Map<String,Object> info = new HashMap<>();
+      values.addInfo(info);
+      values.decref();
+      return info;
+    } finally {
+      searcherRef.decref();
+    }
+  }
+
+  private Object facetCounts(List<String> params, String method, String field) throws Exception {
+    List<String> args = new ArrayList<>(params);
+    args.add("facet.method");
+    args.add(method);
+    args.add("wt");
+    args.add("json");
+    Map<?,?> rsp = (Map<?,?>) ObjectBuilder.fromJSON(h.query(req(args.toArray(new String[args.size()]))));
+    return ((Map<?,?>)((Map<?,?>)rsp.get("facet_counts")).get("facet_fields")).get(field);
+  }
+
   @Test
   public void testFacetSortWithMinCount() {
     assertU(adoc("id", "1.0", "f_td", "-420.126"));
@@ -0,0 +1,98 @@
+package org.apache.solr.schema;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.update.VersionInfo;
+import org.junit.BeforeClass;
+
+public class TestIDVersionField extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-idversion.xml", "schema-idversion.xml");
+  }
+
+  public void testVersionLookups() throws Exception {
+    clearIndex();
+    assertU(commit());
+
+    int numIds = 50 + random().nextInt(100);
+    Set<String> deleted = new HashSet<>();
+    int iters = atLeast(300);
+    for (int i=0; i<iters; i++) {
+      String id = Integer.toString(random().nextInt(numIds));
+      if (random().nextInt(10) == 0) {
+        assertU(delI(id));
+        deleted.add(id);
+      } else {
+        assertU(adoc("id", id, "val_i", Integer.toString(i)));
+        deleted.remove(id);
+      }
+      if (random().nextInt(30) == 0) {
+        assertU(commit("softCommit", Boolean.toString(random().nextBoolean())));
+      }
+    }
+    if (random().nextBoolean()) {
+      assertU(optimize());
+    }
+    assertU(commit());
+
+    VersionInfo versionInfo = h.getCore().getUpdateHandler().getUpdateLog().getVersionInfo();
+    SolrQueryRequest req = req();
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      assertTrue(searcher.hasIdVersions());
+      // the filters of the segments were built when the searcher was warmed
+      assertTrue(h.getCore().getIdBloomFilters().size() >= searcher.getTopReaderContext().leaves().size());
+      for (int i=0; i<numIds + 10; i++) {
+        String id = Integer.toString(i);
+        BytesRef idBytes = new BytesRef(id);
+        long lookup = searcher.lookupId(idBytes);
+        long version = searcher.lookupIdVersion(idBytes);
+        if (lookup < 0) {
+          assertEquals(id, -1, version);
+          assertNull(id, versionInfo.getVersionFromIndex(idBytes));
+          continue;
+        }
+        assertFalse(id, deleted.contains(id));
+        int docid = searcher.getTopReaderContext().leaves().get((int) (lookup >> 32)).docBase + (int) lookup;
+        long stored = searcher.doc(docid).getField(VersionInfo.VERSION_FIELD).numericValue().longValue();
+        assertEquals(id, stored, version);
+        assertEquals(id, Long.valueOf(stored), versionInfo.getVersionFromIndex(idBytes));
+      }
+    } finally {
+      req.close();
+    }
+  }
+
+  public void testDuplicatesRejected() throws Exception {
+    ignoreException("IDVersionField");
+    try {
+      assertFailedU(add(doc("id", "dup"), "overwrite", "false"));
+    } finally {
+      resetExceptionIgnores();
+    }
+  }
+}
@@ -32,8 +32,8 @@ public class SpatialFilterTest extends SolrTestCaseJ4 {
     initCore("solrconfig.xml", "schema.xml");
   }
 
-  private void setupDocs(String fieldName) {
-    clearIndex();
+  static void setupDocs(String fieldName) {
+    assertU(delQ("*:*"));
     assertU(adoc("id", "1", fieldName, "32.7693246, -79.9289094"));
     assertU(adoc("id", "2", fieldName, "33.7693246, -80.9289094"));
     assertU(adoc("id", "3", fieldName, "-32.7693246, 50.9289094"));
@@ -134,11 +134,11 @@ public class SpatialFilterTest extends SolrTestCaseJ4 {
 
   }
 
-  private void checkHits(String fieldName, String pt, double distance, int count, int ... docIds) {
+  static void checkHits(String fieldName, String pt, double distance, int count, int ... docIds) {
     checkHits(fieldName, true, pt, distance, count, docIds);
   }
 
-  private void checkHits(String fieldName, boolean exact, String pt, double distance, int count, int ... docIds) {
+  static void checkHits(String fieldName, boolean exact, String pt, double distance, int count, int ... docIds) {
     String [] tests = new String[docIds != null && docIds.length > 0 ? docIds.length + 1 : 1];
     tests[0] = "*[count(//doc)=" + count + "]";
     if (docIds != null && docIds.length > 0) {
@@ -164,7 +164,7 @@ public class SpatialFilterTest extends SolrTestCaseJ4 {
     assertEquals(postFilterCount, DelegatingCollector.setLastDelegateCount);      // post filtering shouldn't be used
 
     // try post filtered for fields that support it
-    if (fieldName.endsWith("ll")) {
+    if (fieldName.endsWith("ll") || fieldName.endsWith("llp")) {
 
     assertQ(req("fl", "id", "q","*:* OR foo_i:" + random().nextInt(100)+100, "rows", "1000", "fq", "{!"+method+" sfield=" +fieldName + " cache=false cost=150" + "}",
         "pt", pt, "d", String.valueOf(distance)),
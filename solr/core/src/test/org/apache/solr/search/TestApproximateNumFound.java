@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.BeforeClass;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests approxNumFound on a field with the Lucene41Impacts postings format, whose block-max
+ * scores let the search skip documents that can't make it to the top.
+ */
+public class TestApproximateNumFound extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig_codec.xml", "schema_codec.xml");
+  }
+
+  public void testApproximateNumFound() throws Exception {
+    String[] words = {"alpha", "bravo", "charlie", "delta", "echo"};
+    int ndocs = 1000 + random().nextInt(1000);
+    for (int i=0; i<ndocs; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int j=0; j<words.length; j++) {
+        int freq = random().nextInt(2 << j) == 0 ? 1 + random().nextInt(5) : 0;
+        for (int k=0; k<freq; k++) {
+          sb.append(words[j]).append(' ');
+        }
+      }
+      assertU(adoc("string_f", Integer.toString(i), "v_impacts", sb.toString(), "v_standard", Integer.toString(i % 3)));
+      if (random().nextInt(300) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    SolrQueryRequest req = req("q", "*:*");
+    try {
+      // a frequent word and a boosted rare one: once the top documents have the rare word, the
+      // documents that only have the frequent one can't compete and are skipped
+      assertTrue(search(req, "v_impacts:(alpha echo^5)", null, 1));
+
+      int skipped = 0;
+      for (int iter=0; iter<20; iter++) {
+        StringBuilder q = new StringBuilder("v_impacts:(");
+        int nclauses = 2 + random().nextInt(words.length - 1);
+        for (int i=0; i<nclauses; i++) {
+          q.append(words[random().nextInt(words.length)]).append(' ');
+        }
+        q.append(')');
+        List<Query> filters = random().nextBoolean() ? null
+            : Collections.singletonList(QParser.getParser("v_standard:" + random().nextInt(3), null, req).getQuery());
+        if (search(req, q.toString(), filters, 1 + random().nextInt(50))) {
+          skipped++;
+        }
+      }
+      // a few random queries may have nothing to skip, but not all of them
+      assertTrue("no query skipped any document", skipped > 0);
+    } finally {
+      req.close();
+    }
+
+    assertQ(req("q", "v_impacts:(alpha^2 bravo)", "approxNumFound", "true", "rows", "3")
+        , "//lst[@name='responseHeader']/bool[@name='approxNumFound'][.='true']"
+        , "//result[count(doc)=3]"
+    );
+  }
+
+  /**
+   * Checks that the approximate search finds the top documents of the exact search, and returns
+   * true if it matched fewer documents.
+   */
+  private boolean search(SolrQueryRequest req, String q, List<Query> filters, int len) throws Exception {
+    SolrIndexSearcher searcher = req.getSearcher();
+    Query query = QParser.getParser(q, null, req).getQuery();
+
+    SolrIndexSearcher.QueryCommand exact = new SolrIndexSearcher.QueryCommand();
+    exact.setQuery(query).setFilterList(filters).setLen(len).setFlags(SolrIndexSearcher.GET_SCORES);
+    DocList expected = searcher.search(new SolrIndexSearcher.QueryResult(), exact).getDocList();
+
+    SolrIndexSearcher.QueryCommand approx = new SolrIndexSearcher.QueryCommand();
+    approx.setQuery(query).setFilterList(filters).setLen(len)
+        .setFlags(SolrIndexSearcher.GET_SCORES | SolrIndexSearcher.APPROXIMATE_NUMFOUND);
+    DocList actual = searcher.search(new SolrIndexSearcher.QueryResult(), approx).getDocList();
+
+    assertTrue(q, actual.matches() <= expected.matches());
+    assertEquals(q, expected.size(), actual.size());
+    DocIterator expectedIter = expected.iterator();
+    DocIterator actualIter = actual.iterator();
+    while (expectedIter.hasNext()) {
+      expectedIter.nextDoc();
+      actualIter.nextDoc();
+      // only compare the scores, documents with nearly equal scores may come in a different order
+      assertEquals(q, expectedIter.score(), actualIter.score(), expectedIter.score() * 1e-5f);
+    }
+    return actual.matches() < expected.matches();
+  }
+}
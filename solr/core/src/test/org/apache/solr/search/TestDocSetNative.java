@@ -237,4 +237,78 @@ public class TestDocSetNative extends TestDocSet {
     }
   }
 
+
+  public void doDocSetCollector(IndexReader reader) throws Exception {
+    int maxDoc = reader.maxDoc();
+    int smallSetSize = random().nextBoolean() ? (maxDoc>>6) + 5 : random().nextInt(maxDoc+1);
+
+    FixedBitSet reference = new FixedBitSet(maxDoc);
+    DocSetCollector collector = new DocSetCollector(smallSetSize, maxDoc);
+
+    for (AtomicReaderContext readerContext : reader.getContext().leaves()) {
+      collector.setNextReader(readerContext);
+
+      int max = readerContext.reader().maxDoc();
+      if (max==0) continue;
+      int base = readerContext.docBase;
+      // docs must be collected in order, so pick a random density
+      int skip = random().nextInt(20) + 1;
+      for (int doc=random().nextInt(skip); doc<max; doc+=random().nextInt(skip)+1) {
+        reference.set(doc + base);
+        collector.collect(doc);
+      }
+    }
+
+    DocSet answer = collector.getDocSet();
+    collector.close();
+
+    checkEqual(reference, answer);
+    answer.decref();
+  }
+
+  public void testDocSetCollector() throws Exception {
+    for (int i=0; i<100; i++) {
+      int maxSeg = random().nextInt(10) + 1;
+      int maxDoc = random().nextBoolean() ? random().nextInt(10) + 1 : random().nextInt(100000) + 2;  // go over the buffer size occasionally
+      IndexReader r = dummyMultiReader(maxSeg, maxDoc);
+      for (int j=0; j<5; j++) {
+        doDocSetCollector(r);
+      }
+    }
+  }
+
+
+  public void doNextDocs(DocSet set) {
+    DocIterator expected = set.iterator();
+    DocIterator iter = set.iterator();
+    int[] docs = new int[random().nextInt(300) + 1];
+
+    for (;;) {
+      int n = iter.nextDocs(docs);
+      for (int i=0; i<n; i++) {
+        assertTrue(expected.hasNext());
+        assertEquals(expected.nextDoc(), docs[i]);
+      }
+      if (n == 0) break;
+      // an iterator positioned in the middle should continue where nextDocs left off
+      if (random().nextInt(4) == 0 && iter.hasNext()) {
+        assertEquals(expected.nextDoc(), iter.nextDoc());
+      }
+    }
+    assertFalse(expected.hasNext());
+    assertEquals(0, iter.nextDocs(docs));
+  }
+
+  public void testNextDocs() throws Exception {
+    for (int i=0; i<200; i++) {
+      int sz = random().nextInt(5000) + 1;
+      FixedBitSet bs = getRandomSet(sz, random().nextInt(sz*2));
+      DocSet[] sets = new DocSet[] {getHashDocSet(bs), getIntDocSet(bs), getIntDocSetNative(bs), getBitDocSet(bs), getBitDocSetNative(bs), getDocSlice(bs)};
+      for (DocSet set : sets) {
+        doNextDocs(set);
+        set.decref();
+      }
+    }
+  }
+
 }
@@ -0,0 +1,70 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+
+/** Tests which ordinal maps of the doc values join are carried over to a new searcher */
+public class TestDocValuesJoinRegenerator extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @SuppressWarnings("unchecked")
+  public void testRegeneration() throws Exception {
+    clearIndex();
+    assertU(adoc("id", "1"));
+    assertU(commit());
+
+    Object gone = new Object();  // the core of a segment that no searcher has anymore
+    DocValuesJoin.Key local, localGoneFrom, crossCore, goneTo;
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      Object core = searcher.getTopReaderContext().leaves().get(0).reader().getCoreCacheKey();
+      local = new DocValuesJoin.Key(core, "a", core, "b", false);
+      localGoneFrom = new DocValuesJoin.Key(gone, "a", core, "b", false);
+      crossCore = new DocValuesJoin.Key(gone, "c", core, "b", true);  // the from segment is in another core
+      goneTo = new DocValuesJoin.Key(core, "a", gone, "b", true);
+      SolrCache cache = searcher.getJoinOrdMapCache();
+      for (DocValuesJoin.Key key : new DocValuesJoin.Key[] {local, localGoneFrom, crossCore, goneTo}) {
+        cache.put(key, new Object());
+      }
+    } finally {
+      ref.decref();
+    }
+
+    // the segment is still there after a commit that adds one
+    assertU(adoc("id", "2"));
+    assertU(commit());
+    ref = h.getCore().getSearcher();
+    try {
+      SolrCache cache = ref.get().getJoinOrdMapCache();
+      assertNotNull(cache.get(local));
+      assertNull(cache.get(localGoneFrom));
+      assertNotNull(cache.get(crossCore));
+      assertNull(cache.get(goneTo));
+    } finally {
+      ref.decref();
+    }
+  }
+}
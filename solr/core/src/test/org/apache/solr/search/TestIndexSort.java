@@ -0,0 +1,113 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.BeforeClass;
+import org.noggit.ObjectBuilder;
+
+public class TestIndexSort extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-indexsort.xml", "schema.xml");
+  }
+
+  public void testSortedSegments() throws Exception {
+    clearIndex();
+    assertU(commit());
+
+    int ndocs = 200 + random().nextInt(300);
+    for (int i=0; i<ndocs; i++) {
+      assertU(adoc("id", Integer.toString(i), "timestamp_tl1", Integer.toString(random().nextInt(100)),
+          "cat_s1", Integer.toString(random().nextInt(3))));
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(optimize());
+    // a few more documents in an unsorted segment
+    int nunsorted = 1 + random().nextInt(10);
+    for (int i=0; i<nunsorted; i++) {
+      assertU(adoc("id", Integer.toString(ndocs + i), "timestamp_tl1", Integer.toString(random().nextInt(100)),
+          "cat_s1", Integer.toString(random().nextInt(3))));
+    }
+    assertU(commit());
+
+    SolrQueryRequest req = req();
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      Sort indexSort = h.getCore().getSolrConfig().indexConfig.getIndexSort(searcher.getSchema());
+      int nsorted = 0;
+      for (AtomicReaderContext ctx : searcher.getTopReaderContext().leaves()) {
+        if (SortingMergePolicy.isSorted(ctx.reader(), indexSort)) nsorted++;
+      }
+      assertEquals(1, nsorted);
+    } finally {
+      req.close();
+    }
+
+    for (int iter=0; iter<30; iter++) {
+      String fq = random().nextBoolean() ? "*:*" : "cat_s1:" + random().nextInt(3);
+      String start = Integer.toString(random().nextInt(20));
+      String rows = Integer.toString(1 + random().nextInt(30));
+      // sorting by a function doesn't match the index sort, so these are collected the regular way
+      String[][] sorts = {
+          {"timestamp_tl1 desc", "sum(timestamp_tl1,0) desc"},
+          {"timestamp_tl1 desc, id asc", "sum(timestamp_tl1,0) desc, sum(id,0) asc"}
+      };
+      String[] sort = sorts[random().nextInt(sorts.length)];
+
+      Map<?,?> expected = response("q", "*:*", "fq", fq, "sort", sort[1], "start", start, "rows", rows);
+      Map<?,?> actual = response("q", "*:*", "fq", fq, "sort", sort[0], "start", start, "rows", rows);
+      assertEquals(expected.get("numFound"), actual.get("numFound"));
+      assertEquals(expected.get("docs"), actual.get("docs"));
+
+      Map<?,?> approx = response("q", "*:*", "fq", fq, "sort", sort[0], "start", start, "rows", rows, "approxNumFound", "true");
+      assertTrue(((Number) approx.get("numFound")).longValue() <= ((Number) expected.get("numFound")).longValue());
+      assertEquals(expected.get("docs"), approx.get("docs"));
+    }
+
+    // only the first hits of the sorted segment are collected
+    assertQ(req("q", "*:*", "sort", "timestamp_tl1 desc", "rows", "5", "approxNumFound", "true")
+        , "//lst[@name='responseHeader']/bool[@name='approxNumFound'][.='true']"
+        , "//result[@numFound<" + (ndocs + nunsorted) + "]"
+        , "//result[count(doc)=5]"
+    );
+    assertQ(req("q", "*:*", "sort", "timestamp_tl1 desc", "rows", "5")
+        , "//result[@numFound=" + (ndocs + nunsorted) + "]"
+    );
+  }
+
+  private Map<?,?> response(String... params) throws Exception {
+    String[] args = new String[params.length + 4];
+    System.arraycopy(params, 0, args, 0, params.length);
+    args[params.length] = "wt";
+    args[params.length + 1] = "json";
+    args[params.length + 2] = "fl";
+    args[params.length + 3] = "id";
+    Map<?,?> rsp = (Map<?,?>) ObjectBuilder.fromJSON(h.query(req(args)));
+    return (Map<?,?>) rsp.get("response");
+  }
+}
@@ -0,0 +1,126 @@
+package org.apache.solr.search;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.noggit.ObjectBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.solr.search.SpatialFilterTest.checkHits;
+import static org.apache.solr.search.SpatialFilterTest.setupDocs;
+
+
+/**
+ * Tests {@link org.apache.solr.schema.LatLonPointType}
+ **/
+@SuppressCodecs({"Lucene3x","Lucene40","Lucene41","Lucene42"}) // LatLonPointType needs doc values with missing values
+public class TestLatLonPointType extends SolrTestCaseJ4 {
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @Test
+  public void testLatLonPointType() throws Exception {
+    String fieldName = "home_llp";
+    setupDocs(fieldName);
+    // same as LatLonType
+    checkHits(fieldName, "1,1", 175, 3, 5, 6, 7);
+    checkHits(fieldName, "0,179.8", 200, 2, 8, 9);
+    checkHits(fieldName, "89.8, 50", 200, 2, 10, 11);//this goes over the north pole
+    checkHits(fieldName, "-89.8, 50", 200, 2, 12, 13);//this goes over the south pole
+    checkHits(fieldName, "33.0,-80.0", 300, 2);
+    checkHits(fieldName, "1,1", 5000, 3, 5, 6, 7);
+    checkHits(fieldName, false, "0.1,0.1", 15, 2, 5, 6);
+
+    // field and range queries
+    assertQ(req("fl", "id", "q", fieldName + ":\"32.7693246, -79.9289094\""), "*[count(//doc)=1]", "//result/doc/int[@name='id'][.='1']");
+    assertQ(req("fl", "id", "q", fieldName + ":[30,-81 TO 34,-79]"), "*[count(//doc)=2]");
+    assertQ(req("fl", "id", "q", fieldName + ":[-1,-1 TO 1,1]"), "*[count(//doc)=3]");
+
+    // points on an exclusive bound are not matched
+    assertQ(req("fl", "id", "q", fieldName + ":[0,0 TO 0.1,0.1]"), "*[count(//doc)=2]");
+    assertQ(req("fl", "id", "q", fieldName + ":{0,0 TO 0.1,0.1]"), "*[count(//doc)=1]", "//result/doc/int[@name='id'][.='6']");
+    assertQ(req("fl", "id", "q", fieldName + ":[0,0 TO 0.1,0.1}"), "*[count(//doc)=1]", "//result/doc/int[@name='id'][.='5']");
+    assertQ(req("fl", "id", "q", fieldName + ":{0,0 TO 0.1,0.1}"), "*[count(//doc)=0]");
+    assertQ(req("fl", "id", "q", fieldName + ":{89.9,-180 TO 90,180]"), "*[count(//doc)=0]");
+    assertQ(req("fl", "id", "q", fieldName + ":[89.9,-180 TO 90,180]"), "*[count(//doc)=2]");
+
+    clearIndex();
+    assertU(adoc("id", "14", fieldName, "0,5"));
+    assertU(adoc("id", "15", fieldName, "0,15"));
+    assertU(adoc("id", "16", fieldName, "18.71111,19.79750"));
+    assertU(adoc("id", "17", fieldName, "44.043900,-95.436643"));
+    assertU(adoc("id", "18"));
+    assertU(commit());
+
+    checkHits(fieldName, "0,0", 1000, 1, 14);
+    checkHits(fieldName, "0,0", 2000, 2, 14, 15);
+    checkHits(fieldName, false, "0,0", 3000, 3, 14, 15, 16);
+    checkHits(fieldName, "0,0", 3001, 3, 14, 15, 16);
+    checkHits(fieldName, "43.517030,-96.789603", 109, 0);
+    checkHits(fieldName, true, "43.517030,-96.789603", 110, 0);
+    checkHits(fieldName, false, "43.517030,-96.789603", 110, 1, 17);
+  }
+
+  @Test
+  public void testLatLonPointDistance() throws Exception {
+    clearIndex();
+    int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      String point = (random().nextDouble() * 180 - 90) + "," + (random().nextDouble() * 360 - 180);
+      assertU(adoc("id", Integer.toString(i), "home_ll", point, "home_llp", point));
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    for (int iter = 0; iter < 10; iter++) {
+      String pt = (random().nextDouble() * 180 - 90) + "," + (random().nextDouble() * 360 - 180);
+      String sort = random().nextBoolean() ? "geodist() asc" : "geodist() desc";
+      String rows = Integer.toString(1 + random().nextInt(20));
+      String fq = random().nextBoolean() ? "*:*" : "id:1*";
+      Map expected = (Map) ObjectBuilder.fromJSON(JQ(req("q", "*:*", "fq", fq, "fl", "id,d:geodist()", "sort", sort, "rows", rows,
+          "sfield", "home_ll", "pt", pt)));
+      Map actual = (Map) ObjectBuilder.fromJSON(JQ(req("q", "*:*", "fq", fq, "fl", "id,d:geodist()", "sort", sort, "rows", rows,
+          "sfield", "home_llp", "pt", pt)));
+      List<Map> expectedDocs = (List<Map>) ((Map) expected.get("response")).get("docs");
+      List<Map> actualDocs = (List<Map>) ((Map) actual.get("response")).get("docs");
+      assertEquals(expectedDocs.size(), actualDocs.size());
+      for (int i = 0; i < expectedDocs.size(); i++) {
+        // points are quantized to about a centimeter
+        assertEquals(pt + " " + sort, ((Number) expectedDocs.get(i).get("d")).doubleValue(),
+            ((Number) actualDocs.get(i).get("d")).doubleValue(), 1e-4);
+      }
+    }
+
+    // distances computed a block at a time, as a score
+    String pt = (random().nextDouble() * 180 - 90) + "," + (random().nextDouble() * 360 - 180);
+    Map scored = (Map) ObjectBuilder.fromJSON(JQ(req("q", "{!func}geodist()", "fl", "id,score,d:geodist()", "rows", "50",
+        "sfield", "home_llp", "pt", pt)));
+    for (Map doc : (List<Map>) ((Map) scored.get("response")).get("docs")) {
+      assertEquals(((Number) doc.get("d")).doubleValue(), ((Number) doc.get("score")).doubleValue(), 1e-2);
+    }
+  }
+}
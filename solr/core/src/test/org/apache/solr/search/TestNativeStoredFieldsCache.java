@@ -0,0 +1,126 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.codecs.compressing.StoredFieldsChunkCache;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.TestUtil;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CachingDirectoryFactory;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+public class TestNativeStoredFieldsCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-storedfieldscache.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    NativeStoredFieldsCache cache = (NativeStoredFieldsCache) h.getCore().getInfoRegistry().get("storedFieldsChunkCache");
+    deleteCore();
+    // closing the segments frees their chunks
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+
+  public void testDocuments() throws Exception {
+    NativeStoredFieldsCache cache = (NativeStoredFieldsCache) h.getCore().getInfoRegistry().get("storedFieldsChunkCache");
+    assertSame(cache, ((CachingDirectoryFactory) h.getCore().getDirectoryFactory()).getStoredFieldsChunkCache());
+    clearIndex();
+    assertU(commit());
+
+    int ndocs = 100 + random().nextInt(200);
+    String[] values = new String[ndocs];
+    for (int i=0; i<ndocs; i++) {
+      values[i] = TestUtil.randomSimpleString(random(), 0, random().nextInt(10) == 0 ? 5000 : 50);
+      assertU(adoc("id", Integer.toString(i), "val_s", values[i], "num_i", Integer.toString(i)));
+      if (random().nextInt(100) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    SolrQueryRequest req = req();
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      Bits liveDocs = MultiFields.getLiveDocs(searcher.getIndexReader());
+      for (int iter=0; iter<2; iter++) {
+        for (int docid=0; docid<searcher.maxDoc(); docid++) {
+          if (liveDocs != null && !liveDocs.get(docid)) continue;
+          Document doc = searcher.doc(docid);
+          int id = Integer.parseInt(doc.get("id"));
+          assertEquals(values[id], doc.get("val_s"));
+          assertEquals(id, doc.getField("num_i").numericValue().intValue());
+        }
+      }
+    } finally {
+      req.close();
+    }
+
+    NamedList stats = cache.getStatistics();
+    assertTrue(stats.toString(), (Long) stats.get("hits") > 0);
+    assertTrue(stats.toString(), cache.getBytes() <= 1024 * 1024);
+
+    int id = random().nextInt(ndocs);
+    assertQ(req("q", "id:" + id, "fl", "val_s")
+        , "//result/doc[1]/arr[@name='val_s']/str[.='" + values[id] + "']"
+        , "count(//result/doc[1]/*)=1"
+    );
+  }
+
+  public void testPurgeAndEvict() throws Exception {
+    NativeStoredFieldsCache cache = new NativeStoredFieldsCache(NativeStoredFieldsCache.NUM_STRIPES * 1000);
+    Object seg1 = new Object(), seg2 = new Object();
+    byte[] bytes = new byte[100];
+    for (int i = 0; i < 20; i++) {
+      bytes[0] = (byte) i;
+      cache.put(seg1, i * 100, bytes, bytes.length);
+      cache.put(seg2, i * 100, bytes, bytes.length);
+    }
+    assertEquals(40, cache.size());
+    assertEquals(4000, cache.getBytes());
+
+    StoredFieldsChunkCache.Chunk chunk = cache.get(seg1, 500);
+    assertNotNull(chunk);
+    cache.purge(seg1);
+    assertEquals(20, cache.size());
+    assertNull(cache.get(seg1, 500));
+    // a chunk being read stays valid until it is released
+    assertEquals(5, chunk.readByte());
+    chunk.release();
+
+    // each stripe holds up to 1000 bytes
+    for (int i = 0; i < 1000; i++) {
+      cache.put(seg2, 1000000 + i * 100, bytes, bytes.length);
+    }
+    assertTrue(cache.getBytes() <= NativeStoredFieldsCache.NUM_STRIPES * 1000);
+    assertTrue((Long) cache.getStatistics().get("evictions") > 0);
+
+    cache.close();
+    assertEquals(0, cache.size());
+    cache.put(seg2, 0, bytes, bytes.length);
+    assertEquals(0, cache.size());
+  }
+}
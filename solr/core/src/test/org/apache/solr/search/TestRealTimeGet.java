@@ -27,6 +27,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -111,6 +112,65 @@ public class TestRealTimeGet extends TestRTGBase {
   }
 
 
+  @Test
+  public void testGetRealtimeBatch() throws Exception {
+    clearIndex();
+    assertU(commit());
+
+    // several segments, so the ids are probed in more than one of them
+    int nDocs = 150;
+    for (int i=0; i<nDocs; i++) {
+      assertU(adoc("id",Integer.toString(i), "val_s","v"+i));
+      if (i % 50 == 49) assertU(commit());
+    }
+    assertU(delI("7"));
+    assertU(commit());
+
+    // changes that are only in the update log
+    assertU(adoc("id","5", "val_s","updated"));
+    assertU(adoc("id","1000", "val_s","new"));
+    assertU(delI("42"));
+
+    List<String> ids = new ArrayList<>();
+    for (int i=0; i<2*nDocs; i++) {
+      ids.add(Integer.toString(random().nextInt(nDocs + 10)));  // some are not in the index, some are asked for twice
+    }
+    ids.addAll(Arrays.asList("5", "7", "42", "1000"));
+
+    Map<String,String> expected = new HashMap<>();
+    for (int i=0; i<nDocs; i++) {
+      expected.put(Integer.toString(i), "v"+i);
+    }
+    expected.remove("7");
+    expected.remove("42");
+    expected.put("5", "updated");
+    expected.put("1000", "new");
+
+    List<Object> expectedDocs = new ArrayList<>();
+    for (String id : ids) {
+      if (expected.containsKey(id)) {
+        Map<String,Object> doc = new HashMap<>();
+        doc.put("id", id);
+        doc.put("val_s", Arrays.asList(expected.get(id)));  // multiValued
+        expectedDocs.add(doc);
+      }
+    }
+
+    StringBuilder idList = new StringBuilder();
+    for (String id : ids) {
+      if (idList.length() > 0) idList.append(',');
+      idList.append(id);
+    }
+
+    // all the documents are returned in the order they were asked for, whether from the index or the update log
+    String response = h.query(req("qt","/get", "ids",idList.toString(), "fl","id,val_s", "wt","json"));
+    Map rsp = (Map) ObjectBuilder.fromJSON(response);
+    Map docList = (Map) rsp.get("response");
+    assertEquals(expectedDocs, docList.get("docs"));
+    assertEquals((long) expectedDocs.size(), docList.get("numFound"));
+  }
+
+
   @Test
   public void testVersions() throws Exception {
     clearIndex();
@@ -0,0 +1,93 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrRequestHandler;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestRequestBudget extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+    for (int i = 0; i < 50; i++) {
+      assertU(adoc("id", Integer.toString(i), "cat_s", "c" + (i % 5), "val_i1", Integer.toString(i)));
+    }
+    assertU(commit());
+  }
+
+  @Test
+  public void testBudget() {
+    RequestBudget budget = new RequestBudget(10, 100);
+    budget.addDocs(10);
+    budget.addMemory(100);
+    assertEquals(10, budget.getDocsVisited());
+    assertEquals(100, budget.getMemoryAllocated());
+    try {
+      budget.addDocs(1);
+      fail();
+    } catch (RequestBudget.ExceededException e) {
+      assertEquals(SolrException.ErrorCode.SERVICE_UNAVAILABLE.code, e.code());
+    }
+    try {
+      budget.addMemory(1);
+      fail();
+    } catch (RequestBudget.ExceededException e) {
+      assertEquals(SolrException.ErrorCode.SERVICE_UNAVAILABLE.code, e.code());
+    }
+
+    // no limits
+    budget = new RequestBudget(-1, -1);
+    budget.addDocs(Long.MAX_VALUE / 2);
+    budget.addMemory(Long.MAX_VALUE / 2);
+  }
+
+  @Test
+  public void testMaxDocs() {
+    // each request is distinct, so that none is answered from the caches
+    assertQ(req("q", "val_i1:[0 TO 39]", "budget.maxDocs", "40"), "//result[@numFound='40']");
+    assertQEx("visited too many documents", req("q", "val_i1:[0 TO 40]", "budget.maxDocs", "40"), 503);
+    assertQEx("visited too many documents", req("q", "*:*", "fq", "val_i1:[0 TO 41]", "budget.maxDocs", "40"), 503);
+    assertQ(req("q", "val_i1:[0 TO 42]", "budget.maxDocs", "-1"), "//result[@numFound='43']");
+
+    // facets count the documents they visit
+    assertQEx("facet visited too many documents",
+        req("q", "val_i1:[0 TO 29]", "facet", "true", "facet.field", "cat_s", "budget.maxDocs", "40"), 503);
+
+    assertQEx("invalid budget", req("q", "*:*", "budget.maxDocs", "many"), 400);
+  }
+
+  @Test
+  public void testMaxMemory() {
+    assertQ(req("q", "val_i1:[0 TO 9]", "rows", "10", "budget.maxMemory", "100000"), "//result[@numFound='10']");
+    assertQEx("allocated too much", req("q", "val_i1:[0 TO 10]", "rows", "1000", "budget.maxMemory", "1000"), 503);
+    assertQEx("facet allocated too much",
+        req("q", "val_i1:[0 TO 11]", "rows", "0", "facet", "true", "facet.field", "cat_s", "budget.maxMemory", "4"), 503);
+    assertQEx("stats allocated too much",
+        req("q", "val_i1:[0 TO 12]", "rows", "0", "json.facet", "{x:{terms:{field:cat_s, facet:{y:'avg(val_i1)'}}}}",
+            "budget.maxMemory", "8"), 503);
+
+    SolrRequestHandler handler = h.getCore().getRequestHandler("standard");
+    NamedList stats = handler.getStatistics();
+    assertTrue(((Number) stats.get("budgetExceeded")).longValue() >= 3);
+  }
+}
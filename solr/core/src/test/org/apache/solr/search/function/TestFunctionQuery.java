@@ -18,25 +18,51 @@
 package org.apache.solr.search.function;
 
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.DefaultSimilarity;
 import org.apache.lucene.search.similarities.TFIDFSimilarity;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.field.ExternalFloatFile;
+import org.apache.solr.search.field.FileFloatTopValues;
+import org.apache.solr.search.field.TopValues;
+import org.apache.solr.search.function.valuesource.CompiledValueSource;
+import org.apache.solr.util.RefCounted;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.Ignore;
+import org.noggit.ObjectBuilder;
 
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 /**
  * Tests some basic functionality of Solr while demonstrating good
@@ -313,6 +339,137 @@ public class TestFunctionQuery extends SolrTestCaseJ4 {
     singleTest(extField,"\0",991,543210,992,-8,993,250);
   }
 
+  void makeBinaryExternalFile(String field, String contents) throws IOException {
+    String filename = h.getCore().getDataDir() + "/external_" + field + "." + (start++);
+    FieldType keyType = h.getCore().getLatestSchema().getUniqueKeyField().getType();
+    try (OutputStream out = new FileOutputStream(filename)) {
+      ExternalFloatFile.writeSorted(keyType, new StringReader(contents), out);
+    }
+  }
+
+  Map<String,Object> getTopValuesInfo(String field) {
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      TopValues topValues = ref.get().getnCache().get(field);
+      assertTrue(topValues instanceof FileFloatTopValues);
+      try {
+        Map<String,Object> info = new LinkedHashMap<>();
+        topValues.addInfo(info);
+        return info;
+      } finally {
+        topValues.decref();
+      }
+    } finally {
+      ref.decref();
+    }
+  }
+
+  Set<Object> segmentKeys() {
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      Set<Object> keys = new HashSet<>();
+      for (AtomicReaderContext leaf : ref.get().getTopReaderContext().leaves()) {
+        keys.add(leaf.reader().getCoreCacheKey());
+      }
+      return keys;
+    } finally {
+      ref.decref();
+    }
+  }
+
+  @Test
+  public void testExternalFieldOffHeap() throws Exception {
+    clearIndex();
+    String field = "foo_extfoh";
+
+    float[] ids = {100,-4,0,10,25,5,77,23,55,-78,-45,-24,63,78,94,22,34,54321,261,-627};
+
+    createIndex(null,ids);
+
+    // Unsorted field, largest first
+    makeExternalFile(field, "54321=543210\n0=-999\n25=250");
+    singleTest(field, "\0", 54321, 543210, 0,-999, 25,250, 100, 1);
+    singleTest(field, "log(\0)");
+
+    // a new segment should not cause values of the existing segments to be reloaded
+    Set<Object> oldSegments = segmentKeys();
+    assertU(adoc("id", "10000"));
+    assertU(commit());
+    singleTest(field, "\0", 54321, 543210, 0,-999, 25,250, 10000, 1);
+    Set<Object> shared = segmentKeys();
+    shared.retainAll(oldSegments);
+    assertEquals(shared.size(), ((Number)getTopValuesInfo(field).get("carriedOver")).intValue());
+
+    // a changed file should be visible after a commit, with nothing carried over
+    makeExternalFile(field, "0=7");
+    assertU(adoc("id", "10001"));
+    assertU(commit());
+    singleTest(field, "\0", 0,7, 54321,1, 10001,1);
+    assertEquals(0, ((Number)getTopValuesInfo(field).get("carriedOver")).intValue());
+
+    // a file that can't be read completely gives the defaults, and isn't carried over
+    makeBinaryExternalFile(field, "0=7\n10=8\n25=9");
+    File binary = new File(h.getCore().getDataDir(), "external_" + field + "." + (start-1));
+    RandomAccessFile raf = new RandomAccessFile(binary, "rw");
+    raf.setLength(raf.length() - 2);
+    raf.close();
+    ignoreException("Error loading external value source");
+    assertU(h.query("/reloadCache",lrf.makeRequest("","")));
+    singleTest(field, "\0", 0,1, 10,1, 25,1);
+    assertU(adoc("id", "10002"));
+    assertU(commit());
+    assertEquals(0, ((Number)getTopValuesInfo(field).get("carriedOver")).intValue());
+    resetExceptionIgnores();
+
+    Random r = random();
+    for (int i=0; i<10; i++) {
+      int len = r.nextInt(ids.length+1);
+      boolean sorted = r.nextBoolean();
+      // shuffle ids
+      for (int j=0; j<ids.length; j++) {
+        int other=r.nextInt(ids.length);
+        float v=ids[0];
+        ids[0] = ids[other];
+        ids[other] = v;
+      }
+
+      if (sorted) {
+        // sort only the first elements
+        Arrays.sort(ids,0,len);
+      }
+
+      float[] vals = new float[len];
+      for (int j=0; j<len; j++) {
+        vals[j] = r.nextInt(200)-100;
+      }
+
+      StringBuilder sb = new StringBuilder();
+      for (int j=0; j<len; j++) {
+        sb.append("" + ids[j] + "=" + vals[j]+"\n");
+      }
+      if (r.nextBoolean()) {
+        makeBinaryExternalFile(field, sb.toString());
+      } else {
+        makeExternalFile(field, sb.toString());
+      }
+
+      // make it visible
+      assertU(h.query("/reloadCache",lrf.makeRequest("","")));
+
+      float[] answers = new float[ids.length*2];
+      for (int j=0; j<len; j++) {
+        answers[j*2] = ids[j];
+        answers[j*2+1] = vals[j];
+      }
+      for (int j=len; j<ids.length; j++) {
+        answers[j*2] = ids[j];
+        answers[j*2+1] = 1;  // the default values
+      }
+
+      singleTest(field, "\0", answers);
+    }
+  }
+
   @Test
   public void testGeneral() throws Exception {
     clearIndex();
@@ -613,6 +770,187 @@ public class TestFunctionQuery extends SolrTestCaseJ4 {
     dofunc("atan2(.25,.5)", Math.atan2(.25,.5));
   }
 
+  @Test
+  public void testFillFloats() throws Exception {
+    clearIndex();
+    Random r = random();
+    int ndocs = 200 + r.nextInt(200);
+    for (int i=0; i<ndocs; i++) {
+      if (r.nextInt(10) == 0) {
+        assertU(adoc("id", Integer.toString(i)));  // no values
+      } else {
+        assertU(adoc("id", Integer.toString(i), "a_tf", Float.toString(r.nextFloat() * 100 - 50), "b_ti", Integer.toString(r.nextInt(1000)),
+            "c_td", Double.toString(r.nextDouble()), "d_tl", Long.toString(r.nextLong() >> 20)));
+      }
+      if (r.nextInt(100) == 0) assertU(commit());
+    }
+    for (int i=0; i<10; i++) {
+      assertU(delI(Integer.toString(r.nextInt(ndocs))));
+    }
+    assertU(commit());
+
+    String[] funcs = {
+        "a_tf",
+        "sum(a_tf,product(b_ti,2),linear(c_td,3,1))",
+        "product(a_tf,b_ti,c_td)",
+        "recip(d_tl,3.16e-11,1,1)",
+        "sum(recip(b_ti,1,1000,1000),max(a_tf,c_td),sum(1.5,d_tl))",
+        "linear(sum(a_tf,b_ti),2,4)"
+    };
+
+    SolrQueryRequest req = req();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, new SolrQueryResponse()));
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      for (String func : funcs) {
+        FunctionQuery fq = (FunctionQuery) QParser.getParser(func, "func", req).getQuery();
+        ValueSource vs = fq.getValueSource();
+        QueryContext context = QueryContext.newContext(searcher);
+        vs.createWeight(context);
+
+        for (AtomicReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+          int maxDoc = leaf.reader().maxDoc();
+          int[] docs = new int[maxDoc];
+          int n = 0;
+          for (int doc=0; doc<maxDoc; doc++) {
+            if (r.nextInt(3) != 0) docs[n++] = doc;
+          }
+
+          FuncValues vals = vs.getValues(context, leaf);
+          float[] floats = new float[n];
+          double[] doubles = new double[n];
+          vals.fillFloats(docs, n, floats);
+          vals.fillDoubles(docs, n, doubles);
+          for (int i=0; i<n; i++) {
+            assertEquals(func, vals.floatVal(docs[i]), floats[i], 0.0f);
+            assertEquals(func, vals.doubleVal(docs[i]), doubles[i], 0.0);
+          }
+        }
+
+        // scores from the block-at-a-time FunctionQuery scorer should match per-doc evaluation
+        TopDocs top = searcher.search(fq, ndocs);
+        assertEquals(searcher.getIndexReader().numDocs(), top.totalHits);
+        for (ScoreDoc sd : top.scoreDocs) {
+          List<AtomicReaderContext> leaves = searcher.getTopReaderContext().leaves();
+          AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(sd.doc, leaves));
+          float expected = vs.getValues(context, leaf).floatVal(sd.doc - leaf.docBase);
+          expected = expected > Float.NEGATIVE_INFINITY ? expected : -Float.MAX_VALUE;
+          assertEquals(func, expected, sd.score, 0.0f);
+        }
+      }
+    } finally {
+      SolrRequestInfo.clearRequestInfo();
+      req.close();
+    }
+
+    clearIndex();
+    assertU(commit());
+  }
+
+  Object docs(SolrQueryRequest req) throws Exception {
+    Map<?,?> rsp = (Map<?,?>) ObjectBuilder.fromJSON(JQ(req));
+    return ((Map<?,?>) rsp.get("response")).get("docs");
+  }
+
+  @Test
+  public void testCompiledFunctions() throws Exception {
+    clearIndex();
+    Random r = random();
+    int ndocs = 100 + r.nextInt(100);
+    float[] special = {0, -0.0f, 1, -1, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+    for (int i=0; i<ndocs; i++) {
+      if (r.nextInt(10) == 0) {
+        assertU(adoc("id", Integer.toString(i)));  // no values
+      } else {
+        float a = r.nextInt(5) == 0 ? special[r.nextInt(special.length)] : r.nextFloat() * 100 - 50;
+        assertU(adoc("id", Integer.toString(i), "a_tf", Float.toString(a), "b_ti", Integer.toString(r.nextInt(10) - 2),
+            "c_td", Double.toString(r.nextDouble()), "d_tl", Long.toString(r.nextLong() >> 20)));
+      }
+      if (r.nextInt(50) == 0) assertU(commit());
+    }
+    assertU(commit());
+
+    String[] funcs = {
+        "sum(a_tf,product(b_ti,2),linear(c_td,3,1))",
+        "product(a_tf,b_ti,c_td,0.5)",
+        "div(a_tf,b_ti)",
+        "pow(a_tf,c_td)",
+        "sqrt(sum(a_tf,b_ti))",
+        "log(a_tf)",
+        "ln(sum(a_tf,c_td))",
+        "rad(deg(a_tf))",
+        "hypot(a_tf,b_ti)",
+        "atan2(sub(a_tf,1),b_ti)",
+        "recip(d_tl,3.16e-11,1,1)",
+        "recip(sum(b_ti,a_tf),1,1000,1000)",
+        "max(a_tf,b_ti,c_td)",
+        "min(a_tf,b_ti)",
+        "max(a_tf)",
+        "map(a_tf,0,10,100)",
+        "map(a_tf,-10,10,sum(a_tf,1),linear(b_ti,2,3))",
+        "product(if(exists(a_tf),sum(a_tf,1),c_td),2)",
+        "sqrt(if(b_ti,log(c_td),product(a_tf,2)))",
+        "sum(if(b_ti,log(c_td),product(a_tf,2)),sqrt(c_td),1)",
+        "sum(a_tf,a_tf,query({!lucene v='id:[0 TO 50]'},3))",
+        "product(sum(a_tf,scale(b_ti,0,1)),div(1,c_td))",
+        "sum(ms(NOW,d_tl),1)",
+    };
+
+    SolrQueryRequest req = req();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, new SolrQueryResponse()));
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      for (String func : funcs) {
+        ValueSource vs = ((FunctionQuery)QParser.getParser(func, "func", req).getQuery()).getValueSource();
+        ValueSource compiled = CompiledValueSource.compile(vs);
+        assertTrue(func, compiled instanceof CompiledValueSource);
+        assertEquals(vs.description(), compiled.description());
+
+        QueryContext context = QueryContext.newContext(searcher);
+        compiled.createWeight(context);
+        QueryContext context2 = QueryContext.newContext(searcher);
+        vs.createWeight(context2);
+
+        for (AtomicReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+          FuncValues expected = vs.getValues(context2, leaf);
+          FuncValues actual = compiled.getValues(context, leaf);
+          for (int doc=0; doc<leaf.reader().maxDoc(); doc++) {
+            assertEquals(func, Float.floatToIntBits(expected.floatVal(doc)), Float.floatToIntBits(actual.floatVal(doc)));
+            assertEquals(func, Double.doubleToLongBits(expected.doubleVal(doc)), Double.doubleToLongBits(actual.doubleVal(doc)));
+            assertEquals(func, expected.strVal(doc), actual.strVal(doc));
+            assertEquals(func, expected.toString(doc), actual.toString(doc));
+          }
+        }
+      }
+
+      // functions that only differ in their inputs or constants share the generated class
+      ValueSource f1 = ((FunctionQuery)QParser.getParser("{!func compile=true}sum(a_tf,linear(b_ti,2,3))", null, req).getQuery()).getValueSource();
+      ValueSource f2 = ((FunctionQuery)QParser.getParser("{!func compile=true}sum(c_td,linear(d_tl,5,7))", null, req).getQuery()).getValueSource();
+      ValueSource f3 = ((FunctionQuery)QParser.getParser("{!func compile=true}sum(c_td,linear(d_tl,5,7),1)", null, req).getQuery()).getValueSource();
+      ValueSource f4 = ((FunctionQuery)QParser.getParser("{!func}sum(c_td,linear(d_tl,5,7),1)", null, req).getQuery()).getValueSource();
+      assertEquals(((CompiledValueSource)f1).getShape(), ((CompiledValueSource)f2).getShape());
+      assertFalse(((CompiledValueSource)f1).getShape().equals(((CompiledValueSource)f3).getShape()));
+      assertFalse(f4 instanceof CompiledValueSource);
+      QueryContext context = QueryContext.newContext(searcher);
+      AtomicReaderContext leaf = searcher.getTopReaderContext().leaves().get(0);
+      assertSame(f1.getValues(context, leaf).getClass(), f2.getValues(context, leaf).getClass());
+      assertNotSame(f1.getValues(context, leaf).getClass(), f3.getValues(context, leaf).getClass());
+    } finally {
+      SolrRequestInfo.clearRequestInfo();
+      req.close();
+    }
+
+    // compiled and interpreted functions score and sort the same
+    String func = "sum(recip(b_ti,1,10,10),map(a_tf,-10,10,1,0),log(sum(c_td,1)))";
+    assertEquals(docs(req("q", "{!func}" + func, "fl", "id,score,v:$f", "f", func, "sort", "score desc,id asc", "rows", "1000")),
+        docs(req("q", "{!func compile=true}" + func, "fl", "id,score,v:$f", "f", func, "sort", "score desc,id asc", "rows", "1000")));
+    assertEquals(docs(req("q", "*:*", "fl", "id", "sort", "sum(a_tf,b_ti) desc,id asc", "rows", "1000")),
+        docs(req("q", "*:*", "fl", "id", "sort", "sum(a_tf,b_ti) desc,id asc", "rows", "1000", "compile", "true")));
+
+    clearIndex();
+    assertU(commit());
+  }
+
   /**
    * verify that both the field("...") value source parser as well as 
    * ExternalFileField work with esoteric field names
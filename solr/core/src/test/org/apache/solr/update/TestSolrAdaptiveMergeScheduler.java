@@ -0,0 +1,86 @@
+package org.apache.solr.update;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.update.SolrAdaptiveMergeScheduler.HandlerLatencySignal;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+
+public class TestSolrAdaptiveMergeScheduler extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-adaptivemergescheduler.xml", "schema.xml");
+  }
+
+  private SolrAdaptiveMergeScheduler getScheduler() throws Exception {
+    RefCounted<IndexWriter> iw = h.getCore().getSolrCoreState().getIndexWriter(h.getCore());
+    try {
+      MergeScheduler ms = iw.get().getConfig().getMergeScheduler();
+      assertTrue(ms.toString(), ms instanceof SolrAdaptiveMergeScheduler);
+      return (SolrAdaptiveMergeScheduler) ms;
+    } finally {
+      iw.decref();
+    }
+  }
+
+  public void testMBean() throws Exception {
+    SolrAdaptiveMergeScheduler ms = getScheduler();
+    assertSame(ms, h.getCore().getInfoRegistry().get(SolrAdaptiveMergeScheduler.INFO_NAME));
+    assertEquals(10.0, ms.getMinMBPerSec(), 0.0);
+    assertEquals(2000.0, ms.getMaxMBPerSec(), 0.0);
+    assertEquals(100.0, ms.getTargetLatencyMs(), 0.0);
+    assertTrue(ms.getSearchLatencySignal() instanceof HandlerLatencySignal);
+
+    clearIndex();
+    int nsegs = 5 + random().nextInt(10);
+    for (int i = 0; i < nsegs; i++) {
+      assertU(adoc("id", Integer.toString(i)));
+      assertU(commit());
+    }
+    assertU(optimize());
+    assertQ(req("q", "*:*"), "//result[@numFound='" + nsegs + "']");
+
+    NamedList stats = ms.getStatistics();
+    assertEquals(stats.toString(), Boolean.TRUE, stats.get("throttling"));
+    assertTrue(stats.toString(), (Long) stats.get("completedMerges") > 0);
+    double mbPerSec = (Double) stats.get("mbPerSec");
+    assertTrue(stats.toString(), mbPerSec >= 10 && mbPerSec <= 2000);
+  }
+
+  public void testLatencySignal() throws Exception {
+    SolrCore core = h.getCore();
+    HandlerLatencySignal signal = new HandlerLatencySignal(core, "/select", 100);
+    signal.getLatencyRatio();
+    // no searches since the last call
+    assertEquals(0.0, signal.getLatencyRatio(), 0.0);
+    for (int i = 0; i < 5; i++) {
+      assertQ(req("q", "id:" + i));
+    }
+    assertTrue(signal.getLatencyRatio() >= 0);
+    assertEquals(0.0, signal.getLatencyRatio(), 0.0);
+
+    // unknown handlers are ignored
+    assertEquals(0.0, new HandlerLatencySignal(core, "/nonexistent", 100).getLatencyRatio(), 0.0);
+  }
+}
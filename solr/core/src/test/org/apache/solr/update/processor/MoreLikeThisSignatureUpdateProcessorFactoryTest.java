@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update.processor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.MoreLikeThisSignature;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.noggit.ObjectBuilder;
+
+@SuppressCodecs("Lucene3x")
+public class MoreLikeThisSignatureUpdateProcessorFactoryTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-mlt-signature.xml", "schema.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clearIndex();
+    assertU(adoc("id","42","name","Tom Cruise","subword","Top Gun","subword","Risky Business","subword","The Color of Money","subword","Minority Report","subword", "Days of Thunder","subword", "Eyes Wide Shut","subword", "Far and Away"));
+    assertU(adoc("id","43","name","Tom Hanks","subword","The Green Mile","subword","Forest Gump","subword","Philadelphia Story","subword","Big","subword","Cast Away"));
+    assertU(adoc("id","44","name","Harrison Ford","subword","Star Wars","subword","Indiana Jones","subword","Patriot Games","subword","Regarding Henry"));
+    assertU(adoc("id","45","name","George Harrison","subword","Yellow Submarine","subword","Help","subword","Magical Mystery Tour","subword","Sgt. Peppers Lonley Hearts Club Band"));
+    assertU(commit());
+    assertU(adoc("id","46","name","Nicole Kidman","subword","Batman","subword","Days of Thunder","subword","Eyes Wide Shut","subword","Far and Away"));
+    assertU(adoc("id","47"));
+    assertU(commit());
+  }
+
+  @Test
+  public void testSignature() throws Exception {
+    SolrQueryRequest req = req();
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      MoreLikeThisSignature signature = MoreLikeThisSignature.read(searcher, "mlt_signature", docId(req, "46"));
+      assertNotNull(signature);
+      assertEquals(16, signature.getNumBands());
+      assertEquals(16, signature.getBandKeys().size());
+      boolean found = false;
+      for (int i = 0; i < signature.size(); i++) {
+        if (signature.getTerm(i).equals("thunder")) {
+          found = true;
+          assertEquals(1, signature.getFreq(i));
+        }
+      }
+      assertTrue(found);
+
+      // a document without the source fields has no signature
+      assertNull(MoreLikeThisSignature.read(searcher, "mlt_signature", docId(req, "47")));
+    } finally {
+      req.close();
+    }
+
+    MoreLikeThisSignature signature = new MoreLikeThisSignature(new String[] {"a", "b"}, new int[] {3, 1},
+        MoreLikeThisSignature.minHash(Arrays.asList("a", "b", "c"), 8), 4);
+    MoreLikeThisSignature decoded = MoreLikeThisSignature.fromBytes(new BytesRef(signature.toBytes()));
+    assertEquals(2, decoded.size());
+    assertEquals("b", decoded.getTerm(1));
+    assertEquals(3, decoded.getFreq(0));
+    assertEquals(signature.getBandKeys(), decoded.getBandKeys());
+    assertEquals(MoreLikeThisSignature.minHash(Arrays.asList("c", "b", "a"), 8)[5], MoreLikeThisSignature.minHash(Arrays.asList("a", "b", "c"), 8)[5]);
+  }
+
+  @Test
+  public void testMoreLikeThis() throws Exception {
+    String[] params = new String[] {"qt", "/mlt", "fl", "id", "mlt.fl", "name,subword", "mlt.mintf", "1", "mlt.mindf", "1", "mlt.interestingTerms", "list"};
+
+    // the query built from the signature is the same as the one built from the document
+    for (String id : new String[] {"42", "43", "44", "46"}) {
+      Map analyzed = (Map) ObjectBuilder.fromJSON(JQ(req(params, "q", "id:" + id)));
+      Map signed = (Map) ObjectBuilder.fromJSON(JQ(req(params, "q", "id:" + id, "mlt.signatureField", "mlt_signature")));
+      assertEquals(analyzed.get("response"), signed.get("response"));
+      // terms of equal scores may come in any order
+      assertEquals(new HashSet((List) analyzed.get("interestingTerms")), new HashSet((List) signed.get("interestingTerms")));
+    }
+
+    assertJQ(req(params, "q", "id:42", "mlt.signatureField", "mlt_signature")
+        , "/response/docs/[0]/id==46"
+        , "/response/docs/[1]/id==43"
+    );
+
+    // with the band filter, candidates must share a band of the MinHash
+    assertJQ(req(params, "q", "id:42", "mlt.signatureField", "mlt_signature", "mlt.lshField", "mlt_bands")
+        , "/response/numFound==1"
+        , "/response/docs/[0]/id==46"
+    );
+
+    // documents without a signature are analyzed
+    assertJQ(req(params, "q", "id:47", "mlt.signatureField", "mlt_signature", "mlt.lshField", "mlt_bands")
+        , "/response/numFound==0"
+    );
+
+    // the component uses signatures too
+    assertJQ(req("q", "id:42", "fl", "id", "mlt", "true", "mlt.fl", "name,subword", "mlt.mintf", "1", "mlt.mindf", "1",
+        "mlt.signatureField", "mlt_signature", "mlt.lshField", "mlt_bands")
+        , "/moreLikeThis/42/numFound==1"
+        , "/moreLikeThis/42/docs/[0]/id==46"
+    );
+    String debug = JQ(req("q", "id:42", "fl", "id", "mlt", "true", "mlt.fl", "name,subword", "mlt.mintf", "1", "mlt.mindf", "1",
+        "mlt.signatureField", "mlt_signature", "mlt.lshField", "mlt_bands", "debugQuery", "true"));
+    assertTrue(debug, debug.contains("mlt_bands"));
+  }
+
+  @Test
+  public void testPartialUpdate() throws Exception {
+    ignoreException("partial update");
+    try {
+      updateJ(jsonAdd(sdoc("id", "42", "name", map("set", "Tom Hanks"))), null);
+      fail();
+    } catch (SolrException e) {
+      assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+    } finally {
+      resetExceptionIgnores();
+    }
+  }
+
+  private static int docId(SolrQueryRequest req, String id) throws Exception {
+    return req.getSearcher().search(QParser.getParser("id:" + id, null, req).getQuery(), 1).scoreDocs[0].doc;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.util.stats;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestHyperLogLog extends LuceneTestCase {
+
+  public void testSmallIsExact() {
+    HyperLogLog hll = new HyperLogLog();
+    Set<String> values = new HashSet<>();
+    int numValues = TestUtil.nextInt(random(), 1, 1000);
+    for (int i = 0; i < numValues; i++) {
+      String value = TestUtil.randomSimpleString(random(), 1, 4);
+      values.add(value);
+      hll.add(HyperLogLog.hash(value));
+    }
+    assertEquals(values.size(), hll.cardinality());
+    assertEquals(values.size(), HyperLogLog.fromBytes(hll.toBytes()).cardinality());
+  }
+
+  public void testAccuracy() {
+    Random random = random();
+    int numValues = atLeast(200000);
+    HyperLogLog hll = new HyperLogLog();
+    for (int i = 0; i < numValues; i++) {
+      // every value twice
+      long value = random.nextLong();
+      hll.add(HyperLogLog.hash(value));
+      hll.add(HyperLogLog.hash(value));
+    }
+    assertEstimate(numValues, hll.cardinality());
+    assertEquals((1 << HyperLogLog.DEFAULT_PRECISION) + 3, hll.toBytes().length);
+  }
+
+  public void testMergeAndSerialize() {
+    Random random = random();
+    int numSketches = 1 + random.nextInt(10);
+    int numValues = atLeast(100000);
+    HyperLogLog[] sketches = new HyperLogLog[numSketches];
+    for (int i = 0; i < numSketches; i++) {
+      sketches[i] = new HyperLogLog();
+    }
+    for (int i = 0; i < numValues; i++) {
+      // the same value may be added to several sketches
+      long hash = HyperLogLog.hash((long) i);
+      sketches[random.nextInt(numSketches)].add(hash);
+      sketches[random.nextInt(numSketches)].add(hash);
+    }
+    HyperLogLog merged = new HyperLogLog();
+    for (HyperLogLog sketch : sketches) {
+      merged.add(HyperLogLog.fromBytes(sketch.toBytes()));
+    }
+    assertEstimate(numValues, merged.cardinality());
+  }
+
+  public void testDifferentPrecisions() {
+    try {
+      new HyperLogLog(10).add(new HyperLogLog(12));
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  private void assertEstimate(long expected, long estimate) {
+    // 6 standard errors
+    double error = Math.abs(estimate - expected) / (double) expected;
+    assertTrue("expected=" + expected + " estimate=" + estimate, error < 6 * 1.04 / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION));
+  }
+}
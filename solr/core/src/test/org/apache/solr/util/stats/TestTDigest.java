@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.util.stats;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestTDigest extends LuceneTestCase {
+
+  public void testEmpty() {
+    TDigest digest = new TDigest();
+    assertEquals(0, digest.size());
+    assertTrue(Double.isNaN(digest.quantile(0.5)));
+    assertTrue(Double.isNaN(TDigest.fromBytes(digest.toBytes()).quantile(0.5)));
+  }
+
+  public void testSmallIsExact() {
+    TDigest digest = new TDigest();
+    for (int i = 1; i <= 10; i++) {
+      digest.add(i);
+    }
+    assertEquals(1, digest.quantile(0), 0);
+    assertEquals(5.5, digest.quantile(0.5), 0);
+    assertEquals(10, digest.quantile(1), 0);
+  }
+
+  public void testAccuracy() {
+    Random random = random();
+    int numValues = atLeast(100000);
+    double[] values = new double[numValues];
+    TDigest digest = new TDigest();
+    for (int i = 0; i < numValues; i++) {
+      // skewed, like latencies
+      values[i] = Math.exp(random.nextGaussian());
+      digest.add(values[i]);
+    }
+    assertEquals(numValues, digest.size());
+    assertQuantiles(values, digest);
+    // fixed memory
+    assertTrue(digest.toBytes().length < 64 * 1024);
+  }
+
+  public void testMergeAndSerialize() {
+    Random random = random();
+    int numDigests = 1 + random.nextInt(10);
+    int numValues = atLeast(50000);
+    double[] values = new double[numValues];
+    TDigest[] digests = new TDigest[numDigests];
+    for (int i = 0; i < numDigests; i++) {
+      digests[i] = new TDigest();
+    }
+    for (int i = 0; i < numValues; i++) {
+      values[i] = random.nextDouble() * 1000;
+      digests[random.nextInt(numDigests)].add(values[i]);
+    }
+    TDigest merged = new TDigest();
+    for (TDigest digest : digests) {
+      merged.add(TDigest.fromBytes(digest.toBytes()));
+    }
+    assertEquals(numValues, merged.size());
+    assertQuantiles(values, merged);
+  }
+
+  public void testWeightedValues() {
+    TDigest digest = new TDigest();
+    digest.add(1, 90);
+    digest.add(100, 10);
+    assertEquals(100, digest.size());
+    assertEquals(1, digest.quantile(0.3), 0);
+    assertEquals(100, digest.quantile(0.99), 0);
+  }
+
+  private void assertQuantiles(double[] values, TDigest digest) {
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    assertEquals(sorted[0], digest.getMin(), 0);
+    assertEquals(sorted[sorted.length - 1], digest.getMax(), 0);
+    for (double q : new double[] {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999}) {
+      double estimate = digest.quantile(q);
+      // the rank of the estimate is close to the expected rank, more so at both ends
+      int rank = Arrays.binarySearch(sorted, estimate);
+      if (rank < 0) {
+        rank = -1 - rank;
+      }
+      double error = Math.abs((double) rank / sorted.length - q);
+      assertTrue("q=" + q + " estimate=" + estimate + " error=" + error, error < 0.01 * Math.max(0.1, Math.sqrt(q * (1 - q)) * 2));
+    }
+  }
+}
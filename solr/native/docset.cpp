@@ -103,3 +103,118 @@ JNIEXPORT void JNICALL Java_org_apache_solr_search_BitDocSetNative_setBits
   }
 }
 
+
+
+// Puts the intersection of the sorted lists a and b into target (which may be the same as a) and returns the size.
+int intersection(const int* a, int32_t a_size, const int* b, int32_t b_size, int* target) {
+  if (a_size > b_size) {
+    const int* t = a; a = b; b = t;
+    int32_t ts = a_size; a_size = b_size; b_size = ts;
+  }
+  if (a_size == 0) return 0;
+
+  int icount = 0;
+
+  if ((b_size>>3) >= a_size) {
+    // b is much bigger than a... probe ahead, then binary search (see intersectionSize)
+    uint32_t step = (b_size/a_size)+1;
+    step = step + step;
+    int low = 0;
+    int max = b_size-1;
+
+    for (int i=0; i<a_size; i++) {
+      int doca = a[i];
+      int high = max;
+      int probe = low + step;
+
+      if (probe<high) {
+        if (b[probe]>=doca) {
+          high=probe;
+        } else {
+          low=probe+1;
+          probe = low + step;
+          if (probe<high) {
+            if (b[probe]>=doca) {
+              high=probe;
+            } else {
+              low=probe+1;
+            }
+          }
+        }
+      }
+
+      while (low <= high) {
+        int mid = ((unsigned int)(low+high)) >> 1;
+        int docb = b[mid];
+        if (docb < doca) {
+          low = mid+1;
+        } else if (docb > doca) {
+          high = mid-1;
+        } else {
+          target[icount++] = doca;
+          low = mid+1;
+          break;
+        }
+      }
+    }
+    return icount;
+  }
+
+  // close in size, so a linear walk of both
+  int i=0, j=0;
+  int doca=a[0], docb=b[0];
+  for(;;) {
+    if (doca > docb) {
+      if (++j >= b_size) break;
+      docb=b[j];
+    } else if (doca < docb) {
+      if (++i >= a_size) break;
+      doca=a[i];
+    } else {
+      target[icount++] = doca;
+      if (++i >= a_size) break;
+      doca=a[i];
+      if (++j >= b_size) break;
+      docb=b[j];
+    }
+  }
+  return icount;
+}
+
+
+JNIEXPORT jint JNICALL Java_org_apache_solr_search_SortedIntDocSetNative_intersectionNative
+  (JNIEnv *env, jclass clazz, jlong a, jint a_size, jlong b, jint b_size, jlong target)
+{
+  return intersection( (const int*)a, a_size, (const int*)b, b_size, (int*)target );
+}
+
+
+// Puts the ids of the sorted list that are also set in the bits into target and returns the number found.
+// Only counts if target is null.
+JNIEXPORT jint JNICALL Java_org_apache_solr_search_BitDocSetNative_intersectionInts
+  (JNIEnv *env, jclass clazz, jlong words, jlong wlen, jlong intArr, jint sz, jlong target)
+{
+  BitDocSet bits = BitDocSet((uint64_t*)words, wlen);
+  const int* docs = (const int*)intArr;
+  int maxBit = ((int)wlen) << 6;
+  int icount = 0;
+
+  if (target == 0) {
+    for (int i=0; i<sz; i++) {
+      int doc = docs[i];
+      if (doc >= maxBit) break;  // sorted, so nothing after this can match
+      icount += bits.fastGet(doc);
+    }
+  } else {
+    int* out = (int*)target;
+    for (int i=0; i<sz; i++) {
+      int doc = docs[i];
+      if (doc >= maxBit) break;
+      // branch free: always store, but only advance when the bit is set
+      out[icount] = doc;
+      icount += bits.fastGet(doc);
+    }
+  }
+
+  return icount;
+}
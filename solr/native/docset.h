@@ -4,6 +4,7 @@
 
 
 int intersectionSize(const int* const a, int32_t a_size, const int* const b, int32_t b_size);
+int intersection(const int* a, int32_t a_size, const int* b, int32_t b_size, int* target);
 
 
 class DocSet {
@@ -22,6 +23,10 @@ class BitDocSet : public DocSet {
     BitDocSet(uint64_t* bits, int wlen) : bits(bits), wlen(wlen) {
     }
 
+    bool fastGet(int index) const {
+      return (bits[index>>6] & (((uint64_t)1) << (index & 0x3f))) != 0;
+    }
+
     void fastSet(int index) {
       int wordNum = index>>6;
       uint64_t bitmask = ((uint64_t)1) << (index & 0x3f);
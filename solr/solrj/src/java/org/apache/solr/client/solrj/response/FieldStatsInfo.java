@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +45,7 @@ public class FieldStatsInfo implements Serializable {
   Object mean = null;
   Double sumOfSquares = null;
   Double stddev = null;
+  Map<String,Object> percentiles = null;
   
   Map<String,List<FieldStatsInfo>> facets;
   
@@ -82,6 +84,14 @@ public class FieldStatsInfo implements Serializable {
       else if( "stddev".equals( entry.getKey() ) ) {
         stddev = (Double)entry.getValue();
       }
+      else if( "percentiles".equals( entry.getKey() ) ) {
+        @SuppressWarnings("unchecked")
+        NamedList<Object> values = (NamedList<Object>)entry.getValue();
+        percentiles = new LinkedHashMap<>();
+        for( Map.Entry<String, Object> ev : values ) {
+          percentiles.put( ev.getKey(), ev.getValue() );
+        }
+      }
       else if( "facets".equals( entry.getKey() ) ) {
         @SuppressWarnings("unchecked")
         NamedList<Object> fields = (NamedList<Object>)entry.getValue();
@@ -136,6 +146,9 @@ public class FieldStatsInfo implements Serializable {
     if( stddev != null ) {
       sb.append( " stddev:").append(stddev);
     }
+    if( percentiles != null ) {
+      sb.append( " percentiles:").append(percentiles);
+    }
     sb.append( " }" );
     return sb.toString();
   }
@@ -180,6 +193,14 @@ public class FieldStatsInfo implements Serializable {
     return stddev;
   }
 
+  /**
+   * Returns the estimated values of the requested percentiles, keyed by percentile,
+   * or null if no percentiles were requested
+   */
+  public Map<String, Object> getPercentiles() {
+    return percentiles;
+  }
+
   public Map<String, List<FieldStatsInfo>> getFacets() {
     return facets;
   }
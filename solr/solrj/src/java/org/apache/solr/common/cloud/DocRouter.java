@@ -88,6 +88,7 @@ public abstract class DocRouter {
     routerMap.put(PlainIdRouter.NAME, plain);
     routerMap.put(CompositeIdRouter.NAME, DEFAULT_NAME.equals(CompositeIdRouter.NAME) ? DEFAULT : new CompositeIdRouter());
     routerMap.put(ImplicitDocRouter.NAME, new ImplicitDocRouter());
+    routerMap.put(TimeRangeRouter.NAME, new TimeRangeRouter());
     // NOTE: careful that the map keys (the static .NAME members) are filled in by making them final
   }
 
@@ -41,7 +41,7 @@ public class ImplicitDocRouter extends DocRouter {
   public Slice getTargetSlice(String id, SolrInputDocument sdoc, SolrParams params, DocCollection collection) {
     String shard = null;
     if (sdoc != null) {
-      String f = getRouteField(collection);
+      String f = getShardField(collection);
       if(f !=null) {
         Object o = sdoc.getFieldValue(f);
         if (o != null) shard = o.toString();
@@ -73,6 +73,11 @@ public class ImplicitDocRouter extends DocRouter {
     return null;  // no shard specified... use default.
   }
 
+  /** The field of the documents whose value is the name of their shard, or null if there is none */
+  protected String getShardField(DocCollection collection) {
+    return getRouteField(collection);
+  }
+
   @Override
   public boolean isTargetSlice(String id, SolrInputDocument sdoc, SolrParams params, String shardId, DocCollection collection) {
 
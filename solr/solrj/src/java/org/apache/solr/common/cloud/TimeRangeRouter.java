@@ -0,0 +1,271 @@
+package org.apache.solr.common.cloud;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.DateUtil;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A router for collections partitioned by time (or any other numeric field), where each shard holds the documents
+ * of a range of values of the route field, such as a shard per day.  Documents are routed like with the
+ * {@link ImplicitDocRouter}, to the shard named by {@link org.apache.solr.common.params.ShardParams#_ROUTE_}, and
+ * shards are created by name.
+ * <p/>
+ * The leader of each shard keeps the lowest and highest values of the route field in its index, rounded out to
+ * coarse intervals, in the {@link #MIN_VALUE} and {@link #MAX_VALUE} properties of the shard, and a search only goes to the shards whose
+ * range intersects the ranges of the route field in its filter queries, e.g. <code>fq=timestamp:[NOW-1DAY TO *]</code>.
+ * Shards whose range isn't known are always searched.
+ *
+ * @lucene.experimental
+ */
+public class TimeRangeRouter extends ImplicitDocRouter {
+  public static final String NAME = "timeRange";
+
+  /** The slice property with the lowest value of the route field in the shard */
+  public static final String MIN_VALUE = "minValue";
+  /** The slice property with the highest value of the route field in the shard */
+  public static final String MAX_VALUE = "maxValue";
+
+  /** NOW is widened by this much on each side when the request doesn't fix it, for clock differences */
+  static final long NOW_SLACK_MS = 60 * 1000;
+
+  private static final Pattern ISO_DATE = Pattern.compile("(\\d{4,})-(\\d\\d)-(\\d\\d)T(\\d\\d):(\\d\\d):(\\d\\d)(?:\\.(\\d{1,3})\\d*)?Z");
+  private static final Pattern DATE_MATH = Pattern.compile("([+-]\\d+|/)([A-Z]+)");
+  private static final Map<String,Integer> UNITS = new HashMap<>();
+  static {
+    UNITS.put("YEAR", Calendar.YEAR);
+    UNITS.put("YEARS", Calendar.YEAR);
+    UNITS.put("MONTH", Calendar.MONTH);
+    UNITS.put("MONTHS", Calendar.MONTH);
+    UNITS.put("DAY", Calendar.DATE);
+    UNITS.put("DAYS", Calendar.DATE);
+    UNITS.put("DATE", Calendar.DATE);
+    UNITS.put("HOUR", Calendar.HOUR_OF_DAY);
+    UNITS.put("HOURS", Calendar.HOUR_OF_DAY);
+    UNITS.put("MINUTE", Calendar.MINUTE);
+    UNITS.put("MINUTES", Calendar.MINUTE);
+    UNITS.put("SECOND", Calendar.SECOND);
+    UNITS.put("SECONDS", Calendar.SECOND);
+    UNITS.put("MILLI", Calendar.MILLISECOND);
+    UNITS.put("MILLIS", Calendar.MILLISECOND);
+    UNITS.put("MILLISECOND", Calendar.MILLISECOND);
+    UNITS.put("MILLISECONDS", Calendar.MILLISECOND);
+  }
+
+  /** The field whose range of values is kept per shard, or null if the collection has none */
+  public String getRangeField(DocCollection collection) {
+    return getRouteField(collection);
+  }
+
+  @Override
+  protected String getShardField(DocCollection collection) {
+    // the route field holds the time of the documents, not the name of their shard
+    return null;
+  }
+
+  @Override
+  public Collection<Slice> getSearchSlicesSingle(String shardKey, SolrParams params, DocCollection collection) {
+    Collection<Slice> slices = super.getSearchSlicesSingle(shardKey, params, collection);
+    String field = getRouteField(collection);
+    if (shardKey != null || field == null || params == null || slices.size() <= 1) {
+      return slices;
+    }
+
+    Number[] range = getQueryRange(field, params);
+    if (range == null) {
+      return slices;
+    }
+
+    List<Slice> result = new ArrayList<>(slices.size());
+    for (Slice slice : slices) {
+      if (intersects(slice, range[0], range[1])) {
+        result.add(slice);
+      }
+    }
+    if (result.isEmpty()) {
+      // keep a shard so that the response is built as usual
+      result.add(slices.iterator().next());
+    }
+    return result;
+  }
+
+  /** Returns true if the range of values of a slice may intersect [lower, upper], where null is unbounded */
+  static boolean intersects(Slice slice, Number lower, Number upper) {
+    Number min = parseValue(slice.getStr(MIN_VALUE), 0, DateUtil.UTC);
+    Number max = parseValue(slice.getStr(MAX_VALUE), 0, DateUtil.UTC);
+    if (min == null || max == null) {
+      return true;
+    }
+    return (lower == null || compare(max, lower) >= 0) && (upper == null || compare(min, upper) <= 0);
+  }
+
+  /**
+   * Returns the intersection of the ranges of a field in the filter queries of a request, as [lower, upper] where
+   * null is unbounded, or null if no filter query is a range or a value of the field.  Only filter queries that are
+   * nothing but such a clause, without local params, are considered, and exclusive bounds are taken as inclusive.
+   * Filters with a tag are never used, since multi-select facets and stats count the documents they exclude.
+   */
+  static Number[] getQueryRange(String field, SolrParams params) {
+    String[] fqs = params.getParams(CommonParams.FQ);
+    if (fqs == null) {
+      return null;
+    }
+
+    long now = System.currentTimeMillis();
+    long slack = NOW_SLACK_MS;
+    String nowStr = params.get(CommonParams.NOW);
+    if (nowStr != null) {
+      try {
+        now = Long.parseLong(nowStr);
+        slack = 0;
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    String tzStr = params.get(CommonParams.TZ);
+    TimeZone tz = tzStr == null ? DateUtil.UTC : TimeZone.getTimeZone(tzStr);
+
+    Pattern clause = Pattern.compile("\\+?" + Pattern.quote(field)
+        + ":(?:([\\[{])\\s*(\\S+)\\s+TO\\s+(\\S+)\\s*[\\]}]|([^\\[{\\s]\\S*))");
+    Number[] range = null;
+    for (String fq : fqs) {
+      Matcher m = clause.matcher(fq.trim());
+      if (!m.matches()) continue;
+      String lowerStr = m.group(1) != null ? m.group(2) : m.group(4);
+      String upperStr = m.group(1) != null ? m.group(3) : m.group(4);
+      Number lower = parseValue(lowerStr, now - slack, tz);
+      Number upper = parseValue(upperStr, now + slack, tz);
+
+      if (range == null) {
+        range = new Number[2];
+      }
+      if (lower != null && (range[0] == null || compare(lower, range[0]) > 0)) {
+        range[0] = lower;
+      }
+      if (upper != null && (range[1] == null || compare(upper, range[1]) < 0)) {
+        range[1] = upper;
+      }
+    }
+    return range;
+  }
+
+  /**
+   * Parses a number, or a date in the ISO 8601 format or <code>NOW</code> followed by date math, to its time in milliseconds.
+   * @return the value, or null if it is unbounded or can't be parsed
+   */
+  static Number parseValue(String value, long now, TimeZone tz) {
+    if (value == null) {
+      return null;
+    }
+    value = value.replace("\\", "");
+    if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+      value = value.substring(1, value.length() - 1);
+    }
+    if (value.length() == 0 || "*".equals(value)) {
+      return null;
+    }
+
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      // not a long
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      // not a number
+    }
+
+    Calendar cal = Calendar.getInstance(tz, Locale.ROOT);
+    int pos;
+    if (value.startsWith("NOW")) {
+      cal.setTimeInMillis(now);
+      pos = 3;
+    } else {
+      Matcher m = ISO_DATE.matcher(value);
+      if (!m.lookingAt()) {
+        return null;
+      }
+      Calendar utc = Calendar.getInstance(DateUtil.UTC, Locale.ROOT);
+      utc.clear();
+      utc.set(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)) - 1, Integer.parseInt(m.group(3)),
+          Integer.parseInt(m.group(4)), Integer.parseInt(m.group(5)), Integer.parseInt(m.group(6)));
+      if (m.group(7) != null) {
+        utc.set(Calendar.MILLISECOND, Integer.parseInt((m.group(7) + "00").substring(0, 3)));
+      }
+      cal.setTimeInMillis(utc.getTimeInMillis());
+      pos = m.end();
+    }
+
+    Matcher m = DATE_MATH.matcher(value);
+    while (pos < value.length()) {
+      m.region(pos, value.length());
+      if (!m.lookingAt()) {
+        return null;
+      }
+      Integer unit = UNITS.get(m.group(2));
+      if (unit == null) {
+        return null;
+      }
+      if ("/".equals(m.group(1))) {
+        round(cal, unit);
+      } else {
+        cal.add(unit, Integer.parseInt(m.group(1)));
+      }
+      pos = m.end();
+    }
+    return cal.getTimeInMillis();
+  }
+
+  private static void round(Calendar cal, int unit) {
+    // clears the fields below the unit, falling through from the largest
+    switch (unit) {
+      case Calendar.YEAR:
+        cal.set(Calendar.MONTH, 0);
+      case Calendar.MONTH:
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+      case Calendar.DATE:
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+      case Calendar.HOUR_OF_DAY:
+        cal.set(Calendar.MINUTE, 0);
+      case Calendar.MINUTE:
+        cal.set(Calendar.SECOND, 0);
+      case Calendar.SECOND:
+        cal.set(Calendar.MILLISECOND, 0);
+    }
+  }
+
+  private static int compare(Number a, Number b) {
+    if (a instanceof Long && b instanceof Long) {
+      return Long.compare(a.longValue(), b.longValue());
+    }
+    return Double.compare(a.doubleValue(), b.doubleValue());
+  }
+}
@@ -154,6 +154,25 @@ public interface CommonParams {
    * Timeout value in milliseconds.  If not set, or the value is <= 0, there is no timeout.
    */
   public static final String TIME_ALLOWED = "timeAllowed";
+
+  /**
+   * The maximum number of documents a request may visit while collecting and faceting on a node, after which
+   * it fails with a 503.  If not set, or the value is &lt; 0, there is no limit.
+   */
+  public static final String BUDGET_MAX_DOCS = "budget.maxDocs";
+
+  /**
+   * The maximum number of bytes a request may allocate for hit queues, facet counts and facet statistics on a node,
+   * after which it fails with a 503.  If not set, or the value is &lt; 0, there is no limit.
+   */
+  public static final String BUDGET_MAX_MEMORY = "budget.maxMemory";
+
+  /**
+   * 'true' if only the top scoring documents need to be found, so that numFound may be a lower bound
+   * of the number of matches.  Only applies to queries sorted by score.  Non-competitive documents are only
+   * skipped in fields that use the <code>Lucene41Impacts</code> postings format.
+   */
+  public static final String APPROX_NUM_FOUND = "approxNumFound";
   
   /** 'true' if the header should include the handler name */
   public static final String HEADER_ECHO_HANDLER = "echoHandler";
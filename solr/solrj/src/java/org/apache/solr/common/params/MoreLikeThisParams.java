@@ -39,6 +39,8 @@ public interface MoreLikeThisParams
   public final static String MAX_NUM_TOKENS_PARSED = PREFIX + "maxntp";
   public final static String BOOST                 = PREFIX + "boost"; // boost or not?
   public final static String QF                    = PREFIX + "qf"; //boosting applied to mlt fields
+  public final static String SIGNATURE_FIELD       = PREFIX + "signatureField"; // binary doc values field of precomputed signatures
+  public final static String LSH_FIELD             = PREFIX + "lshField"; // field of the band keys of the signatures, to filter candidates
 
   // the /mlt request handler uses 'rows'
   public final static String DOC_COUNT = PREFIX + "count";
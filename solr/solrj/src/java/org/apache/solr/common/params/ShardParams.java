@@ -52,6 +52,12 @@ public interface ShardParams {
 
   public static final String _ROUTE_ = "_route_";
 
+  /** Should the coordinator reuse the responses of shards whose index has not changed? (true/false) */
+  public static final String SHARDS_CACHE = "shards.cache";
+
+  /** The version of the cached response of a shard, sent with a sub-request, and the version of a response, returned by the shard */
+  public static final String SHARDS_CACHE_VERSION = "shards.cache.version";
+
   /** Force a single-pass distributed query? (true/false) */
   public static final String DISTRIB_SINGLE_PASS = "distrib.singlePass";
 }
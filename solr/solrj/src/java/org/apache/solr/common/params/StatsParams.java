@@ -25,4 +25,8 @@ public interface StatsParams {
   public static final String STATS_FIELD = STATS + ".field";
   public static final String STATS_FACET = STATS + ".facet";
   public static final String STATS_CALC_DISTINCT = STATS + ".calcdistinct";
+  /** Whether distinct values are counted with a fixed-size sketch rather than collected */
+  public static final String STATS_APPROXIMATE = STATS + ".approximate";
+  /** Comma separated percentiles, between 0 and 100, estimated for numeric and date fields */
+  public static final String STATS_PERCENTILES = STATS + ".percentiles";
 }
@@ -116,5 +116,12 @@ public interface TermsParams {
   
   public static final String TERMS_SORT_COUNT = "count";
   public static final String TERMS_SORT_INDEX = "index";
+
+  /**
+   * Optional.  If true, terms are read from a dictionary of the terms of the field (an FST of the terms and their
+   * document frequencies over all segments) that is built once per searcher, and updated from the changed segments
+   * when a new searcher is warmed, instead of merging the terms of the segments on each request.  The default is false.
+   */
+  public static final String TERMS_CACHE = TERMS_PREFIX + "cache";
 }
 